@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2024 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -55,8 +55,14 @@ public abstract class AbstractMetaStore {
   private @NotBlank String name;
   private @NotBlank String remoteMetaStoreUris;
   private @Valid MetastoreTunnel metastoreTunnel;
+  private @Valid ConnectionPool connectionPool;
+  private @Valid MetadataCache metadataCache;
+  private @Valid CircuitBreaker circuitBreaker;
+  private @Valid Bulkhead bulkhead;
+  private @Valid Hedging hedging;
   private @NotNull AccessControlType accessControlType = AccessControlType.READ_ONLY;
   private transient @JsonProperty @NotNull MetaStoreStatus status = MetaStoreStatus.UNKNOWN;
+  private transient @JsonProperty CircuitBreakerState circuitBreakerState;
   private long latency = 0;
   private transient @JsonIgnore HashBiMap<String, String> databaseNameBiMapping = HashBiMap.create();
   private boolean impersonationEnabled;
@@ -133,6 +139,46 @@ public abstract class AbstractMetaStore {
     this.metastoreTunnel = metastoreTunnel;
   }
 
+  public ConnectionPool getConnectionPool() {
+    return connectionPool;
+  }
+
+  public void setConnectionPool(ConnectionPool connectionPool) {
+    this.connectionPool = connectionPool;
+  }
+
+  public MetadataCache getMetadataCache() {
+    return metadataCache;
+  }
+
+  public void setMetadataCache(MetadataCache metadataCache) {
+    this.metadataCache = metadataCache;
+  }
+
+  public CircuitBreaker getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  public Bulkhead getBulkhead() {
+    return bulkhead;
+  }
+
+  public void setBulkhead(Bulkhead bulkhead) {
+    this.bulkhead = bulkhead;
+  }
+
+  public Hedging getHedging() {
+    return hedging;
+  }
+
+  public void setHedging(Hedging hedging) {
+    this.hedging = hedging;
+  }
+
   public ConnectionType getConnectionType() {
     if (getMetastoreTunnel() != null) {
       return TUNNELED;
@@ -212,6 +258,19 @@ public abstract class AbstractMetaStore {
     this.status = status;
   }
 
+  /**
+   * @return the state of the circuit breaker of the metastore, {@code null} if it has none
+   */
+  @Transient
+  public CircuitBreakerState getCircuitBreakerState() {
+    return circuitBreakerState;
+  }
+
+  @Transient
+  public void setCircuitBreakerState(CircuitBreakerState circuitBreakerState) {
+    this.circuitBreakerState = circuitBreakerState;
+  }
+
   public boolean isImpersonationEnabled() {
     return impersonationEnabled;
   }
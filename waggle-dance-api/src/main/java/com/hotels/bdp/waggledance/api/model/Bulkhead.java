@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.api.model;
+
+import javax.validation.constraints.Min;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Settings of the bulkhead limiting the calls in flight to a metastore. The limit starts at {@code initialLimit} and
+ * adapts to the metastore latency between {@code minLimit} and {@code maxLimit}: it grows by one while calls are fast
+ * and the limit is in use, and shrinks by a tenth on every call slower than {@code latencyThresholdMillis} or failing
+ * to connect. Up to {@code maxQueueSize} calls wait at most {@code maxWaitMillis} for a call to end, others are
+ * rejected. Bulkheads are disabled by default.
+ */
+@NoArgsConstructor
+@Data
+public class Bulkhead {
+  private boolean enabled = false;
+  private @Min(1) int initialLimit = 32;
+  private @Min(1) int minLimit = 4;
+  private @Min(1) int maxLimit = 64;
+  private @Min(0) int maxQueueSize = 32;
+  private @Min(0) long maxWaitMillis = 100L;
+  private @Min(1) long latencyThresholdMillis = 5_000L;
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.api.model;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Settings of the circuit breaker Waggle Dance keeps in front of a metastore. The breaker opens when the rate of failed
+ * or slow calls among the last {@code slidingWindowSize} calls reaches its threshold, calls then fail right away
+ * without reaching the metastore. After {@code waitDurationInOpenStateMillis} a few calls are let through to decide
+ * whether to close it again. Rates are percentages.
+ */
+@NoArgsConstructor
+@Data
+public class CircuitBreaker {
+  private boolean enabled = true;
+  private @Min(1) @Max(100) int failureRateThreshold = 50;
+  private @Min(1) @Max(100) int slowCallRateThreshold = 100;
+  private @Min(1) long slowCallDurationMillis = 30_000L;
+  private @Min(1) int slidingWindowSize = 20;
+  private @Min(1) int minimumNumberOfCalls = 10;
+  private @Min(1) long waitDurationInOpenStateMillis = 30_000L;
+  private @Min(1) int permittedCallsInHalfOpenState = 3;
+}
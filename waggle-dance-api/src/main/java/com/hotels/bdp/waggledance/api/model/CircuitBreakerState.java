@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2019 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -13,20 +13,21 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package com.hotels.bdp.waggledance.client.tunnelling;
+package com.hotels.bdp.waggledance.api.model;
 
-import java.lang.reflect.Method;
+import lombok.AllArgsConstructor;
 
-import com.hotels.hcommon.ssh.MethodChecker;
+@AllArgsConstructor
+public enum CircuitBreakerState {
 
-class MetastoreClientMethodChecker implements MethodChecker {
-  @Override
-  public boolean isTunnelled(Method method) {
-    return "open".equals(method.getName()) || "reconnect".equals(method.getName());
-  }
+  CLOSED(0),
+  HALF_OPEN(1),
+  OPEN(2);
+
+  private final int intValue;
 
-  @Override
-  public boolean isShutdown(Method method) {
-    return "close".equals(method.getName());
+  public int getIntValue() {
+    return intValue;
   }
+
 }
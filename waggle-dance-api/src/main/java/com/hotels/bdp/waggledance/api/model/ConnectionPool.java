@@ -0,0 +1,37 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.api.model;
+
+import javax.validation.constraints.Min;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Settings of the pool of connections Waggle Dance keeps open to a metastore. Connections are partitioned by the
+ * {@code set_ugi} arguments of the client, the idle limits apply to each partition, the total limit to the whole pool.
+ */
+@NoArgsConstructor
+@Data
+public class ConnectionPool {
+  private boolean enabled = true;
+  private @Min(0) int minIdle = 0;
+  private @Min(0) int maxIdle = 8;
+  private @Min(1) int maxTotal = 64;
+  private @Min(0) long maxWaitMillis = 10_000L;
+  private @Min(1) long idleTimeoutMillis = 300_000L;
+  private @Min(1) long keepaliveIntervalMillis = 30_000L;
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.api.model;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Settings of the hedged reads of a metastore listing several URIs. A read that hasn't returned once the given
+ * percentile of the latency of its method has elapsed, and not before {@code minDelayMillis}, is sent again to another
+ * URI and the first answer is used. Hedges are capped to {@code budgetPercent} of the reads. Only honoured by pooled
+ * connections.
+ */
+@NoArgsConstructor
+@Data
+public class Hedging {
+  private boolean enabled = false;
+  private @Min(1) @Max(99) int latencyPercentile = 95;
+  private @Min(0) long minDelayMillis = 10L;
+  private @Min(1) @Max(100) int budgetPercent = 10;
+}
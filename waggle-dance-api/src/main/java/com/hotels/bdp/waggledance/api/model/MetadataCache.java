@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.api.model;
+
+import javax.validation.constraints.Min;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Settings of the cache of database and table metadata Waggle Dance keeps for a metastore. Entries are dropped after
+ * the time to live, when a write goes through Waggle Dance or when the notification log of the metastore reports a
+ * change. A poll interval of {@code 0} disables the notification log polling.
+ * <p>
+ * Partitions are cached a whole table at a time, up to the given number of partitions per table, and updated in place
+ * with the partition changes of the notification log.
+ * <p>
+ * Column statistics are cached per table or partition and column, so requests for more columns or partitions only
+ * fetch the missing ones. Any change to a table drops all of its statistics.
+ */
+@NoArgsConstructor
+@Data
+public class MetadataCache {
+  private boolean enabled = false;
+  private @Min(1) long timeToLiveMillis = 60_000L;
+  private @Min(1) long maxWeightBytes = 64L * 1024 * 1024;
+  private @Min(0) long notificationPollIntervalMillis = 5_000L;
+  private boolean partitionsEnabled = false;
+  private @Min(1) long partitionMaxWeightBytes = 256L * 1024 * 1024;
+  private @Min(1) int maxPartitionsPerTable = 250_000;
+  private boolean statisticsEnabled = false;
+  private @Min(1) long statisticsMaxWeightBytes = 64L * 1024 * 1024;
+}
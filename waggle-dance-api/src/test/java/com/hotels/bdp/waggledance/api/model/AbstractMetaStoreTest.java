@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2021 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -106,6 +106,91 @@ public abstract class AbstractMetaStoreTest<T extends AbstractMetaStore> {
     assertThat(violations.size(), is(1));
   }
 
+  @Test
+  public void validConnectionPool() {
+    metaStore.setConnectionPool(new ConnectionPool());
+    Set<ConstraintViolation<T>> violations = validator.validate(metaStore);
+    assertThat(violations.size(), is(0));
+  }
+
+  @Test
+  public void invalidConnectionPool() {
+    ConnectionPool connectionPool = new ConnectionPool();
+    connectionPool.setMaxTotal(0);
+    metaStore.setConnectionPool(connectionPool);
+
+    Set<ConstraintViolation<T>> violations = validator.validate(metaStore);
+    assertThat(violations.size(), is(1));
+  }
+
+  @Test
+  public void validMetadataCache() {
+    metaStore.setMetadataCache(new MetadataCache());
+    Set<ConstraintViolation<T>> violations = validator.validate(metaStore);
+    assertThat(violations.size(), is(0));
+  }
+
+  @Test
+  public void invalidMetadataCache() {
+    MetadataCache metadataCache = new MetadataCache();
+    metadataCache.setTimeToLiveMillis(0);
+    metaStore.setMetadataCache(metadataCache);
+
+    Set<ConstraintViolation<T>> violations = validator.validate(metaStore);
+    assertThat(violations.size(), is(1));
+  }
+
+  @Test
+  public void validCircuitBreaker() {
+    metaStore.setCircuitBreaker(new CircuitBreaker());
+    Set<ConstraintViolation<T>> violations = validator.validate(metaStore);
+    assertThat(violations.size(), is(0));
+  }
+
+  @Test
+  public void invalidCircuitBreaker() {
+    CircuitBreaker circuitBreaker = new CircuitBreaker();
+    circuitBreaker.setFailureRateThreshold(101);
+    metaStore.setCircuitBreaker(circuitBreaker);
+
+    Set<ConstraintViolation<T>> violations = validator.validate(metaStore);
+    assertThat(violations.size(), is(1));
+  }
+
+  @Test
+  public void validBulkhead() {
+    metaStore.setBulkhead(new Bulkhead());
+    Set<ConstraintViolation<T>> violations = validator.validate(metaStore);
+    assertThat(violations.size(), is(0));
+  }
+
+  @Test
+  public void invalidBulkhead() {
+    Bulkhead bulkhead = new Bulkhead();
+    bulkhead.setMinLimit(0);
+    metaStore.setBulkhead(bulkhead);
+
+    Set<ConstraintViolation<T>> violations = validator.validate(metaStore);
+    assertThat(violations.size(), is(1));
+  }
+
+  @Test
+  public void validHedging() {
+    metaStore.setHedging(new Hedging());
+    Set<ConstraintViolation<T>> violations = validator.validate(metaStore);
+    assertThat(violations.size(), is(0));
+  }
+
+  @Test
+  public void invalidHedging() {
+    Hedging hedging = new Hedging();
+    hedging.setLatencyPercentile(100);
+    metaStore.setHedging(hedging);
+
+    Set<ConstraintViolation<T>> violations = validator.validate(metaStore);
+    assertThat(violations.size(), is(1));
+  }
+
   @Test
   public void nullName() {
     metaStore.setName(null);
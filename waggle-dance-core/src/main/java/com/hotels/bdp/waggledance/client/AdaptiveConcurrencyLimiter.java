@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.hotels.bdp.waggledance.api.model.Bulkhead;
+
+/**
+ * Limits the calls in flight to a metastore with a limit adjusted from their latency, additive increase and
+ * multiplicative decrease. The limit grows by one when a fast call ends while at least half of it is in use and shrinks
+ * by {@link #BACKOFF_RATIO} when a call is slow or fails to connect, within the bounds of the {@link Bulkhead}. Calls
+ * which are expected to be long, like listing many partitions, are released {@link #release(boolean) untimed} so only
+ * their connection failures adjust the limit.
+ * <p>
+ * A simplification of gradient limiters: a call is slow when it takes longer than the fixed
+ * {@link Bulkhead#getLatencyThresholdMillis() latency threshold}, not when it is slower than the latency observed on the
+ * metastore so far. The limit of a metastore that is always slower than the threshold stays at its minimum, and one
+ * that gets slower without crossing the threshold keeps its limit.
+ * <p>
+ * Calls over the limit wait in a short bounded queue. A lock rather than a monitor so waiting virtual threads don't pin
+ * their carrier.
+ */
+final class AdaptiveConcurrencyLimiter {
+
+  static final double BACKOFF_RATIO = 0.9;
+
+  private final Bulkhead settings;
+  private final long maxWaitNanos;
+  private final long latencyThresholdNanos;
+  private final Lock lock = new ReentrantLock();
+  private final Condition released = lock.newCondition();
+  // Guarded by lock, read without it by the metrics
+  private volatile double limit;
+  private volatile int inFlight = 0;
+  private int waiting = 0;
+
+  AdaptiveConcurrencyLimiter(Bulkhead settings) {
+    this.settings = settings;
+    maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(settings.getMaxWaitMillis());
+    latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(settings.getLatencyThresholdMillis());
+    limit = Math.max(settings.getMinLimit(), Math.min(settings.getMaxLimit(), settings.getInitialLimit()));
+  }
+
+  int getLimit() {
+    return (int) limit;
+  }
+
+  int getInFlight() {
+    return inFlight;
+  }
+
+  /**
+   * @return {@code true} if the call can be made, it must then be {@link #release released}
+   */
+  boolean acquire() throws InterruptedException {
+    lock.lock();
+    try {
+      if (inFlight < getLimit()) {
+        inFlight++;
+        return true;
+      }
+      if (waiting >= settings.getMaxQueueSize()) {
+        return false;
+      }
+      waiting++;
+      try {
+        long remaining = maxWaitNanos;
+        while (inFlight >= getLimit()) {
+          if (remaining <= 0) {
+            return false;
+          }
+          remaining = released.awaitNanos(remaining);
+        }
+        inFlight++;
+        return true;
+      } finally {
+        waiting--;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void release(long latencyNanos, boolean failed) {
+    release(failed || latencyNanos > latencyThresholdNanos, true);
+  }
+
+  /**
+   * Releases a call whose latency doesn't tell whether the metastore is overloaded.
+   */
+  void release(boolean failed) {
+    release(failed, false);
+  }
+
+  private void release(boolean backOff, boolean mayIncrease) {
+    lock.lock();
+    try {
+      int used = inFlight;
+      inFlight--;
+      int previousLimit = getLimit();
+      if (backOff) {
+        limit = Math.max(settings.getMinLimit(), limit * BACKOFF_RATIO);
+      } else if (mayIncrease && used * 2 >= previousLimit) {
+        limit = Math.min(settings.getMaxLimit(), limit + 1);
+      }
+      if (getLimit() > previousLimit) {
+        released.signalAll();
+      } else {
+        released.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.thrift.TException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
+import com.hotels.bdp.waggledance.api.model.Bulkhead;
+
+/**
+ * Creates clients that cap the calls in flight to a metastore so a slow metastore can only hold a bounded share of the
+ * Waggle Dance threads. The cap adapts to the latency of the metastore, see {@link AdaptiveConcurrencyLimiter}. Calls
+ * over the cap wait a little for another call to end and are then rejected with a {@link MetaException}. Bulkheads are
+ * disabled unless configured, and the latency of the partition listings, long on large tables, is not used to adapt the
+ * cap.
+ * <p>
+ * The {@code metastore_bulkhead_limit} and {@code metastore_bulkhead_in_flight} gauges and the
+ * {@code metastore_bulkhead_rejected} counter are published tagged with the metastore name.
+ */
+public class BulkheadMetaStoreClientFactory {
+
+  static final String METASTORE_TAG_NAME = "metastore";
+  static final String LIMIT_METRIC_NAME = "metastore_bulkhead_limit";
+  static final String IN_FLIGHT_METRIC_NAME = "metastore_bulkhead_in_flight";
+  static final String REJECTED_METRIC_NAME = "metastore_bulkhead_rejected";
+
+  private static class BulkheadMetaStoreClient extends DispatchingMetaStoreClient {
+
+    private final String name;
+    private final CloseableThriftHiveMetastoreIface client;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Counter rejected;
+    private final Runnable onClose;
+
+    private BulkheadMetaStoreClient(
+        String name,
+        CloseableThriftHiveMetastoreIface client,
+        AdaptiveConcurrencyLimiter limiter,
+        Counter rejected,
+        Runnable onClose) {
+      this.name = name;
+      this.client = client;
+      this.limiter = limiter;
+      this.rejected = rejected;
+      this.onClose = onClose;
+    }
+
+    @Override
+    protected <T> T dispatch(String methodName, Object[] arguments, Call<T> call) throws TException {
+      acquire();
+      long start = System.nanoTime();
+      boolean failed = false;
+      try {
+        return forward(client, methodName, arguments, call);
+      } catch (TException | RuntimeException e) {
+        failed = CircuitBreakerMetaStoreClientFactory.isConnectionFailure(e);
+        throw e;
+      } finally {
+        if (isLongRunning(methodName)) {
+          limiter.release(failed);
+        } else {
+          limiter.release(System.nanoTime() - start, failed);
+        }
+      }
+    }
+
+    @Override
+    public boolean isOpen() {
+      return client.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      onClose.run();
+      client.close();
+    }
+
+    private void acquire() throws TException {
+      boolean acquired;
+      try {
+        acquired = limiter.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new TException("Interrupted while waiting for metastore call", e);
+      }
+      if (!acquired) {
+        rejected.increment();
+        throw new MetaException(
+            "Metastore '" + name + "' is overloaded, " + limiter.getInFlight() + " calls are already in flight");
+      }
+    }
+  }
+
+  static boolean isLongRunning(String methodName) {
+    return methodName.startsWith("get_partitions") || methodName.startsWith("get_partition_names");
+  }
+
+  private final MeterRegistry meterRegistry;
+  // Latest client of each metastore
+  private final Map<String, AdaptiveConcurrencyLimiter> limitersByName = new ConcurrentHashMap<>();
+
+  public BulkheadMetaStoreClientFactory(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * @return a client limiting the calls in flight to the metastore or the given client if its bulkhead is disabled
+   */
+  public CloseableThriftHiveMetastoreIface newInstance(
+      AbstractMetaStore metaStore,
+      CloseableThriftHiveMetastoreIface client) {
+    Bulkhead bulkhead = metaStore.getBulkhead();
+    if (bulkhead == null) {
+      bulkhead = new Bulkhead();
+    }
+    if (!bulkhead.isEnabled()) {
+      return client;
+    }
+    String name = metaStore.getName();
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(bulkhead);
+    if (limitersByName.put(name, limiter) == null) {
+      Gauge
+          .builder(LIMIT_METRIC_NAME, limitersByName, m -> limit(m.get(name)))
+          .tag(METASTORE_TAG_NAME, name)
+          .register(meterRegistry);
+      Gauge
+          .builder(IN_FLIGHT_METRIC_NAME, limitersByName, m -> inFlight(m.get(name)))
+          .tag(METASTORE_TAG_NAME, name)
+          .register(meterRegistry);
+    }
+    Counter rejected = Counter.builder(REJECTED_METRIC_NAME).tag(METASTORE_TAG_NAME, name).register(meterRegistry);
+    return new BulkheadMetaStoreClient(name, client, limiter, rejected, () -> limitersByName.remove(name, limiter));
+  }
+
+  private static double limit(AdaptiveConcurrencyLimiter limiter) {
+    return limiter == null ? Double.NaN : limiter.getLimit();
+  }
+
+  private static double inFlight(AdaptiveConcurrencyLimiter limiter) {
+    return limiter == null ? Double.NaN : limiter.getInFlight();
+  }
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.thrift.TException;
+import org.apache.thrift.transport.TTransportException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
+import com.hotels.bdp.waggledance.api.model.CircuitBreaker;
+import com.hotels.bdp.waggledance.api.model.CircuitBreakerState;
+import com.hotels.hcommon.hive.metastore.exception.MetastoreUnavailableException;
+
+/**
+ * Creates clients that stop calling a metastore once too many of its calls fail or are slow, so callers don't pile up
+ * waiting for timeouts and reconnections. While the {@link CircuitBreaker} of the metastore is open calls fail right
+ * away with a {@link MetaException}. Only connection failures count as failures, errors returned by the metastore
+ * don't.
+ * <p>
+ * The {@code metastore_circuit_breaker_state} gauge (0 closed, 1 half open, 2 open), the
+ * {@code metastore_circuit_breaker_rejected} counter and the {@code metastore_circuit_breaker_transitions} counter are
+ * published tagged with the metastore name.
+ */
+public class CircuitBreakerMetaStoreClientFactory {
+
+  static final String METASTORE_TAG_NAME = "metastore";
+  static final String STATE_METRIC_NAME = "metastore_circuit_breaker_state";
+  static final String REJECTED_METRIC_NAME = "metastore_circuit_breaker_rejected";
+  static final String TRANSITIONS_METRIC_NAME = "metastore_circuit_breaker_transitions";
+
+  private static class CircuitBreakerMetaStoreClient extends DispatchingMetaStoreClient {
+
+    private final String name;
+    private final CloseableThriftHiveMetastoreIface client;
+    private final MetaStoreCircuitBreaker breaker;
+    private final Counter rejected;
+    private final Runnable onClose;
+
+    private CircuitBreakerMetaStoreClient(
+        String name,
+        CloseableThriftHiveMetastoreIface client,
+        MetaStoreCircuitBreaker breaker,
+        Counter rejected,
+        Runnable onClose) {
+      this.name = name;
+      this.client = client;
+      this.breaker = breaker;
+      this.rejected = rejected;
+      this.onClose = onClose;
+    }
+
+    @Override
+    protected <T> T dispatch(String methodName, Object[] arguments, Call<T> call) throws TException {
+      long generation = breaker.acquire();
+      if (generation == MetaStoreCircuitBreaker.REJECTED) {
+        rejected.increment();
+        throw new MetaException("Metastore '" + name + "' is unavailable, its circuit breaker is open");
+      }
+      long start = breaker.nanoTime();
+      boolean failed = false;
+      try {
+        return forward(client, methodName, arguments, call);
+      } catch (TException | RuntimeException e) {
+        failed = isConnectionFailure(e);
+        throw e;
+      } finally {
+        breaker.record(generation, failed, breaker.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public boolean isOpen() {
+      return client.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      onClose.run();
+      client.close();
+    }
+  }
+
+  private final MeterRegistry meterRegistry;
+  // Latest client of each metastore
+  private final Map<String, MetaStoreCircuitBreaker> breakersByName = new ConcurrentHashMap<>();
+
+  public CircuitBreakerMetaStoreClientFactory(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * @return a client guarded by the circuit breaker of the metastore or the given client if its breaker is disabled
+   */
+  public CloseableThriftHiveMetastoreIface newInstance(
+      AbstractMetaStore metaStore,
+      CloseableThriftHiveMetastoreIface client) {
+    CircuitBreaker circuitBreaker = metaStore.getCircuitBreaker();
+    if (circuitBreaker == null) {
+      circuitBreaker = new CircuitBreaker();
+    }
+    if (!circuitBreaker.isEnabled()) {
+      return client;
+    }
+    String name = metaStore.getName();
+    MetaStoreCircuitBreaker breaker = new MetaStoreCircuitBreaker(name, circuitBreaker, meterRegistry);
+    if (breakersByName.put(name, breaker) == null) {
+      Gauge
+          .builder(STATE_METRIC_NAME, breakersByName, m -> stateValue(m.get(name)))
+          .tag(METASTORE_TAG_NAME, name)
+          .register(meterRegistry);
+    }
+    Counter rejected = Counter.builder(REJECTED_METRIC_NAME).tag(METASTORE_TAG_NAME, name).register(meterRegistry);
+    return new CircuitBreakerMetaStoreClient(name, client, breaker, rejected,
+        () -> breakersByName.remove(name, breaker));
+  }
+
+  /**
+   * @return {@code true} if the call failed to reach the metastore, rather than the metastore answering with an error
+   */
+  static boolean isConnectionFailure(Throwable t) {
+    return t instanceof TTransportException || t instanceof MetastoreUnavailableException;
+  }
+
+  /**
+   * @return the state of the circuit breaker of the metastore, {@code null} if it has none
+   */
+  public CircuitBreakerState getState(String name) {
+    MetaStoreCircuitBreaker breaker = breakersByName.get(name);
+    return breaker == null ? null : breaker.getState();
+  }
+
+  private static double stateValue(MetaStoreCircuitBreaker breaker) {
+    return breaker == null ? Double.NaN : breaker.getState().getIntValue();
+  }
+
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * State of a single Waggle Dance client connection.
+ * <p>
+ * Database mappings are shared by all the client connections, backend clients however are not thread safe and hold per
+ * connection state (i.e. the {@code set_ugi} arguments). The session is bound to the thread processing a request of
+ * its connection so shared clients can find the backend connection that belongs to it. Resources registered with
+ * {@link #onClose(Closeable)} are released when the client connection goes away.
+ */
+@Log4j2
+public class ClientSession implements Closeable {
+
+  /**
+   * Restores the previously bound session when closed.
+   */
+  public interface Binding extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  private static final ThreadLocal<ClientSession> CURRENT = new ThreadLocal<>();
+
+  private final List<Closeable> closeables = new CopyOnWriteArrayList<>();
+  private volatile HiveUgiArgs ugi;
+  private volatile String user;
+  private volatile String monitoredMetastore;
+
+  /**
+   * @return the session bound to the current thread or {@code null} when the thread is not serving a client connection
+   */
+  public static ClientSession current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Wraps the callable so it runs with the session of the calling thread, used when work is handed over to another
+   * thread.
+   */
+  public static <T> Callable<T> propagate(Callable<T> callable) {
+    ClientSession session = current();
+    if (session == null) {
+      return callable;
+    }
+    return () -> {
+      try (Binding binding = session.bind()) {
+        return callable.call();
+      }
+    };
+  }
+
+  public Binding bind() {
+    ClientSession previous = CURRENT.get();
+    CURRENT.set(this);
+    return () -> {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    };
+  }
+
+  /**
+   * @return the arguments of the last {@code set_ugi} call made by the client or {@code null} if it never made one
+   */
+  public HiveUgiArgs getUgi() {
+    return ugi;
+  }
+
+  public void setUgi(HiveUgiArgs ugi) {
+    this.ugi = ugi;
+  }
+
+  /**
+   * @return the short name of the user authenticated on the connection, impersonated on the metastores that enable it,
+   *         or {@code null} until its first request
+   */
+  public String getUser() {
+    return user;
+  }
+
+  public void setUser(String user) {
+    this.user = user;
+  }
+
+  /**
+   * @return the name of the metastore serving the current request of the connection, used to tag its metrics
+   */
+  public String getMonitoredMetastore() {
+    return monitoredMetastore;
+  }
+
+  public void setMonitoredMetastore(String monitoredMetastore) {
+    this.monitoredMetastore = monitoredMetastore;
+  }
+
+  public void onClose(Closeable closeable) {
+    closeables.add(closeable);
+  }
+
+  @Override
+  public void close() {
+    for (Closeable closeable : closeables) {
+      try {
+        closeable.close();
+      } catch (Exception e) {
+        log.warn("Error releasing client session resource", e);
+      }
+    }
+    closeables.clear();
+  }
+
+}
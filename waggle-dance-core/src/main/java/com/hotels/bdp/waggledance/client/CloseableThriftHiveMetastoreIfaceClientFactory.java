@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2024 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,6 +15,7 @@
  */
 package com.hotels.bdp.waggledance.client;
 
+import static com.hotels.bdp.waggledance.api.model.ConnectionType.DIRECT;
 import static com.hotels.bdp.waggledance.api.model.ConnectionType.TUNNELED;
 
 import java.util.Collections;
@@ -23,57 +24,134 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
 
-import lombok.AllArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
 
 import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
+import com.hotels.bdp.waggledance.api.model.ConnectionPool;
 import com.hotels.bdp.waggledance.client.tunnelling.TunnelingMetaStoreClientFactory;
 import com.hotels.bdp.waggledance.conf.WaggleDanceConfiguration;
 import com.hotels.bdp.waggledance.context.CommonBeans;
 import com.hotels.hcommon.hive.metastore.conf.HiveConfFactory;
 import com.hotels.hcommon.hive.metastore.util.MetaStoreUriNormaliser;
 
-@AllArgsConstructor
 public class CloseableThriftHiveMetastoreIfaceClientFactory {
 
   private static final int DEFAULT_CLIENT_FACTORY_RECONNECTION_RETRY = 3;
   private final TunnelingMetaStoreClientFactory tunnelingMetaStoreClientFactory;
   private final DefaultMetaStoreClientFactory defaultMetaStoreClientFactory;
   private final WaggleDanceConfiguration waggleDanceConfiguration;
+  private final MetaStoreClientPoolMetrics metaStoreClientPoolMetrics;
   private final int defaultConnectionTimeout = (int) TimeUnit.SECONDS.toMillis(2L);
 
+  public CloseableThriftHiveMetastoreIfaceClientFactory(
+      TunnelingMetaStoreClientFactory tunnelingMetaStoreClientFactory,
+      DefaultMetaStoreClientFactory defaultMetaStoreClientFactory,
+      WaggleDanceConfiguration waggleDanceConfiguration,
+      MeterRegistry meterRegistry) {
+    this.tunnelingMetaStoreClientFactory = tunnelingMetaStoreClientFactory;
+    this.defaultMetaStoreClientFactory = defaultMetaStoreClientFactory;
+    this.waggleDanceConfiguration = waggleDanceConfiguration;
+    metaStoreClientPoolMetrics = new MetaStoreClientPoolMetrics(meterRegistry);
+  }
+
   public CloseableThriftHiveMetastoreIface newInstance(AbstractMetaStore metaStore) {
-    Map<String, String> properties = new HashMap<>();
-    if (waggleDanceConfiguration.getConfigurationProperties() != null) {
-      properties.putAll(waggleDanceConfiguration.getConfigurationProperties());
+    return newInstance(metaStore, newHiveConf(metaStore));
+  }
+
+  /**
+   * @param hiveConf the configuration of the metastore built by {@link #newHiveConf(AbstractMetaStore)}, shared and
+   *          not modified by the client
+   */
+  public CloseableThriftHiveMetastoreIface newInstance(AbstractMetaStore metaStore, HiveConf hiveConf) {
+    String name = metaStore.getName().toLowerCase(Locale.ROOT);
+    if (metaStore.getConnectionType() == TUNNELED) {
+      String uris = MetaStoreUriNormaliser.normaliseMetaStoreUris(metaStore.getRemoteMetaStoreUris());
+      return tunnelingMetaStoreClientFactory
+          .newInstance(uris, metaStore.getMetastoreTunnel(), name, DEFAULT_CLIENT_FACTORY_RECONNECTION_RETRY,
+              connectionTimeout(metaStore), hiveConf);
     }
-    //override per metastore
-    properties.putAll(metaStore.getConfigurationProperties());
-    return newHiveInstance(metaStore, properties);
+    return defaultMetaStoreClientFactory
+        .newInstance(hiveConf, "waggledance-" + name, DEFAULT_CLIENT_FACTORY_RECONNECTION_RETRY,
+            connectionTimeout(metaStore));
+  }
+
+  /**
+   * Pooled clients can be shared by all the client sessions, only direct connections can be pooled. Connections that
+   * impersonate the client user are pooled per user.
+   */
+  public boolean isPoolable(AbstractMetaStore metaStore) {
+    return metaStore.getConnectionType() == DIRECT && connectionPool(metaStore).isEnabled();
+  }
+
+  public CloseableThriftHiveMetastoreIface newPooledInstance(AbstractMetaStore metaStore) {
+    return newPooledInstance(metaStore, newHiveConf(metaStore));
+  }
+
+  /**
+   * @param remoteMetaStoreUris the URIs to connect to instead of the ones of the metastore, e.g. a single one of them
+   */
+  public CloseableThriftHiveMetastoreIface newPooledInstance(AbstractMetaStore metaStore, String remoteMetaStoreUris) {
+    return newPooledInstance(metaStore, newHiveConf(metaStore, remoteMetaStoreUris));
   }
 
-  private CloseableThriftHiveMetastoreIface newHiveInstance(
-          AbstractMetaStore metaStore,
-          Map<String, String> properties) {
-    String uris = MetaStoreUriNormaliser.normaliseMetaStoreUris(metaStore.getRemoteMetaStoreUris());
+  /**
+   * @param hiveConf the configuration of the metastore built by {@link #newHiveConf(AbstractMetaStore, String)},
+   *          shared and not modified by the pooled connections
+   */
+  public CloseableThriftHiveMetastoreIface newPooledInstance(AbstractMetaStore metaStore, HiveConf hiveConf) {
+    if (!isPoolable(metaStore)) {
+      throw new IllegalArgumentException("Connections to metastore '" + metaStore.getName() + "' can't be pooled");
+    }
     String name = metaStore.getName().toLowerCase(Locale.ROOT);
+    return defaultMetaStoreClientFactory
+        .newPooledInstance(hiveConf, "waggledance-" + name, DEFAULT_CLIENT_FACTORY_RECONNECTION_RETRY,
+            connectionTimeout(metaStore), connectionPool(metaStore), metaStoreClientPoolMetrics);
+  }
 
-    // Connection timeout should not be less than 1
-    // A timeout of zero is interpreted as an infinite timeout, so this is avoided
-    int connectionTimeout = Math.max(1, defaultConnectionTimeout + (int) metaStore.getLatency());
+  /**
+   * Building a {@link HiveConf} parses the Hive default resources, it is meant to be built once per metastore when it
+   * is registered and shared by all its clients rather than once per client.
+   */
+  public HiveConf newHiveConf(AbstractMetaStore metaStore) {
+    return newHiveConf(metaStore, metaStore.getRemoteMetaStoreUris());
+  }
 
+  /**
+   * @param remoteMetaStoreUris the URIs to connect to instead of the ones of the metastore, e.g. a single one of them
+   */
+  public HiveConf newHiveConf(AbstractMetaStore metaStore, String remoteMetaStoreUris) {
+    String uris = MetaStoreUriNormaliser.normaliseMetaStoreUris(remoteMetaStoreUris);
+    Map<String, String> properties = new HashMap<>();
     if (metaStore.getConnectionType() == TUNNELED) {
-      return tunnelingMetaStoreClientFactory
-          .newInstance(uris, metaStore.getMetastoreTunnel(), name, DEFAULT_CLIENT_FACTORY_RECONNECTION_RETRY,
-              connectionTimeout, waggleDanceConfiguration.getConfigurationProperties());
+      // The URIs are replaced by the local end of the tunnel
+      properties.put(ConfVars.METASTOREURIS.varname, uris);
+      if (waggleDanceConfiguration.getConfigurationProperties() != null) {
+        properties.putAll(waggleDanceConfiguration.getConfigurationProperties());
+      }
+    } else {
+      if (waggleDanceConfiguration.getConfigurationProperties() != null) {
+        properties.putAll(waggleDanceConfiguration.getConfigurationProperties());
+      }
+      //override per metastore
+      properties.putAll(metaStore.getConfigurationProperties());
+      properties.put(ConfVars.METASTOREURIS.varname, uris);
+      properties.put(CommonBeans.IMPERSONATION_ENABLED_KEY, String.valueOf(metaStore.isImpersonationEnabled()));
     }
-    properties.put(ConfVars.METASTOREURIS.varname, uris);
-    properties.put(CommonBeans.IMPERSONATION_ENABLED_KEY,
-        String.valueOf(metaStore.isImpersonationEnabled()));
     HiveConfFactory confFactory = new HiveConfFactory(Collections.emptyList(), properties);
-    return defaultMetaStoreClientFactory
-        .newInstance(confFactory.newInstance(), "waggledance-" + name, DEFAULT_CLIENT_FACTORY_RECONNECTION_RETRY,
-            connectionTimeout);
+    return confFactory.newInstance();
+  }
+
+  private int connectionTimeout(AbstractMetaStore metaStore) {
+    // Connection timeout should not be less than 1
+    // A timeout of zero is interpreted as an infinite timeout, so this is avoided
+    return Math.max(1, defaultConnectionTimeout + (int) metaStore.getLatency());
+  }
+
+  private ConnectionPool connectionPool(AbstractMetaStore metaStore) {
+    ConnectionPool connectionPool = metaStore.getConnectionPool();
+    return connectionPool == null ? new ConnectionPool() : connectionPool;
   }
 }
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.thrift.TBase;
+import org.apache.thrift.TException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Creates clients that share a single metastore call between identical read calls made at the same time, so a burst
+ * of clients asking for the same table only reaches the metastore once. Calls are identical when they have the same
+ * method, arguments, {@code set_ugi} arguments and authenticated user, the user impersonated on the metastores that
+ * enable it, as the connections of {@link MetaStoreClientPool} are partitioned. Each caller gets its own copy of the
+ * result as callers modify them.
+ * <p>
+ * The {@code metastore_coalescer_requests} and {@code metastore_coalescer_backend_calls} counters are published tagged
+ * with the metastore name, their ratio is how many requests were served per metastore call.
+ */
+public class CoalescingMetaStoreClientFactory {
+
+  static final String METASTORE_TAG_NAME = "metastore";
+  static final String REQUESTS_METRIC_NAME = "metastore_coalescer_requests";
+  static final String BACKEND_CALLS_METRIC_NAME = "metastore_coalescer_backend_calls";
+
+  // Reads that must not be shared
+  private static final Set<String> NOT_COALESCED = ImmutableSet.of("get_delegation_token");
+
+  private static final class CallKey {
+    private final String methodName;
+    private final List<Object> args;
+    private final HiveUgiArgs ugi;
+    private final String user;
+
+    private CallKey(String methodName, Object[] args, HiveUgiArgs ugi, String user) {
+      this.methodName = methodName;
+      this.args = args == null ? Collections.emptyList() : Arrays.asList(args);
+      this.ugi = ugi;
+      this.user = user;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CallKey)) {
+        return false;
+      }
+      CallKey other = (CallKey) o;
+      return methodName.equals(other.methodName)
+          && args.equals(other.args)
+          && Objects.equals(ugi, other.ugi)
+          && Objects.equals(user, other.user);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(methodName, args, ugi, user);
+    }
+  }
+
+  private static final class InFlightCall {
+    private final CompletableFuture<Object> result = new CompletableFuture<>();
+    // Only changed while the call is in flight, under the lock of its map entry
+    private int joined = 0;
+  }
+
+  private static class CoalescingMetaStoreClient extends DispatchingMetaStoreClient {
+
+    private final CloseableThriftHiveMetastoreIface client;
+    private final Map<CallKey, InFlightCall> inFlight = new ConcurrentHashMap<>();
+    private final Counter requests;
+    private final Counter backendCalls;
+
+    private CoalescingMetaStoreClient(
+        CloseableThriftHiveMetastoreIface client,
+        Counter requests,
+        Counter backendCalls) {
+      this.client = client;
+      this.requests = requests;
+      this.backendCalls = backendCalls;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <T> T dispatch(String methodName, Object[] arguments, Call<T> call) throws TException {
+      if (!methodName.startsWith("get_") || NOT_COALESCED.contains(methodName)) {
+        return forward(client, methodName, arguments, call);
+      }
+      ClientSession session = ClientSession.current();
+      CallKey key = session == null
+          ? new CallKey(methodName, arguments, null, null)
+          : new CallKey(methodName, arguments, session.getUgi(), session.getUser());
+      InFlightCall inFlightCall = new InFlightCall();
+      InFlightCall shared = inFlight.compute(key, (k, existing) -> {
+        if (existing == null) {
+          return inFlightCall;
+        }
+        existing.joined++;
+        return existing;
+      });
+      requests.increment();
+      if (shared != inFlightCall) {
+        return (T) join(shared);
+      }
+      backendCalls.increment();
+      T result;
+      try {
+        result = forward(client, methodName, arguments, call);
+      } catch (TException | RuntimeException | Error e) {
+        inFlight.remove(key, inFlightCall);
+        inFlightCall.result.completeExceptionally(e);
+        throw e;
+      }
+      // No caller can join once removed, the ones that did copy the result so the caller can't have it as is
+      inFlight.remove(key, inFlightCall);
+      inFlightCall.result.complete(result);
+      return inFlightCall.joined == 0 ? result : (T) copy(result);
+    }
+
+    private Object join(InFlightCall call) throws TException {
+      try {
+        return copy(call.result.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new TException("Interrupted while waiting for metastore call", e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof TBase) {
+          cause = (Throwable) ((TBase<?, ?>) cause).deepCopy();
+        }
+        if (cause instanceof TException) {
+          throw (TException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw (Error) cause;
+      }
+    }
+
+    @Override
+    public boolean isOpen() {
+      return client.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      client.close();
+    }
+  }
+
+  private final boolean enabled;
+  private final MeterRegistry meterRegistry;
+
+  public CoalescingMetaStoreClientFactory(boolean enabled, MeterRegistry meterRegistry) {
+    this.enabled = enabled;
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * @return a client coalescing the reads of the metastore or the given client if coalescing is disabled
+   */
+  public CloseableThriftHiveMetastoreIface newInstance(String name, CloseableThriftHiveMetastoreIface client) {
+    if (!enabled) {
+      return client;
+    }
+    Counter requests = Counter.builder(REQUESTS_METRIC_NAME).tag(METASTORE_TAG_NAME, name).register(meterRegistry);
+    Counter backendCalls = Counter
+        .builder(BACKEND_CALLS_METRIC_NAME)
+        .tag(METASTORE_TAG_NAME, name)
+        .register(meterRegistry);
+    return new CoalescingMetaStoreClient(client, requests, backendCalls);
+  }
+
+  @SuppressWarnings("unchecked")
+  static Object copy(Object value) {
+    if (value instanceof TBase) {
+      return ((TBase<?, ?>) value).deepCopy();
+    }
+    if (value instanceof List) {
+      List<Object> copy = new ArrayList<>(((List<?>) value).size());
+      for (Object element : (List<?>) value) {
+        copy.add(copy(element));
+      }
+      return copy;
+    }
+    if (value instanceof Set) {
+      Set<Object> copy = new LinkedHashSet<>();
+      for (Object element : (Set<?>) value) {
+        copy.add(copy(element));
+      }
+      return copy;
+    }
+    if (value instanceof Map) {
+      Map<Object, Object> copy = new LinkedHashMap<>();
+      for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) value).entrySet()) {
+        copy.put(copy(entry.getKey()), copy(entry.getValue()));
+      }
+      return copy;
+    }
+    // Strings, numbers and enums are immutable
+    return value;
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2024 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,114 +15,147 @@
  */
 package com.hotels.bdp.waggledance.client;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.thrift.TException;
 import org.apache.thrift.transport.TTransportException;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.log4j.Log4j2;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 
+import com.hotels.bdp.waggledance.api.model.ConnectionPool;
 import com.hotels.bdp.waggledance.client.compatibility.HiveCompatibleThriftHiveMetastoreIfaceFactory;
+import com.hotels.bdp.waggledance.context.CommonBeans;
 import com.hotels.hcommon.hive.metastore.exception.MetastoreUnavailableException;
 
 
 public class DefaultMetaStoreClientFactory implements MetaStoreClientFactory {
 
-  static final Class<?>[] INTERFACES = new Class<?>[] { CloseableThriftHiveMetastoreIface.class };
+  // Shared by all the connections to the same URIs, whichever metastore and pool they belong to
+  private final Map<List<URI>, MetaStoreUriBalancer> balancersByUris = new ConcurrentHashMap<>();
+  private final Map<List<URI>, ReconnectCoordinator> reconnectCoordinatorsByUris = new ConcurrentHashMap<>();
+  // Shared so the methods a metastore doesn't support are learnt once for all its connections
+  private final HiveCompatibleThriftHiveMetastoreIfaceFactory compatibleFactory;
+  // Renews the delegation tokens of all the clients, each client has its own tokens closed along with it
+  private final ScheduledExecutorService delegationTokenScheduler = DelegationTokenService.newScheduler();
+
+  public DefaultMetaStoreClientFactory() {
+    this(new HiveCompatibleThriftHiveMetastoreIfaceFactory());
+  }
+
+  public DefaultMetaStoreClientFactory(MeterRegistry meterRegistry) {
+    this(new HiveCompatibleThriftHiveMetastoreIfaceFactory(meterRegistry));
+  }
+
+  private DefaultMetaStoreClientFactory(HiveCompatibleThriftHiveMetastoreIfaceFactory compatibleFactory) {
+    this.compatibleFactory = compatibleFactory;
+  }
 
   @Log4j2
-  private static class ReconnectingMetastoreClientInvocationHandler implements InvocationHandler {
+  private static class ReconnectingMetaStoreClient extends DispatchingMetaStoreClient {
 
     private final ThriftMetastoreClientManager base;
     private final String name;
     private final int maxRetries;
+    private final DelegationTokenService delegationTokens;
 
     private HiveUgiArgs cachedUgi = null;
 
-    private ReconnectingMetastoreClientInvocationHandler(
-            String name,
-            int maxRetries,
-            ThriftMetastoreClientManager base) {
+    private ReconnectingMetaStoreClient(
+        String name,
+        int maxRetries,
+        ThriftMetastoreClientManager base,
+        DelegationTokenService delegationTokens) {
       this.name = name;
       this.maxRetries = maxRetries;
       this.base = base;
+      this.delegationTokens = delegationTokens;
+    }
+
+    // close() and isOpen() methods delegate to base HiveMetastoreClient
+    @Override
+    public boolean isOpen() {
+      try {
+        reconnectIfDisconnected();
+        return base.isOpen();
+      } catch (Exception e) {
+        log.debug("Error re-opening client at isOpen(): {}", e.getMessage());
+        return false;
+      }
+    }
+
+    @Override
+    public void close() {
+      if (base != null) {
+        base.close();
+      }
+      delegationTokens.close();
     }
 
     @SuppressWarnings("unchecked")
     @Override
-    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-      int attempt = 0;
-      // close() and isOpen() methods delegate to base HiveMetastoreClient
-      switch (method.getName()) {
-        case "isOpen":
-          try {
-            reconnectIfDisconnected();
-            return base.isOpen();
-          } catch (Exception e) {
-            log.debug("Error re-opening client at isOpen(): {}", e.getMessage());
-            return false;
-          }
-        case "close":
-          if (base != null) {
-            base.close();
-          }
-          return null;
-        case "set_ugi":
-          String user = (String) args[0];
-          List<String> groups = (List<String>) args[1];
-          cachedUgi = new HiveUgiArgs(user, groups);
-          if (base.isOpen()) {
-            log
-                    .info("calling #set_ugi (on already open client) for user '{}',  on metastore {}", cachedUgi.getUser(),
-                            name);
-            return doRealCall(method, args, attempt);
-          } else {
-            // delay call until we get the next non set_ugi call, this helps doing unnecessary calls to Federated
-            // Metastores.
-            return Lists.newArrayList(user);
-          }
-        default:
-          base.open(cachedUgi);
-          return doRealCall(method, args, attempt);
+    protected <T> T dispatch(String methodName, Object[] arguments, Call<T> call) throws TException {
+      switch (methodName) {
+      case "set_ugi":
+        String userName = (String) arguments[0];
+        cachedUgi = new HiveUgiArgs(userName, (List<String>) arguments[1]);
+        if (base.isOpen()) {
+          log
+              .info("calling #set_ugi (on already open client) for user '{}',  on metastore {}", cachedUgi.getUser(),
+                  name);
+          return doRealCall(methodName, arguments, call, true);
+        }
+        // delay call until we get the next non set_ugi call, this helps doing unnecessary calls to Federated
+        // Metastores.
+        return (T) Lists.newArrayList(userName);
+      case "shutdown":
+        base.open(cachedUgi);
+        return doRealCall(methodName, arguments, call, false);
+      default:
+        base.open(cachedUgi);
+        return doRealCall(methodName, arguments, call, true);
       }
     }
 
-    private Object doRealCall(Method method, Object[] args, int attempt) throws IllegalAccessException, Throwable {
+    private <T> T doRealCall(String methodName, Object[] arguments, Call<T> call, boolean retriable) throws TException {
+      int attempt = 0;
       do {
+        long start = System.nanoTime();
+        base.callStarted();
+        T result;
         try {
-          return method.invoke(base.getClient(), args);
-        } catch (InvocationTargetException e) {
-          Throwable realException = e.getTargetException();
-          if (TTransportException.class.isAssignableFrom(realException.getClass())) {
-            if (attempt < maxRetries && shouldRetry(method)) {
-              log.debug("TTransportException captured in client {}. Reconnecting... ", name);
-              base.reconnect(cachedUgi);
-              continue;
-            }
-            throw new MetastoreUnavailableException("Client " + name + " is not available", realException);
+          result = forward(base.getClient(), methodName, arguments, call);
+        } catch (TTransportException e) {
+          // Before reconnecting, so the new connection avoids the URI that failed
+          base.callEnded(methodName, System.nanoTime() - start, true);
+          if (attempt < maxRetries && retriable && base.tryRetry()) {
+            log.debug("TTransportException captured in client {}. Reconnecting... ", name);
+            base.reconnect(cachedUgi);
+            continue;
           }
-          throw realException;
+          throw new MetastoreUnavailableException("Client " + name + " is not available", e);
+        } catch (Throwable t) {
+          base.callEnded(methodName, System.nanoTime() - start, false);
+          throw t;
         }
+        base.callEnded(methodName, System.nanoTime() - start, false);
+        return result;
       } while (++attempt <= maxRetries);
       throw new RuntimeException("Unreachable code");
     }
 
-    private boolean shouldRetry(Method method) {
-      switch (method.getName()) {
-        case "shutdown":
-          return false;
-        default:
-          return true;
-      }
-    }
-
     private void reconnectIfDisconnected() {
       try {
         if (!base.isOpen()) {
@@ -135,6 +168,150 @@ public class DefaultMetaStoreClientFactory implements MetaStoreClientFactory {
 
   }
 
+  /**
+   * Borrows a connection from the pool for every call and returns it right after. Connections are picked from the
+   * partition of the {@code set_ugi} arguments of the calling {@link ClientSession} so they are opened with the same
+   * {@code set_ugi} call a dedicated client would have made. The pool is created on first use, calls made once the
+   * client is closed fail rather than creating a pool nothing would close.
+   */
+  @Log4j2
+  private static class PooledMetaStoreClient extends DispatchingMetaStoreClient {
+
+    private final String name;
+    private final int maxRetries;
+    private final Supplier<MetaStoreClientPool> poolFactory;
+    private final DelegationTokenService delegationTokens;
+    // Every call goes through getPool(), a volatile read rather than a monitor keeps it contention free
+    private final Lock poolLock = new ReentrantLock();
+    private volatile MetaStoreClientPool pool;
+    // Guarded by poolLock
+    private boolean closed;
+
+    private PooledMetaStoreClient(
+        String name,
+        int maxRetries,
+        Supplier<MetaStoreClientPool> poolFactory,
+        DelegationTokenService delegationTokens) {
+      this.name = name;
+      this.maxRetries = maxRetries;
+      this.poolFactory = poolFactory;
+      this.delegationTokens = delegationTokens;
+    }
+
+    @Override
+    public boolean isOpen() {
+      HiveUgiArgs ugi = currentUgi();
+      try {
+        MetaStoreClientPool pool = getPool();
+        pool.release(ugi, pool.borrow(ugi));
+        return true;
+      } catch (Exception e) {
+        log.debug("Error borrowing client at isOpen(): {}", e.getMessage());
+        return false;
+      }
+    }
+
+    @Override
+    public void close() {
+      closePool();
+      delegationTokens.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <T> T dispatch(String methodName, Object[] arguments, Call<T> call) throws TException {
+      switch (methodName) {
+      case "set_ugi":
+        String userName = (String) arguments[0];
+        ClientSession session = ClientSession.current();
+        if (session != null) {
+          session.setUgi(new HiveUgiArgs(userName, (List<String>) arguments[1]));
+        }
+        // connections of the partition already made the call when they were opened
+        return (T) Lists.newArrayList(userName);
+      case "shutdown":
+        // pooled connections are closed by the pool
+        return null;
+      default:
+        return pooledCall(methodName, arguments, call);
+      }
+    }
+
+    private <T> T pooledCall(String methodName, Object[] arguments, Call<T> call) throws TException {
+      HiveUgiArgs ugi = currentUgi();
+      int attempt = 0;
+      do {
+        MetaStoreClientPool pool = getPool();
+        ThriftMetastoreClientManager connection;
+        try {
+          connection = pool.borrow(ugi);
+        } catch (Exception e) {
+          throw new MetastoreUnavailableException("Client " + name + " is not available", e);
+        }
+        boolean broken = false;
+        long start = System.nanoTime();
+        connection.callStarted();
+        try {
+          return forward(connection.getClient(), methodName, arguments, call);
+        } catch (TTransportException e) {
+          broken = true;
+          if (attempt < maxRetries && connection.tryRetry()) {
+            log.debug("TTransportException captured in client {}. Retrying with another connection... ", name);
+            continue;
+          }
+          throw new MetastoreUnavailableException("Client " + name + " is not available", e);
+        } finally {
+          connection.callEnded(methodName, System.nanoTime() - start, broken);
+          if (broken) {
+            pool.invalidate(ugi, connection);
+          } else {
+            pool.release(ugi, connection);
+          }
+        }
+      } while (++attempt <= maxRetries);
+      throw new RuntimeException("Unreachable code");
+    }
+
+    private static HiveUgiArgs currentUgi() {
+      ClientSession session = ClientSession.current();
+      return session == null ? null : session.getUgi();
+    }
+
+    private MetaStoreClientPool getPool() throws TTransportException {
+      MetaStoreClientPool current = pool;
+      if (current == null) {
+        poolLock.lock();
+        try {
+          if (closed) {
+            throw new TTransportException(TTransportException.NOT_OPEN, "Client " + name + " is closed");
+          }
+          current = pool;
+          if (current == null) {
+            current = poolFactory.get();
+            pool = current;
+          }
+        } finally {
+          poolLock.unlock();
+        }
+      }
+      return current;
+    }
+
+    private void closePool() {
+      poolLock.lock();
+      try {
+        closed = true;
+        if (pool != null) {
+          pool.close();
+          pool = null;
+        }
+      } finally {
+        poolLock.unlock();
+      }
+    }
+
+  }
+
   /*
    * (non-Javadoc)
    * @see com.hotels.bdp.waggledance.client.MetaStoreClientFactoryI#newInstance(org.apache.hadoop.hive.conf.HiveConf,
@@ -146,8 +323,47 @@ public class DefaultMetaStoreClientFactory implements MetaStoreClientFactory {
           String name,
           int reconnectionRetries,
           int connectionTimeout) {
-    return newInstance(name, reconnectionRetries, new ThriftMetastoreClientManager(hiveConf,
-            new HiveCompatibleThriftHiveMetastoreIfaceFactory(), connectionTimeout));
+    DelegationTokenService delegationTokens = new DelegationTokenService(delegationTokenScheduler);
+    return new ReconnectingMetaStoreClient(name, reconnectionRetries, new ThriftMetastoreClientManager(hiveConf,
+            compatibleFactory, connectionTimeout, this::balancer, this::reconnectCoordinator, delegationTokens),
+        delegationTokens);
+  }
+
+  /**
+   * Creates a client that can be used concurrently, each call runs on a connection borrowed from a pool configured by
+   * {@code connectionPool}.
+   */
+  CloseableThriftHiveMetastoreIface newPooledInstance(
+          HiveConf hiveConf,
+          String name,
+          int reconnectionRetries,
+          int connectionTimeout,
+          ConnectionPool connectionPool,
+          MetaStoreClientPoolMetrics metrics) {
+    DelegationTokenService delegationTokens = new DelegationTokenService(delegationTokenScheduler);
+    return new PooledMetaStoreClient(name, reconnectionRetries,
+        () -> new MetaStoreClientPool(name, connectionPool,
+            () -> new ThriftMetastoreClientManager(hiveConf, compatibleFactory, connectionTimeout, this::balancer,
+                this::reconnectCoordinator, delegationTokens),
+            hiveConf.getBoolean(CommonBeans.IMPERSONATION_ENABLED_KEY, false), metrics),
+        delegationTokens);
+  }
+
+  private MetaStoreUriBalancer balancer(URI[] uris) {
+    return balancersByUris.computeIfAbsent(Arrays.asList(uris), key -> new MetaStoreUriBalancer(uris));
+  }
+
+  private ReconnectCoordinator reconnectCoordinator(URI[] uris) {
+    return reconnectCoordinatorsByUris.computeIfAbsent(Arrays.asList(uris), key -> new ReconnectCoordinator());
+  }
+
+  @VisibleForTesting
+  CloseableThriftHiveMetastoreIface newPooledInstance(
+          String name,
+          int reconnectionRetries,
+          Supplier<MetaStoreClientPool> poolFactory) {
+    return new PooledMetaStoreClient(name, reconnectionRetries, poolFactory,
+        new DelegationTokenService(delegationTokenScheduler));
   }
 
   @VisibleForTesting
@@ -155,10 +371,8 @@ public class DefaultMetaStoreClientFactory implements MetaStoreClientFactory {
           String name,
           int reconnectionRetries,
           ThriftMetastoreClientManager base) {
-    ReconnectingMetastoreClientInvocationHandler reconnectingHandler = new ReconnectingMetastoreClientInvocationHandler(
-        name, reconnectionRetries, base);
-    return (CloseableThriftHiveMetastoreIface) Proxy.newProxyInstance(getClass().getClassLoader(),
-        INTERFACES, reconnectingHandler);
+    return new ReconnectingMetaStoreClient(name, reconnectionRetries, base,
+        new DelegationTokenService(delegationTokenScheduler));
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,286 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.apache.hadoop.hive.metastore.api.ThriftHiveMetastore.Iface;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.thrift.TException;
+import org.apache.thrift.transport.TTransportException;
+
+import lombok.extern.log4j.Log4j2;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import com.hotels.bdp.waggledance.util.ThreadFactories;
+
+/**
+ * Delegation tokens of the users impersonated on the metastores, so the connections of a user authenticate once with
+ * the token ({@code DIGEST}) instead of connecting with Kerberos to get a token first. Tokens are fetched per metastore
+ * and user on a dedicated Kerberos connection to the metastore, with Waggle Dance as their renewer, and renewed on that
+ * connection once three quarters of their validity elapsed. A token that can't be renewed any more, i.e. that reached
+ * its maximum lifetime, is replaced by a new one. Tokens that weren't used for {@code idleTimeoutMillis} are cancelled
+ * rather than renewed.
+ * <p>
+ * Shared by the connections of a metastore client, whichever pool they belong to. Closing the service along with the
+ * client closes its Kerberos connections and drops its tokens, so a metastore that is updated gets new connections
+ * with its new configuration. The renewals of all the services run on a shared scheduler.
+ */
+@Log4j2
+class DelegationTokenService implements Closeable {
+
+  static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.HOURS.toMillis(1);
+  // Tokens valid for less than this are replaced rather than renewed
+  static final long MIN_VALIDITY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+  private static final double RENEW_AT_VALIDITY_FRACTION = 0.75;
+
+  private interface TokenCall<T> {
+    T call(Iface client) throws TException;
+  }
+
+  /**
+   * Kerberos connection to a metastore used to fetch, renew and cancel the tokens of all its users.
+   */
+  private final class TokenConnection {
+
+    private final Supplier<ThriftMetastoreClientManager> connectionFactory;
+    // Calls block on the metastore, a lock rather than a monitor so waiting virtual threads don't pin their carrier
+    private final Lock lock = new ReentrantLock();
+    private ThriftMetastoreClientManager connection;
+
+    private TokenConnection(Supplier<ThriftMetastoreClientManager> connectionFactory) {
+      this.connectionFactory = connectionFactory;
+    }
+
+    private <T> T call(TokenCall<T> call) throws TException {
+      lock.lock();
+      try {
+        if (closed) {
+          throw new TTransportException(TTransportException.NOT_OPEN, "Delegation tokens are closed");
+        }
+        if (connection == null) {
+          connection = connectionFactory.get();
+        }
+        connection.open();
+        try {
+          return call.call(connection.getClient());
+        } catch (TTransportException e) {
+          log.debug("Delegation token connection lost, reconnecting", e);
+          connection.reconnect(null);
+          return call.call(connection.getClient());
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void close() {
+      lock.lock();
+      try {
+        if (connection != null) {
+          connection.close();
+          connection = null;
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private final class Token {
+
+    private final List<String> key;
+    private final String user;
+    private final TokenConnection connection;
+    private final Lock lock = new ReentrantLock();
+    private volatile String value;
+    private volatile long lastUsedMillis;
+
+    private Token(List<String> key, String user, TokenConnection connection) {
+      this.key = key;
+      this.user = user;
+      this.connection = connection;
+    }
+
+    private String get() {
+      lastUsedMillis = clock.getAsLong();
+      String current = value;
+      if (current != null) {
+        return current;
+      }
+      lock.lock();
+      try {
+        if (value == null) {
+          value = fetch();
+          scheduleRenewal(0L);
+        }
+        return value;
+      } catch (TException | IOException e) {
+        tokens.remove(key, this);
+        throw new RuntimeException("Unable to get a delegation token for user " + user, e);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private String fetch() throws TException, IOException {
+      String renewer = UserGroupInformation.getLoginUser().getShortUserName();
+      String token = connection.call(client -> client.get_delegation_token(user, renewer));
+      log.debug("Fetched a delegation token for user {}", user);
+      return token;
+    }
+
+    private void renew() {
+      lock.lock();
+      try {
+        String current = value;
+        if (current == null || closed) {
+          return;
+        }
+        if (clock.getAsLong() - lastUsedMillis > idleTimeoutMillis) {
+          drop(current);
+          return;
+        }
+        long validityMillis = 0L;
+        try {
+          long expiryMillis = connection.call(client -> client.renew_delegation_token(current));
+          validityMillis = expiryMillis - clock.getAsLong();
+        } catch (TException | RuntimeException e) {
+          log.debug("Unable to renew the delegation token of user {}", user, e);
+        }
+        if (validityMillis < MIN_VALIDITY_MILLIS) {
+          // Past its maximum lifetime, or about to be
+          value = fetch();
+          scheduleRenewal(0L);
+          return;
+        }
+        scheduleRenewal((long) (validityMillis * RENEW_AT_VALIDITY_FRACTION));
+      } catch (TException | IOException | RuntimeException e) {
+        log.warn("Unable to replace the delegation token of user {}, it will be fetched on next use", user, e);
+        value = null;
+        tokens.remove(key, this);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void drop(String current) {
+      value = null;
+      tokens.remove(key, this);
+      try {
+        connection.call(client -> {
+          client.cancel_delegation_token(current);
+          return null;
+        });
+        log.debug("Cancelled the idle delegation token of user {}", user);
+      } catch (TException | RuntimeException e) {
+        log.debug("Unable to cancel the delegation token of user {}", user, e);
+      }
+    }
+
+    private void scheduleRenewal(long delayMillis) {
+      try {
+        scheduler.schedule(this::renew, delayMillis, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        // Shutting down, the token is not renewed
+      }
+    }
+  }
+
+  private final ScheduledExecutorService scheduler;
+  private final boolean ownsScheduler;
+  private final long idleTimeoutMillis;
+  private final LongSupplier clock;
+  private final Map<String, TokenConnection> connections = new ConcurrentHashMap<>();
+  private final Map<List<String>, Token> tokens = new ConcurrentHashMap<>();
+  private volatile boolean closed;
+
+  DelegationTokenService() {
+    this(newScheduler(), true, DEFAULT_IDLE_TIMEOUT_MILLIS, System::currentTimeMillis);
+  }
+
+  /**
+   * @param scheduler renews the tokens, shared with other services so it is left running when this one is closed
+   */
+  DelegationTokenService(ScheduledExecutorService scheduler) {
+    this(scheduler, false, DEFAULT_IDLE_TIMEOUT_MILLIS, System::currentTimeMillis);
+  }
+
+  @VisibleForTesting
+  DelegationTokenService(ScheduledExecutorService scheduler, long idleTimeoutMillis, LongSupplier clock) {
+    this(scheduler, false, idleTimeoutMillis, clock);
+  }
+
+  private DelegationTokenService(
+      ScheduledExecutorService scheduler,
+      boolean ownsScheduler,
+      long idleTimeoutMillis,
+      LongSupplier clock) {
+    this.scheduler = scheduler;
+    this.ownsScheduler = ownsScheduler;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+    this.clock = clock;
+  }
+
+  static ScheduledExecutorService newScheduler() {
+    return Executors
+        .newScheduledThreadPool(1, ThreadFactories.newThreadFactory("waggle-dance-delegation-token", false));
+  }
+
+  /**
+   * @param metastoreUris the metastore the token authenticates to
+   * @param connectionFactory creates the Kerberos connection to the metastore, used to get all its tokens
+   * @return the delegation token of the user, fetched if there is none yet
+   */
+  String getToken(String metastoreUris, String user, Supplier<ThriftMetastoreClientManager> connectionFactory) {
+    TokenConnection connection = connections
+        .computeIfAbsent(metastoreUris, uris -> new TokenConnection(connectionFactory));
+    return tokens.computeIfAbsent(Arrays.asList(metastoreUris, user), key -> new Token(key, user, connection)).get();
+  }
+
+  /**
+   * Closes the Kerberos connections and drops the tokens, they are not cancelled as they expire on their own once they
+   * aren't renewed any more. Tokens can't be fetched once closed.
+   */
+  @Override
+  public void close() {
+    // Before closing the connections so none is opened again
+    closed = true;
+    if (ownsScheduler) {
+      scheduler.shutdownNow();
+    }
+    tokens.clear();
+    for (TokenConnection connection : connections.values()) {
+      connection.close();
+    }
+    connections.clear();
+  }
+
+}
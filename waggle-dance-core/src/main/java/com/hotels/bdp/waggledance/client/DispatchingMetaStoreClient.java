@@ -0,0 +1,1790 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hive.metastore.api.AbortTxnRequest;
+import org.apache.hadoop.hive.metastore.api.AbortTxnsRequest;
+import org.apache.hadoop.hive.metastore.api.AddCheckConstraintRequest;
+import org.apache.hadoop.hive.metastore.api.AddDefaultConstraintRequest;
+import org.apache.hadoop.hive.metastore.api.AddDynamicPartitions;
+import org.apache.hadoop.hive.metastore.api.AddForeignKeyRequest;
+import org.apache.hadoop.hive.metastore.api.AddNotNullConstraintRequest;
+import org.apache.hadoop.hive.metastore.api.AddPartitionsRequest;
+import org.apache.hadoop.hive.metastore.api.AddPartitionsResult;
+import org.apache.hadoop.hive.metastore.api.AddPrimaryKeyRequest;
+import org.apache.hadoop.hive.metastore.api.AddUniqueConstraintRequest;
+import org.apache.hadoop.hive.metastore.api.AggrStats;
+import org.apache.hadoop.hive.metastore.api.AllocateTableWriteIdsRequest;
+import org.apache.hadoop.hive.metastore.api.AllocateTableWriteIdsResponse;
+import org.apache.hadoop.hive.metastore.api.AlreadyExistsException;
+import org.apache.hadoop.hive.metastore.api.AlterCatalogRequest;
+import org.apache.hadoop.hive.metastore.api.AlterISchemaRequest;
+import org.apache.hadoop.hive.metastore.api.CacheFileMetadataRequest;
+import org.apache.hadoop.hive.metastore.api.CacheFileMetadataResult;
+import org.apache.hadoop.hive.metastore.api.CheckConstraintsRequest;
+import org.apache.hadoop.hive.metastore.api.CheckConstraintsResponse;
+import org.apache.hadoop.hive.metastore.api.CheckLockRequest;
+import org.apache.hadoop.hive.metastore.api.ClearFileMetadataRequest;
+import org.apache.hadoop.hive.metastore.api.ClearFileMetadataResult;
+import org.apache.hadoop.hive.metastore.api.CmRecycleRequest;
+import org.apache.hadoop.hive.metastore.api.CmRecycleResponse;
+import org.apache.hadoop.hive.metastore.api.ColumnStatistics;
+import org.apache.hadoop.hive.metastore.api.CommitTxnRequest;
+import org.apache.hadoop.hive.metastore.api.CompactionRequest;
+import org.apache.hadoop.hive.metastore.api.CompactionResponse;
+import org.apache.hadoop.hive.metastore.api.ConfigValSecurityException;
+import org.apache.hadoop.hive.metastore.api.CreateCatalogRequest;
+import org.apache.hadoop.hive.metastore.api.CreationMetadata;
+import org.apache.hadoop.hive.metastore.api.CurrentNotificationEventId;
+import org.apache.hadoop.hive.metastore.api.Database;
+import org.apache.hadoop.hive.metastore.api.DefaultConstraintsRequest;
+import org.apache.hadoop.hive.metastore.api.DefaultConstraintsResponse;
+import org.apache.hadoop.hive.metastore.api.DropCatalogRequest;
+import org.apache.hadoop.hive.metastore.api.DropConstraintRequest;
+import org.apache.hadoop.hive.metastore.api.DropPartitionsRequest;
+import org.apache.hadoop.hive.metastore.api.DropPartitionsResult;
+import org.apache.hadoop.hive.metastore.api.EnvironmentContext;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.FindSchemasByColsResp;
+import org.apache.hadoop.hive.metastore.api.FindSchemasByColsRqst;
+import org.apache.hadoop.hive.metastore.api.FireEventRequest;
+import org.apache.hadoop.hive.metastore.api.FireEventResponse;
+import org.apache.hadoop.hive.metastore.api.ForeignKeysRequest;
+import org.apache.hadoop.hive.metastore.api.ForeignKeysResponse;
+import org.apache.hadoop.hive.metastore.api.Function;
+import org.apache.hadoop.hive.metastore.api.GetAllFunctionsResponse;
+import org.apache.hadoop.hive.metastore.api.GetCatalogRequest;
+import org.apache.hadoop.hive.metastore.api.GetCatalogResponse;
+import org.apache.hadoop.hive.metastore.api.GetCatalogsResponse;
+import org.apache.hadoop.hive.metastore.api.GetFileMetadataByExprRequest;
+import org.apache.hadoop.hive.metastore.api.GetFileMetadataByExprResult;
+import org.apache.hadoop.hive.metastore.api.GetFileMetadataRequest;
+import org.apache.hadoop.hive.metastore.api.GetFileMetadataResult;
+import org.apache.hadoop.hive.metastore.api.GetOpenTxnsInfoResponse;
+import org.apache.hadoop.hive.metastore.api.GetOpenTxnsResponse;
+import org.apache.hadoop.hive.metastore.api.GetPrincipalsInRoleRequest;
+import org.apache.hadoop.hive.metastore.api.GetPrincipalsInRoleResponse;
+import org.apache.hadoop.hive.metastore.api.GetRoleGrantsForPrincipalRequest;
+import org.apache.hadoop.hive.metastore.api.GetRoleGrantsForPrincipalResponse;
+import org.apache.hadoop.hive.metastore.api.GetRuntimeStatsRequest;
+import org.apache.hadoop.hive.metastore.api.GetSerdeRequest;
+import org.apache.hadoop.hive.metastore.api.GetTableRequest;
+import org.apache.hadoop.hive.metastore.api.GetTableResult;
+import org.apache.hadoop.hive.metastore.api.GetTablesRequest;
+import org.apache.hadoop.hive.metastore.api.GetTablesResult;
+import org.apache.hadoop.hive.metastore.api.GetValidWriteIdsRequest;
+import org.apache.hadoop.hive.metastore.api.GetValidWriteIdsResponse;
+import org.apache.hadoop.hive.metastore.api.GrantRevokePrivilegeRequest;
+import org.apache.hadoop.hive.metastore.api.GrantRevokePrivilegeResponse;
+import org.apache.hadoop.hive.metastore.api.GrantRevokeRoleRequest;
+import org.apache.hadoop.hive.metastore.api.GrantRevokeRoleResponse;
+import org.apache.hadoop.hive.metastore.api.HeartbeatRequest;
+import org.apache.hadoop.hive.metastore.api.HeartbeatTxnRangeRequest;
+import org.apache.hadoop.hive.metastore.api.HeartbeatTxnRangeResponse;
+import org.apache.hadoop.hive.metastore.api.HiveObjectPrivilege;
+import org.apache.hadoop.hive.metastore.api.HiveObjectRef;
+import org.apache.hadoop.hive.metastore.api.ISchema;
+import org.apache.hadoop.hive.metastore.api.ISchemaName;
+import org.apache.hadoop.hive.metastore.api.InvalidInputException;
+import org.apache.hadoop.hive.metastore.api.InvalidObjectException;
+import org.apache.hadoop.hive.metastore.api.InvalidOperationException;
+import org.apache.hadoop.hive.metastore.api.InvalidPartitionException;
+import org.apache.hadoop.hive.metastore.api.LockRequest;
+import org.apache.hadoop.hive.metastore.api.LockResponse;
+import org.apache.hadoop.hive.metastore.api.MapSchemaVersionToSerdeRequest;
+import org.apache.hadoop.hive.metastore.api.Materialization;
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.hadoop.hive.metastore.api.NoSuchLockException;
+import org.apache.hadoop.hive.metastore.api.NoSuchObjectException;
+import org.apache.hadoop.hive.metastore.api.NoSuchTxnException;
+import org.apache.hadoop.hive.metastore.api.NotNullConstraintsRequest;
+import org.apache.hadoop.hive.metastore.api.NotNullConstraintsResponse;
+import org.apache.hadoop.hive.metastore.api.NotificationEventRequest;
+import org.apache.hadoop.hive.metastore.api.NotificationEventResponse;
+import org.apache.hadoop.hive.metastore.api.NotificationEventsCountRequest;
+import org.apache.hadoop.hive.metastore.api.NotificationEventsCountResponse;
+import org.apache.hadoop.hive.metastore.api.OpenTxnRequest;
+import org.apache.hadoop.hive.metastore.api.OpenTxnsResponse;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.PartitionEventType;
+import org.apache.hadoop.hive.metastore.api.PartitionSpec;
+import org.apache.hadoop.hive.metastore.api.PartitionValuesRequest;
+import org.apache.hadoop.hive.metastore.api.PartitionValuesResponse;
+import org.apache.hadoop.hive.metastore.api.PartitionsByExprRequest;
+import org.apache.hadoop.hive.metastore.api.PartitionsByExprResult;
+import org.apache.hadoop.hive.metastore.api.PartitionsStatsRequest;
+import org.apache.hadoop.hive.metastore.api.PartitionsStatsResult;
+import org.apache.hadoop.hive.metastore.api.PrimaryKeysRequest;
+import org.apache.hadoop.hive.metastore.api.PrimaryKeysResponse;
+import org.apache.hadoop.hive.metastore.api.PrincipalPrivilegeSet;
+import org.apache.hadoop.hive.metastore.api.PrincipalType;
+import org.apache.hadoop.hive.metastore.api.PrivilegeBag;
+import org.apache.hadoop.hive.metastore.api.PutFileMetadataRequest;
+import org.apache.hadoop.hive.metastore.api.PutFileMetadataResult;
+import org.apache.hadoop.hive.metastore.api.ReplTblWriteIdStateRequest;
+import org.apache.hadoop.hive.metastore.api.Role;
+import org.apache.hadoop.hive.metastore.api.RuntimeStat;
+import org.apache.hadoop.hive.metastore.api.SQLCheckConstraint;
+import org.apache.hadoop.hive.metastore.api.SQLDefaultConstraint;
+import org.apache.hadoop.hive.metastore.api.SQLForeignKey;
+import org.apache.hadoop.hive.metastore.api.SQLNotNullConstraint;
+import org.apache.hadoop.hive.metastore.api.SQLPrimaryKey;
+import org.apache.hadoop.hive.metastore.api.SQLUniqueConstraint;
+import org.apache.hadoop.hive.metastore.api.SchemaVersion;
+import org.apache.hadoop.hive.metastore.api.SchemaVersionDescriptor;
+import org.apache.hadoop.hive.metastore.api.SerDeInfo;
+import org.apache.hadoop.hive.metastore.api.SetPartitionsStatsRequest;
+import org.apache.hadoop.hive.metastore.api.SetSchemaVersionStateRequest;
+import org.apache.hadoop.hive.metastore.api.ShowCompactRequest;
+import org.apache.hadoop.hive.metastore.api.ShowCompactResponse;
+import org.apache.hadoop.hive.metastore.api.ShowLocksRequest;
+import org.apache.hadoop.hive.metastore.api.ShowLocksResponse;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hadoop.hive.metastore.api.TableMeta;
+import org.apache.hadoop.hive.metastore.api.TableStatsRequest;
+import org.apache.hadoop.hive.metastore.api.TableStatsResult;
+import org.apache.hadoop.hive.metastore.api.ThriftHiveMetastore.Iface;
+import org.apache.hadoop.hive.metastore.api.TxnAbortedException;
+import org.apache.hadoop.hive.metastore.api.TxnOpenException;
+import org.apache.hadoop.hive.metastore.api.Type;
+import org.apache.hadoop.hive.metastore.api.UniqueConstraintsRequest;
+import org.apache.hadoop.hive.metastore.api.UniqueConstraintsResponse;
+import org.apache.hadoop.hive.metastore.api.UnknownDBException;
+import org.apache.hadoop.hive.metastore.api.UnknownPartitionException;
+import org.apache.hadoop.hive.metastore.api.UnknownTableException;
+import org.apache.hadoop.hive.metastore.api.UnlockRequest;
+import org.apache.hadoop.hive.metastore.api.WMAlterPoolRequest;
+import org.apache.hadoop.hive.metastore.api.WMAlterPoolResponse;
+import org.apache.hadoop.hive.metastore.api.WMAlterResourcePlanRequest;
+import org.apache.hadoop.hive.metastore.api.WMAlterResourcePlanResponse;
+import org.apache.hadoop.hive.metastore.api.WMAlterTriggerRequest;
+import org.apache.hadoop.hive.metastore.api.WMAlterTriggerResponse;
+import org.apache.hadoop.hive.metastore.api.WMCreateOrDropTriggerToPoolMappingRequest;
+import org.apache.hadoop.hive.metastore.api.WMCreateOrDropTriggerToPoolMappingResponse;
+import org.apache.hadoop.hive.metastore.api.WMCreateOrUpdateMappingRequest;
+import org.apache.hadoop.hive.metastore.api.WMCreateOrUpdateMappingResponse;
+import org.apache.hadoop.hive.metastore.api.WMCreatePoolRequest;
+import org.apache.hadoop.hive.metastore.api.WMCreatePoolResponse;
+import org.apache.hadoop.hive.metastore.api.WMCreateResourcePlanRequest;
+import org.apache.hadoop.hive.metastore.api.WMCreateResourcePlanResponse;
+import org.apache.hadoop.hive.metastore.api.WMCreateTriggerRequest;
+import org.apache.hadoop.hive.metastore.api.WMCreateTriggerResponse;
+import org.apache.hadoop.hive.metastore.api.WMDropMappingRequest;
+import org.apache.hadoop.hive.metastore.api.WMDropMappingResponse;
+import org.apache.hadoop.hive.metastore.api.WMDropPoolRequest;
+import org.apache.hadoop.hive.metastore.api.WMDropPoolResponse;
+import org.apache.hadoop.hive.metastore.api.WMDropResourcePlanRequest;
+import org.apache.hadoop.hive.metastore.api.WMDropResourcePlanResponse;
+import org.apache.hadoop.hive.metastore.api.WMDropTriggerRequest;
+import org.apache.hadoop.hive.metastore.api.WMDropTriggerResponse;
+import org.apache.hadoop.hive.metastore.api.WMGetActiveResourcePlanRequest;
+import org.apache.hadoop.hive.metastore.api.WMGetActiveResourcePlanResponse;
+import org.apache.hadoop.hive.metastore.api.WMGetAllResourcePlanRequest;
+import org.apache.hadoop.hive.metastore.api.WMGetAllResourcePlanResponse;
+import org.apache.hadoop.hive.metastore.api.WMGetResourcePlanRequest;
+import org.apache.hadoop.hive.metastore.api.WMGetResourcePlanResponse;
+import org.apache.hadoop.hive.metastore.api.WMGetTriggersForResourePlanRequest;
+import org.apache.hadoop.hive.metastore.api.WMGetTriggersForResourePlanResponse;
+import org.apache.hadoop.hive.metastore.api.WMValidateResourcePlanRequest;
+import org.apache.hadoop.hive.metastore.api.WMValidateResourcePlanResponse;
+import org.apache.thrift.TException;
+
+import com.facebook.fb303.fb_status;
+
+import com.hotels.bdp.waggledance.client.compatibility.HiveThriftMetaStoreIfaceCompatibility;
+
+/**
+ * A {@link CloseableThriftHiveMetastoreIface} handing every metastore call to {@link #dispatch} as a {@link Call}
+ * on the {@link Iface} serving it, along with its arguments, so a client applies its policy to all the calls with
+ * plain method calls rather than a reflective proxy. The calls {@link HiveThriftMetaStoreIfaceCompatibility} can
+ * serve also carry their {@link CompatibilityCall}.
+ * <p>
+ * Generated from {@link Iface} by {@code DispatchingMetaStoreClientGenerator}, don't edit it.
+ */
+public abstract class DispatchingMetaStoreClient implements CloseableThriftHiveMetastoreIface {
+
+  // Arguments of the calls without any, never modified
+  protected static final Object[] NO_ARGUMENTS = new Object[0];
+
+  @FunctionalInterface
+  public interface Call<T> {
+    T call(Iface iface) throws TException;
+  }
+
+  @FunctionalInterface
+  public interface CompatibilityCall<T> {
+    T call(HiveThriftMetaStoreIfaceCompatibility compatibility) throws TException;
+  }
+
+  /**
+   * Makes the call of the metastore method {@code methodName}.
+   *
+   * @param arguments the arguments of the call, primitives boxed, not to be modified
+   */
+  protected abstract <T> T dispatch(String methodName, Object[] arguments, Call<T> call) throws TException;
+
+  /**
+   * Makes the call of a metastore method older metastores may not know, by default as any other call.
+   */
+  protected <T> T dispatch(
+      String methodName,
+      Object[] arguments,
+      Call<T> call,
+      CompatibilityCall<T> compatibilityCall)
+    throws TException {
+    return dispatch(methodName, arguments, new CompatibleCall<>(call, compatibilityCall));
+  }
+
+  /**
+   * Makes the call on {@code client}, handing it straight to the {@link #dispatch} of the client when it is a
+   * {@code DispatchingMetaStoreClient} too so the call and its arguments aren't made again by every client it goes
+   * through. Subclasses therefore handle all the calls in {@link #dispatch} rather than by overriding their methods.
+   */
+  protected static <T> T forward(Iface client, String methodName, Object[] arguments, Call<T> call) throws TException {
+    if (!(client instanceof DispatchingMetaStoreClient)) {
+      return call.call(client);
+    }
+    DispatchingMetaStoreClient dispatchingClient = (DispatchingMetaStoreClient) client;
+    if (call instanceof CompatibleCall) {
+      CompatibleCall<T> compatibleCall = (CompatibleCall<T>) call;
+      return dispatchingClient
+          .dispatch(methodName, arguments, compatibleCall.call, compatibleCall.compatibilityCall);
+    }
+    return dispatchingClient.dispatch(methodName, arguments, call);
+  }
+
+  // A call older metastores may not know, keeping its compatibility call when forwarded
+  private static final class CompatibleCall<T> implements Call<T> {
+    private final Call<T> call;
+    private final CompatibilityCall<T> compatibilityCall;
+
+    private CompatibleCall(Call<T> call, CompatibilityCall<T> compatibilityCall) {
+      this.call = call;
+      this.compatibilityCall = compatibilityCall;
+    }
+
+    @Override
+    public T call(Iface iface) throws TException {
+      return call.call(iface);
+    }
+  }
+
+  @Override
+  public void abort_txn(AbortTxnRequest rqst) throws NoSuchTxnException, TException {
+    dispatch("abort_txn", new Object[] { rqst }, iface -> {
+      iface.abort_txn(rqst);
+      return null;
+    });
+  }
+
+  @Override
+  public void abort_txns(AbortTxnsRequest rqst) throws NoSuchTxnException, TException {
+    dispatch("abort_txns", new Object[] { rqst }, iface -> {
+      iface.abort_txns(rqst);
+      return null;
+    });
+  }
+
+  @Override
+  public void add_check_constraint(AddCheckConstraintRequest req)
+    throws NoSuchObjectException, MetaException, TException {
+    dispatch("add_check_constraint", new Object[] { req }, iface -> {
+      iface.add_check_constraint(req);
+      return null;
+    });
+  }
+
+  @Override
+  public void add_default_constraint(AddDefaultConstraintRequest req)
+    throws NoSuchObjectException, MetaException, TException {
+    dispatch("add_default_constraint", new Object[] { req }, iface -> {
+      iface.add_default_constraint(req);
+      return null;
+    });
+  }
+
+  @Override
+  public void add_dynamic_partitions(AddDynamicPartitions rqst)
+    throws NoSuchTxnException, TxnAbortedException, TException {
+    dispatch("add_dynamic_partitions", new Object[] { rqst }, iface -> {
+      iface.add_dynamic_partitions(rqst);
+      return null;
+    });
+  }
+
+  @Override
+  public void add_foreign_key(AddForeignKeyRequest req) throws NoSuchObjectException, MetaException, TException {
+    dispatch("add_foreign_key", new Object[] { req }, iface -> {
+      iface.add_foreign_key(req);
+      return null;
+    });
+  }
+
+  @Override
+  public int add_master_key(String key) throws MetaException, TException {
+    return dispatch("add_master_key", new Object[] { key }, iface -> iface.add_master_key(key));
+  }
+
+  @Override
+  public void add_not_null_constraint(AddNotNullConstraintRequest req)
+    throws NoSuchObjectException, MetaException, TException {
+    dispatch("add_not_null_constraint", new Object[] { req }, iface -> {
+      iface.add_not_null_constraint(req);
+      return null;
+    });
+  }
+
+  @Override
+  public Partition add_partition(Partition new_part)
+    throws InvalidObjectException, AlreadyExistsException, MetaException, TException {
+    return dispatch("add_partition", new Object[] { new_part }, iface -> iface.add_partition(new_part));
+  }
+
+  @Override
+  public Partition add_partition_with_environment_context(Partition new_part, EnvironmentContext environment_context)
+    throws InvalidObjectException, AlreadyExistsException, MetaException, TException {
+    return dispatch("add_partition_with_environment_context", new Object[] { new_part, environment_context },
+        iface -> iface.add_partition_with_environment_context(new_part, environment_context));
+  }
+
+  @Override
+  public int add_partitions(List<Partition> new_parts)
+    throws InvalidObjectException, AlreadyExistsException, MetaException, TException {
+    return dispatch("add_partitions", new Object[] { new_parts }, iface -> iface.add_partitions(new_parts));
+  }
+
+  @Override
+  public int add_partitions_pspec(List<PartitionSpec> new_parts)
+    throws InvalidObjectException, AlreadyExistsException, MetaException, TException {
+    return dispatch("add_partitions_pspec", new Object[] { new_parts }, iface -> iface.add_partitions_pspec(new_parts));
+  }
+
+  @Override
+  public AddPartitionsResult add_partitions_req(AddPartitionsRequest request)
+    throws InvalidObjectException, AlreadyExistsException, MetaException, TException {
+    return dispatch("add_partitions_req", new Object[] { request }, iface -> iface.add_partitions_req(request));
+  }
+
+  @Override
+  public void add_primary_key(AddPrimaryKeyRequest req) throws NoSuchObjectException, MetaException, TException {
+    dispatch("add_primary_key", new Object[] { req }, iface -> {
+      iface.add_primary_key(req);
+      return null;
+    });
+  }
+
+  @Override
+  public void add_runtime_stats(RuntimeStat stat) throws MetaException, TException {
+    dispatch("add_runtime_stats", new Object[] { stat }, iface -> {
+      iface.add_runtime_stats(stat);
+      return null;
+    });
+  }
+
+  @Override
+  public void add_schema_version(SchemaVersion schemaVersion)
+    throws AlreadyExistsException, NoSuchObjectException, MetaException, TException {
+    dispatch("add_schema_version", new Object[] { schemaVersion }, iface -> {
+      iface.add_schema_version(schemaVersion);
+      return null;
+    });
+  }
+
+  @Override
+  public void add_serde(SerDeInfo serde) throws AlreadyExistsException, MetaException, TException {
+    dispatch("add_serde", new Object[] { serde }, iface -> {
+      iface.add_serde(serde);
+      return null;
+    });
+  }
+
+  @Override
+  public boolean add_token(String token_identifier, String delegation_token) throws TException {
+    return dispatch("add_token", new Object[] { token_identifier, delegation_token },
+        iface -> iface.add_token(token_identifier, delegation_token));
+  }
+
+  @Override
+  public void add_unique_constraint(AddUniqueConstraintRequest req)
+    throws NoSuchObjectException, MetaException, TException {
+    dispatch("add_unique_constraint", new Object[] { req }, iface -> {
+      iface.add_unique_constraint(req);
+      return null;
+    });
+  }
+
+  @Override
+  public long aliveSince() throws TException {
+    return dispatch("aliveSince", NO_ARGUMENTS, iface -> iface.aliveSince());
+  }
+
+  @Override
+  public AllocateTableWriteIdsResponse allocate_table_write_ids(AllocateTableWriteIdsRequest rqst)
+    throws NoSuchTxnException, TxnAbortedException, MetaException, TException {
+    return dispatch("allocate_table_write_ids", new Object[] { rqst }, iface -> iface.allocate_table_write_ids(rqst));
+  }
+
+  @Override
+  public void alter_catalog(AlterCatalogRequest rqst)
+    throws NoSuchObjectException, InvalidOperationException, MetaException, TException {
+    dispatch("alter_catalog", new Object[] { rqst }, iface -> {
+      iface.alter_catalog(rqst);
+      return null;
+    });
+  }
+
+  @Override
+  public void alter_database(String dbname, Database db) throws MetaException, NoSuchObjectException, TException {
+    dispatch("alter_database", new Object[] { dbname, db }, iface -> {
+      iface.alter_database(dbname, db);
+      return null;
+    });
+  }
+
+  @Override
+  public void alter_function(String dbName, String funcName, Function newFunc)
+    throws InvalidOperationException, MetaException, TException {
+    dispatch("alter_function", new Object[] { dbName, funcName, newFunc }, iface -> {
+      iface.alter_function(dbName, funcName, newFunc);
+      return null;
+    });
+  }
+
+  @Override
+  public void alter_ischema(AlterISchemaRequest rqst) throws NoSuchObjectException, MetaException, TException {
+    dispatch("alter_ischema", new Object[] { rqst }, iface -> {
+      iface.alter_ischema(rqst);
+      return null;
+    });
+  }
+
+  @Override
+  public void alter_partition(String db_name, String tbl_name, Partition new_part)
+    throws InvalidOperationException, MetaException, TException {
+    dispatch("alter_partition", new Object[] { db_name, tbl_name, new_part }, iface -> {
+      iface.alter_partition(db_name, tbl_name, new_part);
+      return null;
+    });
+  }
+
+  @Override
+  public void alter_partition_with_environment_context(String db_name, String tbl_name, Partition new_part,
+      EnvironmentContext environment_context) throws InvalidOperationException, MetaException, TException {
+    dispatch("alter_partition_with_environment_context", new Object[] { db_name, tbl_name, new_part,
+        environment_context }, iface -> {
+      iface.alter_partition_with_environment_context(db_name, tbl_name, new_part, environment_context);
+      return null;
+    });
+  }
+
+  @Override
+  public void alter_partitions(String db_name, String tbl_name, List<Partition> new_parts)
+    throws InvalidOperationException, MetaException, TException {
+    dispatch("alter_partitions", new Object[] { db_name, tbl_name, new_parts }, iface -> {
+      iface.alter_partitions(db_name, tbl_name, new_parts);
+      return null;
+    });
+  }
+
+  @Override
+  public void alter_partitions_with_environment_context(String db_name, String tbl_name, List<Partition> new_parts,
+      EnvironmentContext environment_context) throws InvalidOperationException, MetaException, TException {
+    dispatch("alter_partitions_with_environment_context", new Object[] { db_name, tbl_name, new_parts,
+        environment_context }, iface -> {
+      iface.alter_partitions_with_environment_context(db_name, tbl_name, new_parts, environment_context);
+      return null;
+    });
+  }
+
+  @Override
+  public WMAlterResourcePlanResponse alter_resource_plan(WMAlterResourcePlanRequest request)
+    throws NoSuchObjectException, InvalidOperationException, MetaException, TException {
+    return dispatch("alter_resource_plan", new Object[] { request }, iface -> iface.alter_resource_plan(request));
+  }
+
+  @Override
+  public void alter_table(String dbname, String tbl_name, Table new_tbl)
+    throws InvalidOperationException, MetaException, TException {
+    dispatch("alter_table", new Object[] { dbname, tbl_name, new_tbl }, iface -> {
+      iface.alter_table(dbname, tbl_name, new_tbl);
+      return null;
+    });
+  }
+
+  @Override
+  public void alter_table_with_cascade(String dbname, String tbl_name, Table new_tbl, boolean cascade)
+    throws InvalidOperationException, MetaException, TException {
+    dispatch("alter_table_with_cascade", new Object[] { dbname, tbl_name, new_tbl, cascade }, iface -> {
+      iface.alter_table_with_cascade(dbname, tbl_name, new_tbl, cascade);
+      return null;
+    });
+  }
+
+  @Override
+  public void alter_table_with_environment_context(String dbname, String tbl_name, Table new_tbl,
+      EnvironmentContext environment_context) throws InvalidOperationException, MetaException, TException {
+    dispatch("alter_table_with_environment_context", new Object[] { dbname, tbl_name, new_tbl, environment_context },
+        iface -> {
+      iface.alter_table_with_environment_context(dbname, tbl_name, new_tbl, environment_context);
+      return null;
+    });
+  }
+
+  @Override
+  public WMAlterPoolResponse alter_wm_pool(WMAlterPoolRequest request)
+    throws AlreadyExistsException, NoSuchObjectException, InvalidObjectException, MetaException, TException {
+    return dispatch("alter_wm_pool", new Object[] { request }, iface -> iface.alter_wm_pool(request));
+  }
+
+  @Override
+  public WMAlterTriggerResponse alter_wm_trigger(WMAlterTriggerRequest request)
+    throws NoSuchObjectException, InvalidObjectException, MetaException, TException {
+    return dispatch("alter_wm_trigger", new Object[] { request }, iface -> iface.alter_wm_trigger(request));
+  }
+
+  @Override
+  public Partition append_partition(String db_name, String tbl_name, List<String> part_vals)
+    throws InvalidObjectException, AlreadyExistsException, MetaException, TException {
+    return dispatch("append_partition", new Object[] { db_name, tbl_name, part_vals },
+        iface -> iface.append_partition(db_name, tbl_name, part_vals));
+  }
+
+  @Override
+  public Partition append_partition_by_name(String db_name, String tbl_name, String part_name)
+    throws InvalidObjectException, AlreadyExistsException, MetaException, TException {
+    return dispatch("append_partition_by_name", new Object[] { db_name, tbl_name, part_name },
+        iface -> iface.append_partition_by_name(db_name, tbl_name, part_name));
+  }
+
+  @Override
+  public Partition append_partition_by_name_with_environment_context(String db_name, String tbl_name, String part_name,
+      EnvironmentContext environment_context)
+    throws InvalidObjectException, AlreadyExistsException, MetaException, TException {
+    return dispatch("append_partition_by_name_with_environment_context", new Object[] { db_name, tbl_name, part_name,
+        environment_context }, iface -> iface.append_partition_by_name_with_environment_context(db_name, tbl_name,
+        part_name, environment_context));
+  }
+
+  @Override
+  public Partition append_partition_with_environment_context(String db_name, String tbl_name, List<String> part_vals,
+      EnvironmentContext environment_context)
+    throws InvalidObjectException, AlreadyExistsException, MetaException, TException {
+    return dispatch("append_partition_with_environment_context", new Object[] { db_name, tbl_name, part_vals,
+        environment_context }, iface -> iface.append_partition_with_environment_context(db_name, tbl_name, part_vals,
+        environment_context));
+  }
+
+  @Override
+  public CacheFileMetadataResult cache_file_metadata(CacheFileMetadataRequest req) throws TException {
+    return dispatch("cache_file_metadata", new Object[] { req }, iface -> iface.cache_file_metadata(req));
+  }
+
+  @Override
+  public void cancel_delegation_token(String token_str_form) throws MetaException, TException {
+    dispatch("cancel_delegation_token", new Object[] { token_str_form }, iface -> {
+      iface.cancel_delegation_token(token_str_form);
+      return null;
+    });
+  }
+
+  @Override
+  public LockResponse check_lock(CheckLockRequest rqst)
+    throws NoSuchTxnException, TxnAbortedException, NoSuchLockException, TException {
+    return dispatch("check_lock", new Object[] { rqst }, iface -> iface.check_lock(rqst));
+  }
+
+  @Override
+  public ClearFileMetadataResult clear_file_metadata(ClearFileMetadataRequest req) throws TException {
+    return dispatch("clear_file_metadata", new Object[] { req }, iface -> iface.clear_file_metadata(req));
+  }
+
+  @Override
+  public CmRecycleResponse cm_recycle(CmRecycleRequest request) throws MetaException, TException {
+    return dispatch("cm_recycle", new Object[] { request }, iface -> iface.cm_recycle(request));
+  }
+
+  @Override
+  public void commit_txn(CommitTxnRequest rqst) throws NoSuchTxnException, TxnAbortedException, TException {
+    dispatch("commit_txn", new Object[] { rqst }, iface -> {
+      iface.commit_txn(rqst);
+      return null;
+    });
+  }
+
+  @Override
+  public void compact(CompactionRequest rqst) throws TException {
+    dispatch("compact", new Object[] { rqst }, iface -> {
+      iface.compact(rqst);
+      return null;
+    });
+  }
+
+  @Override
+  public CompactionResponse compact2(CompactionRequest rqst) throws TException {
+    return dispatch("compact2", new Object[] { rqst }, iface -> iface.compact2(rqst));
+  }
+
+  @Override
+  public void create_catalog(CreateCatalogRequest catalog)
+    throws AlreadyExistsException, InvalidObjectException, MetaException, TException {
+    dispatch("create_catalog", new Object[] { catalog }, iface -> {
+      iface.create_catalog(catalog);
+      return null;
+    });
+  }
+
+  @Override
+  public void create_database(Database database)
+    throws AlreadyExistsException, InvalidObjectException, MetaException, TException {
+    dispatch("create_database", new Object[] { database }, iface -> {
+      iface.create_database(database);
+      return null;
+    });
+  }
+
+  @Override
+  public void create_function(Function func)
+    throws AlreadyExistsException, InvalidObjectException, MetaException, NoSuchObjectException, TException {
+    dispatch("create_function", new Object[] { func }, iface -> {
+      iface.create_function(func);
+      return null;
+    });
+  }
+
+  @Override
+  public void create_ischema(ISchema schema)
+    throws AlreadyExistsException, NoSuchObjectException, MetaException, TException {
+    dispatch("create_ischema", new Object[] { schema }, iface -> {
+      iface.create_ischema(schema);
+      return null;
+    });
+  }
+
+  @Override
+  public WMCreateOrDropTriggerToPoolMappingResponse create_or_drop_wm_trigger_to_pool_mapping(WMCreateOrDropTriggerToPoolMappingRequest request)
+    throws AlreadyExistsException, NoSuchObjectException, InvalidObjectException, MetaException, TException {
+    return dispatch("create_or_drop_wm_trigger_to_pool_mapping", new Object[] { request },
+        iface -> iface.create_or_drop_wm_trigger_to_pool_mapping(request));
+  }
+
+  @Override
+  public WMCreateOrUpdateMappingResponse create_or_update_wm_mapping(WMCreateOrUpdateMappingRequest request)
+    throws AlreadyExistsException, NoSuchObjectException, InvalidObjectException, MetaException, TException {
+    return dispatch("create_or_update_wm_mapping", new Object[] { request },
+        iface -> iface.create_or_update_wm_mapping(request));
+  }
+
+  @Override
+  public WMCreateResourcePlanResponse create_resource_plan(WMCreateResourcePlanRequest request)
+    throws AlreadyExistsException, InvalidObjectException, MetaException, TException {
+    return dispatch("create_resource_plan", new Object[] { request }, iface -> iface.create_resource_plan(request));
+  }
+
+  @Override
+  public boolean create_role(Role role) throws MetaException, TException {
+    return dispatch("create_role", new Object[] { role }, iface -> iface.create_role(role));
+  }
+
+  @Override
+  public void create_table(Table tbl)
+    throws AlreadyExistsException, InvalidObjectException, MetaException, NoSuchObjectException, TException {
+    dispatch("create_table", new Object[] { tbl }, iface -> {
+      iface.create_table(tbl);
+      return null;
+    });
+  }
+
+  @Override
+  public void create_table_with_constraints(Table tbl, List<SQLPrimaryKey> primaryKeys, List<SQLForeignKey> foreignKeys,
+      List<SQLUniqueConstraint> uniqueConstraints, List<SQLNotNullConstraint> notNullConstraints,
+      List<SQLDefaultConstraint> defaultConstraints, List<SQLCheckConstraint> checkConstraints)
+    throws AlreadyExistsException, InvalidObjectException, MetaException, NoSuchObjectException, TException {
+    dispatch("create_table_with_constraints", new Object[] { tbl, primaryKeys, foreignKeys, uniqueConstraints,
+        notNullConstraints, defaultConstraints, checkConstraints }, iface -> {
+      iface.create_table_with_constraints(tbl, primaryKeys, foreignKeys, uniqueConstraints, notNullConstraints,
+          defaultConstraints, checkConstraints);
+      return null;
+    });
+  }
+
+  @Override
+  public void create_table_with_environment_context(Table tbl, EnvironmentContext environment_context)
+    throws AlreadyExistsException, InvalidObjectException, MetaException, NoSuchObjectException, TException {
+    dispatch("create_table_with_environment_context", new Object[] { tbl, environment_context }, iface -> {
+      iface.create_table_with_environment_context(tbl, environment_context);
+      return null;
+    });
+  }
+
+  @Override
+  public boolean create_type(Type type)
+    throws AlreadyExistsException, InvalidObjectException, MetaException, TException {
+    return dispatch("create_type", new Object[] { type }, iface -> iface.create_type(type));
+  }
+
+  @Override
+  public WMCreatePoolResponse create_wm_pool(WMCreatePoolRequest request)
+    throws AlreadyExistsException, NoSuchObjectException, InvalidObjectException, MetaException, TException {
+    return dispatch("create_wm_pool", new Object[] { request }, iface -> iface.create_wm_pool(request));
+  }
+
+  @Override
+  public WMCreateTriggerResponse create_wm_trigger(WMCreateTriggerRequest request)
+    throws AlreadyExistsException, NoSuchObjectException, InvalidObjectException, MetaException, TException {
+    return dispatch("create_wm_trigger", new Object[] { request }, iface -> iface.create_wm_trigger(request));
+  }
+
+  @Override
+  public boolean delete_partition_column_statistics(String db_name, String tbl_name, String part_name, String col_name)
+    throws NoSuchObjectException, MetaException, InvalidObjectException, InvalidInputException, TException {
+    return dispatch("delete_partition_column_statistics", new Object[] { db_name, tbl_name, part_name, col_name },
+        iface -> iface.delete_partition_column_statistics(db_name, tbl_name, part_name, col_name));
+  }
+
+  @Override
+  public boolean delete_table_column_statistics(String db_name, String tbl_name, String col_name)
+    throws NoSuchObjectException, MetaException, InvalidObjectException, InvalidInputException, TException {
+    return dispatch("delete_table_column_statistics", new Object[] { db_name, tbl_name, col_name },
+        iface -> iface.delete_table_column_statistics(db_name, tbl_name, col_name));
+  }
+
+  @Override
+  public void drop_catalog(DropCatalogRequest catName)
+    throws NoSuchObjectException, InvalidOperationException, MetaException, TException {
+    dispatch("drop_catalog", new Object[] { catName }, iface -> {
+      iface.drop_catalog(catName);
+      return null;
+    });
+  }
+
+  @Override
+  public void drop_constraint(DropConstraintRequest req) throws NoSuchObjectException, MetaException, TException {
+    dispatch("drop_constraint", new Object[] { req }, iface -> {
+      iface.drop_constraint(req);
+      return null;
+    });
+  }
+
+  @Override
+  public void drop_database(String name, boolean deleteData, boolean cascade)
+    throws NoSuchObjectException, InvalidOperationException, MetaException, TException {
+    dispatch("drop_database", new Object[] { name, deleteData, cascade }, iface -> {
+      iface.drop_database(name, deleteData, cascade);
+      return null;
+    });
+  }
+
+  @Override
+  public void drop_function(String dbName, String funcName) throws NoSuchObjectException, MetaException, TException {
+    dispatch("drop_function", new Object[] { dbName, funcName }, iface -> {
+      iface.drop_function(dbName, funcName);
+      return null;
+    });
+  }
+
+  @Override
+  public void drop_ischema(ISchemaName name)
+    throws NoSuchObjectException, InvalidOperationException, MetaException, TException {
+    dispatch("drop_ischema", new Object[] { name }, iface -> {
+      iface.drop_ischema(name);
+      return null;
+    });
+  }
+
+  @Override
+  public boolean drop_partition(String db_name, String tbl_name, List<String> part_vals, boolean deleteData)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("drop_partition", new Object[] { db_name, tbl_name, part_vals, deleteData },
+        iface -> iface.drop_partition(db_name, tbl_name, part_vals, deleteData));
+  }
+
+  @Override
+  public boolean drop_partition_by_name(String db_name, String tbl_name, String part_name, boolean deleteData)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("drop_partition_by_name", new Object[] { db_name, tbl_name, part_name, deleteData },
+        iface -> iface.drop_partition_by_name(db_name, tbl_name, part_name, deleteData));
+  }
+
+  @Override
+  public boolean drop_partition_by_name_with_environment_context(String db_name, String tbl_name, String part_name,
+      boolean deleteData, EnvironmentContext environment_context)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("drop_partition_by_name_with_environment_context", new Object[] { db_name, tbl_name, part_name,
+        deleteData, environment_context }, iface -> iface.drop_partition_by_name_with_environment_context(db_name,
+        tbl_name, part_name, deleteData, environment_context));
+  }
+
+  @Override
+  public boolean drop_partition_with_environment_context(String db_name, String tbl_name, List<String> part_vals,
+      boolean deleteData, EnvironmentContext environment_context)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("drop_partition_with_environment_context", new Object[] { db_name, tbl_name, part_vals, deleteData,
+        environment_context }, iface -> iface.drop_partition_with_environment_context(db_name, tbl_name, part_vals,
+        deleteData, environment_context));
+  }
+
+  @Override
+  public DropPartitionsResult drop_partitions_req(DropPartitionsRequest req)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("drop_partitions_req", new Object[] { req }, iface -> iface.drop_partitions_req(req));
+  }
+
+  @Override
+  public WMDropResourcePlanResponse drop_resource_plan(WMDropResourcePlanRequest request)
+    throws NoSuchObjectException, InvalidOperationException, MetaException, TException {
+    return dispatch("drop_resource_plan", new Object[] { request }, iface -> iface.drop_resource_plan(request));
+  }
+
+  @Override
+  public boolean drop_role(String role_name) throws MetaException, TException {
+    return dispatch("drop_role", new Object[] { role_name }, iface -> iface.drop_role(role_name));
+  }
+
+  @Override
+  public void drop_schema_version(SchemaVersionDescriptor schemaVersion)
+    throws NoSuchObjectException, MetaException, TException {
+    dispatch("drop_schema_version", new Object[] { schemaVersion }, iface -> {
+      iface.drop_schema_version(schemaVersion);
+      return null;
+    });
+  }
+
+  @Override
+  public void drop_table(String dbname, String name, boolean deleteData)
+    throws NoSuchObjectException, MetaException, TException {
+    dispatch("drop_table", new Object[] { dbname, name, deleteData }, iface -> {
+      iface.drop_table(dbname, name, deleteData);
+      return null;
+    });
+  }
+
+  @Override
+  public void drop_table_with_environment_context(String dbname, String name, boolean deleteData,
+      EnvironmentContext environment_context) throws NoSuchObjectException, MetaException, TException {
+    dispatch("drop_table_with_environment_context", new Object[] { dbname, name, deleteData, environment_context },
+        iface -> {
+      iface.drop_table_with_environment_context(dbname, name, deleteData, environment_context);
+      return null;
+    });
+  }
+
+  @Override
+  public boolean drop_type(String type) throws MetaException, NoSuchObjectException, TException {
+    return dispatch("drop_type", new Object[] { type }, iface -> iface.drop_type(type));
+  }
+
+  @Override
+  public WMDropMappingResponse drop_wm_mapping(WMDropMappingRequest request)
+    throws NoSuchObjectException, InvalidOperationException, MetaException, TException {
+    return dispatch("drop_wm_mapping", new Object[] { request }, iface -> iface.drop_wm_mapping(request));
+  }
+
+  @Override
+  public WMDropPoolResponse drop_wm_pool(WMDropPoolRequest request)
+    throws NoSuchObjectException, InvalidOperationException, MetaException, TException {
+    return dispatch("drop_wm_pool", new Object[] { request }, iface -> iface.drop_wm_pool(request));
+  }
+
+  @Override
+  public WMDropTriggerResponse drop_wm_trigger(WMDropTriggerRequest request)
+    throws NoSuchObjectException, InvalidOperationException, MetaException, TException {
+    return dispatch("drop_wm_trigger", new Object[] { request }, iface -> iface.drop_wm_trigger(request));
+  }
+
+  @Override
+  public Partition exchange_partition(Map<String, String> partitionSpecs, String source_db, String source_table_name,
+      String dest_db, String dest_table_name)
+    throws MetaException, NoSuchObjectException, InvalidObjectException, InvalidInputException, TException {
+    return dispatch("exchange_partition", new Object[] { partitionSpecs, source_db, source_table_name, dest_db,
+        dest_table_name }, iface -> iface.exchange_partition(partitionSpecs, source_db, source_table_name, dest_db,
+        dest_table_name));
+  }
+
+  @Override
+  public List<Partition> exchange_partitions(Map<String, String> partitionSpecs, String source_db,
+      String source_table_name, String dest_db, String dest_table_name)
+    throws MetaException, NoSuchObjectException, InvalidObjectException, InvalidInputException, TException {
+    return dispatch("exchange_partitions", new Object[] { partitionSpecs, source_db, source_table_name, dest_db,
+        dest_table_name }, iface -> iface.exchange_partitions(partitionSpecs, source_db, source_table_name, dest_db,
+        dest_table_name));
+  }
+
+  @Override
+  public FireEventResponse fire_listener_event(FireEventRequest rqst) throws TException {
+    return dispatch("fire_listener_event", new Object[] { rqst }, iface -> iface.fire_listener_event(rqst));
+  }
+
+  @Override
+  public void flushCache() throws TException {
+    dispatch("flushCache", NO_ARGUMENTS, iface -> {
+      iface.flushCache();
+      return null;
+    });
+  }
+
+  @Override
+  public long getCounter(String key) throws TException {
+    return dispatch("getCounter", new Object[] { key }, iface -> iface.getCounter(key));
+  }
+
+  @Override
+  public Map<String, Long> getCounters() throws TException {
+    return dispatch("getCounters", NO_ARGUMENTS, iface -> iface.getCounters());
+  }
+
+  @Override
+  public String getCpuProfile(int profileDurationInSec) throws TException {
+    return dispatch("getCpuProfile", new Object[] { profileDurationInSec },
+        iface -> iface.getCpuProfile(profileDurationInSec));
+  }
+
+  @Override
+  public String getMetaConf(String key) throws MetaException, TException {
+    return dispatch("getMetaConf", new Object[] { key }, iface -> iface.getMetaConf(key));
+  }
+
+  @Override
+  public String getName() throws TException {
+    return dispatch("getName", NO_ARGUMENTS, iface -> iface.getName());
+  }
+
+  @Override
+  public String getOption(String key) throws TException {
+    return dispatch("getOption", new Object[] { key }, iface -> iface.getOption(key));
+  }
+
+  @Override
+  public Map<String, String> getOptions() throws TException {
+    return dispatch("getOptions", NO_ARGUMENTS, iface -> iface.getOptions());
+  }
+
+  @Override
+  public fb_status getStatus() throws TException {
+    return dispatch("getStatus", NO_ARGUMENTS, iface -> iface.getStatus());
+  }
+
+  @Override
+  public String getStatusDetails() throws TException {
+    return dispatch("getStatusDetails", NO_ARGUMENTS, iface -> iface.getStatusDetails());
+  }
+
+  @Override
+  public String getVersion() throws TException {
+    return dispatch("getVersion", NO_ARGUMENTS, iface -> iface.getVersion());
+  }
+
+  @Override
+  public WMGetActiveResourcePlanResponse get_active_resource_plan(WMGetActiveResourcePlanRequest request)
+    throws MetaException, TException {
+    return dispatch("get_active_resource_plan", new Object[] { request },
+        iface -> iface.get_active_resource_plan(request));
+  }
+
+  @Override
+  public AggrStats get_aggr_stats_for(PartitionsStatsRequest request)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("get_aggr_stats_for", new Object[] { request }, iface -> iface.get_aggr_stats_for(request));
+  }
+
+  @Override
+  public List<String> get_all_databases() throws MetaException, TException {
+    return dispatch("get_all_databases", NO_ARGUMENTS, iface -> iface.get_all_databases());
+  }
+
+  @Override
+  public GetAllFunctionsResponse get_all_functions() throws MetaException, TException {
+    return dispatch("get_all_functions", NO_ARGUMENTS, iface -> iface.get_all_functions());
+  }
+
+  @Override
+  public WMGetAllResourcePlanResponse get_all_resource_plans(WMGetAllResourcePlanRequest request)
+    throws MetaException, TException {
+    return dispatch("get_all_resource_plans", new Object[] { request }, iface -> iface.get_all_resource_plans(request));
+  }
+
+  @Override
+  public List<String> get_all_tables(String db_name) throws MetaException, TException {
+    return dispatch("get_all_tables", new Object[] { db_name }, iface -> iface.get_all_tables(db_name));
+  }
+
+  @Override
+  public List<String> get_all_token_identifiers() throws TException {
+    return dispatch("get_all_token_identifiers", NO_ARGUMENTS, iface -> iface.get_all_token_identifiers());
+  }
+
+  @Override
+  public GetCatalogResponse get_catalog(GetCatalogRequest catName)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("get_catalog", new Object[] { catName }, iface -> iface.get_catalog(catName));
+  }
+
+  @Override
+  public GetCatalogsResponse get_catalogs() throws MetaException, TException {
+    return dispatch("get_catalogs", NO_ARGUMENTS, iface -> iface.get_catalogs());
+  }
+
+  @Override
+  public CheckConstraintsResponse get_check_constraints(CheckConstraintsRequest request)
+    throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_check_constraints", new Object[] { request }, iface -> iface.get_check_constraints(request));
+  }
+
+  @Override
+  public String get_config_value(String name, String defaultValue) throws ConfigValSecurityException, TException {
+    return dispatch("get_config_value", new Object[] { name, defaultValue }, iface -> iface.get_config_value(name,
+        defaultValue));
+  }
+
+  @Override
+  public CurrentNotificationEventId get_current_notificationEventId() throws TException {
+    return dispatch("get_current_notificationEventId", NO_ARGUMENTS, iface -> iface.get_current_notificationEventId());
+  }
+
+  @Override
+  public Database get_database(String name) throws NoSuchObjectException, MetaException, TException {
+    return dispatch("get_database", new Object[] { name }, iface -> iface.get_database(name));
+  }
+
+  @Override
+  public List<String> get_databases(String pattern) throws MetaException, TException {
+    return dispatch("get_databases", new Object[] { pattern }, iface -> iface.get_databases(pattern));
+  }
+
+  @Override
+  public DefaultConstraintsResponse get_default_constraints(DefaultConstraintsRequest request)
+    throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_default_constraints", new Object[] { request },
+        iface -> iface.get_default_constraints(request));
+  }
+
+  @Override
+  public String get_delegation_token(String token_owner, String renewer_kerberos_principal_name)
+    throws MetaException, TException {
+    return dispatch("get_delegation_token", new Object[] { token_owner, renewer_kerberos_principal_name },
+        iface -> iface.get_delegation_token(token_owner, renewer_kerberos_principal_name));
+  }
+
+  @Override
+  public List<FieldSchema> get_fields(String db_name, String table_name)
+    throws MetaException, UnknownTableException, UnknownDBException, TException {
+    return dispatch("get_fields", new Object[] { db_name, table_name }, iface -> iface.get_fields(db_name, table_name));
+  }
+
+  @Override
+  public List<FieldSchema> get_fields_with_environment_context(String db_name, String table_name,
+      EnvironmentContext environment_context)
+    throws MetaException, UnknownTableException, UnknownDBException, TException {
+    return dispatch("get_fields_with_environment_context", new Object[] { db_name, table_name, environment_context },
+        iface -> iface.get_fields_with_environment_context(db_name, table_name, environment_context));
+  }
+
+  @Override
+  public GetFileMetadataResult get_file_metadata(GetFileMetadataRequest req) throws TException {
+    return dispatch("get_file_metadata", new Object[] { req }, iface -> iface.get_file_metadata(req));
+  }
+
+  @Override
+  public GetFileMetadataByExprResult get_file_metadata_by_expr(GetFileMetadataByExprRequest req) throws TException {
+    return dispatch("get_file_metadata_by_expr", new Object[] { req }, iface -> iface.get_file_metadata_by_expr(req));
+  }
+
+  @Override
+  public ForeignKeysResponse get_foreign_keys(ForeignKeysRequest request)
+    throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_foreign_keys", new Object[] { request }, iface -> iface.get_foreign_keys(request),
+        compatibility -> compatibility.get_foreign_keys(request));
+  }
+
+  @Override
+  public Function get_function(String dbName, String funcName) throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_function", new Object[] { dbName, funcName }, iface -> iface.get_function(dbName, funcName));
+  }
+
+  @Override
+  public List<String> get_functions(String dbName, String pattern) throws MetaException, TException {
+    return dispatch("get_functions", new Object[] { dbName, pattern }, iface -> iface.get_functions(dbName, pattern));
+  }
+
+  @Override
+  public ISchema get_ischema(ISchemaName name) throws NoSuchObjectException, MetaException, TException {
+    return dispatch("get_ischema", new Object[] { name }, iface -> iface.get_ischema(name));
+  }
+
+  @Override
+  public LockResponse get_lock_materialization_rebuild(String dbName, String tableName, long txnId) throws TException {
+    return dispatch("get_lock_materialization_rebuild", new Object[] { dbName, tableName, txnId },
+        iface -> iface.get_lock_materialization_rebuild(dbName, tableName, txnId));
+  }
+
+  @Override
+  public List<String> get_master_keys() throws TException {
+    return dispatch("get_master_keys", NO_ARGUMENTS, iface -> iface.get_master_keys());
+  }
+
+  @Override
+  public Materialization get_materialization_invalidation_info(CreationMetadata creation_metadata, String validTxnList)
+    throws MetaException, InvalidOperationException, UnknownDBException, TException {
+    return dispatch("get_materialization_invalidation_info", new Object[] { creation_metadata, validTxnList },
+        iface -> iface.get_materialization_invalidation_info(creation_metadata, validTxnList));
+  }
+
+  @Override
+  public List<String> get_materialized_views_for_rewriting(String db_name) throws MetaException, TException {
+    return dispatch("get_materialized_views_for_rewriting", new Object[] { db_name },
+        iface -> iface.get_materialized_views_for_rewriting(db_name));
+  }
+
+  @Override
+  public String get_metastore_db_uuid() throws MetaException, TException {
+    return dispatch("get_metastore_db_uuid", NO_ARGUMENTS, iface -> iface.get_metastore_db_uuid());
+  }
+
+  @Override
+  public NotificationEventResponse get_next_notification(NotificationEventRequest rqst) throws TException {
+    return dispatch("get_next_notification", new Object[] { rqst }, iface -> iface.get_next_notification(rqst));
+  }
+
+  @Override
+  public NotNullConstraintsResponse get_not_null_constraints(NotNullConstraintsRequest request)
+    throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_not_null_constraints", new Object[] { request },
+        iface -> iface.get_not_null_constraints(request));
+  }
+
+  @Override
+  public NotificationEventsCountResponse get_notification_events_count(NotificationEventsCountRequest rqst)
+    throws TException {
+    return dispatch("get_notification_events_count", new Object[] { rqst },
+        iface -> iface.get_notification_events_count(rqst));
+  }
+
+  @Override
+  public int get_num_partitions_by_filter(String db_name, String tbl_name, String filter)
+    throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_num_partitions_by_filter", new Object[] { db_name, tbl_name, filter },
+        iface -> iface.get_num_partitions_by_filter(db_name, tbl_name, filter));
+  }
+
+  @Override
+  public GetOpenTxnsResponse get_open_txns() throws TException {
+    return dispatch("get_open_txns", NO_ARGUMENTS, iface -> iface.get_open_txns());
+  }
+
+  @Override
+  public GetOpenTxnsInfoResponse get_open_txns_info() throws TException {
+    return dispatch("get_open_txns_info", NO_ARGUMENTS, iface -> iface.get_open_txns_info());
+  }
+
+  @Override
+  public List<PartitionSpec> get_part_specs_by_filter(String db_name, String tbl_name, String filter, int max_parts)
+    throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_part_specs_by_filter", new Object[] { db_name, tbl_name, filter, max_parts },
+        iface -> iface.get_part_specs_by_filter(db_name, tbl_name, filter, max_parts));
+  }
+
+  @Override
+  public Partition get_partition(String db_name, String tbl_name, List<String> part_vals)
+    throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_partition", new Object[] { db_name, tbl_name, part_vals },
+        iface -> iface.get_partition(db_name, tbl_name, part_vals));
+  }
+
+  @Override
+  public Partition get_partition_by_name(String db_name, String tbl_name, String part_name)
+    throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_partition_by_name", new Object[] { db_name, tbl_name, part_name },
+        iface -> iface.get_partition_by_name(db_name, tbl_name, part_name));
+  }
+
+  @Override
+  public ColumnStatistics get_partition_column_statistics(String db_name, String tbl_name, String part_name,
+      String col_name)
+    throws NoSuchObjectException, MetaException, InvalidInputException, InvalidObjectException, TException {
+    return dispatch("get_partition_column_statistics", new Object[] { db_name, tbl_name, part_name, col_name },
+        iface -> iface.get_partition_column_statistics(db_name, tbl_name, part_name, col_name));
+  }
+
+  @Override
+  public List<String> get_partition_names(String db_name, String tbl_name, short max_parts)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("get_partition_names", new Object[] { db_name, tbl_name, max_parts },
+        iface -> iface.get_partition_names(db_name, tbl_name, max_parts));
+  }
+
+  @Override
+  public List<String> get_partition_names_ps(String db_name, String tbl_name, List<String> part_vals, short max_parts)
+    throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_partition_names_ps", new Object[] { db_name, tbl_name, part_vals, max_parts },
+        iface -> iface.get_partition_names_ps(db_name, tbl_name, part_vals, max_parts));
+  }
+
+  @Override
+  public PartitionValuesResponse get_partition_values(PartitionValuesRequest request)
+    throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_partition_values", new Object[] { request }, iface -> iface.get_partition_values(request));
+  }
+
+  @Override
+  public Partition get_partition_with_auth(String db_name, String tbl_name, List<String> part_vals, String user_name,
+      List<String> group_names) throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_partition_with_auth", new Object[] { db_name, tbl_name, part_vals, user_name, group_names },
+        iface -> iface.get_partition_with_auth(db_name, tbl_name, part_vals, user_name, group_names));
+  }
+
+  @Override
+  public List<Partition> get_partitions(String db_name, String tbl_name, short max_parts)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("get_partitions", new Object[] { db_name, tbl_name, max_parts },
+        iface -> iface.get_partitions(db_name, tbl_name, max_parts));
+  }
+
+  @Override
+  public PartitionsByExprResult get_partitions_by_expr(PartitionsByExprRequest req)
+    throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_partitions_by_expr", new Object[] { req }, iface -> iface.get_partitions_by_expr(req));
+  }
+
+  @Override
+  public List<Partition> get_partitions_by_filter(String db_name, String tbl_name, String filter, short max_parts)
+    throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_partitions_by_filter", new Object[] { db_name, tbl_name, filter, max_parts },
+        iface -> iface.get_partitions_by_filter(db_name, tbl_name, filter, max_parts));
+  }
+
+  @Override
+  public List<Partition> get_partitions_by_names(String db_name, String tbl_name, List<String> names)
+    throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_partitions_by_names", new Object[] { db_name, tbl_name, names },
+        iface -> iface.get_partitions_by_names(db_name, tbl_name, names));
+  }
+
+  @Override
+  public List<Partition> get_partitions_ps(String db_name, String tbl_name, List<String> part_vals, short max_parts)
+    throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_partitions_ps", new Object[] { db_name, tbl_name, part_vals, max_parts },
+        iface -> iface.get_partitions_ps(db_name, tbl_name, part_vals, max_parts));
+  }
+
+  @Override
+  public List<Partition> get_partitions_ps_with_auth(String db_name, String tbl_name, List<String> part_vals,
+      short max_parts, String user_name, List<String> group_names)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("get_partitions_ps_with_auth", new Object[] { db_name, tbl_name, part_vals, max_parts, user_name,
+        group_names }, iface -> iface.get_partitions_ps_with_auth(db_name, tbl_name, part_vals, max_parts, user_name,
+        group_names));
+  }
+
+  @Override
+  public List<PartitionSpec> get_partitions_pspec(String db_name, String tbl_name, int max_parts)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("get_partitions_pspec", new Object[] { db_name, tbl_name, max_parts },
+        iface -> iface.get_partitions_pspec(db_name, tbl_name, max_parts));
+  }
+
+  @Override
+  public PartitionsStatsResult get_partitions_statistics_req(PartitionsStatsRequest request)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("get_partitions_statistics_req", new Object[] { request },
+        iface -> iface.get_partitions_statistics_req(request));
+  }
+
+  @Override
+  public List<Partition> get_partitions_with_auth(String db_name, String tbl_name, short max_parts, String user_name,
+      List<String> group_names) throws NoSuchObjectException, MetaException, TException {
+    return dispatch("get_partitions_with_auth", new Object[] { db_name, tbl_name, max_parts, user_name, group_names },
+        iface -> iface.get_partitions_with_auth(db_name, tbl_name, max_parts, user_name, group_names));
+  }
+
+  @Override
+  public PrimaryKeysResponse get_primary_keys(PrimaryKeysRequest request)
+    throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_primary_keys", new Object[] { request }, iface -> iface.get_primary_keys(request),
+        compatibility -> compatibility.get_primary_keys(request));
+  }
+
+  @Override
+  public GetPrincipalsInRoleResponse get_principals_in_role(GetPrincipalsInRoleRequest request)
+    throws MetaException, TException {
+    return dispatch("get_principals_in_role", new Object[] { request }, iface -> iface.get_principals_in_role(request));
+  }
+
+  @Override
+  public PrincipalPrivilegeSet get_privilege_set(HiveObjectRef hiveObject, String user_name, List<String> group_names)
+    throws MetaException, TException {
+    return dispatch("get_privilege_set", new Object[] { hiveObject, user_name, group_names },
+        iface -> iface.get_privilege_set(hiveObject, user_name, group_names));
+  }
+
+  @Override
+  public WMGetResourcePlanResponse get_resource_plan(WMGetResourcePlanRequest request)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("get_resource_plan", new Object[] { request }, iface -> iface.get_resource_plan(request));
+  }
+
+  @Override
+  public GetRoleGrantsForPrincipalResponse get_role_grants_for_principal(GetRoleGrantsForPrincipalRequest request)
+    throws MetaException, TException {
+    return dispatch("get_role_grants_for_principal", new Object[] { request },
+        iface -> iface.get_role_grants_for_principal(request));
+  }
+
+  @Override
+  public List<String> get_role_names() throws MetaException, TException {
+    return dispatch("get_role_names", NO_ARGUMENTS, iface -> iface.get_role_names());
+  }
+
+  @Override
+  public List<RuntimeStat> get_runtime_stats(GetRuntimeStatsRequest rqst) throws MetaException, TException {
+    return dispatch("get_runtime_stats", new Object[] { rqst }, iface -> iface.get_runtime_stats(rqst));
+  }
+
+  @Override
+  public List<FieldSchema> get_schema(String db_name, String table_name)
+    throws MetaException, UnknownTableException, UnknownDBException, TException {
+    return dispatch("get_schema", new Object[] { db_name, table_name }, iface -> iface.get_schema(db_name, table_name));
+  }
+
+  @Override
+  public List<SchemaVersion> get_schema_all_versions(ISchemaName schemaName)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("get_schema_all_versions", new Object[] { schemaName },
+        iface -> iface.get_schema_all_versions(schemaName));
+  }
+
+  @Override
+  public SchemaVersion get_schema_latest_version(ISchemaName schemaName)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("get_schema_latest_version", new Object[] { schemaName },
+        iface -> iface.get_schema_latest_version(schemaName));
+  }
+
+  @Override
+  public SchemaVersion get_schema_version(SchemaVersionDescriptor schemaVersion)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("get_schema_version", new Object[] { schemaVersion },
+        iface -> iface.get_schema_version(schemaVersion));
+  }
+
+  @Override
+  public List<FieldSchema> get_schema_with_environment_context(String db_name, String table_name,
+      EnvironmentContext environment_context)
+    throws MetaException, UnknownTableException, UnknownDBException, TException {
+    return dispatch("get_schema_with_environment_context", new Object[] { db_name, table_name, environment_context },
+        iface -> iface.get_schema_with_environment_context(db_name, table_name, environment_context));
+  }
+
+  @Override
+  public FindSchemasByColsResp get_schemas_by_cols(FindSchemasByColsRqst rqst) throws MetaException, TException {
+    return dispatch("get_schemas_by_cols", new Object[] { rqst }, iface -> iface.get_schemas_by_cols(rqst));
+  }
+
+  @Override
+  public SerDeInfo get_serde(GetSerdeRequest rqst) throws NoSuchObjectException, MetaException, TException {
+    return dispatch("get_serde", new Object[] { rqst }, iface -> iface.get_serde(rqst));
+  }
+
+  @Override
+  public Table get_table(String dbname, String tbl_name) throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_table", new Object[] { dbname, tbl_name }, iface -> iface.get_table(dbname, tbl_name));
+  }
+
+  @Override
+  public ColumnStatistics get_table_column_statistics(String db_name, String tbl_name, String col_name)
+    throws NoSuchObjectException, MetaException, InvalidInputException, InvalidObjectException, TException {
+    return dispatch("get_table_column_statistics", new Object[] { db_name, tbl_name, col_name },
+        iface -> iface.get_table_column_statistics(db_name, tbl_name, col_name));
+  }
+
+  @Override
+  public List<TableMeta> get_table_meta(String db_patterns, String tbl_patterns, List<String> tbl_types)
+    throws MetaException, TException {
+    return dispatch("get_table_meta", new Object[] { db_patterns, tbl_patterns, tbl_types },
+        iface -> iface.get_table_meta(db_patterns, tbl_patterns, tbl_types));
+  }
+
+  @Override
+  public List<String> get_table_names_by_filter(String dbname, String filter, short max_tables)
+    throws MetaException, InvalidOperationException, UnknownDBException, TException {
+    return dispatch("get_table_names_by_filter", new Object[] { dbname, filter, max_tables },
+        iface -> iface.get_table_names_by_filter(dbname, filter, max_tables));
+  }
+
+  @Override
+  public List<Table> get_table_objects_by_name(String dbname, List<String> tbl_names) throws TException {
+    return dispatch("get_table_objects_by_name", new Object[] { dbname, tbl_names },
+        iface -> iface.get_table_objects_by_name(dbname, tbl_names));
+  }
+
+  @Override
+  public GetTablesResult get_table_objects_by_name_req(GetTablesRequest req)
+    throws MetaException, InvalidOperationException, UnknownDBException, TException {
+    return dispatch("get_table_objects_by_name_req", new Object[] { req },
+        iface -> iface.get_table_objects_by_name_req(req),
+        compatibility -> compatibility.get_table_objects_by_name_req(req));
+  }
+
+  @Override
+  public GetTableResult get_table_req(GetTableRequest req) throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_table_req", new Object[] { req }, iface -> iface.get_table_req(req),
+        compatibility -> compatibility.get_table_req(req));
+  }
+
+  @Override
+  public TableStatsResult get_table_statistics_req(TableStatsRequest request)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("get_table_statistics_req", new Object[] { request },
+        iface -> iface.get_table_statistics_req(request));
+  }
+
+  @Override
+  public List<String> get_tables(String db_name, String pattern) throws MetaException, TException {
+    return dispatch("get_tables", new Object[] { db_name, pattern }, iface -> iface.get_tables(db_name, pattern));
+  }
+
+  @Override
+  public List<String> get_tables_by_type(String db_name, String pattern, String tableType)
+    throws MetaException, TException {
+    return dispatch("get_tables_by_type", new Object[] { db_name, pattern, tableType },
+        iface -> iface.get_tables_by_type(db_name, pattern, tableType));
+  }
+
+  @Override
+  public String get_token(String token_identifier) throws TException {
+    return dispatch("get_token", new Object[] { token_identifier }, iface -> iface.get_token(token_identifier));
+  }
+
+  @Override
+  public WMGetTriggersForResourePlanResponse get_triggers_for_resourceplan(WMGetTriggersForResourePlanRequest request)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("get_triggers_for_resourceplan", new Object[] { request },
+        iface -> iface.get_triggers_for_resourceplan(request));
+  }
+
+  @Override
+  public Type get_type(String name) throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_type", new Object[] { name }, iface -> iface.get_type(name));
+  }
+
+  @Override
+  public Map<String, Type> get_type_all(String name) throws MetaException, TException {
+    return dispatch("get_type_all", new Object[] { name }, iface -> iface.get_type_all(name));
+  }
+
+  @Override
+  public UniqueConstraintsResponse get_unique_constraints(UniqueConstraintsRequest request)
+    throws MetaException, NoSuchObjectException, TException {
+    return dispatch("get_unique_constraints", new Object[] { request }, iface -> iface.get_unique_constraints(request));
+  }
+
+  @Override
+  public GetValidWriteIdsResponse get_valid_write_ids(GetValidWriteIdsRequest rqst)
+    throws NoSuchTxnException, MetaException, TException {
+    return dispatch("get_valid_write_ids", new Object[] { rqst }, iface -> iface.get_valid_write_ids(rqst));
+  }
+
+  @Override
+  public boolean grant_privileges(PrivilegeBag privileges) throws MetaException, TException {
+    return dispatch("grant_privileges", new Object[] { privileges }, iface -> iface.grant_privileges(privileges));
+  }
+
+  @Override
+  public GrantRevokePrivilegeResponse grant_revoke_privileges(GrantRevokePrivilegeRequest request)
+    throws MetaException, TException {
+    return dispatch("grant_revoke_privileges", new Object[] { request },
+        iface -> iface.grant_revoke_privileges(request));
+  }
+
+  @Override
+  public GrantRevokeRoleResponse grant_revoke_role(GrantRevokeRoleRequest request) throws MetaException, TException {
+    return dispatch("grant_revoke_role", new Object[] { request }, iface -> iface.grant_revoke_role(request));
+  }
+
+  @Override
+  public boolean grant_role(String role_name, String principal_name, PrincipalType principal_type, String grantor,
+      PrincipalType grantorType, boolean grant_option) throws MetaException, TException {
+    return dispatch("grant_role", new Object[] { role_name, principal_name, principal_type, grantor, grantorType,
+        grant_option }, iface -> iface.grant_role(role_name, principal_name, principal_type, grantor, grantorType,
+        grant_option));
+  }
+
+  @Override
+  public void heartbeat(HeartbeatRequest ids)
+    throws NoSuchLockException, NoSuchTxnException, TxnAbortedException, TException {
+    dispatch("heartbeat", new Object[] { ids }, iface -> {
+      iface.heartbeat(ids);
+      return null;
+    });
+  }
+
+  @Override
+  public boolean heartbeat_lock_materialization_rebuild(String dbName, String tableName, long txnId) throws TException {
+    return dispatch("heartbeat_lock_materialization_rebuild", new Object[] { dbName, tableName, txnId },
+        iface -> iface.heartbeat_lock_materialization_rebuild(dbName, tableName, txnId));
+  }
+
+  @Override
+  public HeartbeatTxnRangeResponse heartbeat_txn_range(HeartbeatTxnRangeRequest txns) throws TException {
+    return dispatch("heartbeat_txn_range", new Object[] { txns }, iface -> iface.heartbeat_txn_range(txns));
+  }
+
+  @Override
+  public boolean isPartitionMarkedForEvent(String db_name, String tbl_name, Map<String, String> part_vals,
+      PartitionEventType eventType)
+    throws MetaException, NoSuchObjectException, UnknownDBException, UnknownTableException, UnknownPartitionException,
+        InvalidPartitionException, TException {
+    return dispatch("isPartitionMarkedForEvent", new Object[] { db_name, tbl_name, part_vals, eventType },
+        iface -> iface.isPartitionMarkedForEvent(db_name, tbl_name, part_vals, eventType));
+  }
+
+  @Override
+  public List<HiveObjectPrivilege> list_privileges(String principal_name, PrincipalType principal_type,
+      HiveObjectRef hiveObject) throws MetaException, TException {
+    return dispatch("list_privileges", new Object[] { principal_name, principal_type, hiveObject },
+        iface -> iface.list_privileges(principal_name, principal_type, hiveObject));
+  }
+
+  @Override
+  public List<Role> list_roles(String principal_name, PrincipalType principal_type) throws MetaException, TException {
+    return dispatch("list_roles", new Object[] { principal_name, principal_type },
+        iface -> iface.list_roles(principal_name, principal_type));
+  }
+
+  @Override
+  public LockResponse lock(LockRequest rqst) throws NoSuchTxnException, TxnAbortedException, TException {
+    return dispatch("lock", new Object[] { rqst }, iface -> iface.lock(rqst));
+  }
+
+  @Override
+  public void map_schema_version_to_serde(MapSchemaVersionToSerdeRequest rqst)
+    throws NoSuchObjectException, MetaException, TException {
+    dispatch("map_schema_version_to_serde", new Object[] { rqst }, iface -> {
+      iface.map_schema_version_to_serde(rqst);
+      return null;
+    });
+  }
+
+  @Override
+  public void markPartitionForEvent(String db_name, String tbl_name, Map<String, String> part_vals,
+      PartitionEventType eventType)
+    throws MetaException, NoSuchObjectException, UnknownDBException, UnknownTableException, UnknownPartitionException,
+        InvalidPartitionException, TException {
+    dispatch("markPartitionForEvent", new Object[] { db_name, tbl_name, part_vals, eventType }, iface -> {
+      iface.markPartitionForEvent(db_name, tbl_name, part_vals, eventType);
+      return null;
+    });
+  }
+
+  @Override
+  public OpenTxnsResponse open_txns(OpenTxnRequest rqst) throws TException {
+    return dispatch("open_txns", new Object[] { rqst }, iface -> iface.open_txns(rqst));
+  }
+
+  @Override
+  public boolean partition_name_has_valid_characters(List<String> part_vals, boolean throw_exception)
+    throws MetaException, TException {
+    return dispatch("partition_name_has_valid_characters", new Object[] { part_vals, throw_exception },
+        iface -> iface.partition_name_has_valid_characters(part_vals, throw_exception));
+  }
+
+  @Override
+  public Map<String, String> partition_name_to_spec(String part_name) throws MetaException, TException {
+    return dispatch("partition_name_to_spec", new Object[] { part_name },
+        iface -> iface.partition_name_to_spec(part_name));
+  }
+
+  @Override
+  public List<String> partition_name_to_vals(String part_name) throws MetaException, TException {
+    return dispatch("partition_name_to_vals", new Object[] { part_name },
+        iface -> iface.partition_name_to_vals(part_name));
+  }
+
+  @Override
+  public PutFileMetadataResult put_file_metadata(PutFileMetadataRequest req) throws TException {
+    return dispatch("put_file_metadata", new Object[] { req }, iface -> iface.put_file_metadata(req));
+  }
+
+  @Override
+  public GrantRevokePrivilegeResponse refresh_privileges(HiveObjectRef objToRefresh, String authorizer,
+      GrantRevokePrivilegeRequest grantRequest) throws MetaException, TException {
+    return dispatch("refresh_privileges", new Object[] { objToRefresh, authorizer, grantRequest },
+        iface -> iface.refresh_privileges(objToRefresh, authorizer, grantRequest));
+  }
+
+  @Override
+  public void reinitialize() throws TException {
+    dispatch("reinitialize", NO_ARGUMENTS, iface -> {
+      iface.reinitialize();
+      return null;
+    });
+  }
+
+  @Override
+  public boolean remove_master_key(int key_seq) throws TException {
+    return dispatch("remove_master_key", new Object[] { key_seq }, iface -> iface.remove_master_key(key_seq));
+  }
+
+  @Override
+  public boolean remove_token(String token_identifier) throws TException {
+    return dispatch("remove_token", new Object[] { token_identifier }, iface -> iface.remove_token(token_identifier));
+  }
+
+  @Override
+  public void rename_partition(String db_name, String tbl_name, List<String> part_vals, Partition new_part)
+    throws InvalidOperationException, MetaException, TException {
+    dispatch("rename_partition", new Object[] { db_name, tbl_name, part_vals, new_part }, iface -> {
+      iface.rename_partition(db_name, tbl_name, part_vals, new_part);
+      return null;
+    });
+  }
+
+  @Override
+  public long renew_delegation_token(String token_str_form) throws MetaException, TException {
+    return dispatch("renew_delegation_token", new Object[] { token_str_form },
+        iface -> iface.renew_delegation_token(token_str_form));
+  }
+
+  @Override
+  public void repl_tbl_writeid_state(ReplTblWriteIdStateRequest rqst) throws TException {
+    dispatch("repl_tbl_writeid_state", new Object[] { rqst }, iface -> {
+      iface.repl_tbl_writeid_state(rqst);
+      return null;
+    });
+  }
+
+  @Override
+  public boolean revoke_privileges(PrivilegeBag privileges) throws MetaException, TException {
+    return dispatch("revoke_privileges", new Object[] { privileges }, iface -> iface.revoke_privileges(privileges));
+  }
+
+  @Override
+  public boolean revoke_role(String role_name, String principal_name, PrincipalType principal_type)
+    throws MetaException, TException {
+    return dispatch("revoke_role", new Object[] { role_name, principal_name, principal_type },
+        iface -> iface.revoke_role(role_name, principal_name, principal_type));
+  }
+
+  @Override
+  public void setMetaConf(String key, String value) throws MetaException, TException {
+    dispatch("setMetaConf", new Object[] { key, value }, iface -> {
+      iface.setMetaConf(key, value);
+      return null;
+    });
+  }
+
+  @Override
+  public void setOption(String key, String value) throws TException {
+    dispatch("setOption", new Object[] { key, value }, iface -> {
+      iface.setOption(key, value);
+      return null;
+    });
+  }
+
+  @Override
+  public boolean set_aggr_stats_for(SetPartitionsStatsRequest request)
+    throws NoSuchObjectException, InvalidObjectException, MetaException, InvalidInputException, TException {
+    return dispatch("set_aggr_stats_for", new Object[] { request }, iface -> iface.set_aggr_stats_for(request));
+  }
+
+  @Override
+  public void set_schema_version_state(SetSchemaVersionStateRequest rqst)
+    throws NoSuchObjectException, InvalidOperationException, MetaException, TException {
+    dispatch("set_schema_version_state", new Object[] { rqst }, iface -> {
+      iface.set_schema_version_state(rqst);
+      return null;
+    });
+  }
+
+  @Override
+  public List<String> set_ugi(String user_name, List<String> group_names) throws MetaException, TException {
+    return dispatch("set_ugi", new Object[] { user_name, group_names }, iface -> iface.set_ugi(user_name, group_names));
+  }
+
+  @Override
+  public ShowCompactResponse show_compact(ShowCompactRequest rqst) throws TException {
+    return dispatch("show_compact", new Object[] { rqst }, iface -> iface.show_compact(rqst));
+  }
+
+  @Override
+  public ShowLocksResponse show_locks(ShowLocksRequest rqst) throws TException {
+    return dispatch("show_locks", new Object[] { rqst }, iface -> iface.show_locks(rqst));
+  }
+
+  @Override
+  public void shutdown() throws TException {
+    dispatch("shutdown", NO_ARGUMENTS, iface -> {
+      iface.shutdown();
+      return null;
+    });
+  }
+
+  @Override
+  public void truncate_table(String dbName, String tableName, List<String> partNames) throws MetaException, TException {
+    dispatch("truncate_table", new Object[] { dbName, tableName, partNames }, iface -> {
+      iface.truncate_table(dbName, tableName, partNames);
+      return null;
+    });
+  }
+
+  @Override
+  public void unlock(UnlockRequest rqst) throws NoSuchLockException, TxnOpenException, TException {
+    dispatch("unlock", new Object[] { rqst }, iface -> {
+      iface.unlock(rqst);
+      return null;
+    });
+  }
+
+  @Override
+  public void update_creation_metadata(String catName, String dbname, String tbl_name,
+      CreationMetadata creation_metadata)
+    throws MetaException, InvalidOperationException, UnknownDBException, TException {
+    dispatch("update_creation_metadata", new Object[] { catName, dbname, tbl_name, creation_metadata }, iface -> {
+      iface.update_creation_metadata(catName, dbname, tbl_name, creation_metadata);
+      return null;
+    });
+  }
+
+  @Override
+  public void update_master_key(int seq_number, String key) throws NoSuchObjectException, MetaException, TException {
+    dispatch("update_master_key", new Object[] { seq_number, key }, iface -> {
+      iface.update_master_key(seq_number, key);
+      return null;
+    });
+  }
+
+  @Override
+  public boolean update_partition_column_statistics(ColumnStatistics stats_obj)
+    throws NoSuchObjectException, InvalidObjectException, MetaException, InvalidInputException, TException {
+    return dispatch("update_partition_column_statistics", new Object[] { stats_obj },
+        iface -> iface.update_partition_column_statistics(stats_obj));
+  }
+
+  @Override
+  public boolean update_table_column_statistics(ColumnStatistics stats_obj)
+    throws NoSuchObjectException, InvalidObjectException, MetaException, InvalidInputException, TException {
+    return dispatch("update_table_column_statistics", new Object[] { stats_obj },
+        iface -> iface.update_table_column_statistics(stats_obj));
+  }
+
+  @Override
+  public WMValidateResourcePlanResponse validate_resource_plan(WMValidateResourcePlanRequest request)
+    throws NoSuchObjectException, MetaException, TException {
+    return dispatch("validate_resource_plan", new Object[] { request }, iface -> iface.validate_resource_plan(request));
+  }
+
+}
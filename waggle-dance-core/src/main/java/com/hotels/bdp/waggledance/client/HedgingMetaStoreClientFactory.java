@@ -0,0 +1,356 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.thrift.TException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import com.google.common.base.Splitter;
+
+import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
+import com.hotels.bdp.waggledance.api.model.Hedging;
+
+/**
+ * Creates clients that hedge the reads of a metastore listing several URIs. A read that is slower than the configured
+ * percentile of the latency of its method is sent again on a connection to a single one of the URIs and the first
+ * successful answer is returned, the other call is left to complete in the background. Only idempotent reads of
+ * tables, partitions, databases, schemas and statistics are hedged and hedges are capped to a share of the hedged reads
+ * so a slow metastore doesn't get twice the load.
+ * <p>
+ * Hedged calls run on a bounded pool of threads shared by all the metastores, reads are made without hedging while
+ * the pool is busy.
+ * <p>
+ * The given clients must be safe to call from several threads, i.e. pooled clients.
+ * <p>
+ * The {@code metastore_hedged_reads}, {@code metastore_hedges}, {@code metastore_hedge_wins} and
+ * {@code metastore_hedge_budget_exhausted} counters are published tagged with the metastore name, the ratio of the
+ * wins to the hedges is how often hedging paid off.
+ */
+public class HedgingMetaStoreClientFactory implements Closeable {
+
+  static final String METASTORE_TAG_NAME = "metastore";
+  static final String HEDGED_READS_METRIC_NAME = "metastore_hedged_reads";
+  static final String HEDGES_METRIC_NAME = "metastore_hedges";
+  static final String HEDGE_WINS_METRIC_NAME = "metastore_hedge_wins";
+  static final String BUDGET_EXHAUSTED_METRIC_NAME = "metastore_hedge_budget_exhausted";
+
+  // Reads with no side effect whose answer doesn't depend on the URI answering
+  private static final String[] HEDGED_METHOD_PREFIXES = {
+      "get_table",
+      "get_partition",
+      "get_database",
+      "get_fields",
+      "get_schema",
+      "get_aggr_stats_for" };
+
+  private static final Splitter URI_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+  // Hedges that can be saved up, so bursts of slow reads can all be hedged
+  private static final long MAX_SAVED_HEDGES = 10L;
+  private static final long HEDGE_COST = 100L;
+
+  static final int DEFAULT_THREADS = 64;
+
+  private static final class Outcome {
+    private final boolean hedge;
+    private final Object result;
+    private final Throwable error;
+
+    private Outcome(boolean hedge, Object result, Throwable error) {
+      this.hedge = hedge;
+      this.result = result;
+      this.error = error;
+    }
+  }
+
+  @Log4j2
+  private static class HedgingMetaStoreClient extends DispatchingMetaStoreClient {
+
+    private final String name;
+    private final Hedging hedging;
+    private final CloseableThriftHiveMetastoreIface primary;
+    private final List<CloseableThriftHiveMetastoreIface> hedgeClients;
+    private final ExecutorService executor;
+    private final Map<String, MethodLatencyTracker> trackersByMethod = new ConcurrentHashMap<>();
+    private final AtomicInteger nextHedgeClient = new AtomicInteger();
+    // In hundredths of a hedge
+    private final AtomicLong budget = new AtomicLong();
+    private final Counter hedgedReads;
+    private final Counter hedges;
+    private final Counter hedgeWins;
+    private final Counter budgetExhausted;
+
+    private HedgingMetaStoreClient(
+        String name,
+        Hedging hedging,
+        CloseableThriftHiveMetastoreIface primary,
+        List<CloseableThriftHiveMetastoreIface> hedgeClients,
+        ExecutorService executor,
+        MeterRegistry meterRegistry) {
+      this.name = name;
+      this.hedging = hedging;
+      this.primary = primary;
+      this.hedgeClients = hedgeClients;
+      this.executor = executor;
+      hedgedReads = counter(HEDGED_READS_METRIC_NAME, name, meterRegistry);
+      hedges = counter(HEDGES_METRIC_NAME, name, meterRegistry);
+      hedgeWins = counter(HEDGE_WINS_METRIC_NAME, name, meterRegistry);
+      budgetExhausted = counter(BUDGET_EXHAUSTED_METRIC_NAME, name, meterRegistry);
+    }
+
+    @Override
+    protected <T> T dispatch(String methodName, Object[] arguments, Call<T> call) throws TException {
+      if (!isHedged(methodName)) {
+        return forward(primary, methodName, arguments, call);
+      }
+      return hedgedCall(methodName, call);
+    }
+
+    @Override
+    public boolean isOpen() {
+      return primary.isOpen();
+    }
+
+    @Override
+    public void close() {
+      close(primary);
+      hedgeClients.forEach(this::close);
+    }
+
+    private <T> T hedgedCall(String methodName, Call<T> call) throws TException {
+      hedgedReads.increment();
+      deposit();
+      MethodLatencyTracker tracker = trackersByMethod
+          .computeIfAbsent(methodName, m -> new MethodLatencyTracker(hedging.getLatencyPercentile()));
+      long percentileNanos = tracker.getPercentileNanos();
+      if (percentileNanos == MethodLatencyTracker.UNKNOWN) {
+        // Nothing to compare the call with yet
+        long start = System.nanoTime();
+        try {
+          return call.call(primary);
+        } finally {
+          tracker.record(System.nanoTime() - start);
+        }
+      }
+      BlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<>();
+      try {
+        submit(primary, call, false, tracker, outcomes);
+      } catch (RejectedExecutionException e) {
+        return call.call(primary);
+      }
+      long delayNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(hedging.getMinDelayMillis()), percentileNanos);
+      Outcome outcome = poll(outcomes, delayNanos);
+      if (outcome != null) {
+        return result(outcome);
+      }
+      if (!withdraw()) {
+        budgetExhausted.increment();
+        return result(take(outcomes));
+      }
+      try {
+        submit(nextHedgeClient(), call, true, null, outcomes);
+      } catch (RejectedExecutionException e) {
+        return result(take(outcomes));
+      }
+      hedges.increment();
+      Outcome first = take(outcomes);
+      if (first.error == null) {
+        if (first.hedge) {
+          hedgeWins.increment();
+        }
+        return result(first);
+      }
+      Outcome second = take(outcomes);
+      if (second.error == null) {
+        if (second.hedge) {
+          hedgeWins.increment();
+        }
+        return result(second);
+      }
+      // Both failed, the error of the metastore URIs used without hedging is the one to report
+      return result(first.hedge ? second : first);
+    }
+
+    private void submit(
+        CloseableThriftHiveMetastoreIface client,
+        Call<?> call,
+        boolean hedge,
+        MethodLatencyTracker tracker,
+        BlockingQueue<Outcome> outcomes) {
+      Callable<Object> clientCall = ClientSession.propagate(() -> call.call(client));
+      executor.execute(() -> {
+        long start = System.nanoTime();
+        Outcome outcome;
+        try {
+          outcome = new Outcome(hedge, clientCall.call(), null);
+        } catch (Throwable t) {
+          outcome = new Outcome(hedge, null, t);
+        }
+        // Only the latency of the primary calls makes the percentile, including the ones a hedge won
+        if (tracker != null) {
+          tracker.record(System.nanoTime() - start);
+        }
+        outcomes.add(outcome);
+      });
+    }
+
+    private CloseableThriftHiveMetastoreIface nextHedgeClient() {
+      return hedgeClients.get(Math.floorMod(nextHedgeClient.getAndIncrement(), hedgeClients.size()));
+    }
+
+    private void deposit() {
+      long max = MAX_SAVED_HEDGES * HEDGE_COST;
+      budget.getAndUpdate(balance -> Math.min(max, balance + hedging.getBudgetPercent()));
+    }
+
+    private boolean withdraw() {
+      long balance;
+      do {
+        balance = budget.get();
+        if (balance < HEDGE_COST) {
+          return false;
+        }
+      } while (!budget.compareAndSet(balance, balance - HEDGE_COST));
+      return true;
+    }
+
+    private Outcome poll(BlockingQueue<Outcome> outcomes, long timeoutNanos) throws TException {
+      try {
+        return outcomes.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new TException("Interrupted while waiting for metastore call", e);
+      }
+    }
+
+    private Outcome take(BlockingQueue<Outcome> outcomes) throws TException {
+      try {
+        return outcomes.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new TException("Interrupted while waiting for metastore call", e);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T result(Outcome outcome) throws TException {
+      Throwable error = outcome.error;
+      if (error == null) {
+        return (T) outcome.result;
+      }
+      if (error instanceof TException) {
+        throw (TException) error;
+      }
+      if (error instanceof RuntimeException) {
+        throw (RuntimeException) error;
+      }
+      if (error instanceof Error) {
+        throw (Error) error;
+      }
+      throw new TException(error);
+    }
+
+    private void close(CloseableThriftHiveMetastoreIface client) {
+      try {
+        client.close();
+      } catch (IOException | RuntimeException e) {
+        log.warn("Error closing client for metastore {}", name, e);
+      }
+    }
+  }
+
+  private final ExecutorService executor;
+  private final MeterRegistry meterRegistry;
+
+  public HedgingMetaStoreClientFactory(ThreadFactory threadFactory, MeterRegistry meterRegistry) {
+    this(threadFactory, DEFAULT_THREADS, meterRegistry);
+  }
+
+  /**
+   * @param threads the maximum number of calls in flight on the pool, calls over it are rejected
+   */
+  public HedgingMetaStoreClientFactory(ThreadFactory threadFactory, int threads, MeterRegistry meterRegistry) {
+    executor = new ThreadPoolExecutor(0, threads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), threadFactory);
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * @param primary client of all the URIs of the metastore
+   * @param hedgeClientFactory creates a client connected to the given URI only
+   * @return a client hedging the reads of the metastore or the primary client if hedging is disabled or the metastore
+   *         has a single URI
+   */
+  public CloseableThriftHiveMetastoreIface newInstance(
+      AbstractMetaStore metaStore,
+      CloseableThriftHiveMetastoreIface primary,
+      Function<String, CloseableThriftHiveMetastoreIface> hedgeClientFactory) {
+    Hedging hedging = metaStore.getHedging();
+    if (hedging == null || !hedging.isEnabled()) {
+      return primary;
+    }
+    List<String> uris = URI_SPLITTER.splitToList(metaStore.getRemoteMetaStoreUris());
+    if (uris.size() < 2) {
+      return primary;
+    }
+    // The primary client balances its connections over all the URIs, hedges go to each of them in turn
+    List<CloseableThriftHiveMetastoreIface> hedgeClients = new ArrayList<>(uris.size());
+    for (String uri : uris) {
+      hedgeClients.add(hedgeClientFactory.apply(uri));
+    }
+    return new HedgingMetaStoreClient(metaStore.getName(), hedging, primary, hedgeClients, executor, meterRegistry);
+  }
+
+  static boolean isHedged(String methodName) {
+    for (String prefix : HEDGED_METHOD_PREFIXES) {
+      if (methodName.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Counter counter(String metricName, String name, MeterRegistry meterRegistry) {
+    return Counter.builder(metricName).tag(METASTORE_TAG_NAME, name).register(meterRegistry);
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import com.hotels.bdp.waggledance.api.model.CircuitBreaker;
+import com.hotels.bdp.waggledance.api.model.CircuitBreakerState;
+
+/**
+ * Count based circuit breaker of a single metastore. Results are recorded over a sliding window of the last calls, the
+ * breaker opens when the failure or slow call rate of the window reaches its threshold. Once the open wait is over the
+ * breaker is half open, a few calls go through and their rates decide whether it closes or opens again.
+ * <p>
+ * Calls acquire the breaker before reaching the metastore and record their result with the generation they acquired,
+ * so results of calls started before a state change are ignored.
+ */
+@Log4j2
+final class MetaStoreCircuitBreaker {
+
+  static final long REJECTED = -1L;
+
+  private final String name;
+  private final CircuitBreaker settings;
+  private final long slowCallDurationNanos;
+  private final long waitDurationInOpenStateNanos;
+  private final LongSupplier nanoTime;
+  private final MeterRegistry meterRegistry;
+  private volatile CircuitBreakerState state = CircuitBreakerState.CLOSED;
+  // Guarded by this
+  private final boolean[] windowFailures;
+  private final boolean[] windowSlowCalls;
+  private int windowIndex = 0;
+  private int windowCalls = 0;
+  private int windowFailureCount = 0;
+  private int windowSlowCallCount = 0;
+  private long generation = 0;
+  private long openedAt;
+  private int halfOpenPermits;
+  private int halfOpenCalls;
+  private int halfOpenFailures;
+  private int halfOpenSlowCalls;
+
+  MetaStoreCircuitBreaker(String name, CircuitBreaker settings, MeterRegistry meterRegistry) {
+    this(name, settings, meterRegistry, System::nanoTime);
+  }
+
+  MetaStoreCircuitBreaker(String name, CircuitBreaker settings, MeterRegistry meterRegistry, LongSupplier nanoTime) {
+    this.name = name;
+    this.settings = settings;
+    this.meterRegistry = meterRegistry;
+    this.nanoTime = nanoTime;
+    slowCallDurationNanos = TimeUnit.MILLISECONDS.toNanos(settings.getSlowCallDurationMillis());
+    waitDurationInOpenStateNanos = TimeUnit.MILLISECONDS.toNanos(settings.getWaitDurationInOpenStateMillis());
+    windowFailures = new boolean[settings.getSlidingWindowSize()];
+    windowSlowCalls = new boolean[settings.getSlidingWindowSize()];
+  }
+
+  CircuitBreakerState getState() {
+    return state;
+  }
+
+  long nanoTime() {
+    return nanoTime.getAsLong();
+  }
+
+  /**
+   * @return the generation to record the result of the call with, {@link #REJECTED} if the call must not be made
+   */
+  synchronized long acquire() {
+    switch (state) {
+    case CLOSED:
+      return generation;
+    case OPEN:
+      if (nanoTime() - openedAt < waitDurationInOpenStateNanos) {
+        return REJECTED;
+      }
+      transitionTo(CircuitBreakerState.HALF_OPEN);
+      halfOpenPermits = settings.getPermittedCallsInHalfOpenState();
+      halfOpenCalls = 0;
+      halfOpenFailures = 0;
+      halfOpenSlowCalls = 0;
+      // fall through
+    default:
+      if (halfOpenPermits == 0) {
+        return REJECTED;
+      }
+      halfOpenPermits--;
+      return generation;
+    }
+  }
+
+  synchronized void record(long acquiredGeneration, boolean failed, long durationNanos) {
+    if (acquiredGeneration != generation) {
+      return;
+    }
+    boolean slow = durationNanos >= slowCallDurationNanos;
+    if (state == CircuitBreakerState.HALF_OPEN) {
+      halfOpenCalls++;
+      halfOpenFailures += failed ? 1 : 0;
+      halfOpenSlowCalls += slow ? 1 : 0;
+      if (halfOpenCalls == settings.getPermittedCallsInHalfOpenState()) {
+        if (exceedsThresholds(halfOpenCalls, halfOpenFailures, halfOpenSlowCalls)) {
+          open();
+        } else {
+          resetWindow();
+          transitionTo(CircuitBreakerState.CLOSED);
+        }
+      }
+      return;
+    }
+    if (windowCalls == windowFailures.length) {
+      windowFailureCount -= windowFailures[windowIndex] ? 1 : 0;
+      windowSlowCallCount -= windowSlowCalls[windowIndex] ? 1 : 0;
+    } else {
+      windowCalls++;
+    }
+    windowFailures[windowIndex] = failed;
+    windowSlowCalls[windowIndex] = slow;
+    windowFailureCount += failed ? 1 : 0;
+    windowSlowCallCount += slow ? 1 : 0;
+    windowIndex = (windowIndex + 1) % windowFailures.length;
+    if (windowCalls >= settings.getMinimumNumberOfCalls()
+        && exceedsThresholds(windowCalls, windowFailureCount, windowSlowCallCount)) {
+      open();
+    }
+  }
+
+  private boolean exceedsThresholds(int calls, int failures, int slowCalls) {
+    return failures * 100 >= settings.getFailureRateThreshold() * calls
+        || slowCalls * 100 >= settings.getSlowCallRateThreshold() * calls;
+  }
+
+  private void open() {
+    openedAt = nanoTime();
+    resetWindow();
+    transitionTo(CircuitBreakerState.OPEN);
+  }
+
+  private void resetWindow() {
+    windowIndex = 0;
+    windowCalls = 0;
+    windowFailureCount = 0;
+    windowSlowCallCount = 0;
+  }
+
+  private void transitionTo(CircuitBreakerState next) {
+    Counter
+        .builder(CircuitBreakerMetaStoreClientFactory.TRANSITIONS_METRIC_NAME)
+        .tag(CircuitBreakerMetaStoreClientFactory.METASTORE_TAG_NAME, name)
+        .tag("from", state.name())
+        .tag("to", next.name())
+        .register(meterRegistry)
+        .increment();
+    if (next == CircuitBreakerState.OPEN) {
+      log.warn("Circuit breaker of metastore {} is {}", name, next);
+    } else {
+      log.info("Circuit breaker of metastore {} is {}", name, next);
+    }
+    generation++;
+    state = next;
+  }
+
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.PooledObjectState;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
+import org.apache.thrift.TException;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+
+import com.hotels.bdp.waggledance.api.model.ConnectionPool;
+
+/**
+ * Connections to a single metastore, partitioned by the {@code set_ugi} arguments they were opened with, and by the
+ * impersonated user when impersonation is enabled, so a connection is only ever reused by clients acting as the same
+ * user. Impersonating connections authenticate with the delegation token of their user. Connections are validated when borrowed, idle
+ * ones are pinged on every eviction run and closed once they have been idle for too long. Connections to a URI the
+ * {@link MetaStoreUriBalancer} ejected fail validation so they are replaced by connections to the other URIs.
+ */
+@Log4j2
+class MetaStoreClientPool implements Closeable {
+
+  /** Partition of the connections opened without calling {@code set_ugi}, the pool does not allow null keys. */
+  private static final HiveUgiArgs NO_UGI = new HiveUgiArgs(null, null);
+
+  private static final class Partition {
+    private final HiveUgiArgs ugi;
+    // null unless impersonation is enabled
+    private final String impersonatedUser;
+
+    private Partition(HiveUgiArgs ugi, String impersonatedUser) {
+      this.ugi = ugi;
+      this.impersonatedUser = impersonatedUser;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Partition)) {
+        return false;
+      }
+      Partition other = (Partition) o;
+      return ugi.equals(other.ugi) && Objects.equals(impersonatedUser, other.impersonatedUser);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(ugi, impersonatedUser);
+    }
+  }
+
+  private static class ConnectionFactory
+      extends BaseKeyedPooledObjectFactory<Partition, ThriftMetastoreClientManager> {
+
+    private final Supplier<ThriftMetastoreClientManager> connectionSupplier;
+
+    private ConnectionFactory(Supplier<ThriftMetastoreClientManager> connectionSupplier) {
+      this.connectionSupplier = connectionSupplier;
+    }
+
+    @Override
+    public ThriftMetastoreClientManager create(Partition key) {
+      ThriftMetastoreClientManager connection = connectionSupplier.get();
+      // Not necessarily created by a thread of the user, e.g. by the evictor to keep the minimum idle connections
+      connection.open(NO_UGI.equals(key.ugi) ? null : key.ugi, key.impersonatedUser);
+      return connection;
+    }
+
+    @Override
+    public PooledObject<ThriftMetastoreClientManager> wrap(ThriftMetastoreClientManager connection) {
+      return new DefaultPooledObject<>(connection);
+    }
+
+    @Override
+    public boolean validateObject(Partition key, PooledObject<ThriftMetastoreClientManager> pooledConnection) {
+      ThriftMetastoreClientManager connection = pooledConnection.getObject();
+      if (!connection.isOpen()) {
+        return false;
+      }
+      if (connection.isOnEjectedUri()) {
+        // Replaced by a connection to one of the other URIs
+        return false;
+      }
+      if (pooledConnection.getState() == PooledObjectState.EVICTION) {
+        // keepalive, only idle connections get a round trip so borrowing stays cheap
+        try {
+          connection.getClient().getStatus();
+        } catch (TException | RuntimeException e) {
+          log.debug("Idle connection failed keepalive: {}", e.getMessage());
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public void destroyObject(Partition key, PooledObject<ThriftMetastoreClientManager> pooledConnection) {
+      pooledConnection.getObject().close();
+    }
+  }
+
+  private final String name;
+  private final boolean impersonationEnabled;
+  private final GenericKeyedObjectPool<Partition, ThriftMetastoreClientManager> pool;
+  private final MetaStoreClientPoolMetrics metrics;
+  private final Timer borrowTimer;
+
+  MetaStoreClientPool(
+      String name,
+      ConnectionPool connectionPool,
+      Supplier<ThriftMetastoreClientManager> connectionSupplier,
+      MetaStoreClientPoolMetrics metrics) {
+    this(name, connectionPool, connectionSupplier, false, metrics);
+  }
+
+  /**
+   * @param impersonationEnabled whether the connections impersonate the user of the borrowing thread
+   */
+  MetaStoreClientPool(
+      String name,
+      ConnectionPool connectionPool,
+      Supplier<ThriftMetastoreClientManager> connectionSupplier,
+      boolean impersonationEnabled,
+      MetaStoreClientPoolMetrics metrics) {
+    this.name = name;
+    this.impersonationEnabled = impersonationEnabled;
+    this.metrics = metrics;
+    pool = new GenericKeyedObjectPool<>(new ConnectionFactory(connectionSupplier), newConfig(connectionPool));
+    borrowTimer = metrics.register(name, this);
+  }
+
+  private static GenericKeyedObjectPoolConfig<ThriftMetastoreClientManager> newConfig(ConnectionPool connectionPool) {
+    GenericKeyedObjectPoolConfig<ThriftMetastoreClientManager> config = new GenericKeyedObjectPoolConfig<>();
+    config.setMinIdlePerKey(connectionPool.getMinIdle());
+    config.setMaxIdlePerKey(connectionPool.getMaxIdle());
+    config.setMaxTotalPerKey(connectionPool.getMaxTotal());
+    config.setMaxTotal(connectionPool.getMaxTotal());
+    config.setMaxWait(Duration.ofMillis(connectionPool.getMaxWaitMillis()));
+    config.setTestOnBorrow(true);
+    config.setTestWhileIdle(true);
+    config.setTimeBetweenEvictionRuns(Duration.ofMillis(connectionPool.getKeepaliveIntervalMillis()));
+    // soft idle timeout so the minimum idle connections are kept, and kept alive
+    config.setSoftMinEvictableIdleTime(Duration.ofMillis(connectionPool.getIdleTimeoutMillis()));
+    config.setMinEvictableIdleTime(Duration.ofMillis(-1L));
+    config.setNumTestsPerEvictionRun(-1);
+    config.setJmxEnabled(false);
+    return config;
+  }
+
+  ThriftMetastoreClientManager borrow(HiveUgiArgs ugi) throws Exception {
+    long start = System.nanoTime();
+    try {
+      return pool.borrowObject(key(ugi));
+    } finally {
+      borrowTimer.record(System.nanoTime() - start, NANOSECONDS);
+    }
+  }
+
+  void release(HiveUgiArgs ugi, ThriftMetastoreClientManager connection) {
+    pool.returnObject(key(ugi), connection);
+  }
+
+  void invalidate(HiveUgiArgs ugi, ThriftMetastoreClientManager connection) {
+    try {
+      pool.invalidateObject(key(ugi), connection);
+    } catch (Exception e) {
+      log.warn("Error invalidating connection to metastore {}", name, e);
+    }
+  }
+
+  int getNumActive() {
+    return pool.getNumActive();
+  }
+
+  int getNumIdle() {
+    return pool.getNumIdle();
+  }
+
+  int getNumWaiters() {
+    return pool.getNumWaiters();
+  }
+
+  @Override
+  public void close() {
+    metrics.unregister(name, this);
+    pool.close();
+  }
+
+  private Partition key(HiveUgiArgs ugi) {
+    return new Partition(ugi == null ? NO_UGI : ugi,
+        impersonationEnabled ? ThriftMetastoreClientManager.currentUser() : null);
+  }
+
+}
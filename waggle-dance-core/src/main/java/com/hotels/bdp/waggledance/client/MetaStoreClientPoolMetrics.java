@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Publishes the connection pool gauges of each metastore. More than one pool can be open for the same metastore while
+ * its mapping is being replaced (or its status checked), the gauges report the sum over all of them.
+ */
+class MetaStoreClientPoolMetrics {
+
+  static final String METASTORE_TAG_NAME = "metastore";
+  static final String ACTIVE_METRIC_NAME = "metastore_pool_active";
+  static final String IDLE_METRIC_NAME = "metastore_pool_idle";
+  static final String WAITERS_METRIC_NAME = "metastore_pool_waiters";
+  static final String BORROW_METRIC_NAME = "metastore_pool_borrow";
+
+  private final MeterRegistry meterRegistry;
+  private final Map<String, Set<MetaStoreClientPool>> pools = new ConcurrentHashMap<>();
+
+  MetaStoreClientPoolMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  Timer register(String name, MetaStoreClientPool pool) {
+    pools.computeIfAbsent(name, this::newGauges).add(pool);
+    return Timer.builder(BORROW_METRIC_NAME).tag(METASTORE_TAG_NAME, name).register(meterRegistry);
+  }
+
+  void unregister(String name, MetaStoreClientPool pool) {
+    Set<MetaStoreClientPool> namedPools = pools.get(name);
+    if (namedPools != null) {
+      namedPools.remove(pool);
+    }
+  }
+
+  private Set<MetaStoreClientPool> newGauges(String name) {
+    Set<MetaStoreClientPool> namedPools = ConcurrentHashMap.newKeySet();
+    gauge(ACTIVE_METRIC_NAME, name, namedPools, MetaStoreClientPool::getNumActive);
+    gauge(IDLE_METRIC_NAME, name, namedPools, MetaStoreClientPool::getNumIdle);
+    gauge(WAITERS_METRIC_NAME, name, namedPools, MetaStoreClientPool::getNumWaiters);
+    return namedPools;
+  }
+
+  private void gauge(
+      String metricName,
+      String name,
+      Set<MetaStoreClientPool> namedPools,
+      ToIntFunction<MetaStoreClientPool> value) {
+    Gauge
+        .builder(metricName, namedPools, p -> p.stream().mapToInt(value).sum())
+        .tag(METASTORE_TAG_NAME, name)
+        .strongReference(true)
+        .register(meterRegistry);
+  }
+
+}
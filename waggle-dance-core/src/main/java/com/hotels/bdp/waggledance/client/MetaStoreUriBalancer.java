@@ -0,0 +1,239 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Spreads the connections to a metastore over its URIs. Each URI is scored by the moving average of the latency of
+ * its calls times its calls in flight, new connections try the URIs with the lowest score first. URIs that keep
+ * failing or whose latency is far above the others are ejected for a while and only tried after the others, at most
+ * half of the URIs are ejected at any time. Ejected URIs come back as if they had never been called. The long running
+ * partition listings, whose latency depends on the table rather than on the URI, are left out of the averages.
+ * <p>
+ * Shared by all the connections to the same URIs, the state of each URI is read and recorded without locking, only
+ * ejecting and readmitting a URI take the lock of the balancer.
+ */
+@Log4j2
+final class MetaStoreUriBalancer {
+
+  // Weight of the latest call in the moving average
+  static final double ALPHA = 0.3;
+  static final int EJECTION_FAILURES = 3;
+  // A URI whose average latency is this many times the lowest one is an outlier
+  static final double OUTLIER_RATIO = 5.0;
+  static final int OUTLIER_MIN_CALLS = 20;
+  static final long EJECTION_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+  static final class Instance {
+    private final URI uri;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Bits of the moving average, updated with compare and set
+    private final AtomicLong latencyNanosBits = new AtomicLong(Double.doubleToRawLongBits(0));
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    // Only changed under the lock of the balancer
+    private volatile long ejectedUntilNanos = 0;
+
+    private Instance(URI uri) {
+      this.uri = uri;
+    }
+
+    URI getUri() {
+      return uri;
+    }
+
+    int getInFlight() {
+      return inFlight.get();
+    }
+
+    double getLatencyNanos() {
+      return Double.longBitsToDouble(latencyNanosBits.get());
+    }
+
+    private double score() {
+      // Unknown latencies score lowest so every URI gets tried
+      return (getLatencyNanos() + 1) * (inFlight.get() + 1);
+    }
+
+    private void recordLatency(long latencyNanos) {
+      boolean first = calls.getAndIncrement() == 0;
+      long previousBits;
+      double average;
+      do {
+        previousBits = latencyNanosBits.get();
+        average = first ? latencyNanos : ALPHA * latencyNanos + (1 - ALPHA) * Double.longBitsToDouble(previousBits);
+      } while (!latencyNanosBits.compareAndSet(previousBits, Double.doubleToRawLongBits(average)));
+    }
+
+    private void reset() {
+      consecutiveFailures.set(0);
+      calls.set(0);
+      latencyNanosBits.set(Double.doubleToRawLongBits(0));
+    }
+  }
+
+  private final Instance[] instances;
+  private final LongSupplier nanoClock;
+  // Rotates the URIs with the same score, e.g. before any call
+  private final AtomicInteger next = new AtomicInteger();
+  // Ejections and readmissions, a lock rather than a monitor so waiting virtual threads don't pin their carrier
+  private final Lock lock = new ReentrantLock();
+
+  MetaStoreUriBalancer(URI[] uris) {
+    this(uris, System::nanoTime);
+  }
+
+  MetaStoreUriBalancer(URI[] uris, LongSupplier nanoClock) {
+    instances = new Instance[uris.length];
+    for (int i = 0; i < uris.length; i++) {
+      instances[i] = new Instance(uris[i]);
+    }
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * @return the instances in the order new connections should try them, least loaded healthy instance first
+   */
+  List<Instance> order() {
+    if (instances.length == 1) {
+      return Arrays.asList(instances);
+    }
+    long now = nanoClock.getAsLong();
+    readmit(now);
+    int offset = Math.floorMod(next.getAndIncrement(), instances.length);
+    List<Instance> order = new ArrayList<>(instances.length);
+    for (int i = 0; i < instances.length; i++) {
+      order.add(instances[(offset + i) % instances.length]);
+    }
+    // Stable, the rotation breaks the ties
+    order
+        .sort(Comparator
+            .<Instance> comparingInt(instance -> isEjected(instance, now) ? 1 : 0)
+            .thenComparingInt(instance -> instance.consecutiveFailures.get() > 0 ? 1 : 0)
+            .thenComparingDouble(Instance::score));
+    return order;
+  }
+
+  void callStarted(Instance instance) {
+    instance.inFlight.incrementAndGet();
+  }
+
+  /**
+   * @param methodName the metastore method called, the latency of the long running ones isn't recorded
+   * @param failed whether the call failed to reach the metastore, e.g. a transport error
+   */
+  void callEnded(Instance instance, String methodName, long latencyNanos, boolean failed) {
+    instance.inFlight.decrementAndGet();
+    if (failed) {
+      failed(instance);
+      return;
+    }
+    instance.consecutiveFailures.set(0);
+    if (BulkheadMetaStoreClientFactory.isLongRunning(methodName)) {
+      return;
+    }
+    instance.recordLatency(latencyNanos);
+    if (instance.calls.get() >= OUTLIER_MIN_CALLS && isOutlier(instance)) {
+      eject(instance, "its latency is " + TimeUnit.NANOSECONDS.toMillis((long) instance.getLatencyNanos()) + "ms");
+    }
+  }
+
+  /**
+   * Records a connection to the instance that failed.
+   */
+  void failed(Instance instance) {
+    int consecutiveFailures = instance.consecutiveFailures.incrementAndGet();
+    if (consecutiveFailures >= EJECTION_FAILURES) {
+      eject(instance, consecutiveFailures + " calls in a row failed");
+    }
+  }
+
+  private boolean isOutlier(Instance instance) {
+    long now = nanoClock.getAsLong();
+    double lowest = Double.MAX_VALUE;
+    for (Instance other : instances) {
+      if (other != instance && other.calls.get() >= OUTLIER_MIN_CALLS && !isEjected(other, now)) {
+        lowest = Math.min(lowest, other.getLatencyNanos());
+      }
+    }
+    return lowest != Double.MAX_VALUE && instance.getLatencyNanos() > OUTLIER_RATIO * lowest;
+  }
+
+  private void eject(Instance instance, String reason) {
+    lock.lock();
+    try {
+      long now = nanoClock.getAsLong();
+      if (isEjected(instance, now)) {
+        return;
+      }
+      int ejected = 0;
+      for (Instance other : instances) {
+        if (isEjected(other, now)) {
+          ejected++;
+        }
+      }
+      if ((ejected + 1) * 2 > instances.length) {
+        return;
+      }
+      log
+          .warn("Ejecting metastore URI {} for {}s, {}", instance.uri, TimeUnit.NANOSECONDS.toSeconds(EJECTION_NANOS),
+              reason);
+      instance.ejectedUntilNanos = now + EJECTION_NANOS;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void readmit(long now) {
+    for (Instance instance : instances) {
+      if (instance.ejectedUntilNanos != 0 && !isEjected(instance, now)) {
+        lock.lock();
+        try {
+          if (instance.ejectedUntilNanos != 0 && !isEjected(instance, now)) {
+            log.info("Readmitting metastore URI {}", instance.uri);
+            instance.ejectedUntilNanos = 0;
+            instance.reset();
+          }
+        } finally {
+          lock.unlock();
+        }
+      }
+    }
+  }
+
+  private boolean isEjected(Instance instance, long now) {
+    long ejectedUntil = instance.ejectedUntilNanos;
+    return ejectedUntil != 0 && ejectedUntil - now > 0;
+  }
+
+  boolean isEjected(Instance instance) {
+    return isEjected(instance, nanoClock.getAsLong());
+  }
+
+}
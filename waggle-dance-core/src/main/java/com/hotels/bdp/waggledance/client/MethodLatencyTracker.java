@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import java.util.Arrays;
+
+/**
+ * Percentile of the latency of the last calls of a method. The percentile is only computed every few calls and read
+ * without locking, it is unknown until enough calls were recorded.
+ */
+final class MethodLatencyTracker {
+
+  static final int WINDOW_SIZE = 256;
+  static final int MIN_SAMPLES = 20;
+  static final long UNKNOWN = -1L;
+  private static final int RECOMPUTE_EVERY = 32;
+
+  private final int percentile;
+  // Guarded by this
+  private final long[] samples = new long[WINDOW_SIZE];
+  private int index = 0;
+  private int count = 0;
+  private int sinceRecompute = 0;
+  private volatile long percentileNanos = UNKNOWN;
+
+  MethodLatencyTracker(int percentile) {
+    this.percentile = percentile;
+  }
+
+  synchronized void record(long latencyNanos) {
+    samples[index] = latencyNanos;
+    index = (index + 1) % WINDOW_SIZE;
+    count = Math.min(count + 1, WINDOW_SIZE);
+    sinceRecompute++;
+    if (count >= MIN_SAMPLES && (percentileNanos == UNKNOWN || sinceRecompute >= RECOMPUTE_EVERY)) {
+      long[] sorted = Arrays.copyOf(samples, count);
+      Arrays.sort(sorted);
+      percentileNanos = sorted[Math.min(count - 1, count * percentile / 100)];
+      sinceRecompute = 0;
+    }
+  }
+
+  /**
+   * @return the percentile of the recorded latencies, {@link #UNKNOWN} until {@link #MIN_SAMPLES} calls are recorded
+   */
+  long getPercentileNanos() {
+    return percentileNanos;
+  }
+
+}
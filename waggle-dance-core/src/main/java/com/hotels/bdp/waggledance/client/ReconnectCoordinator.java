@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Keeps the connections to a metastore from all reconnecting at once when it goes away, e.g. while it restarts. Once
+ * a connection attempt fails the metastore is down: a single caller at a time probes it again, after a backoff that
+ * grows with decorrelated jitter, and the other callers wait for the outcome of the probe instead of trying to connect
+ * themselves. Only the failures of the probe, or the first failure after the metastore was up, grow the backoff: the
+ * connections that were already trying when it went down just find it down. Retries of failed calls are capped by a
+ * token bucket that successful calls refill.
+ * <p>
+ * Shared by all the connections to the same URIs.
+ */
+@Log4j2
+final class ReconnectCoordinator {
+
+  static final long MIN_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  static final long MAX_DELAY_NANOS = TimeUnit.SECONDS.toNanos(30);
+  // In thousandths of a retry
+  static final long RETRY_COST = 1000;
+  // A tenth of a retry is earned by each successful call
+  static final long RETRY_DEPOSIT = 100;
+  static final long MAX_RETRY_TOKENS = 10 * RETRY_COST;
+  // Retries earned every second even without successful calls, e.g. after a quiet period
+  static final long RETRY_TOKENS_PER_SECOND = RETRY_COST;
+
+  private final LongSupplier nanoClock;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+  // Guarded by lock
+  private boolean down = false;
+  // The caller probing the metastore, null when none is
+  private Thread probe = null;
+  private long delayNanos = 0;
+  private long nextProbeNanos = 0;
+  private long lastRefillNanos;
+  // Refilled by every successful call, without locking
+  private final AtomicLong retryTokens = new AtomicLong(MAX_RETRY_TOKENS);
+
+  ReconnectCoordinator() {
+    this(System::nanoTime);
+  }
+
+  ReconnectCoordinator(LongSupplier nanoClock) {
+    this.nanoClock = nanoClock;
+    lastRefillNanos = nanoClock.getAsLong();
+  }
+
+  /**
+   * Waits for the turn of the caller to connect. Returns right away while the metastore is up, otherwise waits until
+   * the backoff elapsed and no other caller is probing the metastore. A caller given the turn while the metastore is
+   * down is its probe and must report the outcome with {@link #connected()} or {@link #connectFailed(long)}, from the
+   * same thread.
+   *
+   * @return {@code false} if the metastore is still down at the deadline
+   */
+  boolean awaitTurn(long deadlineNanos) throws InterruptedException {
+    lock.lock();
+    try {
+      while (down) {
+        long now = nanoClock.getAsLong();
+        if (probe == null && now - nextProbeNanos >= 0) {
+          probe = Thread.currentThread();
+          return true;
+        }
+        long waitNanos = deadlineNanos - now;
+        if (waitNanos <= 0) {
+          return false;
+        }
+        if (probe == null) {
+          waitNanos = Math.min(waitNanos, nextProbeNanos - now);
+        }
+        changed.awaitNanos(waitNanos);
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void connected() {
+    lock.lock();
+    try {
+      if (down) {
+        log.info("Metastore is back, waking up the connections waiting for it");
+      }
+      down = false;
+      probe = null;
+      delayNanos = 0;
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param baseDelayNanos shortest backoff before the next probe, the configured delay between connection attempts
+   */
+  void connectFailed(long baseDelayNanos) {
+    lock.lock();
+    try {
+      if (down && probe != Thread.currentThread()) {
+        // Started before the metastore went down, the probe or the backoff already account for it
+        return;
+      }
+      long base = Math.max(MIN_DELAY_NANOS, baseDelayNanos);
+      // Decorrelated jitter: random between the base and three times the last delay, capped
+      long upper = Math.max(base + 1, delayNanos * 3);
+      delayNanos = Math.min(MAX_DELAY_NANOS, ThreadLocalRandom.current().nextLong(base, upper));
+      nextProbeNanos = nanoClock.getAsLong() + delayNanos;
+      down = true;
+      probe = null;
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Takes a token from the retry budget.
+   *
+   * @return whether a failed call can be retried
+   */
+  boolean tryRetry() {
+    lock.lock();
+    try {
+      long now = nanoClock.getAsLong();
+      long earned = (now - lastRefillNanos) * RETRY_TOKENS_PER_SECOND / TimeUnit.SECONDS.toNanos(1);
+      if (earned > 0) {
+        deposit(earned);
+        lastRefillNanos = now;
+      }
+    } finally {
+      lock.unlock();
+    }
+    long tokens;
+    do {
+      tokens = retryTokens.get();
+      if (tokens < RETRY_COST) {
+        return false;
+      }
+    } while (!retryTokens.compareAndSet(tokens, tokens - RETRY_COST));
+    return true;
+  }
+
+  void succeeded() {
+    // Most calls find the budget full, a read keeps them from contending
+    if (retryTokens.get() < MAX_RETRY_TOKENS) {
+      deposit(RETRY_DEPOSIT);
+    }
+  }
+
+  private void deposit(long tokens) {
+    retryTokens.getAndUpdate(current -> Math.min(MAX_RETRY_TOKENS, current + tokens));
+  }
+
+  boolean isDown() {
+    lock.lock();
+    try {
+      return down;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+}
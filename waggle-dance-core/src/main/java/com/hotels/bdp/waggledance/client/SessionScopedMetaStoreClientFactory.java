@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.apache.thrift.TException;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Creates clients that can be shared by all the Waggle Dance client connections. Each {@link ClientSession} gets its
+ * own backend client, created lazily on first use and closed with the session. Calls made outside of any session (i.e.
+ * while building the mappings) share a single backend client and are serialised.
+ */
+public class SessionScopedMetaStoreClientFactory {
+
+  @Log4j2
+  private static class SessionScopedMetaStoreClient extends DispatchingMetaStoreClient {
+
+    private final String name;
+    private final Supplier<CloseableThriftHiveMetastoreIface> clientFactory;
+    private final Map<ClientSession, CloseableThriftHiveMetastoreIface> sessionClients = new ConcurrentHashMap<>();
+    // Calls on the detached client block on the metastore, a lock rather than a monitor so waiting virtual threads
+    // don't pin their carrier
+    private final Lock detachedClientLock = new ReentrantLock();
+    private CloseableThriftHiveMetastoreIface detachedClient;
+
+    private SessionScopedMetaStoreClient(String name, Supplier<CloseableThriftHiveMetastoreIface> clientFactory) {
+      this.name = name;
+      this.clientFactory = clientFactory;
+    }
+
+    @Override
+    protected <T> T dispatch(String methodName, Object[] arguments, Call<T> call) throws TException {
+      ClientSession session = ClientSession.current();
+      if (session == null) {
+        detachedClientLock.lock();
+        try {
+          return forward(detachedClient(), methodName, arguments, call);
+        } finally {
+          detachedClientLock.unlock();
+        }
+      }
+      return forward(sessionClients.computeIfAbsent(session, this::newSessionClient), methodName, arguments, call);
+    }
+
+    @Override
+    public boolean isOpen() {
+      ClientSession session = ClientSession.current();
+      if (session == null) {
+        detachedClientLock.lock();
+        try {
+          return detachedClient().isOpen();
+        } finally {
+          detachedClientLock.unlock();
+        }
+      }
+      return sessionClients.computeIfAbsent(session, this::newSessionClient).isOpen();
+    }
+
+    // Called holding the detached client lock
+    private CloseableThriftHiveMetastoreIface detachedClient() {
+      if (detachedClient == null) {
+        detachedClient = clientFactory.get();
+      }
+      return detachedClient;
+    }
+
+    private CloseableThriftHiveMetastoreIface newSessionClient(ClientSession session) {
+      session.onClose(() -> release(session));
+      return clientFactory.get();
+    }
+
+    private void release(ClientSession session) {
+      CloseableThriftHiveMetastoreIface client = sessionClients.remove(session);
+      if (client != null) {
+        close(client);
+      }
+    }
+
+    @Override
+    public void close() {
+      for (ClientSession session : sessionClients.keySet()) {
+        release(session);
+      }
+      detachedClientLock.lock();
+      try {
+        if (detachedClient != null) {
+          close(detachedClient);
+          detachedClient = null;
+        }
+      } finally {
+        detachedClientLock.unlock();
+      }
+    }
+
+    private void close(CloseableThriftHiveMetastoreIface client) {
+      try {
+        client.close();
+      } catch (IOException | RuntimeException e) {
+        log.warn("Error closing client for metastore {}", name, e);
+      }
+    }
+  }
+
+  public CloseableThriftHiveMetastoreIface newInstance(
+      String name,
+      Supplier<CloseableThriftHiveMetastoreIface> clientFactory) {
+    return new SessionScopedMetaStoreClient(name, clientFactory);
+  }
+
+}
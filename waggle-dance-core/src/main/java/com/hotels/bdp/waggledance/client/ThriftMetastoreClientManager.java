@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2024 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,18 +15,13 @@
  */
 package com.hotels.bdp.waggledance.client;
 
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
-
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.URI;
 import java.security.PrivilegedExceptionAction;
-import java.time.Duration;
-import java.util.Objects;
-import java.util.Random;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import javax.security.sasl.SaslException;
 
@@ -35,7 +30,6 @@ import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
 import org.apache.hadoop.hive.conf.HiveConfUtil;
 import org.apache.hadoop.hive.metastore.api.MetaException;
 import org.apache.hadoop.hive.metastore.api.ThriftHiveMetastore;
-import org.apache.hadoop.hive.metastore.api.ThriftHiveMetastore.Iface;
 import org.apache.hadoop.hive.metastore.utils.MetaStoreUtils;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.util.StringUtils;
@@ -50,10 +44,6 @@ import org.apache.thrift.transport.TTransport;
 
 import lombok.extern.log4j.Log4j2;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-
 import com.hotels.bdp.waggledance.client.compatibility.HiveCompatibleThriftHiveMetastoreIfaceFactory;
 import com.hotels.bdp.waggledance.context.CommonBeans;
 
@@ -64,7 +54,9 @@ class ThriftMetastoreClientManager implements Closeable {
   private static final AtomicInteger CONN_COUNT = new AtomicInteger(0);
   private final HiveConf conf;
   private final HiveCompatibleThriftHiveMetastoreIfaceFactory hiveCompatibleThriftHiveMetastoreIfaceFactory;
-  private final URI[] metastoreUris;
+  private final MetaStoreUriBalancer balancer;
+  private final ReconnectCoordinator reconnects;
+  private MetaStoreUriBalancer.Instance connectedInstance = null;
   private ThriftHiveMetastore.Iface client = null;
   private TTransport transport = null;
   private boolean isConnected = false;
@@ -75,20 +67,33 @@ class ThriftMetastoreClientManager implements Closeable {
   private final int connectionTimeout;
   private final String msUri;
   private final boolean impersonationEnabled;
-  private static final Duration delegationTokenCacheTtl = Duration.ofHours(1); // The default lifetime in Hive is 7 days (metastore.cluster.delegation.token.max-lifetime)
-  private static final long delegationTokenCacheMaximumSize = 1000;
-  private static final LoadingCache<DelegationTokenKey, String> delegationTokenCache = CacheBuilder.newBuilder()
-      .expireAfterWrite(delegationTokenCacheTtl.toMillis(), MILLISECONDS)
-      .maximumSize(delegationTokenCacheMaximumSize)
-      .build(CacheLoader.from(ThriftMetastoreClientManager::loadDelegationToken));
+  private final DelegationTokenService delegationTokens;
 
   ThriftMetastoreClientManager(
       HiveConf conf,
       HiveCompatibleThriftHiveMetastoreIfaceFactory hiveCompatibleThriftHiveMetastoreIfaceFactory,
       int connectionTimeout) {
+    this(conf, hiveCompatibleThriftHiveMetastoreIfaceFactory, connectionTimeout, MetaStoreUriBalancer::new,
+        uris -> new ReconnectCoordinator(), new DelegationTokenService());
+  }
+
+  /**
+   * @param conf the configuration of the metastore, shared by its connections and never modified
+   * @param balancers gets the balancer of the URIs, shared by the connections to the same URIs
+   * @param reconnectCoordinators gets the reconnect coordinator of the URIs, shared by the connections to the same URIs
+   * @param delegationTokens gets the delegation tokens of the impersonated users
+   */
+  ThriftMetastoreClientManager(
+      HiveConf conf,
+      HiveCompatibleThriftHiveMetastoreIfaceFactory hiveCompatibleThriftHiveMetastoreIfaceFactory,
+      int connectionTimeout,
+      Function<URI[], MetaStoreUriBalancer> balancers,
+      Function<URI[], ReconnectCoordinator> reconnectCoordinators,
+      DelegationTokenService delegationTokens) {
     this.conf = conf;
     this.hiveCompatibleThriftHiveMetastoreIfaceFactory = hiveCompatibleThriftHiveMetastoreIfaceFactory;
     this.connectionTimeout = connectionTimeout;
+    this.delegationTokens = delegationTokens;
     msUri = conf.getVar(ConfVars.METASTOREURIS);
     impersonationEnabled = conf.getBoolean(CommonBeans.IMPERSONATION_ENABLED_KEY,false);
 
@@ -103,7 +108,7 @@ class ThriftMetastoreClientManager implements Closeable {
     // user wants file store based configuration
     if (msUri != null) {
       String[] metastoreUrisString = msUri.split(",");
-      metastoreUris = new URI[metastoreUrisString.length];
+      URI[] metastoreUris = new URI[metastoreUrisString.length];
       try {
         int i = 0;
         for (String s : metastoreUrisString) {
@@ -120,72 +125,61 @@ class ThriftMetastoreClientManager implements Closeable {
         log.error(exInfo, e);
         throw new RuntimeException(exInfo, e);
       }
+      balancer = balancers.apply(metastoreUris);
+      reconnects = reconnectCoordinators.apply(metastoreUris);
     } else {
       log.error("NOT getting uris from conf");
       throw new RuntimeException("MetaStoreURIs not found in conf file");
     }
   }
 
-  private static String loadDelegationToken(DelegationTokenKey key) {
-    try {
-      return key.client.get_delegation_token(key.username, key.username);
-    } catch (TException e) {
-      throw new RuntimeException(e);
-    }
-  }
-
-  private static class DelegationTokenKey{
-    String msUri;
-    String username;
-    ThriftHiveMetastore.Iface client;
-
-    public DelegationTokenKey(String msUri, String username, Iface client) {
-      this.msUri = msUri;
-      this.username = username;
-      this.client = client;
-    }
-
-    @Override
-    public boolean equals(Object o) {
-      if (this == o) {
-        return true;
-      }
-      if (o == null || getClass() != o.getClass()) {
-        return false;
-      }
-      DelegationTokenKey that = (DelegationTokenKey) o;
-      return Objects.equals(msUri, that.msUri) && Objects.equals(username,
-          that.username);
-    }
-
-    @Override
-    public int hashCode() {
-      return Objects.hash(msUri, username);
-    }
-  }
-
   void open() {
     open(null);
   }
 
   void open(HiveUgiArgs ugiArgs) {
+    open(ugiArgs, impersonationEnabled ? currentUser() : null);
+  }
+
+  /**
+   * @param impersonatedUser the user the connection authenticates as with a delegation token, ignored unless
+   *          impersonation is enabled
+   */
+  void open(HiveUgiArgs ugiArgs, String impersonatedUser) {
     if (isConnected) {
       return;
     }
-    createMetastoreClientAndOpen(null, ugiArgs);
+    String delegationToken = null;
     if (impersonationEnabled) {
-      try {
-        String userName = UserGroupInformation.getCurrentUser().getShortUserName();
-        DelegationTokenKey key = new DelegationTokenKey(msUri, userName, client);
-        String delegationToken = delegationTokenCache.get(key);
-        close();
-        createMetastoreClientAndOpen(delegationToken, ugiArgs);
-      } catch (IOException | ExecutionException e) {
-        throw new RuntimeException(e);
-      }
+      delegationToken = delegationTokens.getToken(msUri, impersonatedUser, this::newDelegationTokenConnection);
+    }
+    createMetastoreClientAndOpen(delegationToken, ugiArgs);
+  }
+
+  /**
+   * @return the short name of the user of the {@link ClientSession} of the calling thread, or of the thread itself if it
+   *         doesn't serve a client connection
+   */
+  static String currentUser() {
+    ClientSession session = ClientSession.current();
+    if (session != null && session.getUser() != null) {
+      return session.getUser();
+    }
+    try {
+      return UserGroupInformation.getCurrentUser().getShortUserName();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
     }
   }
 
+  private ThriftMetastoreClientManager newDelegationTokenConnection() {
+    // Authenticates with Kerberos as Waggle Dance, the tokens are fetched on behalf of the users
+    HiveConf delegationTokenConf = new HiveConf(conf);
+    delegationTokenConf.setBoolean(CommonBeans.IMPERSONATION_ENABLED_KEY, false);
+    return new ThriftMetastoreClientManager(delegationTokenConf, hiveCompatibleThriftHiveMetastoreIfaceFactory,
+        connectionTimeout, uris -> balancer, uris -> reconnects, delegationTokens);
+  }
+
   void createMetastoreClientAndOpen(String delegationToken, HiveUgiArgs ugiArgs) {
     TException te = null;
     boolean useSasl = conf.getBoolVar(ConfVars.METASTORE_USE_THRIFT_SASL);
@@ -194,99 +188,124 @@ class ThriftMetastoreClientManager implements Closeable {
     boolean useCompactProtocol = conf.getBoolVar(ConfVars.METASTORE_USE_THRIFT_COMPACT_PROTOCOL);
     int clientSocketTimeout = (int) conf.getTimeVar(ConfVars.METASTORE_CLIENT_SOCKET_TIMEOUT, TimeUnit.MILLISECONDS);
 
+    long deadline = System.nanoTime()
+        + retries * (TimeUnit.SECONDS.toNanos(retryDelaySeconds) + TimeUnit.MILLISECONDS.toNanos(connectionTimeout));
+    boolean gaveUp = false;
     for (int attempt = 0; !isConnected && (attempt < retries); ++attempt) {
-      for (URI store : metastoreUris) {
-        log.info("Trying to connect to metastore with URI {}", store);
-        try {
-          transport = new TSocket(store.getHost(), store.getPort(), clientSocketTimeout, connectionTimeout);
-          if (useSasl) {
-            // Wrap thrift connection with SASL for secure connection.
-            try {
-              UserGroupInformation.setConfiguration(conf);
-
-              // check if we should use delegation tokens to authenticate
-              // the call below gets hold of the tokens if they are set up by hadoop
-              // this should happen on the map/reduce tasks if the client added the
-              // tokens into hadoop's credential store in the front end during job
-              // submission.
-//              String tokenSig = conf.getVar(ConfVars.METASTORE_TOKEN_SIGNATURE);
-              // tokenSig could be null
-              if (impersonationEnabled && delegationToken != null) {
-                // authenticate using delegation tokens via the "DIGEST" mechanism
-                transport = KerberosSaslHelper
-                    .getTokenTransport(delegationToken,
-                        store.getHost(), transport,
-                        MetaStoreUtils.getMetaStoreSaslProperties(conf, useSsl));
-              } else {
-                String principalConfig = conf.getVar(ConfVars.METASTORE_KERBEROS_PRINCIPAL);
-                transport = UserGroupInformation.getLoginUser().doAs(
-                    (PrivilegedExceptionAction<TTransport>) () -> {
-                      try {
-                        return KerberosSaslHelper
-                            .getKerberosTransport(principalConfig, store.getHost(), transport,
-                                MetaStoreUtils.getMetaStoreSaslProperties(conf, useSsl), false);
-                      } catch (SaslException e) {
-                        throw new RuntimeException(e);
-                      }
-                    });
+      // Instead of every connection trying, the ones to a metastore that is down wait for a single one to probe it
+      try {
+        if (!reconnects.awaitTurn(deadline)) {
+          gaveUp = true;
+          break;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        gaveUp = true;
+        break;
+      }
+      try {
+        for (MetaStoreUriBalancer.Instance instance : balancer.order()) {
+          URI store = instance.getUri();
+          log.info("Trying to connect to metastore with URI {}", store);
+          try {
+            transport = new TSocket(store.getHost(), store.getPort(), clientSocketTimeout, connectionTimeout);
+            if (useSasl) {
+              // Wrap thrift connection with SASL for secure connection.
+              try {
+                UserGroupInformation.setConfiguration(conf);
+
+                // check if we should use delegation tokens to authenticate
+                // the call below gets hold of the tokens if they are set up by hadoop
+                // this should happen on the map/reduce tasks if the client added the
+                // tokens into hadoop's credential store in the front end during job
+                // submission.
+  //              String tokenSig = conf.getVar(ConfVars.METASTORE_TOKEN_SIGNATURE);
+                // tokenSig could be null
+                if (impersonationEnabled && delegationToken != null) {
+                  // authenticate using delegation tokens via the "DIGEST" mechanism
+                  transport = KerberosSaslHelper
+                      .getTokenTransport(delegationToken,
+                          store.getHost(), transport,
+                          MetaStoreUtils.getMetaStoreSaslProperties(conf, useSsl));
+                } else {
+                  String principalConfig = conf.getVar(ConfVars.METASTORE_KERBEROS_PRINCIPAL);
+                  transport = UserGroupInformation.getLoginUser().doAs(
+                      (PrivilegedExceptionAction<TTransport>) () -> {
+                        try {
+                          return KerberosSaslHelper
+                              .getKerberosTransport(principalConfig, store.getHost(), transport,
+                                  MetaStoreUtils.getMetaStoreSaslProperties(conf, useSsl), false);
+                        } catch (SaslException e) {
+                          throw new RuntimeException(e);
+                        }
+                      });
+                }
+              } catch (IOException ioe) {
+                log.error("Couldn't create client transport, URI " + store, ioe);
+                throw new MetaException(ioe.toString());
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
               }
-            } catch (IOException ioe) {
-              log.error("Couldn't create client transport, URI " + store, ioe);
-              throw new MetaException(ioe.toString());
-            } catch (InterruptedException e) {
-              throw new RuntimeException(e);
+            } else if (useFramedTransport) {
+              transport = new TFramedTransport(transport);
             }
-          } else if (useFramedTransport) {
-            transport = new TFramedTransport(transport);
-          }
-          TProtocol protocol;
-          if (useCompactProtocol) {
-            protocol = new TCompactProtocol(transport);
-          } else {
-            protocol = new TBinaryProtocol(transport);
-          }
-          client = hiveCompatibleThriftHiveMetastoreIfaceFactory.newInstance(new ThriftHiveMetastore.Client(protocol));
-          try {
-            transport.open();
-            log
-                .info("Opened a connection to metastore '"
-                    + store
-                    + "', total current connections to all metastores: "
-                    + CONN_COUNT.incrementAndGet());
-
-            isConnected = true;
-            if (ugiArgs != null) {
-              log.info("calling #set_ugi for user '{}',  on URI {}", ugiArgs.getUser(), store);
-              client.set_ugi(ugiArgs.getUser(), ugiArgs.getGroups());
+            TProtocol protocol;
+            if (useCompactProtocol) {
+              protocol = new TCompactProtocol(transport);
             } else {
-              log.debug("Connection opened with out #set_ugi call',  on URI {}", store);
+              protocol = new TBinaryProtocol(transport);
             }
-          } catch (TException e) {
-            te = e;
-            if (log.isDebugEnabled()) {
-              log.warn("Failed to connect to the MetaStore Server, URI " + store, e);
-            } else {
-              // Don't print full exception trace if DEBUG is not on.
-              log.warn("Failed to connect to the MetaStore Server, URI {}", store);
+            client = hiveCompatibleThriftHiveMetastoreIfaceFactory
+                .newInstance(store, new ThriftHiveMetastore.Client(protocol));
+            try {
+              transport.open();
+              log
+                  .info("Opened a connection to metastore '"
+                      + store
+                      + "', total current connections to all metastores: "
+                      + CONN_COUNT.incrementAndGet());
+
+              isConnected = true;
+              connectedInstance = instance;
+              if (ugiArgs != null) {
+                log.info("calling #set_ugi for user '{}',  on URI {}", ugiArgs.getUser(), store);
+                client.set_ugi(ugiArgs.getUser(), ugiArgs.getGroups());
+              } else {
+                log.debug("Connection opened with out #set_ugi call',  on URI {}", store);
+              }
+            } catch (TException e) {
+              te = e;
+              balancer.failed(instance);
+              if (log.isDebugEnabled()) {
+                log.warn("Failed to connect to the MetaStore Server, URI " + store, e);
+              } else {
+                // Don't print full exception trace if DEBUG is not on.
+                log.warn("Failed to connect to the MetaStore Server, URI {}", store);
+              }
             }
+          } catch (MetaException e) {
+            log.error("Unable to connect to metastore with URI " + store + " in attempt " + attempt, e);
+          }
+          if (isConnected) {
+            break;
           }
-        } catch (MetaException e) {
-          log.error("Unable to connect to metastore with URI " + store + " in attempt " + attempt, e);
         }
+      } finally {
         if (isConnected) {
-          break;
+          reconnects.connected();
+        } else {
+          // Also the backoff before this connection's next attempt
+          reconnects.connectFailed(TimeUnit.SECONDS.toNanos(retryDelaySeconds));
         }
       }
-      // Wait before launching the next round of connection retries.
-      if (!isConnected && (retryDelaySeconds > 0) && ((attempt + 1) < retries)) {
-        try {
-          log.info("Waiting {} seconds before next connection attempt.", retryDelaySeconds);
-          Thread.sleep(retryDelaySeconds * 1000);
-        } catch (InterruptedException ignore) {}
-      }
     }
 
     if (!isConnected) {
+      if (te == null && gaveUp) {
+        throw new RuntimeException("Could not connect to meta store using any of the URIs ["
+            + msUri
+            + "] provided, it is down and didn't come back while waiting for it");
+      }
       throw new RuntimeException("Could not connect to meta store using any of the URIs ["
           + msUri
           + "] provided. Most recent failure: "
@@ -296,28 +315,53 @@ class ThriftMetastoreClientManager implements Closeable {
   }
 
   void reconnect(HiveUgiArgs ugiArgs) {
+    // Calls that failed on the connection were recorded by callEnded(), the balancer tries the other URIs first
     close();
-    // Swap the first element of the metastoreUris[] with a random element from the rest
-    // of the array. Rationale being that this method will generally be called when the default
-    // connection has died and the default connection is likely to be the first array element.
-    promoteRandomMetaStoreURI();
     open(ugiArgs);
   }
 
-  public String getHiveConfValue(String key, String defaultValue) {
-    return conf.get(key, defaultValue);
+  /**
+   * Counts the call as in flight on the URI of the connection until {@link #callEnded(String, long, boolean)}.
+   */
+  void callStarted() {
+    if (connectedInstance != null) {
+      balancer.callStarted(connectedInstance);
+    }
   }
 
-  public void setHiveConfValue(String key, String value) {
-    conf.set(key, value);
+  /**
+   * @param methodName the metastore method called
+   * @param failed whether the call failed to reach the metastore, e.g. a transport error
+   */
+  void callEnded(String methodName, long latencyNanos, boolean failed) {
+    if (connectedInstance != null) {
+      balancer.callEnded(connectedInstance, methodName, latencyNanos, failed);
+    }
+    if (!failed) {
+      reconnects.succeeded();
+    }
   }
 
-  public String generateNewTokenSignature(String defaultTokenSignature) {
-    String tokenSignature = conf.get(ConfVars.METASTORE_TOKEN_SIGNATURE.varname,
-            defaultTokenSignature);
-    conf.set(ConfVars.METASTORE_TOKEN_SIGNATURE.varname,
-            tokenSignature);
-    return tokenSignature;
+  /**
+   * Takes a retry from the budget shared by the connections to the metastore, so a metastore that went away doesn't get
+   * every failed call retried at once.
+   *
+   * @return whether a call that failed on the connection can be retried
+   */
+  boolean tryRetry() {
+    return reconnects.tryRetry();
+  }
+
+  /**
+   * @return whether the URI of the connection is ejected by the balancer, new connections would go to another URI
+   */
+  boolean isOnEjectedUri() {
+    MetaStoreUriBalancer.Instance instance = connectedInstance;
+    return instance != null && balancer.isEjected(instance);
+  }
+
+  public String getHiveConfValue(String key, String defaultValue) {
+    return conf.get(key, defaultValue);
   }
 
   public Boolean isSaslEnabled() {
@@ -353,18 +397,4 @@ class ThriftMetastoreClientManager implements Closeable {
   protected ThriftHiveMetastore.Iface getClient() {
     return client;
   }
-
-  /**
-   * Swaps the first element of the metastoreUris array with a random element from the remainder of the array.
-   */
-  private void promoteRandomMetaStoreURI() {
-    if (metastoreUris.length <= 1) {
-      return;
-    }
-    Random rng = new Random();
-    int index = rng.nextInt(metastoreUris.length - 1) + 1;
-    URI tmp = metastoreUris[0];
-    metastoreUris[0] = metastoreUris[index];
-    metastoreUris[index] = tmp;
-  }
 }
@@ -0,0 +1,512 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hive.metastore.PartitionExpressionProxy;
+import org.apache.hadoop.hive.metastore.api.AddDynamicPartitions;
+import org.apache.hadoop.hive.metastore.api.AddPartitionsRequest;
+import org.apache.hadoop.hive.metastore.api.ColumnStatistics;
+import org.apache.hadoop.hive.metastore.api.DropPartitionsRequest;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.PartitionSpec;
+import org.apache.hadoop.hive.metastore.api.PartitionsByExprRequest;
+import org.apache.hadoop.hive.metastore.api.PartitionsByExprResult;
+import org.apache.hadoop.hive.metastore.api.PartitionsStatsRequest;
+import org.apache.hadoop.hive.metastore.api.SerDeInfo;
+import org.apache.hadoop.hive.metastore.api.SetPartitionsStatsRequest;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hadoop.hive.metastore.api.TableStatsRequest;
+import org.apache.hadoop.hive.metastore.conf.MetastoreConf;
+import org.apache.hadoop.hive.ql.optimizer.ppr.PartitionExpressionForMetastore;
+import org.apache.thrift.TException;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
+import com.hotels.bdp.waggledance.api.model.MetadataCache;
+import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIface;
+import com.hotels.bdp.waggledance.client.DispatchingMetaStoreClient;
+import com.hotels.bdp.waggledance.client.cache.MetaStoreMetadataCache.Key;
+import com.hotels.bdp.waggledance.util.ThreadFactories;
+
+/**
+ * Decorates the clients of the metastores configured with a {@link MetadataCache} so database, table, partition and
+ * column statistics lookups are served from memory. Writes made through the client invalidate the entries they change,
+ * changes made directly on the metastore are picked up from its notification log.
+ * <p>
+ * The cache is shared by all the Waggle Dance clients, it should only be enabled on metastores where every user can
+ * read the same metadata.
+ */
+public class CachingMetaStoreClientFactory {
+
+  static final String PARTITION_BYTES_METRIC_NAME = "metastore_partition_cache_bytes";
+  static final int PARTITION_LOAD_BATCH_SIZE = 1000;
+
+  private static final Set<String> TABLE_WRITES = ImmutableSet
+      .of("alter_table", "alter_table_with_environment_context", "alter_table_with_cascade", "drop_table",
+          "drop_table_with_environment_context", "truncate_table", "delete_table_column_statistics");
+
+  private static final Set<String> PARTITION_WRITES = ImmutableSet
+      .of("add_partition", "add_partition_with_environment_context", "add_partitions", "add_partitions_pspec",
+          "add_partitions_req", "add_dynamic_partitions", "append_partition",
+          "append_partition_with_environment_context", "append_partition_by_name",
+          "append_partition_by_name_with_environment_context", "alter_partition",
+          "alter_partition_with_environment_context", "alter_partitions", "alter_partitions_with_environment_context",
+          "rename_partition", "drop_partition", "drop_partition_with_environment_context", "drop_partition_by_name",
+          "drop_partition_by_name_with_environment_context", "drop_partitions_req", "exchange_partition",
+          "exchange_partitions", "update_partition_column_statistics", "delete_partition_column_statistics",
+          "set_aggr_stats_for");
+
+  private static final Set<String> PARTITION_READS = ImmutableSet
+      .of("get_partitions", "get_partition_names", "get_partition_names_ps", "get_partitions_ps",
+          "get_partitions_by_names", "get_partitions_by_expr");
+
+  private static final Set<String> STATISTICS_READS = ImmutableSet
+      .of("get_table_statistics_req", "get_partitions_statistics_req", "get_aggr_stats_for");
+
+  // The metastore reads the columns of tables using any other serde from the serde itself
+  private static final Set<String> SERDES_USING_METASTORE_FOR_SCHEMA = ImmutableSet
+      .copyOf(Splitter
+          .on(',')
+          .trimResults()
+          .omitEmptyStrings()
+          .split((String) MetastoreConf.ConfVars.SERDES_USING_METASTORE_FOR_SCHEMA.getDefaultVal()));
+
+  private static final String DEFAULT_PARTITION_NAME = (String) MetastoreConf.ConfVars.DEFAULTPARTITIONNAME
+      .getDefaultVal();
+
+  @Log4j2
+  private static class CachingMetaStoreClient extends DispatchingMetaStoreClient {
+
+    private static final PartitionExpressionProxy EXPRESSION_PROXY = new PartitionExpressionForMetastore();
+
+    private final CloseableThriftHiveMetastoreIface client;
+    private final MetaStoreMetadataCache cache;
+    private final MetaStorePartitionCache partitionCache;
+    private final MetaStoreStatisticsCache statisticsCache;
+    private final int maxPartitionsPerTable;
+    private final NotificationLogPoller poller;
+    private final ScheduledExecutorService invalidator;
+    private final Runnable onClose;
+
+    private CachingMetaStoreClient(
+        CloseableThriftHiveMetastoreIface client,
+        MetaStoreMetadataCache cache,
+        MetaStorePartitionCache partitionCache,
+        MetaStoreStatisticsCache statisticsCache,
+        int maxPartitionsPerTable,
+        NotificationLogPoller poller,
+        ScheduledExecutorService invalidator,
+        Runnable onClose) {
+      this.client = client;
+      this.cache = cache;
+      this.partitionCache = partitionCache;
+      this.statisticsCache = statisticsCache;
+      this.maxPartitionsPerTable = maxPartitionsPerTable;
+      this.poller = poller;
+      this.invalidator = invalidator;
+      this.onClose = onClose;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <T> T dispatch(String methodName, Object[] arguments, Call<T> call) throws TException {
+      return (T) cachedCall(methodName, arguments, call);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object cachedCall(String methodName, Object[] args, Call<?> call) throws TException {
+      if (partitionCache != null && PARTITION_READS.contains(methodName)) {
+        return getPartitions(methodName, args, call);
+      }
+      if (statisticsCache != null && STATISTICS_READS.contains(methodName)) {
+        return getStatistics(methodName, args);
+      }
+      switch (methodName) {
+      case "get_database":
+        String databaseName = (String) args[0];
+        return cache.getDatabase(databaseName, () -> client.get_database(databaseName));
+      case "get_table":
+        String tableDatabaseName = (String) args[0];
+        String tableName = (String) args[1];
+        return cache.getTable(tableDatabaseName, tableName, () -> client.get_table(tableDatabaseName, tableName));
+      case "get_table_objects_by_name":
+        return getTableObjectsByName((String) args[0], (List<String>) args[1]);
+      case "get_fields":
+      case "get_fields_with_environment_context":
+        return getFields(args, call, false);
+      case "get_schema":
+      case "get_schema_with_environment_context":
+        return getFields(args, call, true);
+      default:
+        try {
+          return forward(client, methodName, args, call);
+        } finally {
+          written(methodName, args);
+        }
+      }
+    }
+
+    private List<Table> getTableObjectsByName(String databaseName, List<String> tableNames) throws TException {
+      Map<String, Table> tables = new LinkedHashMap<>();
+      List<String> missing = new ArrayList<>();
+      for (String tableName : tableNames) {
+        String key = tableName.toLowerCase(Locale.ROOT);
+        if (!tables.containsKey(key)) {
+          Table table = cache.getTableIfPresent(databaseName, tableName);
+          tables.put(key, table);
+          if (table == null) {
+            missing.add(tableName);
+          }
+        }
+      }
+      if (!missing.isEmpty()) {
+        long loadGeneration = cache.miss();
+        for (Table table : client.get_table_objects_by_name(databaseName, missing)) {
+          cache.putTable(table, loadGeneration);
+          tables.put(table.getTableName().toLowerCase(Locale.ROOT), table);
+        }
+      }
+      List<Table> result = new ArrayList<>(tables.size());
+      for (Table table : tables.values()) {
+        if (table != null) {
+          result.add(table);
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Answers from the cached table when the metastore itself would take the columns from the table.
+     */
+    @SuppressWarnings("unchecked")
+    private List<FieldSchema> getFields(Object[] args, Call<?> call, boolean withPartitionKeys) throws TException {
+      Table table = cache.getTableIfPresent((String) args[0], (String) args[1]);
+      if (table == null || !table.isSetSd() || !usesMetastoreForSchema(table.getSd().getSerdeInfo())) {
+        return (List<FieldSchema>) call.call(client);
+      }
+      List<FieldSchema> fields = new ArrayList<>(table.getSd().getCols());
+      if (withPartitionKeys && table.isSetPartitionKeys()) {
+        fields.addAll(table.getPartitionKeys());
+      }
+      return fields;
+    }
+
+    private boolean usesMetastoreForSchema(SerDeInfo serDeInfo) {
+      return serDeInfo != null
+          && (serDeInfo.getSerializationLib() == null
+              || SERDES_USING_METASTORE_FOR_SCHEMA.contains(serDeInfo.getSerializationLib()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object getPartitions(String methodName, Object[] args, Call<?> call) throws TException {
+      String databaseName;
+      String tableName;
+      if (args[0] instanceof PartitionsByExprRequest) {
+        databaseName = ((PartitionsByExprRequest) args[0]).getDbName();
+        tableName = ((PartitionsByExprRequest) args[0]).getTblName();
+      } else {
+        databaseName = (String) args[0];
+        tableName = (String) args[1];
+      }
+      TablePartitions partitions = partitionCache
+          .get(databaseName, tableName, () -> loadPartitions(databaseName, tableName));
+      if (!partitions.isCacheable()) {
+        return call.call(client);
+      }
+      switch (methodName) {
+      case "get_partitions":
+        return partitions.getByPartialValues(Collections.emptyList(), (Short) args[2]);
+      case "get_partition_names":
+        return partitions.getNames((Short) args[2]);
+      case "get_partition_names_ps":
+        if (((List<String>) args[2]).size() > partitions.getPartitionKeys().size()) {
+          return call.call(client);
+        }
+        return partitions.getNamesByPartialValues((List<String>) args[2], (Short) args[3]);
+      case "get_partitions_ps":
+        if (((List<String>) args[2]).size() > partitions.getPartitionKeys().size()) {
+          return call.call(client);
+        }
+        return partitions.getByPartialValues((List<String>) args[2], (Short) args[3]);
+      case "get_partitions_by_names":
+        return partitions.getByNames((List<String>) args[2]);
+      default:
+        return getPartitionsByExpr(args, call, partitions);
+      }
+    }
+
+    private Object getStatistics(String methodName, Object[] args) throws TException {
+      switch (methodName) {
+      case "get_table_statistics_req":
+        return statisticsCache.getTableStatistics((TableStatsRequest) args[0], client::get_table_statistics_req);
+      case "get_partitions_statistics_req":
+        return statisticsCache
+            .getPartitionStatistics((PartitionsStatsRequest) args[0], client::get_partitions_statistics_req);
+      default:
+        return statisticsCache.getAggregateStatistics((PartitionsStatsRequest) args[0], client::get_aggr_stats_for);
+      }
+    }
+
+    private TablePartitions loadPartitions(String databaseName, String tableName) throws TException {
+      Table table = cache.getTable(databaseName, tableName, () -> client.get_table(databaseName, tableName));
+      List<String> names = client.get_partition_names(databaseName, tableName, (short) -1);
+      if (names.size() > maxPartitionsPerTable) {
+        log.debug("Not caching the {} partitions of {}.{}", names.size(), databaseName, tableName);
+        return TablePartitions.uncacheable();
+      }
+      TablePartitions partitions = new TablePartitions(table.getPartitionKeys());
+      for (List<String> batch : Lists.partition(names, PARTITION_LOAD_BATCH_SIZE)) {
+        partitions.putAll(client.get_partitions_by_names(databaseName, tableName, batch));
+      }
+      return partitions;
+    }
+
+    /**
+     * Prunes the cached partition names the same way the metastore does when it can't push the expression down to its
+     * database.
+     */
+    private Object getPartitionsByExpr(Object[] args, Call<?> call, TablePartitions partitions) throws TException {
+      PartitionsByExprRequest request = (PartitionsByExprRequest) args[0];
+      List<String> names = partitions.getNames(-1);
+      String defaultPartitionName = request.isSetDefaultPartitionName() && !request.getDefaultPartitionName().isEmpty()
+          ? request.getDefaultPartitionName()
+          : DEFAULT_PARTITION_NAME;
+      boolean hasUnknownPartitions;
+      try {
+        hasUnknownPartitions = EXPRESSION_PROXY
+            .filterPartitionsByExpr(partitions.getPartitionKeys(), request.getExpr(), defaultPartitionName, names);
+      } catch (MetaException | RuntimeException | LinkageError e) {
+        // i.e. Hive classes that can't initialise on the running Java version
+        log.debug("Can't evaluate partition expression on {}.{}", request.getDbName(), request.getTblName(), e);
+        return call.call(client);
+      }
+      if (request.isSetMaxParts() && request.getMaxParts() >= 0 && names.size() > request.getMaxParts()) {
+        names = names.subList(0, request.getMaxParts());
+      }
+      return new PartitionsByExprResult(partitions.getByNames(names), hasUnknownPartitions);
+    }
+
+    private void written(String methodName, Object[] args) {
+      if (TABLE_WRITES.contains(methodName)) {
+        cache.invalidateTable((String) args[0], (String) args[1]);
+        invalidateStatistics((String) args[0], (String) args[1]);
+        tableWritten((String) args[0], (String) args[1]);
+      } else if ("update_table_column_statistics".equals(methodName)) {
+        ColumnStatistics statistics = (ColumnStatistics) args[0];
+        cache.invalidateTable(statistics.getStatsDesc().getDbName(), statistics.getStatsDesc().getTableName());
+        invalidateStatistics(statistics.getStatsDesc().getDbName(), statistics.getStatsDesc().getTableName());
+      } else if ("alter_database".equals(methodName)) {
+        cache.invalidateDatabase((String) args[0]);
+      } else if ("drop_database".equals(methodName)) {
+        cache.invalidateDatabaseAndTables((String) args[0]);
+        if (partitionCache != null) {
+          partitionCache.invalidateDatabase((String) args[0]);
+        }
+        if (statisticsCache != null) {
+          statisticsCache.invalidateDatabase((String) args[0]);
+        }
+      } else if (PARTITION_WRITES.contains(methodName)) {
+        List<Key> tables = partitionWriteTables(args);
+        if (tables.isEmpty()) {
+          if (partitionCache != null) {
+            partitionCache.invalidateAll();
+          }
+          if (statisticsCache != null) {
+            statisticsCache.invalidateAll();
+          }
+        }
+        for (Key table : tables) {
+          if ("set_aggr_stats_for".equals(methodName)) {
+            // Also sets the statistics parameters of the table
+            cache.invalidateTable(table.getDatabaseName(), table.getTableName());
+          }
+          invalidateStatistics(table.getDatabaseName(), table.getTableName());
+          tableWritten(table.getDatabaseName(), table.getTableName());
+        }
+      }
+    }
+
+    private void invalidateStatistics(String databaseName, String tableName) {
+      if (statisticsCache != null) {
+        statisticsCache.invalidate(databaseName, tableName);
+      }
+    }
+
+    /**
+     * Brings the cached partitions of the table up to date with a write, from the notification log if the write is
+     * there already.
+     */
+    private void tableWritten(String databaseName, String tableName) {
+      if (partitionCache != null && (poller == null || !poller.catchUp(databaseName, tableName))) {
+        partitionCache.invalidate(databaseName, tableName);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Key> partitionWriteTables(Object[] args) {
+      Object first = args[0];
+      if (first instanceof Map) {
+        // exchange_partition(s): partition specs, source database and table, destination database and table
+        return Arrays
+            .asList(Key.table((String) args[1], (String) args[2]), Key.table((String) args[3], (String) args[4]));
+      }
+      if (first instanceof String && args[1] instanceof String) {
+        return Collections.singletonList(Key.table((String) first, (String) args[1]));
+      }
+      if (first instanceof List && !((List<?>) first).isEmpty()) {
+        first = ((List<Object>) first).get(0);
+      }
+      if (first instanceof Partition) {
+        return Collections.singletonList(Key.table(((Partition) first).getDbName(), ((Partition) first).getTableName()));
+      }
+      if (first instanceof PartitionSpec) {
+        PartitionSpec spec = (PartitionSpec) first;
+        return Collections.singletonList(Key.table(spec.getDbName(), spec.getTableName()));
+      }
+      if (first instanceof AddPartitionsRequest) {
+        AddPartitionsRequest request = (AddPartitionsRequest) first;
+        return Collections.singletonList(Key.table(request.getDbName(), request.getTblName()));
+      }
+      if (first instanceof DropPartitionsRequest) {
+        DropPartitionsRequest request = (DropPartitionsRequest) first;
+        return Collections.singletonList(Key.table(request.getDbName(), request.getTblName()));
+      }
+      if (first instanceof AddDynamicPartitions) {
+        AddDynamicPartitions request = (AddDynamicPartitions) first;
+        return Collections.singletonList(Key.table(request.getDbname(), request.getTablename()));
+      }
+      if (first instanceof ColumnStatistics) {
+        ColumnStatistics statistics = (ColumnStatistics) first;
+        return Collections
+            .singletonList(Key.table(statistics.getStatsDesc().getDbName(), statistics.getStatsDesc().getTableName()));
+      }
+      if (first instanceof SetPartitionsStatsRequest) {
+        Set<Key> tables = new LinkedHashSet<>();
+        for (ColumnStatistics statistics : ((SetPartitionsStatsRequest) first).getColStats()) {
+          tables.add(Key.table(statistics.getStatsDesc().getDbName(), statistics.getStatsDesc().getTableName()));
+        }
+        return new ArrayList<>(tables);
+      }
+      return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isOpen() {
+      return client.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (invalidator != null) {
+        invalidator.shutdownNow();
+      }
+      cache.invalidateAll();
+      if (partitionCache != null) {
+        partitionCache.invalidateAll();
+      }
+      if (statisticsCache != null) {
+        statisticsCache.invalidateAll();
+      }
+      onClose.run();
+      client.close();
+    }
+  }
+
+  private final MeterRegistry meterRegistry;
+  private final Map<String, Set<MetaStorePartitionCache>> partitionCaches = new ConcurrentHashMap<>();
+
+  public CachingMetaStoreClientFactory(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * @return a client caching the metadata of the metastore or the given client if the metastore has no cache enabled
+   */
+  public CloseableThriftHiveMetastoreIface newInstance(
+      AbstractMetaStore metaStore,
+      CloseableThriftHiveMetastoreIface client) {
+    MetadataCache metadataCache = metaStore.getMetadataCache();
+    if (metadataCache == null || !metadataCache.isEnabled()) {
+      return client;
+    }
+    String name = metaStore.getName();
+    MetaStoreMetadataCache cache = new MetaStoreMetadataCache(name, metadataCache, meterRegistry);
+    MetaStorePartitionCache partitionCache = null;
+    if (metadataCache.isPartitionsEnabled()) {
+      partitionCache = new MetaStorePartitionCache(name, metadataCache, meterRegistry);
+      partitionCaches.computeIfAbsent(name, this::newPartitionBytesGauge).add(partitionCache);
+    }
+    MetaStoreStatisticsCache statisticsCache = null;
+    if (metadataCache.isStatisticsEnabled()) {
+      statisticsCache = new MetaStoreStatisticsCache(name, metadataCache, meterRegistry);
+    }
+    NotificationLogPoller poller = null;
+    ScheduledExecutorService invalidator = null;
+    if (metadataCache.getNotificationPollIntervalMillis() > 0) {
+      poller = new NotificationLogPoller(name, client, cache, partitionCache, statisticsCache);
+      invalidator = Executors
+          .newSingleThreadScheduledExecutor(ThreadFactories.newThreadFactory("waggle-dance-cache-" + name, false));
+      invalidator
+          .scheduleWithFixedDelay(poller, 0, metadataCache.getNotificationPollIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+    MetaStorePartitionCache closingPartitionCache = partitionCache;
+    return new CachingMetaStoreClient(client, cache, partitionCache, statisticsCache,
+        metadataCache.getMaxPartitionsPerTable(), poller, invalidator, () -> unregister(name, closingPartitionCache));
+  }
+
+  private Set<MetaStorePartitionCache> newPartitionBytesGauge(String name) {
+    Set<MetaStorePartitionCache> namedCaches = ConcurrentHashMap.newKeySet();
+    Gauge
+        .builder(PARTITION_BYTES_METRIC_NAME, namedCaches,
+            c -> c.stream().mapToLong(MetaStorePartitionCache::getBytes).sum())
+        .tag(MetaStoreMetadataCache.METASTORE_TAG_NAME, name)
+        .strongReference(true)
+        .register(meterRegistry);
+    return namedCaches;
+  }
+
+  private void unregister(String name, MetaStorePartitionCache partitionCache) {
+    Set<MetaStorePartitionCache> namedCaches = partitionCaches.get(name);
+    if (namedCaches != null && partitionCache != null) {
+      namedCaches.remove(partitionCache);
+    }
+  }
+
+}
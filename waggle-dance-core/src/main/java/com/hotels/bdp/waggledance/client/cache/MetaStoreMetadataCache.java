@@ -0,0 +1,218 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client.cache;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hive.metastore.api.Database;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TCompactProtocol;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import com.hotels.bdp.waggledance.api.model.MetadataCache;
+
+/**
+ * Database and table metadata of a single metastore, bounded by the size of the serialized entries. Entries are copied
+ * in and out so callers can transform them freely. Values loaded while an entry is invalidated are dropped as they
+ * might predate the change that caused the invalidation.
+ */
+class MetaStoreMetadataCache {
+
+  static final String METASTORE_TAG_NAME = "metastore";
+  static final String HITS_METRIC_NAME = "metastore_cache_hits";
+  static final String MISSES_METRIC_NAME = "metastore_cache_misses";
+  static final String INVALIDATIONS_METRIC_NAME = "metastore_cache_invalidations";
+
+  interface Loader<T> {
+    T load() throws TException;
+  }
+
+  static final class Key {
+    private final String databaseName;
+    private final String tableName;
+
+    private Key(String databaseName, String tableName) {
+      this.databaseName = databaseName.toLowerCase(Locale.ROOT);
+      this.tableName = tableName == null ? null : tableName.toLowerCase(Locale.ROOT);
+    }
+
+    static Key database(String databaseName) {
+      return new Key(databaseName, null);
+    }
+
+    static Key table(String databaseName, String tableName) {
+      return new Key(databaseName, tableName);
+    }
+
+    String getDatabaseName() {
+      return databaseName;
+    }
+
+    String getTableName() {
+      return tableName;
+    }
+
+    Key database() {
+      return new Key(databaseName, null);
+    }
+
+    boolean isIn(String databaseName) {
+      return this.databaseName.equalsIgnoreCase(databaseName);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return databaseName.equals(other.databaseName) && Objects.equals(tableName, other.tableName);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(databaseName, tableName);
+    }
+  }
+
+  private final Cache<Key, TBase<?, ?>> cache;
+  // Incremented before each invalidation, loads that overlap one don't keep their value
+  private final AtomicLong generation = new AtomicLong();
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter invalidations;
+
+  MetaStoreMetadataCache(String name, MetadataCache metadataCache, MeterRegistry meterRegistry) {
+    cache = CacheBuilder
+        .newBuilder()
+        .maximumWeight(metadataCache.getMaxWeightBytes())
+        .weigher((Key key, TBase<?, ?> value) -> weigh(value))
+        .expireAfterWrite(metadataCache.getTimeToLiveMillis(), TimeUnit.MILLISECONDS)
+        .build();
+    hits = Counter.builder(HITS_METRIC_NAME).tag(METASTORE_TAG_NAME, name).register(meterRegistry);
+    misses = Counter.builder(MISSES_METRIC_NAME).tag(METASTORE_TAG_NAME, name).register(meterRegistry);
+    invalidations = Counter.builder(INVALIDATIONS_METRIC_NAME).tag(METASTORE_TAG_NAME, name).register(meterRegistry);
+  }
+
+  static int weigh(TBase<?, ?> value) {
+    try {
+      return new TSerializer(new TCompactProtocol.Factory()).serialize(value).length;
+    } catch (TException e) {
+      return 1;
+    }
+  }
+
+  Database getDatabase(String databaseName, Loader<Database> loader) throws TException {
+    return get(Key.database(databaseName), loader);
+  }
+
+  Table getTable(String databaseName, String tableName, Loader<Table> loader) throws TException {
+    return get(Key.table(databaseName, tableName), loader);
+  }
+
+  Table getTableIfPresent(String databaseName, String tableName) {
+    return getIfPresent(Key.table(databaseName, tableName));
+  }
+
+  /**
+   * @return the current generation, to be passed to {@link #putTable(Table, long)} once the table is loaded
+   */
+  long miss() {
+    misses.increment();
+    return generation.get();
+  }
+
+  void putTable(Table table, long loadGeneration) {
+    put(Key.table(table.getDbName(), table.getTableName()), table, loadGeneration);
+  }
+
+  void invalidateTable(String databaseName, String tableName) {
+    generation.incrementAndGet();
+    invalidations.increment();
+    cache.invalidate(Key.table(databaseName, tableName));
+  }
+
+  void invalidateDatabase(String databaseName) {
+    generation.incrementAndGet();
+    invalidations.increment();
+    cache.invalidate(Key.database(databaseName));
+  }
+
+  void invalidateDatabaseAndTables(String databaseName) {
+    generation.incrementAndGet();
+    invalidations.increment();
+    cache.asMap().keySet().removeIf(key -> key.isIn(databaseName));
+  }
+
+  void invalidateAll() {
+    generation.incrementAndGet();
+    invalidations.increment();
+    cache.invalidateAll();
+  }
+
+  long size() {
+    return cache.size();
+  }
+
+  private <T extends TBase<?, ?>> T get(Key key, Loader<T> loader) throws TException {
+    T value = getIfPresent(key);
+    if (value != null) {
+      return value;
+    }
+    long loadGeneration = miss();
+    value = loader.load();
+    if (value != null) {
+      put(key, value, loadGeneration);
+    }
+    return value;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T extends TBase<?, ?>> T getIfPresent(Key key) {
+    TBase<?, ?> value = cache.getIfPresent(key);
+    if (value == null) {
+      return null;
+    }
+    hits.increment();
+    return (T) value.deepCopy();
+  }
+
+  private void put(Key key, TBase<?, ?> value, long loadGeneration) {
+    if (generation.get() != loadGeneration) {
+      return;
+    }
+    cache.put(key, value.deepCopy());
+    // An invalidation that started after the check above might have missed the new entry
+    if (generation.get() != loadGeneration) {
+      cache.invalidate(key);
+    }
+  }
+
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.thrift.TException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import com.hotels.bdp.waggledance.api.model.MetadataCache;
+import com.hotels.bdp.waggledance.client.cache.MetaStoreMetadataCache.Key;
+import com.hotels.bdp.waggledance.client.cache.MetaStoreMetadataCache.Loader;
+
+/**
+ * Partitions of the tables of a single metastore. The partitions of a table are loaded all at once on first use and
+ * then kept up to date by applying the changes reported by the notification log, so adding a partition to a large
+ * table doesn't cause all of its partitions to be loaded again. Changes reported while a table is being loaded are
+ * applied again once it is loaded, they are idempotent.
+ */
+@Log4j2
+class MetaStorePartitionCache {
+
+  static final String HITS_METRIC_NAME = "metastore_partition_cache_hits";
+  static final String MISSES_METRIC_NAME = "metastore_partition_cache_misses";
+
+  interface Update {
+    void apply(TablePartitions partitions) throws MetaException;
+  }
+
+  private final String name;
+  private final Cache<Key, TablePartitions> cache;
+  private final Map<Key, List<Update>> loading = new ConcurrentHashMap<>();
+  private final AtomicLong sequence = new AtomicLong();
+  // Sequence of the last invalidation of recently invalidated tables and databases, checked by overlapping loads
+  private final Cache<Key, Long> invalidations = CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.HOURS).build();
+  private final AtomicLong lastInvalidateAll = new AtomicLong(-1);
+  private final Counter hits;
+  private final Counter misses;
+
+  MetaStorePartitionCache(String name, MetadataCache metadataCache, MeterRegistry meterRegistry) {
+    this.name = name;
+    CacheBuilder<Object, Object> builder = CacheBuilder
+        .newBuilder()
+        .maximumWeight(metadataCache.getPartitionMaxWeightBytes());
+    if (metadataCache.getNotificationPollIntervalMillis() > 0) {
+      // Kept up to date by the notification log, only dropped once unused
+      builder.expireAfterAccess(metadataCache.getTimeToLiveMillis(), TimeUnit.MILLISECONDS);
+    } else {
+      builder.expireAfterWrite(metadataCache.getTimeToLiveMillis(), TimeUnit.MILLISECONDS);
+    }
+    cache = builder.weigher((Key key, TablePartitions value) -> (int) Math.min(Integer.MAX_VALUE, value.getBytes())).build();
+    hits = Counter.builder(HITS_METRIC_NAME).tag(MetaStoreMetadataCache.METASTORE_TAG_NAME, name).register(meterRegistry);
+    misses = Counter
+        .builder(MISSES_METRIC_NAME)
+        .tag(MetaStoreMetadataCache.METASTORE_TAG_NAME, name)
+        .register(meterRegistry);
+  }
+
+  /**
+   * @return the partitions of the table, {@link TablePartitions#uncacheable()} if the loader found the table too large
+   */
+  TablePartitions get(String databaseName, String tableName, Loader<TablePartitions> loader) throws TException {
+    Key key = Key.table(databaseName, tableName);
+    TablePartitions partitions = cache.getIfPresent(key);
+    if (partitions != null) {
+      if (partitions.isCacheable()) {
+        hits.increment();
+      } else {
+        misses.increment();
+      }
+      return partitions;
+    }
+    long[] loadSequence = { -1 };
+    List<Update> updates = Collections.synchronizedList(new ArrayList<>());
+    try {
+      partitions = cache.get(key, () -> {
+        misses.increment();
+        loadSequence[0] = sequence.get();
+        loading.put(key, updates);
+        TablePartitions loaded = loader.load();
+        replay(updates, 0, loaded);
+        return loaded;
+      });
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      loading.remove(key, updates);
+      Throwable cause = e.getCause();
+      if (cause instanceof TException) {
+        throw (TException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new TException(cause);
+    }
+    if (loadSequence[0] >= 0) {
+      // Changes reported after the replay above found no entry to apply to
+      replay(updates, 0, partitions);
+      loading.remove(key, updates);
+      if (invalidatedSince(key, loadSequence[0])) {
+        cache.asMap().remove(key, partitions);
+      }
+    }
+    return partitions;
+  }
+
+  void update(String databaseName, String tableName, Update update) {
+    Key key = Key.table(databaseName, tableName);
+    List<Update> updates = loading.get(key);
+    if (updates != null) {
+      updates.add(update);
+    }
+    TablePartitions partitions = cache.getIfPresent(key);
+    if (partitions != null && partitions.isCacheable()) {
+      try {
+        update.apply(partitions);
+        // Weighs the entry again
+        cache.asMap().replace(key, partitions, partitions);
+      } catch (MetaException | RuntimeException e) {
+        log.warn("Can't update cached partitions of {}.{} in metastore {}", databaseName, tableName, name, e);
+        invalidate(databaseName, tableName);
+      }
+    }
+  }
+
+  void invalidate(String databaseName, String tableName) {
+    Key key = Key.table(databaseName, tableName);
+    invalidations.put(key, sequence.incrementAndGet());
+    cache.invalidate(key);
+  }
+
+  void invalidateDatabase(String databaseName) {
+    invalidations.put(Key.database(databaseName), sequence.incrementAndGet());
+    cache.asMap().keySet().removeIf(key -> key.isIn(databaseName));
+  }
+
+  void invalidateAll() {
+    lastInvalidateAll.set(sequence.incrementAndGet());
+    cache.invalidateAll();
+  }
+
+  long getBytes() {
+    long bytes = 0;
+    for (TablePartitions partitions : cache.asMap().values()) {
+      bytes += partitions.getBytes();
+    }
+    return bytes;
+  }
+
+  private boolean invalidatedSince(Key key, long loadSequence) {
+    if (lastInvalidateAll.get() > loadSequence) {
+      return true;
+    }
+    Long tableInvalidation = invalidations.getIfPresent(key);
+    Long databaseInvalidation = invalidations.getIfPresent(key.database());
+    return tableInvalidation != null && tableInvalidation > loadSequence
+        || databaseInvalidation != null && databaseInvalidation > loadSequence;
+  }
+
+  private void replay(List<Update> updates, int from, TablePartitions partitions) throws MetaException {
+    if (!partitions.isCacheable()) {
+      return;
+    }
+    for (int i = from; i < updates.size(); i++) {
+      updates.get(i).apply(partitions);
+    }
+  }
+
+}
@@ -0,0 +1,343 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hive.metastore.api.AggrStats;
+import org.apache.hadoop.hive.metastore.api.ColumnStatisticsObj;
+import org.apache.hadoop.hive.metastore.api.PartitionsStatsRequest;
+import org.apache.hadoop.hive.metastore.api.PartitionsStatsResult;
+import org.apache.hadoop.hive.metastore.api.TableStatsRequest;
+import org.apache.hadoop.hive.metastore.api.TableStatsResult;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import com.hotels.bdp.waggledance.api.model.MetadataCache;
+import com.hotels.bdp.waggledance.client.cache.MetaStoreMetadataCache.Key;
+
+/**
+ * Column statistics of the tables of a single metastore, kept per table or partition and column so a request only
+ * fetches the statistics that aren't cached yet. Columns without statistics are cached too. Aggregated statistics
+ * can't be merged and are cached per request.
+ * <p>
+ * Invalidating a table doesn't look for its entries: each entry remembers when its load started and is ignored once
+ * its table or database was invalidated after that.
+ */
+class MetaStoreStatisticsCache {
+
+  static final String HITS_METRIC_NAME = "metastore_statistics_cache_hits";
+  static final String MISSES_METRIC_NAME = "metastore_statistics_cache_misses";
+
+  interface RequestLoader<Q, R> {
+    R load(Q request) throws TException;
+  }
+
+  private static final class StatisticsKey {
+    private final Key table;
+    private final List<?> id;
+
+    private StatisticsKey(Key table, List<?> id) {
+      this.table = table;
+      this.id = id;
+    }
+
+    static StatisticsKey table(Key table, String columnName) {
+      return new StatisticsKey(table, Collections.singletonList(columnName.toLowerCase(Locale.ROOT)));
+    }
+
+    static StatisticsKey partition(Key table, String partitionName, String columnName) {
+      return new StatisticsKey(table, Arrays.asList(partitionName, columnName.toLowerCase(Locale.ROOT)));
+    }
+
+    static StatisticsKey aggregate(Key table, List<String> partitionNames, List<String> columnNames) {
+      Set<String> columns = new TreeSet<>();
+      for (String columnName : columnNames) {
+        columns.add(columnName.toLowerCase(Locale.ROOT));
+      }
+      return new StatisticsKey(table,
+          Arrays.asList(new ArrayList<>(new TreeSet<>(partitionNames)), new ArrayList<>(columns)));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof StatisticsKey)) {
+        return false;
+      }
+      StatisticsKey other = (StatisticsKey) o;
+      return table.equals(other.table) && id.equals(other.id);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(table, id);
+    }
+  }
+
+  private static final class Entry {
+    private final long sequence;
+    // null when there are no statistics
+    private final TBase<?, ?> value;
+
+    private Entry(long sequence, TBase<?, ?> value) {
+      this.sequence = sequence;
+      this.value = value;
+    }
+  }
+
+  private final Cache<StatisticsKey, Entry> cache;
+  private final AtomicLong sequence = new AtomicLong();
+  // Sequence of the last invalidation of tables and databases, kept as long as the entries it invalidates
+  private final Cache<Key, Long> invalidations;
+  private final AtomicLong lastInvalidateAll = new AtomicLong(-1);
+  private final Counter hits;
+  private final Counter misses;
+
+  MetaStoreStatisticsCache(String name, MetadataCache metadataCache, MeterRegistry meterRegistry) {
+    cache = CacheBuilder
+        .newBuilder()
+        .maximumWeight(metadataCache.getStatisticsMaxWeightBytes())
+        .weigher((StatisticsKey key, Entry entry) -> entry.value == null ? 1 : MetaStoreMetadataCache.weigh(entry.value))
+        .expireAfterWrite(metadataCache.getTimeToLiveMillis(), TimeUnit.MILLISECONDS)
+        .build();
+    invalidations = CacheBuilder
+        .newBuilder()
+        .expireAfterWrite(2 * metadataCache.getTimeToLiveMillis(), TimeUnit.MILLISECONDS)
+        .build();
+    hits = Counter.builder(HITS_METRIC_NAME).tag(MetaStoreMetadataCache.METASTORE_TAG_NAME, name).register(meterRegistry);
+    misses = Counter
+        .builder(MISSES_METRIC_NAME)
+        .tag(MetaStoreMetadataCache.METASTORE_TAG_NAME, name)
+        .register(meterRegistry);
+  }
+
+  TableStatsResult getTableStatistics(TableStatsRequest request, RequestLoader<TableStatsRequest, TableStatsResult> loader)
+    throws TException {
+    Key table = Key.table(request.getDbName(), request.getTblName());
+    Map<String, ColumnStatisticsObj> statistics = new LinkedHashMap<>();
+    List<String> missing = new ArrayList<>();
+    for (String columnName : new LinkedHashSet<>(request.getColNames())) {
+      Entry entry = getIfValid(StatisticsKey.table(table, columnName));
+      if (entry == null) {
+        missing.add(columnName);
+      } else if (entry.value != null) {
+        statistics.put(columnName, (ColumnStatisticsObj) entry.value.deepCopy());
+      }
+    }
+    if (!missing.isEmpty()) {
+      misses.increment(missing.size());
+      long loadSequence = sequence.get();
+      TableStatsRequest missingRequest = request.deepCopy();
+      missingRequest.setColNames(missing);
+      List<ColumnStatisticsObj> loaded = loader.load(missingRequest).getTableStats();
+      Map<String, ColumnStatisticsObj> loadedByName = byColumnName(loaded);
+      // Absent columns are only cached when the metastore named the columns as requested
+      boolean complete = lowerCase(missing).containsAll(loadedByName.keySet());
+      for (String columnName : missing) {
+        ColumnStatisticsObj columnStatistics = loadedByName.get(columnName.toLowerCase(Locale.ROOT));
+        if (columnStatistics != null || complete) {
+          put(StatisticsKey.table(table, columnName), columnStatistics, loadSequence);
+        }
+      }
+      for (ColumnStatisticsObj columnStatistics : loaded) {
+        statistics.putIfAbsent(columnStatistics.getColName(), columnStatistics);
+      }
+    }
+    return new TableStatsResult(ordered(request.getColNames(), statistics));
+  }
+
+  PartitionsStatsResult getPartitionStatistics(
+      PartitionsStatsRequest request,
+      RequestLoader<PartitionsStatsRequest, PartitionsStatsResult> loader)
+    throws TException {
+    Key table = Key.table(request.getDbName(), request.getTblName());
+    Map<String, Map<String, ColumnStatisticsObj>> statistics = new LinkedHashMap<>();
+    Set<String> missingPartitions = new LinkedHashSet<>();
+    Set<String> missingColumns = new LinkedHashSet<>();
+    int missingCount = 0;
+    for (String partitionName : new LinkedHashSet<>(request.getPartNames())) {
+      for (String columnName : new LinkedHashSet<>(request.getColNames())) {
+        Entry entry = getIfValid(StatisticsKey.partition(table, partitionName, columnName));
+        if (entry == null) {
+          missingPartitions.add(partitionName);
+          missingColumns.add(columnName);
+          missingCount++;
+        } else if (entry.value != null) {
+          statistics
+              .computeIfAbsent(partitionName, k -> new LinkedHashMap<>())
+              .put(columnName, (ColumnStatisticsObj) entry.value.deepCopy());
+        }
+      }
+    }
+    if (!missingPartitions.isEmpty()) {
+      misses.increment(missingCount);
+      long loadSequence = sequence.get();
+      PartitionsStatsRequest missingRequest = request.deepCopy();
+      missingRequest.setPartNames(new ArrayList<>(missingPartitions));
+      missingRequest.setColNames(new ArrayList<>(missingColumns));
+      Map<String, List<ColumnStatisticsObj>> loaded = loader.load(missingRequest).getPartStats();
+      boolean complete = missingPartitions.containsAll(loaded.keySet());
+      List<String> missingColumnNames = lowerCase(missingColumns);
+      for (String partitionName : missingPartitions) {
+        Map<String, ColumnStatisticsObj> loadedByName = byColumnName(
+            loaded.getOrDefault(partitionName, Collections.emptyList()));
+        boolean partitionComplete = complete && missingColumnNames.containsAll(loadedByName.keySet());
+        for (String columnName : missingColumns) {
+          ColumnStatisticsObj columnStatistics = loadedByName.get(columnName.toLowerCase(Locale.ROOT));
+          if (columnStatistics != null || partitionComplete) {
+            put(StatisticsKey.partition(table, partitionName, columnName), columnStatistics, loadSequence);
+          }
+        }
+      }
+      for (Map.Entry<String, List<ColumnStatisticsObj>> partition : loaded.entrySet()) {
+        Map<String, ColumnStatisticsObj> partitionStatistics = statistics
+            .computeIfAbsent(partition.getKey(), k -> new LinkedHashMap<>());
+        for (ColumnStatisticsObj columnStatistics : partition.getValue()) {
+          partitionStatistics.putIfAbsent(columnStatistics.getColName(), columnStatistics);
+        }
+      }
+    }
+    Map<String, List<ColumnStatisticsObj>> result = new LinkedHashMap<>();
+    for (Map.Entry<String, Map<String, ColumnStatisticsObj>> partition : statistics.entrySet()) {
+      List<ColumnStatisticsObj> partitionStatistics = ordered(request.getColNames(), partition.getValue());
+      if (!partitionStatistics.isEmpty()) {
+        result.put(partition.getKey(), partitionStatistics);
+      }
+    }
+    return new PartitionsStatsResult(result);
+  }
+
+  AggrStats getAggregateStatistics(PartitionsStatsRequest request, RequestLoader<PartitionsStatsRequest, AggrStats> loader)
+    throws TException {
+    StatisticsKey key = StatisticsKey
+        .aggregate(Key.table(request.getDbName(), request.getTblName()), request.getPartNames(), request.getColNames());
+    Entry entry = getIfValid(key);
+    if (entry != null) {
+      return (AggrStats) entry.value.deepCopy();
+    }
+    misses.increment();
+    long loadSequence = sequence.get();
+    AggrStats statistics = loader.load(request);
+    put(key, statistics, loadSequence);
+    return statistics;
+  }
+
+  void invalidate(String databaseName, String tableName) {
+    invalidations.put(Key.table(databaseName, tableName), sequence.incrementAndGet());
+  }
+
+  void invalidateDatabase(String databaseName) {
+    invalidations.put(Key.database(databaseName), sequence.incrementAndGet());
+  }
+
+  void invalidateAll() {
+    lastInvalidateAll.set(sequence.incrementAndGet());
+    cache.invalidateAll();
+  }
+
+  long size() {
+    return cache.size();
+  }
+
+  private Entry getIfValid(StatisticsKey key) {
+    Entry entry = cache.getIfPresent(key);
+    if (entry == null) {
+      return null;
+    }
+    if (invalidatedSince(key.table, entry.sequence)) {
+      cache.asMap().remove(key, entry);
+      return null;
+    }
+    hits.increment();
+    return entry;
+  }
+
+  private void put(StatisticsKey key, TBase<?, ?> value, long loadSequence) {
+    if (invalidatedSince(key.table, loadSequence)) {
+      return;
+    }
+    cache.put(key, new Entry(loadSequence, value == null ? null : value.deepCopy()));
+  }
+
+  private boolean invalidatedSince(Key table, long loadSequence) {
+    if (lastInvalidateAll.get() > loadSequence) {
+      return true;
+    }
+    Long tableInvalidation = invalidations.getIfPresent(table);
+    Long databaseInvalidation = invalidations.getIfPresent(table.database());
+    return tableInvalidation != null && tableInvalidation > loadSequence
+        || databaseInvalidation != null && databaseInvalidation > loadSequence;
+  }
+
+  private static Map<String, ColumnStatisticsObj> byColumnName(List<ColumnStatisticsObj> statistics) {
+    Map<String, ColumnStatisticsObj> byName = new HashMap<>();
+    for (ColumnStatisticsObj columnStatistics : statistics) {
+      byName.put(columnStatistics.getColName().toLowerCase(Locale.ROOT), columnStatistics);
+    }
+    return byName;
+  }
+
+  private static List<String> lowerCase(Iterable<String> names) {
+    List<String> lowerCase = new ArrayList<>();
+    for (String name : names) {
+      lowerCase.add(name.toLowerCase(Locale.ROOT));
+    }
+    return lowerCase;
+  }
+
+  /**
+   * @return the statistics in the order of the requested columns
+   */
+  private static List<ColumnStatisticsObj> ordered(List<String> columnNames, Map<String, ColumnStatisticsObj> statistics) {
+    Map<String, ColumnStatisticsObj> byName = new LinkedHashMap<>();
+    for (Map.Entry<String, ColumnStatisticsObj> columnStatistics : statistics.entrySet()) {
+      byName.putIfAbsent(columnStatistics.getKey().toLowerCase(Locale.ROOT), columnStatistics.getValue());
+    }
+    List<ColumnStatisticsObj> ordered = new ArrayList<>();
+    for (String columnName : columnNames) {
+      ColumnStatisticsObj columnStatistics = byName.remove(columnName.toLowerCase(Locale.ROOT));
+      if (columnStatistics != null) {
+        ordered.add(columnStatistics);
+      }
+    }
+    // Columns named differently by the metastore
+    ordered.addAll(byName.values());
+    return ordered;
+  }
+
+}
@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client.cache;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.hadoop.hive.metastore.api.NotificationEvent;
+import org.apache.hadoop.hive.metastore.api.NotificationEventRequest;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hadoop.hive.metastore.messaging.AddPartitionMessage;
+import org.apache.hadoop.hive.metastore.messaging.AlterPartitionMessage;
+import org.apache.hadoop.hive.metastore.messaging.AlterTableMessage;
+import org.apache.hadoop.hive.metastore.messaging.DropPartitionMessage;
+import org.apache.hadoop.hive.metastore.messaging.EventMessage.EventType;
+import org.apache.hadoop.hive.metastore.messaging.MessageDeserializer;
+import org.apache.hadoop.hive.metastore.messaging.MessageFactory;
+import org.apache.thrift.TException;
+
+import lombok.extern.log4j.Log4j2;
+
+import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIface;
+
+/**
+ * Invalidates the cached metadata changed in a metastore according to its notification log, so changes that don't go
+ * through Waggle Dance are picked up before the entries expire. Partition events are applied to the cached partitions
+ * of their table, any event of a table drops its column statistics. The whole cache is cleared when events might have
+ * been missed, i.e. the log was cleaned up past the last event read or it can't be read at all.
+ */
+@Log4j2
+class NotificationLogPoller implements Runnable {
+
+  static final int MAX_EVENTS = 1000;
+
+  private final String name;
+  private final CloseableThriftHiveMetastoreIface client;
+  private final MetaStoreMetadataCache cache;
+  private final MetaStorePartitionCache partitionCache;
+  private final MetaStoreStatisticsCache statisticsCache;
+  private long lastEventId = -1;
+  private boolean failing = false;
+
+  /**
+   * @param partitionCache {@code null} when partitions are not cached
+   * @param statisticsCache {@code null} when column statistics are not cached
+   */
+  NotificationLogPoller(
+      String name,
+      CloseableThriftHiveMetastoreIface client,
+      MetaStoreMetadataCache cache,
+      MetaStorePartitionCache partitionCache,
+      MetaStoreStatisticsCache statisticsCache) {
+    this.name = name;
+    this.client = client;
+    this.cache = cache;
+    this.partitionCache = partitionCache;
+    this.statisticsCache = statisticsCache;
+  }
+
+  @Override
+  public synchronized void run() {
+    try {
+      if (lastEventId < 0) {
+        lastEventId = client.get_current_notificationEventId().getEventId();
+      } else {
+        poll();
+      }
+      if (failing) {
+        log.info("Reading notification log of metastore {} again", name);
+        failing = false;
+      }
+    } catch (TException | RuntimeException e) {
+      if (!failing) {
+        log.warn("Can't read notification log of metastore {}, its cached metadata is cleared until it can", name, e);
+        failing = true;
+      }
+      lastEventId = -1;
+      invalidateAll();
+    }
+  }
+
+  /**
+   * Reads the log up to its end, used right after a write so the client that made it can read it back.
+   *
+   * @return whether an event of the table was read
+   */
+  synchronized boolean catchUp(String databaseName, String tableName) {
+    if (lastEventId < 0) {
+      return false;
+    }
+    try {
+      return poll().contains(qualifiedName(databaseName, tableName));
+    } catch (TException | RuntimeException e) {
+      log.debug("Can't catch up with notification log of metastore {}", name, e);
+      return false;
+    }
+  }
+
+  private Set<String> poll() throws TException {
+    Set<String> tables = new HashSet<>();
+    List<NotificationEvent> events;
+    do {
+      NotificationEventRequest request = new NotificationEventRequest(lastEventId);
+      request.setMaxEvents(MAX_EVENTS);
+      events = client.get_next_notification(request).getEvents();
+      if (!events.isEmpty() && events.get(0).getEventId() > lastEventId + 1) {
+        log.info("Events of metastore {} after {} are gone, clearing its cached metadata", name, lastEventId);
+        invalidateAll();
+      }
+      for (NotificationEvent event : events) {
+        invalidate(event);
+        if (event.getDbName() != null && event.getTableName() != null) {
+          tables.add(qualifiedName(event.getDbName(), event.getTableName()));
+        }
+        lastEventId = event.getEventId();
+      }
+    } while (events.size() >= MAX_EVENTS);
+    return tables;
+  }
+
+  private void invalidateAll() {
+    cache.invalidateAll();
+    if (partitionCache != null) {
+      partitionCache.invalidateAll();
+    }
+    if (statisticsCache != null) {
+      statisticsCache.invalidateAll();
+    }
+  }
+
+  private void invalidate(NotificationEvent event) {
+    String databaseName = event.getDbName();
+    String tableName = event.getTableName();
+    if (databaseName == null) {
+      return;
+    }
+    if (tableName != null) {
+      if (!isPartitionEvent(event)) {
+        cache.invalidateTable(databaseName, tableName);
+      }
+      if (partitionCache != null) {
+        updatePartitions(event);
+      }
+      if (statisticsCache != null) {
+        // Any change to a table or its partitions might change its statistics
+        statisticsCache.invalidate(databaseName, tableName);
+      }
+    } else if (EventType.DROP_DATABASE.toString().equals(event.getEventType())) {
+      cache.invalidateDatabaseAndTables(databaseName);
+      if (partitionCache != null) {
+        partitionCache.invalidateDatabase(databaseName);
+      }
+      if (statisticsCache != null) {
+        statisticsCache.invalidateDatabase(databaseName);
+      }
+    } else if (EventType.CREATE_DATABASE.toString().equals(event.getEventType())
+        || EventType.ALTER_DATABASE.toString().equals(event.getEventType())) {
+      cache.invalidateDatabase(databaseName);
+    }
+  }
+
+  private static boolean isPartitionEvent(NotificationEvent event) {
+    String eventType = event.getEventType();
+    return EventType.ADD_PARTITION.toString().equals(eventType)
+        || EventType.ALTER_PARTITION.toString().equals(eventType)
+        || EventType.DROP_PARTITION.toString().equals(eventType)
+        || EventType.INSERT.toString().equals(eventType);
+  }
+
+  private void updatePartitions(NotificationEvent event) {
+    String databaseName = event.getDbName();
+    String tableName = event.getTableName();
+    MessageDeserializer deserializer = MessageFactory.getInstance().getDeserializer();
+    try {
+      switch (EventType.valueOf(event.getEventType())) {
+      case ADD_PARTITION:
+        AddPartitionMessage addMessage = deserializer.getAddPartitionMessage(event.getMessage());
+        Iterable<Partition> added = addMessage.getPartitionObjs();
+        partitionCache.update(databaseName, tableName, partitions -> {
+          for (Partition partition : added) {
+            partitions.put(partition);
+          }
+        });
+        break;
+      case ALTER_PARTITION:
+        AlterPartitionMessage alterMessage = deserializer.getAlterPartitionMessage(event.getMessage());
+        Map<String, String> before = alterMessage.getKeyValues();
+        Partition after = alterMessage.getPtnObjAfter();
+        partitionCache.update(databaseName, tableName, partitions -> {
+          partitions.remove(before);
+          partitions.put(after);
+        });
+        break;
+      case DROP_PARTITION:
+        DropPartitionMessage dropMessage = deserializer.getDropPartitionMessage(event.getMessage());
+        List<Map<String, String>> dropped = dropMessage.getPartitions();
+        partitionCache.update(databaseName, tableName, partitions -> {
+          for (Map<String, String> keyValues : dropped) {
+            partitions.remove(keyValues);
+          }
+        });
+        break;
+      case ALTER_TABLE:
+        AlterTableMessage alterTableMessage = deserializer.getAlterTableMessage(event.getMessage());
+        if (changesPartitions(alterTableMessage.getTableObjBefore(), alterTableMessage.getTableObjAfter())) {
+          partitionCache.invalidate(databaseName, tableName);
+        }
+        break;
+      case INSERT:
+        break;
+      default:
+        partitionCache.invalidate(databaseName, tableName);
+      }
+    } catch (Exception e) {
+      log.debug("Can't read event {} of metastore {}, dropping cached partitions of {}.{}", event.getEventId(), name,
+          databaseName, tableName, e);
+      partitionCache.invalidate(databaseName, tableName);
+    }
+  }
+
+  private static boolean changesPartitions(Table before, Table after) {
+    return !Objects.equals(before.getDbName(), after.getDbName())
+        || !Objects.equals(before.getTableName(), after.getTableName())
+        || !Objects.equals(before.getPartitionKeys(), after.getPartitionKeys())
+        || !Objects.equals(before.getSd(), after.getSd());
+  }
+
+  private static String qualifiedName(String databaseName, String tableName) {
+    return (databaseName + "." + tableName).toLowerCase(Locale.ROOT);
+  }
+
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hive.metastore.Warehouse;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.hadoop.hive.metastore.api.Partition;
+
+/**
+ * All the partitions of a table, by partition name. Partitions are copied in and out.
+ */
+class TablePartitions {
+
+  private static final TablePartitions UNCACHEABLE = new TablePartitions(null);
+
+  private final List<FieldSchema> partitionKeys;
+  private final ConcurrentNavigableMap<String, Partition> partitions = new ConcurrentSkipListMap<>();
+  private final AtomicLong bytes = new AtomicLong();
+
+  TablePartitions(List<FieldSchema> partitionKeys) {
+    this.partitionKeys = partitionKeys;
+  }
+
+  /**
+   * @return a placeholder for a table with too many partitions to be cached
+   */
+  static TablePartitions uncacheable() {
+    return UNCACHEABLE;
+  }
+
+  boolean isCacheable() {
+    return this != UNCACHEABLE;
+  }
+
+  List<FieldSchema> getPartitionKeys() {
+    return partitionKeys;
+  }
+
+  long getBytes() {
+    return bytes.get();
+  }
+
+  void put(Partition partition) throws MetaException {
+    put(Warehouse.makePartName(partitionKeys, partition.getValues()), partition);
+  }
+
+  void putAll(Collection<Partition> partitions) throws MetaException {
+    for (Partition partition : partitions) {
+      put(partition);
+    }
+  }
+
+  void remove(List<String> values) throws MetaException {
+    Partition previous = partitions.remove(Warehouse.makePartName(partitionKeys, values));
+    if (previous != null) {
+      bytes.addAndGet(-MetaStoreMetadataCache.weigh(previous));
+    }
+  }
+
+  void remove(Map<String, String> keyValues) throws MetaException {
+    List<String> values = new ArrayList<>(partitionKeys.size());
+    for (FieldSchema partitionKey : partitionKeys) {
+      values.add(keyValues.get(partitionKey.getName()));
+    }
+    remove(values);
+  }
+
+  /**
+   * @param max maximum number of names returned, all of them if negative
+   */
+  List<String> getNames(int max) {
+    List<String> names = new ArrayList<>();
+    for (String name : partitions.keySet()) {
+      if (max >= 0 && names.size() >= max) {
+        break;
+      }
+      names.add(name);
+    }
+    return names;
+  }
+
+  /**
+   * @return the partitions with the given names in the same order, unknown names are skipped
+   */
+  List<Partition> getByNames(List<String> names) {
+    List<Partition> result = new ArrayList<>(names.size());
+    for (String name : names) {
+      Partition partition = partitions.get(name);
+      if (partition != null) {
+        result.add(partition.deepCopy());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param partialValues leading values of the partitions, an empty value matches any value
+   * @param max maximum number of partitions returned, all of them if negative
+   */
+  List<Partition> getByPartialValues(List<String> partialValues, int max) {
+    List<Partition> result = new ArrayList<>();
+    for (Partition partition : partitions.values()) {
+      if (max >= 0 && result.size() >= max) {
+        break;
+      }
+      if (matches(partition.getValues(), partialValues)) {
+        result.add(partition.deepCopy());
+      }
+    }
+    return result;
+  }
+
+  List<String> getNamesByPartialValues(List<String> partialValues, int max) {
+    List<String> result = new ArrayList<>();
+    for (Map.Entry<String, Partition> entry : partitions.entrySet()) {
+      if (max >= 0 && result.size() >= max) {
+        break;
+      }
+      if (matches(entry.getValue().getValues(), partialValues)) {
+        result.add(entry.getKey());
+      }
+    }
+    return result;
+  }
+
+  private void put(String name, Partition partition) {
+    Partition copy = partition.deepCopy();
+    Partition previous = partitions.put(name, copy);
+    bytes.addAndGet(MetaStoreMetadataCache.weigh(copy) - (previous == null ? 0 : MetaStoreMetadataCache.weigh(previous)));
+  }
+
+  private static boolean matches(List<String> values, List<String> partialValues) {
+    for (int i = 0; i < partialValues.size(); i++) {
+      String partialValue = partialValues.get(i);
+      if (!partialValue.isEmpty() && !partialValue.equals(values.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
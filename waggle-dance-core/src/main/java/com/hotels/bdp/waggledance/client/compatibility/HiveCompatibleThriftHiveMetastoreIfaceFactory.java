@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,90 +15,155 @@
  */
 package com.hotels.bdp.waggledance.client.compatibility;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 import org.apache.hadoop.hive.metastore.api.ThriftHiveMetastore;
 import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TException;
+import org.apache.thrift.transport.TTransport;
 
-import lombok.AllArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.log4j.Log4j2;
 
+import com.google.common.annotations.VisibleForTesting;
+
 import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIface;
+import com.hotels.bdp.waggledance.client.DispatchingMetaStoreClient;
 
+/**
+ * Creates clients calling {@link HiveThriftMetaStoreIfaceCompatibility} when the metastore doesn't know a method, i.e.
+ * a Hive 1.x metastore. The methods a metastore doesn't know are remembered per metastore URI by all the clients of the
+ * factory, their later calls go straight to the compatibility layer rather than failing on the metastore first.
+ * <p>
+ * The {@code metastore_compatibility_unsupported} counter is incremented when a metastore fails a method it doesn't
+ * know and {@code metastore_compatibility_calls} for every call made by the compatibility layer, both tagged with the
+ * metastore URI and the method.
+ */
 @Log4j2
 public class HiveCompatibleThriftHiveMetastoreIfaceFactory {
 
-  @AllArgsConstructor
-  private static class ThriftMetaStoreClientInvocationHandler implements InvocationHandler {
+  static final String URI_TAG_NAME = "metastore_uri";
+  static final String METHOD_TAG_NAME = "method";
+  static final String UNSUPPORTED_METRIC_NAME = "metastore_compatibility_unsupported";
+  static final String CALLS_METRIC_NAME = "metastore_compatibility_calls";
+
+  private class HiveCompatibleMetaStoreClient extends DispatchingMetaStoreClient {
 
+    private final String uri;
     private final ThriftHiveMetastore.Client delegate;
     private final HiveThriftMetaStoreIfaceCompatibility compatibility;
+    private final UnsupportedMethods unsupportedMethods;
+
+    private HiveCompatibleMetaStoreClient(
+        String uri,
+        ThriftHiveMetastore.Client delegate,
+        HiveThriftMetaStoreIfaceCompatibility compatibility,
+        UnsupportedMethods unsupportedMethods) {
+      this.uri = uri;
+      this.delegate = delegate;
+      this.compatibility = compatibility;
+      this.unsupportedMethods = unsupportedMethods;
+    }
 
     @Override
-    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    protected <T> T dispatch(String methodName, Object[] arguments, Call<T> call) throws TException {
+      return call.call(delegate);
+    }
+
+    @Override
+    protected <T> T dispatch(
+        String methodName,
+        Object[] arguments,
+        Call<T> call,
+        CompatibilityCall<T> compatibilityCall)
+      throws TException {
+      if (unsupportedMethods.isUnsupported(methodName)) {
+        return callCompatibility(methodName, compatibilityCall);
+      }
       try {
-        return method.invoke(delegate, args);
-      } catch (InvocationTargetException delegateException) {
+        return call.call(delegate);
+      } catch (TApplicationException delegateException) {
+        if (delegateException.getType() == TApplicationException.UNKNOWN_METHOD
+            && unsupportedMethods.unsupported(methodName)) {
+          meterRegistry.counter(UNSUPPORTED_METRIC_NAME, URI_TAG_NAME, uri, METHOD_TAG_NAME, methodName).increment();
+          log
+              .info("Metastore {} doesn't support method {}, calling {} instead for the next {} minutes", uri,
+                  methodName, compatibility.getClass().getName(),
+                  TimeUnit.NANOSECONDS.toMinutes(UnsupportedMethods.REPROBE_INTERVAL_NANOS));
+        } else {
+          log.info("Couldn't invoke method {}", methodName);
+          log.info("Attempting to invoke with {}", compatibility.getClass().getName());
+        }
         try {
-          log.info("Couldn't invoke method {}", method.toGenericString());
-          if (delegateException.getCause().getClass().isAssignableFrom(TApplicationException.class)) {
-            log.info("Attempting to invoke with {}", compatibility.getClass().getName());
-            return invokeCompatibility(method, args);
-          }
-        } catch (InvocationTargetException compatibilityException) {
-          if (compatibilityException.getCause().getClass().isAssignableFrom(TApplicationException.class)) {
-            log
-                .warn(
-                    "Invocation of compatibility for metastore client method {} failed. Will rethrow original exception, logging exception from compatibility layer",
-                    method.getName(), compatibilityException);
-          } else {
-            throw compatibilityException.getCause();
-          }
-        } catch (Throwable t) {
+          return callCompatibility(methodName, compatibilityCall);
+        } catch (TApplicationException compatibilityException) {
+          log
+              .warn(
+                  "Invocation of compatibility for metastore client method {} failed. Will rethrow original exception, logging exception from compatibility layer",
+                  methodName, compatibilityException);
+        } catch (RuntimeException e) {
           log
               .warn(
                   "Unable to invoke compatibility for metastore client method {}. Will rethrow original exception, logging exception from invocation handler",
-                  method.getName(), t);
+                  methodName, e);
         }
-        throw delegateException.getCause();
+        throw delegateException;
       }
     }
 
-    private Object invokeCompatibility(Method method, Object[] args) throws Throwable {
-      Class<?>[] argTypes = getTypes(args);
-      Method compatibilityMethod = compatibility.getClass().getMethod(method.getName(), argTypes);
-      return compatibilityMethod.invoke(compatibility, args);
+    private <T> T callCompatibility(String methodName, CompatibilityCall<T> compatibilityCall) throws TException {
+      meterRegistry.counter(CALLS_METRIC_NAME, URI_TAG_NAME, uri, METHOD_TAG_NAME, methodName).increment();
+      return compatibilityCall.call(compatibility);
     }
 
-    private Class<?>[] getTypes(Object[] args) {
-      if (args == null) {
-        return new Class<?>[] {};
-      }
-      Class<?>[] argTypes = new Class<?>[args.length];
-      for (int i = 0; i < args.length; ++i) {
-        argTypes[i] = args[i].getClass();
-      }
-      return argTypes;
+    @Override
+    public boolean isOpen() {
+      return transport().isOpen();
+    }
+
+    @Override
+    public void close() {
+      transport().close();
+    }
+
+    private TTransport transport() {
+      return delegate.getOutputProtocol().getTransport();
     }
 
   }
 
-  public CloseableThriftHiveMetastoreIface newInstance(ThriftHiveMetastore.Client delegate) {
-    HiveThriftMetaStoreIfaceCompatibility compatibility = new HiveThriftMetaStoreIfaceCompatibility1xx(delegate);
-    return newInstance(delegate, compatibility);
+  private final MeterRegistry meterRegistry;
+  private final LongSupplier nanoTime;
+  private final Map<String, UnsupportedMethods> unsupportedMethodsByUri = new ConcurrentHashMap<>();
+
+  public HiveCompatibleThriftHiveMetastoreIfaceFactory() {
+    this(new SimpleMeterRegistry());
+  }
+
+  public HiveCompatibleThriftHiveMetastoreIfaceFactory(MeterRegistry meterRegistry) {
+    this(meterRegistry, System::nanoTime);
   }
 
-  private CloseableThriftHiveMetastoreIface newInstance(
-      ThriftHiveMetastore.Client delegate,
-      HiveThriftMetaStoreIfaceCompatibility compatibility) {
-    ClassLoader classLoader = CloseableThriftHiveMetastoreIface.class.getClassLoader();
-    Class<?>[] interfaces = new Class<?>[] { CloseableThriftHiveMetastoreIface.class };
-    ThriftMetaStoreClientInvocationHandler handler = new ThriftMetaStoreClientInvocationHandler(delegate,
-        compatibility);
-    return (CloseableThriftHiveMetastoreIface) Proxy.newProxyInstance(classLoader, interfaces, handler);
+  @VisibleForTesting
+  HiveCompatibleThriftHiveMetastoreIfaceFactory(MeterRegistry meterRegistry, LongSupplier nanoTime) {
+    this.meterRegistry = meterRegistry;
+    this.nanoTime = nanoTime;
+  }
+
+  /**
+   * @param uri the URI of the metastore {@code delegate} is connected to
+   */
+  public CloseableThriftHiveMetastoreIface newInstance(URI uri, ThriftHiveMetastore.Client delegate) {
+    HiveThriftMetaStoreIfaceCompatibility compatibility = new HiveThriftMetaStoreIfaceCompatibility1xx(delegate);
+    String key = String.valueOf(uri);
+    UnsupportedMethods unsupportedMethods = unsupportedMethodsByUri
+        .computeIfAbsent(key, k -> new UnsupportedMethods(nanoTime));
+    return new HiveCompatibleMetaStoreClient(key, delegate, compatibility, unsupportedMethods);
   }
 
 }
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client.compatibility;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.apache.thrift.TApplicationException;
+
+/**
+ * The methods a metastore doesn't know, learnt from the {@link TApplicationException#UNKNOWN_METHOD} errors it answers
+ * them with. A method stays unsupported for {@link #REPROBE_INTERVAL_NANOS}, it is then sent to the metastore again so
+ * an upgraded metastore is used once the interval is over.
+ */
+final class UnsupportedMethods {
+
+  static final long REPROBE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+  private final Map<String, Long> reprobeNanosByMethod = new ConcurrentHashMap<>();
+  private final LongSupplier nanoTime;
+
+  UnsupportedMethods(LongSupplier nanoTime) {
+    this.nanoTime = nanoTime;
+  }
+
+  boolean isUnsupported(String methodName) {
+    Long reprobeNanos = reprobeNanosByMethod.get(methodName);
+    if (reprobeNanos == null) {
+      return false;
+    }
+    if (nanoTime.getAsLong() - reprobeNanos < 0) {
+      return true;
+    }
+    reprobeNanosByMethod.remove(methodName, reprobeNanos);
+    return false;
+  }
+
+  /**
+   * @return {@code true} if the method wasn't already known to be unsupported
+   */
+  boolean unsupported(String methodName) {
+    return reprobeNanosByMethod.put(methodName, nanoTime.getAsLong() + REPROBE_INTERVAL_NANOS) == null;
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,8 +17,6 @@ package com.hotels.bdp.waggledance.client.tunnelling;
 
 import org.apache.hadoop.hive.conf.HiveConf;
 
-import com.google.common.annotations.VisibleForTesting;
-
 import com.hotels.bdp.waggledance.client.DefaultMetaStoreClientFactory;
 import com.hotels.bdp.waggledance.client.MetaStoreClientFactory;
 
@@ -27,7 +25,6 @@ public class HiveMetaStoreClientSupplierFactory {
 
   private final MetaStoreClientFactory factory;
 
-  @VisibleForTesting
   HiveMetaStoreClientSupplierFactory(MetaStoreClientFactory factory) {
     this.factory = factory;
   }
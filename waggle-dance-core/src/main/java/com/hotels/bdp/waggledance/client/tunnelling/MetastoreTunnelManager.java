@@ -0,0 +1,358 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client.tunnelling;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import com.hotels.bdp.waggledance.util.ThreadFactories;
+import com.hotels.hcommon.hive.metastore.client.tunnelling.MetastoreTunnel;
+import com.hotels.hcommon.ssh.SshException;
+import com.hotels.hcommon.ssh.com.jcraft.jsch.JSchException;
+import com.hotels.hcommon.ssh.com.pastdev.jsch.tunnel.TunnelConnectionManager;
+
+/**
+ * Shares one SSH tunnel between all the clients of a metastore reached through the same {@link MetastoreTunnel}
+ * configuration. A tunnel is a single SSH session forwarding a local port, each client connection to the port is a
+ * channel multiplexed over the session, so the SSH handshake is paid once per tunnel rather than once per client.
+ * Tunnels are opened with their first client and closed with their last one.
+ * <p>
+ * Each tunnel is checked every {@code healthCheckIntervalMillis}, and right after a client found its metastore
+ * unavailable. A tunnel whose session went away is re-established on the same local port so its clients only have to
+ * reconnect.
+ * <p>
+ * The {@code metastore_tunnel_channels} gauge, i.e. the clients using the tunnels, the
+ * {@code metastore_tunnel_handshake} timer and the {@code metastore_tunnel_reconnects} counter are published tagged
+ * with the metastore at the end of the tunnels.
+ */
+@Log4j2
+public class MetastoreTunnelManager implements Closeable {
+
+  public static final long DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  static final String TUNNEL_TAG_NAME = "tunnel";
+  static final String CHANNELS_METRIC_NAME = "metastore_tunnel_channels";
+  static final String HANDSHAKE_METRIC_NAME = "metastore_tunnel_handshake";
+  static final String RECONNECTS_METRIC_NAME = "metastore_tunnel_reconnects";
+
+  /**
+   * SSH tunnel to a metastore, see {@link MetastoreTunnelManager#acquire(MetastoreTunnel, String, int)}.
+   */
+  final class SharedTunnel {
+
+    private final List<Object> key;
+    private final String name;
+    private final String localHost;
+    private final int localPort;
+    private final TunnelConnectionManager connectionManager;
+    private final Timer handshake;
+    private final Counter reconnects;
+    // Handshakes block on the network, a lock rather than a monitor so waiting virtual threads don't pin their carrier
+    private final Lock lock = new ReentrantLock();
+    private volatile boolean open = false;
+    // Guarded by the lock
+    private boolean opened = false;
+    private boolean closed = false;
+    // Guarded by the lock of the manager
+    private int channels = 0;
+    private ScheduledFuture<?> healthCheck;
+
+    private SharedTunnel(
+        List<Object> key,
+        String name,
+        String localHost,
+        int localPort,
+        TunnelConnectionManager connectionManager) {
+      this.key = key;
+      this.name = name;
+      this.localHost = localHost;
+      this.localPort = localPort;
+      this.connectionManager = connectionManager;
+      handshake = Timer.builder(HANDSHAKE_METRIC_NAME).tag(TUNNEL_TAG_NAME, name).register(meterRegistry);
+      reconnects = Counter.builder(RECONNECTS_METRIC_NAME).tag(TUNNEL_TAG_NAME, name).register(meterRegistry);
+    }
+
+    String getLocalHost() {
+      return localHost;
+    }
+
+    int getLocalPort() {
+      return localPort;
+    }
+
+    boolean isOpen() {
+      return open;
+    }
+
+    /**
+     * Opens the SSH session of the tunnel unless it is already open. Concurrent callers wait for a single handshake.
+     *
+     * @throws SshException if the session can't be opened
+     */
+    void ensureOpen() {
+      if (open) {
+        return;
+      }
+      lock.lock();
+      try {
+        if (open) {
+          return;
+        }
+        long start = System.nanoTime();
+        if (opened) {
+          connectionManager.ensureOpen();
+        } else {
+          connectionManager.open();
+          opened = true;
+        }
+        handshake.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        open = true;
+      } catch (JSchException | RuntimeException e) {
+        throw new SshException("Unable to open SSH tunnel to " + name, e);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Re-establishes the tunnel if its session went away, i.e. the session no longer forwards the local port.
+     */
+    @VisibleForTesting
+    void check() {
+      lock.lock();
+      try {
+        if (closed) {
+          return;
+        }
+        if (open) {
+          if (isForwarding()) {
+            return;
+          }
+          log.warn("SSH tunnel to {} went away, re-establishing it on local port {}", name, localPort);
+          open = false;
+          reconnects.increment();
+        }
+        ensureOpen();
+      } catch (SshException e) {
+        log.warn("Unable to re-establish SSH tunnel to {}, will retry", name, e);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Checks the tunnel in the background right away, i.e. after a client lost its metastore.
+     */
+    void checkSoon() {
+      try {
+        scheduler.execute(this::check);
+      } catch (RejectedExecutionException e) {
+        // Shutting down
+      }
+    }
+
+    /**
+     * Releases the tunnel acquired by a client, closing it if this was its last client.
+     */
+    void release() {
+      MetastoreTunnelManager.this.release(this);
+    }
+
+    private boolean isForwarding() {
+      // Binding the port rather than connecting to it so no channel is opened to the metastore
+      try (ServerSocket socket = new ServerSocket(localPort, 1, InetAddress.getByName(localHost))) {
+        return false;
+      } catch (IOException e) {
+        return true;
+      }
+    }
+
+    private void close() {
+      lock.lock();
+      try {
+        closed = true;
+        open = false;
+        connectionManager.close();
+      } catch (RuntimeException e) {
+        log.warn("Error closing SSH tunnel to {}", name, e);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private final TunnelableFactorySupplier tunnelableFactorySupplier;
+  private final long healthCheckIntervalMillis;
+  private final ScheduledExecutorService scheduler;
+  private final MeterRegistry meterRegistry;
+  private final Lock lock = new ReentrantLock();
+  // Guarded by the lock
+  private final Map<List<Object>, SharedTunnel> tunnels = new HashMap<>();
+  private final Set<String> gauges = new HashSet<>();
+
+  public MetastoreTunnelManager(MeterRegistry meterRegistry) {
+    this(new TunnelableFactorySupplier(), DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS,
+        ThreadFactories.newThreadFactory("waggle-dance-tunnel-health-check", false), meterRegistry);
+  }
+
+  /**
+   * @param healthCheckIntervalMillis delay between the end of a check of a tunnel and the next one
+   */
+  public MetastoreTunnelManager(
+      TunnelableFactorySupplier tunnelableFactorySupplier,
+      long healthCheckIntervalMillis,
+      ThreadFactory threadFactory,
+      MeterRegistry meterRegistry) {
+    this.tunnelableFactorySupplier = tunnelableFactorySupplier;
+    this.healthCheckIntervalMillis = healthCheckIntervalMillis;
+    scheduler = Executors.newScheduledThreadPool(1, threadFactory);
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * @return the open tunnel to the metastore, shared with the other clients using the same tunnel configuration, to
+   *         {@link SharedTunnel#release() release} when the client is closed
+   * @throws SshException if the tunnel can't be opened
+   */
+  SharedTunnel acquire(MetastoreTunnel metastoreTunnel, String remoteHost, int remotePort) {
+    List<Object> key = Arrays
+        .asList(metastoreTunnel.getRoute(), metastoreTunnel.getPort(), metastoreTunnel.getLocalhost(),
+            metastoreTunnel.getPrivateKeys(), metastoreTunnel.getKnownHosts(), metastoreTunnel.getTimeout(),
+            metastoreTunnel.isStrictHostKeyCheckingEnabled(), remoteHost, remotePort);
+    SharedTunnel tunnel;
+    lock.lock();
+    try {
+      tunnel = tunnels.get(key);
+      if (tunnel == null) {
+        tunnel = newTunnel(key, metastoreTunnel, remoteHost, remotePort);
+        tunnels.put(key, tunnel);
+      }
+      tunnel.channels++;
+    } finally {
+      lock.unlock();
+    }
+    try {
+      tunnel.ensureOpen();
+    } catch (RuntimeException e) {
+      release(tunnel);
+      throw e;
+    }
+    return tunnel;
+  }
+
+  private SharedTunnel newTunnel(
+      List<Object> key,
+      MetastoreTunnel metastoreTunnel,
+      String remoteHost,
+      int remotePort) {
+    String name = remoteHost + ":" + remotePort;
+    String localHost = metastoreTunnel.getLocalhost();
+    // Fixed for the life of the tunnel so the clients reconnect to the same port after a re-establishment
+    int localPort = getLocalPort();
+    TunnelConnectionManager connectionManager = tunnelableFactorySupplier
+        .getTunnelConnectionManagerFactory(metastoreTunnel)
+        .create(localHost, localPort, remoteHost, remotePort);
+    SharedTunnel tunnel = new SharedTunnel(key, name, localHost, localPort, connectionManager);
+    if (gauges.add(name)) {
+      Gauge
+          .builder(CHANNELS_METRIC_NAME, this, manager -> manager.channels(name))
+          .tag(TUNNEL_TAG_NAME, name)
+          .register(meterRegistry);
+    }
+    try {
+      tunnel.healthCheck = scheduler
+          .scheduleWithFixedDelay(tunnel::check, healthCheckIntervalMillis, healthCheckIntervalMillis,
+              TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // Shutting down, the tunnel is not checked
+    }
+    log.info("Sharing SSH tunnel to {} on local port {}", name, localPort);
+    return tunnel;
+  }
+
+  private void release(SharedTunnel tunnel) {
+    lock.lock();
+    try {
+      if (--tunnel.channels > 0) {
+        return;
+      }
+      tunnels.remove(tunnel.key, tunnel);
+      if (tunnel.healthCheck != null) {
+        tunnel.healthCheck.cancel(false);
+      }
+    } finally {
+      lock.unlock();
+    }
+    log.info("Closing SSH tunnel to {} on local port {}", tunnel.name, tunnel.localPort);
+    tunnel.close();
+  }
+
+  private int channels(String name) {
+    lock.lock();
+    try {
+      return tunnels.values().stream().filter(t -> t.name.equals(name)).mapToInt(t -> t.channels).sum();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private int getLocalPort() {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    } catch (IOException | RuntimeException e) {
+      throw new SshException("Unable to bind to a free localhost port", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+    lock.lock();
+    try {
+      for (SharedTunnel tunnel : tunnels.values()) {
+        tunnel.close();
+      }
+      tunnels.clear();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2019 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,21 +17,20 @@ package com.hotels.bdp.waggledance.client.tunnelling;
 
 import com.google.common.annotations.VisibleForTesting;
 
-import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIface;
 import com.hotels.hcommon.hive.metastore.client.tunnelling.MetastoreTunnel;
 import com.hotels.hcommon.ssh.SshSettings;
-import com.hotels.hcommon.ssh.TunnelableFactory;
+import com.hotels.hcommon.ssh.session.DefaultSessionFactorySupplier;
+import com.hotels.hcommon.ssh.tunnel.DefaultTunnelConnectionManagerFactory;
+import com.hotels.hcommon.ssh.tunnel.TunnelConnectionManagerFactory;
 
 public class TunnelableFactorySupplier {
 
-  /*
-   * Note at the moment this class will create a factory each time the method is invoked. This means that each new
-   * client will have its own exclusive SSH tunnel. We could cache the factory instead and use one tunnel for each
-   * HiveConf, i.e. federated metastore configuration, and share the tunnel for all its clients. We must evaluate what's
-   * more convenient/efficient in Waggle Dance.
+  /**
+   * @return a factory of the SSH tunnels of the configuration, the tunnels are shared by {@link MetastoreTunnelManager}
    */
-  public TunnelableFactory<CloseableThriftHiveMetastoreIface> get(MetastoreTunnel metastoreTunnel) {
-    return new TunnelableFactory<>(buildSshSettings(metastoreTunnel));
+  public TunnelConnectionManagerFactory getTunnelConnectionManagerFactory(MetastoreTunnel metastoreTunnel) {
+    SshSettings sshSettings = buildSshSettings(metastoreTunnel);
+    return new DefaultTunnelConnectionManagerFactory(sshSettings, new DefaultSessionFactorySupplier(sshSettings));
   }
 
   @VisibleForTesting
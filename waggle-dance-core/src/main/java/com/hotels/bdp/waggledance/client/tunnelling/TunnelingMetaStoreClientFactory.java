@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,46 +16,100 @@
 package com.hotels.bdp.waggledance.client.tunnelling;
 
 import java.io.IOException;
-import java.net.ServerSocket;
 import java.net.URI;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
+import org.apache.thrift.TException;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.log4j.Log4j2;
 
 import com.google.common.annotations.VisibleForTesting;
 
 import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIface;
+import com.hotels.bdp.waggledance.client.DispatchingMetaStoreClient;
+import com.hotels.bdp.waggledance.client.MetaStoreClientFactory;
 import com.hotels.hcommon.hive.metastore.client.tunnelling.MetastoreTunnel;
 import com.hotels.hcommon.hive.metastore.conf.HiveConfFactory;
-import com.hotels.hcommon.ssh.MethodChecker;
-import com.hotels.hcommon.ssh.SshException;
-import com.hotels.hcommon.ssh.TunnelableFactory;
+import com.hotels.hcommon.hive.metastore.exception.MetastoreUnavailableException;
 
 @Log4j2
 public class TunnelingMetaStoreClientFactory {
 
-  @VisibleForTesting
-  final MethodChecker METHOD_CHECKER = new MetastoreClientMethodChecker();
+  /**
+   * Client of a metastore at the end of a shared tunnel. The tunnel is re-established before the calls if it went away
+   * and released when the client is closed.
+   */
+  private static class TunnellingMetaStoreClient extends DispatchingMetaStoreClient {
+
+    private final CloseableThriftHiveMetastoreIface client;
+    private final MetastoreTunnelManager.SharedTunnel tunnel;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private TunnellingMetaStoreClient(
+        CloseableThriftHiveMetastoreIface client,
+        MetastoreTunnelManager.SharedTunnel tunnel) {
+      this.client = client;
+      this.tunnel = tunnel;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return tunnel.isOpen() && client.isOpen();
+    }
 
-  private final TunnelableFactorySupplier tunnelableFactorySupplier;
+    @Override
+    public void close() throws IOException {
+      if (!closed.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        client.close();
+      } finally {
+        tunnel.release();
+      }
+    }
+
+    @Override
+    protected <T> T dispatch(String methodName, Object[] arguments, Call<T> call) throws TException {
+      tunnel.ensureOpen();
+      try {
+        return forward(client, methodName, arguments, call);
+      } catch (MetastoreUnavailableException e) {
+        tunnel.checkSoon();
+        throw e;
+      }
+    }
+  }
+
+  private final MetastoreTunnelManager tunnelManager;
   private final LocalHiveConfFactory localHiveConfFactory;
   private final HiveMetaStoreClientSupplierFactory hiveMetaStoreClientSupplierFactory;
 
   public TunnelingMetaStoreClientFactory() {
-    this(new TunnelableFactorySupplier(), new LocalHiveConfFactory(), new HiveMetaStoreClientSupplierFactory());
+    this(new MetastoreTunnelManager(new SimpleMeterRegistry()), new LocalHiveConfFactory(),
+        new HiveMetaStoreClientSupplierFactory());
+  }
+
+  /**
+   * @param factory creates the clients of the metastores at the end of the tunnels
+   * @param tunnelManager shares the tunnels between the clients
+   */
+  public TunnelingMetaStoreClientFactory(MetaStoreClientFactory factory, MetastoreTunnelManager tunnelManager) {
+    this(tunnelManager, new LocalHiveConfFactory(), new HiveMetaStoreClientSupplierFactory(factory));
   }
 
   @VisibleForTesting
   TunnelingMetaStoreClientFactory(
-      TunnelableFactorySupplier tunnelableFactorySupplier,
+      MetastoreTunnelManager tunnelManager,
       LocalHiveConfFactory localHiveConfFactory,
       HiveMetaStoreClientSupplierFactory hiveMetaStoreClientSupplierFactory) {
-    this.tunnelableFactorySupplier = tunnelableFactorySupplier;
+    this.tunnelManager = tunnelManager;
     this.localHiveConfFactory = localHiveConfFactory;
     this.hiveMetaStoreClientSupplierFactory = hiveMetaStoreClientSupplierFactory;
   }
@@ -67,46 +121,51 @@ public class TunnelingMetaStoreClientFactory {
       int reconnectionRetries,
       int connectionTimeout,
       Map<String, String> configurationProperties) {
-    String uri = uris;
-    String[] urisSplit = uri.split(",");
-    if (urisSplit.length > 1) {
-      uri = urisSplit[0];
-      log.debug("Can't support multiple uris '{}' for tunneling endpoint, using first '{}'", uris, uri);
-    }
-    String localHost = metastoreTunnel.getLocalhost();
-    int localPort = getLocalPort();
-
     Map<String, String> properties = new HashMap<>();
-    properties.put(ConfVars.METASTOREURIS.varname, uri);
+    properties.put(ConfVars.METASTOREURIS.varname, firstUri(uris));
     if (configurationProperties != null) {
-    properties.putAll(configurationProperties);
+      properties.putAll(configurationProperties);
     }
     HiveConfFactory confFactory = new HiveConfFactory(Collections.<String>emptyList(), properties);
-    HiveConf localHiveConf = localHiveConfFactory.newInstance(localHost, localPort, confFactory.newInstance());
-
-    TunnelableFactory<CloseableThriftHiveMetastoreIface> tunnelableFactory = tunnelableFactorySupplier
-        .get(metastoreTunnel);
-
-    log
-        .info("Metastore URI {} is being proxied through {}", uri,
-            localHiveConf.getVar(HiveConf.ConfVars.METASTOREURIS));
-
-    HiveMetaStoreClientSupplier supplier = hiveMetaStoreClientSupplierFactory
-        .newInstance(localHiveConf, name, reconnectionRetries, connectionTimeout);
+    return newInstance(uris, metastoreTunnel, name, reconnectionRetries, connectionTimeout, confFactory.newInstance());
+  }
 
+  /**
+   * @param hiveConf the configuration of the metastore, shared and not modified by the client
+   */
+  public CloseableThriftHiveMetastoreIface newInstance(
+      String uris,
+      MetastoreTunnel metastoreTunnel,
+      String name,
+      int reconnectionRetries,
+      int connectionTimeout,
+      HiveConf hiveConf) {
+    String uri = firstUri(uris);
     URI metaStoreUri = URI.create(uri);
-    String remoteHost = metaStoreUri.getHost();
-    int remotePort = metaStoreUri.getPort();
-    return (CloseableThriftHiveMetastoreIface) tunnelableFactory
-        .wrap(supplier, METHOD_CHECKER, localHost, localPort, remoteHost, remotePort);
+    MetastoreTunnelManager.SharedTunnel tunnel = tunnelManager
+        .acquire(metastoreTunnel, metaStoreUri.getHost(), metaStoreUri.getPort());
+    try {
+      HiveConf localHiveConf = localHiveConfFactory.newInstance(tunnel.getLocalHost(), tunnel.getLocalPort(), hiveConf);
+
+      log
+          .info("Metastore URI {} is being proxied through {}", uri,
+              localHiveConf.getVar(HiveConf.ConfVars.METASTOREURIS));
+
+      HiveMetaStoreClientSupplier supplier = hiveMetaStoreClientSupplierFactory
+          .newInstance(localHiveConf, name, reconnectionRetries, connectionTimeout);
+      return new TunnellingMetaStoreClient(supplier.get(), tunnel);
+    } catch (RuntimeException e) {
+      tunnel.release();
+      throw e;
+    }
   }
 
-  private int getLocalPort() {
-    try (ServerSocket socket = new ServerSocket(0)) {
-      return socket.getLocalPort();
-    } catch (IOException | RuntimeException e) {
-      throw new SshException("Unable to bind to a free localhost port", e);
+  private static String firstUri(String uris) {
+    String[] urisSplit = uris.split(",");
+    if (urisSplit.length > 1) {
+      log.debug("Can't support multiple uris '{}' for tunneling endpoint, using first '{}'", uris, urisSplit[0]);
     }
+    return urisSplit[0];
   }
 
 }
@@ -0,0 +1,28 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.conf;
+
+public enum ThriftServerType {
+
+  /** One thread per client connection, see {@link org.apache.thrift.server.TThreadPoolServer}. */
+  THREAD_POOL,
+  /**
+   * Selector threads watch the client connections and hand the requests over to a bounded pool of workers, see
+   * {@link org.apache.thrift.server.TThreadedSelectorServer}. Requires framed transport on the clients.
+   */
+  THREADED_SELECTOR
+
+}
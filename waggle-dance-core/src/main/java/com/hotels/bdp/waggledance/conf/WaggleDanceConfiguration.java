@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -26,6 +26,7 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Configuration;
 
 import com.hotels.bdp.waggledance.api.model.DatabaseResolution;
+import com.hotels.bdp.waggledance.mapping.service.FanOutExecutor;
 import com.hotels.bdp.waggledance.server.MetaStoreProxyServer;
 
 @Configuration
@@ -45,8 +46,28 @@ public class WaggleDanceConfiguration {
   private int thriftServerStopTimeoutValInSeconds = 60;
   private int thriftServerRequestTimeout = 20;
   private TimeUnit thriftServerRequestTimeoutUnit = TimeUnit.SECONDS;
+  private @NotNull ThriftServerType thriftServerType = ThriftServerType.THREAD_POOL;
+  // Only used by the THREADED_SELECTOR server type
+  private @Min(1) int thriftServerSelectorThreads = 2;
+  private @Min(1) int thriftServerWorkerThreads = 64;
+  private @Min(1) int thriftServerWorkerQueueSize = 1000;
+  // Only honoured when the runtime supports virtual threads (Java 21+)
+  private boolean virtualThreads = false;
+  // Calls made to several metastores at once, shared by all the client requests
+  private @Min(1) int fanOutThreads = FanOutExecutor.DEFAULT_THREADS;
+  private @Min(1) int fanOutQueueSize = FanOutExecutor.DEFAULT_QUEUE_SIZE;
+  private @Min(1) int fanOutMaxConcurrencyPerMetastore = FanOutExecutor.DEFAULT_MAX_CONCURRENCY_PER_METASTORE;
+  // Identical concurrent reads of a metastore share a single call
+  private boolean requestCoalescing = false;
   private int statusPollingDelay = 5;
   private TimeUnit statusPollingDelayTimeUnit = TimeUnit.MINUTES;
+  private @Min(0) int databaseIndexRefreshDelay = 1;
+  private @NotNull TimeUnit databaseIndexRefreshDelayTimeUnit = TimeUnit.MINUTES;
+  private @Min(1) int healthCheckDelay = 10;
+  private @NotNull TimeUnit healthCheckDelayTimeUnit = TimeUnit.SECONDS;
+  private @Min(1) int healthCheckThreshold = 2;
+  private @Min(1) long healthCheckDegradedLatencyMillis = 1000;
+  private @Min(1) long healthCheckTimeoutMillis = 5000;
   // default to be backward compatible but recommended to be overwritten to false.
   private boolean queryFunctionsAcrossAllMetastores = true;
 
@@ -122,6 +143,78 @@ public class WaggleDanceConfiguration {
     this.thriftServerRequestTimeoutUnit = thriftServerRequestTimeoutUnit;
   }
 
+  public ThriftServerType getThriftServerType() {
+    return thriftServerType;
+  }
+
+  public void setThriftServerType(ThriftServerType thriftServerType) {
+    this.thriftServerType = thriftServerType;
+  }
+
+  public int getThriftServerSelectorThreads() {
+    return thriftServerSelectorThreads;
+  }
+
+  public void setThriftServerSelectorThreads(int thriftServerSelectorThreads) {
+    this.thriftServerSelectorThreads = thriftServerSelectorThreads;
+  }
+
+  public int getThriftServerWorkerThreads() {
+    return thriftServerWorkerThreads;
+  }
+
+  public void setThriftServerWorkerThreads(int thriftServerWorkerThreads) {
+    this.thriftServerWorkerThreads = thriftServerWorkerThreads;
+  }
+
+  public int getThriftServerWorkerQueueSize() {
+    return thriftServerWorkerQueueSize;
+  }
+
+  public void setThriftServerWorkerQueueSize(int thriftServerWorkerQueueSize) {
+    this.thriftServerWorkerQueueSize = thriftServerWorkerQueueSize;
+  }
+
+  public boolean isVirtualThreads() {
+    return virtualThreads;
+  }
+
+  public void setVirtualThreads(boolean virtualThreads) {
+    this.virtualThreads = virtualThreads;
+  }
+
+  public int getFanOutThreads() {
+    return fanOutThreads;
+  }
+
+  public void setFanOutThreads(int fanOutThreads) {
+    this.fanOutThreads = fanOutThreads;
+  }
+
+  public int getFanOutQueueSize() {
+    return fanOutQueueSize;
+  }
+
+  public void setFanOutQueueSize(int fanOutQueueSize) {
+    this.fanOutQueueSize = fanOutQueueSize;
+  }
+
+  public int getFanOutMaxConcurrencyPerMetastore() {
+    return fanOutMaxConcurrencyPerMetastore;
+  }
+
+  public void setFanOutMaxConcurrencyPerMetastore(int fanOutMaxConcurrencyPerMetastore) {
+    this.fanOutMaxConcurrencyPerMetastore = fanOutMaxConcurrencyPerMetastore;
+  }
+
+  public boolean isRequestCoalescing() {
+    return requestCoalescing;
+  }
+
+  public void setRequestCoalescing(boolean requestCoalescing) {
+    this.requestCoalescing = requestCoalescing;
+  }
+
   public int getStatusPollingDelay() {
     return statusPollingDelay;
   }
@@ -138,6 +231,62 @@ public class WaggleDanceConfiguration {
     this.statusPollingDelayTimeUnit = statusPollingDelayTimeUnit;
   }
 
+  public int getDatabaseIndexRefreshDelay() {
+    return databaseIndexRefreshDelay;
+  }
+
+  public void setDatabaseIndexRefreshDelay(int databaseIndexRefreshDelay) {
+    this.databaseIndexRefreshDelay = databaseIndexRefreshDelay;
+  }
+
+  public TimeUnit getDatabaseIndexRefreshDelayTimeUnit() {
+    return databaseIndexRefreshDelayTimeUnit;
+  }
+
+  public void setDatabaseIndexRefreshDelayTimeUnit(TimeUnit databaseIndexRefreshDelayTimeUnit) {
+    this.databaseIndexRefreshDelayTimeUnit = databaseIndexRefreshDelayTimeUnit;
+  }
+
+  public int getHealthCheckDelay() {
+    return healthCheckDelay;
+  }
+
+  public void setHealthCheckDelay(int healthCheckDelay) {
+    this.healthCheckDelay = healthCheckDelay;
+  }
+
+  public TimeUnit getHealthCheckDelayTimeUnit() {
+    return healthCheckDelayTimeUnit;
+  }
+
+  public void setHealthCheckDelayTimeUnit(TimeUnit healthCheckDelayTimeUnit) {
+    this.healthCheckDelayTimeUnit = healthCheckDelayTimeUnit;
+  }
+
+  public int getHealthCheckThreshold() {
+    return healthCheckThreshold;
+  }
+
+  public void setHealthCheckThreshold(int healthCheckThreshold) {
+    this.healthCheckThreshold = healthCheckThreshold;
+  }
+
+  public long getHealthCheckDegradedLatencyMillis() {
+    return healthCheckDegradedLatencyMillis;
+  }
+
+  public void setHealthCheckDegradedLatencyMillis(long healthCheckDegradedLatencyMillis) {
+    this.healthCheckDegradedLatencyMillis = healthCheckDegradedLatencyMillis;
+  }
+
+  public long getHealthCheckTimeoutMillis() {
+    return healthCheckTimeoutMillis;
+  }
+
+  public void setHealthCheckTimeoutMillis(long healthCheckTimeoutMillis) {
+    this.healthCheckTimeoutMillis = healthCheckTimeoutMillis;
+  }
+
   public boolean isQueryFunctionsAcrossAllMetastores() {
     return queryFunctionsAcrossAllMetastores;
   }
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2024 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,14 +21,25 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.springframework.context.annotation.Bean;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.hotels.bdp.waggledance.client.BulkheadMetaStoreClientFactory;
+import com.hotels.bdp.waggledance.client.CircuitBreakerMetaStoreClientFactory;
 import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIfaceClientFactory;
+import com.hotels.bdp.waggledance.client.CoalescingMetaStoreClientFactory;
 import com.hotels.bdp.waggledance.client.DefaultMetaStoreClientFactory;
+import com.hotels.bdp.waggledance.client.HedgingMetaStoreClientFactory;
+import com.hotels.bdp.waggledance.client.cache.CachingMetaStoreClientFactory;
+import com.hotels.bdp.waggledance.client.tunnelling.MetastoreTunnelManager;
 import com.hotels.bdp.waggledance.client.tunnelling.TunnelingMetaStoreClientFactory;
 import com.hotels.bdp.waggledance.conf.WaggleDanceConfiguration;
 import com.hotels.bdp.waggledance.mapping.model.ASTQueryMapping;
 import com.hotels.bdp.waggledance.mapping.model.QueryMapping;
+import com.hotels.bdp.waggledance.mapping.service.FanOutExecutor;
+import com.hotels.bdp.waggledance.mapping.service.MetaStoreHealthMonitor;
 import com.hotels.bdp.waggledance.mapping.service.PrefixNamingStrategy;
 import com.hotels.bdp.waggledance.mapping.service.impl.LowerCasePrefixNamingStrategy;
+import com.hotels.bdp.waggledance.util.ThreadFactories;
 
 @org.springframework.context.annotation.Configuration
 public class CommonBeans {
@@ -55,9 +66,70 @@ public class CommonBeans {
   }
 
   @Bean
-  public CloseableThriftHiveMetastoreIfaceClientFactory metaStoreClientFactory(WaggleDanceConfiguration waggleDanceConfiguration) {
-    return new CloseableThriftHiveMetastoreIfaceClientFactory(new TunnelingMetaStoreClientFactory(),
-        new DefaultMetaStoreClientFactory(), waggleDanceConfiguration);
+  public MetastoreTunnelManager metastoreTunnelManager(MeterRegistry meterRegistry) {
+    return new MetastoreTunnelManager(meterRegistry);
+  }
+
+  @Bean
+  public CloseableThriftHiveMetastoreIfaceClientFactory metaStoreClientFactory(
+      WaggleDanceConfiguration waggleDanceConfiguration,
+      MetastoreTunnelManager metastoreTunnelManager,
+      MeterRegistry meterRegistry) {
+    DefaultMetaStoreClientFactory defaultMetaStoreClientFactory = new DefaultMetaStoreClientFactory(meterRegistry);
+    return new CloseableThriftHiveMetastoreIfaceClientFactory(
+        new TunnelingMetaStoreClientFactory(defaultMetaStoreClientFactory, metastoreTunnelManager),
+        defaultMetaStoreClientFactory, waggleDanceConfiguration, meterRegistry);
+  }
+
+  @Bean
+  public CachingMetaStoreClientFactory cachingMetaStoreClientFactory(MeterRegistry meterRegistry) {
+    return new CachingMetaStoreClientFactory(meterRegistry);
+  }
+
+  @Bean
+  public CoalescingMetaStoreClientFactory coalescingMetaStoreClientFactory(
+      WaggleDanceConfiguration waggleDanceConfiguration,
+      MeterRegistry meterRegistry) {
+    return new CoalescingMetaStoreClientFactory(waggleDanceConfiguration.isRequestCoalescing(), meterRegistry);
+  }
+
+  @Bean
+  public CircuitBreakerMetaStoreClientFactory circuitBreakerMetaStoreClientFactory(MeterRegistry meterRegistry) {
+    return new CircuitBreakerMetaStoreClientFactory(meterRegistry);
+  }
+
+  @Bean
+  public BulkheadMetaStoreClientFactory bulkheadMetaStoreClientFactory(MeterRegistry meterRegistry) {
+    return new BulkheadMetaStoreClientFactory(meterRegistry);
+  }
+
+  @Bean
+  public HedgingMetaStoreClientFactory hedgingMetaStoreClientFactory(
+      WaggleDanceConfiguration waggleDanceConfiguration,
+      MeterRegistry meterRegistry) {
+    return new HedgingMetaStoreClientFactory(
+        ThreadFactories.newThreadFactory("waggle-dance-hedge", waggleDanceConfiguration.isVirtualThreads()),
+        meterRegistry);
+  }
+
+  @Bean
+  public FanOutExecutor fanOutExecutor(WaggleDanceConfiguration waggleDanceConfiguration, MeterRegistry meterRegistry) {
+    return new FanOutExecutor(waggleDanceConfiguration.getFanOutThreads(), waggleDanceConfiguration.getFanOutQueueSize(),
+        waggleDanceConfiguration.getFanOutMaxConcurrencyPerMetastore(),
+        ThreadFactories.newThreadFactory("waggle-dance-fan-out", waggleDanceConfiguration.isVirtualThreads()),
+        meterRegistry);
+  }
+
+  @Bean
+  public MetaStoreHealthMonitor metaStoreHealthMonitor(
+      WaggleDanceConfiguration waggleDanceConfiguration,
+      MeterRegistry meterRegistry) {
+    return new MetaStoreHealthMonitor(
+        waggleDanceConfiguration.getHealthCheckDelayTimeUnit().toMillis(waggleDanceConfiguration.getHealthCheckDelay()),
+        waggleDanceConfiguration.getHealthCheckThreshold(),
+        waggleDanceConfiguration.getHealthCheckDegradedLatencyMillis(),
+        waggleDanceConfiguration.getHealthCheckTimeoutMillis(),
+        ThreadFactories.newThreadFactory("waggle-dance-health-check", false), meterRegistry);
   }
 
   @Bean
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,31 +17,34 @@ package com.hotels.bdp.waggledance.core.federation.service;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
-import lombok.extern.log4j.Log4j2;
-
 import com.hotels.bdp.waggledance.api.federation.service.FederationService;
 import com.hotels.bdp.waggledance.api.federation.service.FederationStatusService;
 import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
 import com.hotels.bdp.waggledance.api.model.MetaStoreStatus;
+import com.hotels.bdp.waggledance.client.CircuitBreakerMetaStoreClientFactory;
 
+/**
+ * Populates the status of the metastores from the {@link FederationStatusService}, which is expected to answer from
+ * what it already knows rather than call the metastores, along with the state of their circuit breakers.
+ */
 @Service
-@Log4j2
 public class PopulateStatusFederationService implements FederationService {
 
   private final FederationService federationService;
   private final FederationStatusService federationStatusService;
+  private final CircuitBreakerMetaStoreClientFactory circuitBreakerMetaStoreClientFactory;
 
   public PopulateStatusFederationService(
       @Qualifier("notifyingFederationService") FederationService federationService,
-      FederationStatusService federationStatusService) {
+      FederationStatusService federationStatusService,
+      CircuitBreakerMetaStoreClientFactory circuitBreakerMetaStoreClientFactory) {
     this.federationService = federationService;
     this.federationStatusService = federationStatusService;
+    this.circuitBreakerMetaStoreClientFactory = circuitBreakerMetaStoreClientFactory;
   }
 
   @Override
@@ -67,18 +70,8 @@ public class PopulateStatusFederationService implements FederationService {
   @Override
   public List<AbstractMetaStore> getAll() {
     List<AbstractMetaStore> metaStores = federationService.getAll();
-    // We don't care about order here we just want all the statuses.
-    // Custom Thread pool so we get optimal parallelism we want for firing our requests
-    ForkJoinPool customThreadPool = new ForkJoinPool(metaStores.size());
-    try {
-      customThreadPool.submit(() -> metaStores.parallelStream().forEach(metaStore -> {
-        populate(metaStore);
-      }));
-      customThreadPool.shutdown();
-      // wait at most 1 minute otherwise just return what we got thus far.
-      customThreadPool.awaitTermination(1L, TimeUnit.MINUTES);
-    } catch (InterruptedException e) {
-      log.error("Can't get status for metastores", e);
+    for (AbstractMetaStore metaStore : metaStores) {
+      populate(metaStore);
     }
     return new ArrayList<>(metaStores);
   }
@@ -86,6 +79,7 @@ public class PopulateStatusFederationService implements FederationService {
   private AbstractMetaStore populate(AbstractMetaStore metaStore) {
     MetaStoreStatus status = federationStatusService.checkStatus(metaStore);
     metaStore.setStatus(status);
+    metaStore.setCircuitBreakerState(circuitBreakerMetaStoreClientFactory.getState(metaStore.getName()));
     return metaStore;
   }
 }
@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.mapping.model;
+
+import com.hotels.bdp.waggledance.mapping.service.MetaStoreHealth;
+import com.hotels.bdp.waggledance.mapping.service.MetaStoreHealthMonitor;
+
+/**
+ * Answers whether the metastore is available from the state its health probes left, without calling it. The probes
+ * follow the federation rather than the mapping, a metastore not probed yet is deemed available.
+ */
+class HealthCheckedMetaStoreMapping extends MetaStoreMappingDecorator {
+
+  private final MetaStoreHealthMonitor metaStoreHealthMonitor;
+  private final String name;
+
+  HealthCheckedMetaStoreMapping(MetaStoreMapping metaStoreMapping, MetaStoreHealthMonitor metaStoreHealthMonitor) {
+    super(metaStoreMapping);
+    this.metaStoreHealthMonitor = metaStoreHealthMonitor;
+    name = metaStoreMapping.getMetastoreMappingName();
+  }
+
+  @Override
+  public boolean isAvailable() {
+    MetaStoreHealth health = metaStoreHealthMonitor.getHealth(name);
+    return health == null || health.isAvailable();
+  }
+
+}
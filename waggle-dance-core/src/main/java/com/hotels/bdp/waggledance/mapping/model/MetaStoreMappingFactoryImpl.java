@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,10 +16,8 @@
 package com.hotels.bdp.waggledance.mapping.model;
 
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.metastore.DefaultMetaStoreFilterHookImpl;
@@ -30,11 +28,21 @@ import org.springframework.stereotype.Component;
 
 import lombok.extern.log4j.Log4j2;
 
+import com.google.common.base.Suppliers;
+
 import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
 import com.hotels.bdp.waggledance.api.model.DatabaseResolution;
+import com.hotels.bdp.waggledance.client.BulkheadMetaStoreClientFactory;
+import com.hotels.bdp.waggledance.client.CircuitBreakerMetaStoreClientFactory;
 import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIface;
 import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIfaceClientFactory;
+import com.hotels.bdp.waggledance.client.CoalescingMetaStoreClientFactory;
+import com.hotels.bdp.waggledance.client.DispatchingMetaStoreClient;
+import com.hotels.bdp.waggledance.client.HedgingMetaStoreClientFactory;
+import com.hotels.bdp.waggledance.client.SessionScopedMetaStoreClientFactory;
+import com.hotels.bdp.waggledance.client.cache.CachingMetaStoreClientFactory;
 import com.hotels.bdp.waggledance.conf.WaggleDanceConfiguration;
+import com.hotels.bdp.waggledance.mapping.service.MetaStoreHealthMonitor;
 import com.hotels.bdp.waggledance.mapping.service.MetaStoreMappingFactory;
 import com.hotels.bdp.waggledance.mapping.service.PrefixNamingStrategy;
 import com.hotels.bdp.waggledance.server.WaggleDanceServerException;
@@ -47,37 +55,104 @@ public class MetaStoreMappingFactoryImpl implements MetaStoreMappingFactory {
   private final PrefixNamingStrategy prefixNamingStrategy;
   private final CloseableThriftHiveMetastoreIfaceClientFactory metaStoreClientFactory;
   private final AccessControlHandlerFactory accessControlHandlerFactory;
+  private final CachingMetaStoreClientFactory cachingMetaStoreClientFactory;
+  private final CoalescingMetaStoreClientFactory coalescingMetaStoreClientFactory;
+  private final BulkheadMetaStoreClientFactory bulkheadMetaStoreClientFactory;
+  private final CircuitBreakerMetaStoreClientFactory circuitBreakerMetaStoreClientFactory;
+  private final HedgingMetaStoreClientFactory hedgingMetaStoreClientFactory;
+  private final MetaStoreHealthMonitor metaStoreHealthMonitor;
+  private final SessionScopedMetaStoreClientFactory sessionScopedMetaStoreClientFactory = new SessionScopedMetaStoreClientFactory();
+  // Parsing the Hive default resources is costly, they are parsed once and copied for the filter hooks that need them
+  private final Supplier<HiveConf> filterHookConf = Suppliers.memoize(HiveConf::new);
+  // Stateless, shared by the metastores without a filter hook
+  private final Supplier<MetaStoreFilterHook> defaultFilterHook = Suppliers
+      .memoize(() -> new DefaultMetaStoreFilterHookImpl(filterHookConf.get()));
 
   @Autowired
   public MetaStoreMappingFactoryImpl(
           WaggleDanceConfiguration waggleDanceConfiguration,
           PrefixNamingStrategy prefixNamingStrategy,
           CloseableThriftHiveMetastoreIfaceClientFactory metaStoreClientFactory,
-          AccessControlHandlerFactory accessControlHandlerFactory) {
+          AccessControlHandlerFactory accessControlHandlerFactory,
+          CachingMetaStoreClientFactory cachingMetaStoreClientFactory,
+          CoalescingMetaStoreClientFactory coalescingMetaStoreClientFactory,
+          BulkheadMetaStoreClientFactory bulkheadMetaStoreClientFactory,
+          CircuitBreakerMetaStoreClientFactory circuitBreakerMetaStoreClientFactory,
+          HedgingMetaStoreClientFactory hedgingMetaStoreClientFactory,
+          MetaStoreHealthMonitor metaStoreHealthMonitor) {
     this.waggleDanceConfiguration = waggleDanceConfiguration;
     this.prefixNamingStrategy = prefixNamingStrategy;
     this.metaStoreClientFactory = metaStoreClientFactory;
     this.accessControlHandlerFactory = accessControlHandlerFactory;
+    this.cachingMetaStoreClientFactory = cachingMetaStoreClientFactory;
+    this.coalescingMetaStoreClientFactory = coalescingMetaStoreClientFactory;
+    this.bulkheadMetaStoreClientFactory = bulkheadMetaStoreClientFactory;
+    this.circuitBreakerMetaStoreClientFactory = circuitBreakerMetaStoreClientFactory;
+    this.hedgingMetaStoreClientFactory = hedgingMetaStoreClientFactory;
+    this.metaStoreHealthMonitor = metaStoreHealthMonitor;
   }
 
-  private CloseableThriftHiveMetastoreIface createClient(AbstractMetaStore metaStore) {
+  private CloseableThriftHiveMetastoreIface createClient(AbstractMetaStore metaStore, HiveConf hiveConf) {
     try {
-      return metaStoreClientFactory.newInstance(metaStore);
+      return metaStoreClientFactory.newInstance(metaStore, hiveConf);
     } catch (Exception e) {
       log.error("Can't create a client for metastore '{}':", metaStore.getName(), e);
       return newUnreachableMetastoreClient(metaStore);
     }
   }
 
+  /**
+   * Mappings are shared by all the client connections. Pooled clients are safe to share, otherwise the backend
+   * connection is only opened when a client session first uses it. Only pooled clients are hedged as the call that
+   * loses a hedge keeps its connection busy.
+   */
+  private CloseableThriftHiveMetastoreIface createSharedClient(AbstractMetaStore metaStore, HiveConf hiveConf) {
+    if (metaStoreClientFactory.isPoolable(metaStore)) {
+      return hedgingMetaStoreClientFactory
+          .newInstance(metaStore, createPooledClient(metaStore, hiveConf),
+              uri -> createPooledClient(metaStore, metaStoreClientFactory.newHiveConf(metaStore, uri)));
+    }
+    return sessionScopedMetaStoreClientFactory
+        .newInstance(metaStore.getName(), () -> createClient(metaStore, hiveConf));
+  }
+
+  private CloseableThriftHiveMetastoreIface createPooledClient(AbstractMetaStore metaStore, HiveConf hiveConf) {
+    try {
+      return metaStoreClientFactory.newPooledInstance(metaStore, hiveConf);
+    } catch (Exception e) {
+      log.error("Can't create a pooled client for metastore '{}':", metaStore.getName(), e);
+      return newUnreachableMetastoreClient(metaStore);
+    }
+  }
+
+  /**
+   * Calls over the bulkhead limit are rejected before reaching the circuit breaker, they don't count as failures.
+   */
+  private CloseableThriftHiveMetastoreIface guardedSharedClient(AbstractMetaStore metaStore, HiveConf hiveConf) {
+    return bulkheadMetaStoreClientFactory
+        .newInstance(metaStore,
+            circuitBreakerMetaStoreClientFactory.newInstance(metaStore, createSharedClient(metaStore, hiveConf)));
+  }
+
+  /**
+   * Mappings are created when a metastore is registered or updated, the configuration of its connections and its
+   * filter hook are built here once and shared by all its clients.
+   */
   @SuppressWarnings("resource")
   @Override
   public MetaStoreMapping newInstance(AbstractMetaStore metaStore) {
     log
         .info("Mapping databases with name '{}' to metastore: {}", metaStore.getName(),
             metaStore.getRemoteMetaStoreUris());
+    HiveConf hiveConf = metaStoreClientFactory.newHiveConf(metaStore);
     MetaStoreMapping metaStoreMapping = new MetaStoreMappingImpl(prefixNameFor(metaStore), metaStore.getName(),
-        createClient(metaStore), accessControlHandlerFactory.newInstance(metaStore), metaStore.getConnectionType(),
+        cachingMetaStoreClientFactory
+            .newInstance(metaStore,
+                coalescingMetaStoreClientFactory.newInstance(metaStore.getName(), guardedSharedClient(metaStore, hiveConf))),
+        accessControlHandlerFactory.newInstance(metaStore), metaStore.getConnectionType(),
         metaStore.getLatency(), loadMetastoreFilterHook(metaStore));
+    // Probed with dedicated clients by the FederationHealthProbes so availability checks never wait for this one
+    metaStoreMapping = new HealthCheckedMetaStoreMapping(metaStoreMapping, metaStoreHealthMonitor);
     if (waggleDanceConfiguration.getDatabaseResolution() == DatabaseResolution.PREFIXED) {
       return new DatabaseNameMapping(new PrefixMapping(metaStoreMapping), metaStore.getDatabaseNameBiMapping());
     } else {
@@ -91,17 +166,15 @@ public class MetaStoreMappingFactoryImpl implements MetaStoreMappingFactory {
   }
 
   private CloseableThriftHiveMetastoreIface newUnreachableMetastoreClient(AbstractMetaStore metaStore) {
-    return (CloseableThriftHiveMetastoreIface) Proxy
-        .newProxyInstance(getClass().getClassLoader(), new Class[] { CloseableThriftHiveMetastoreIface.class },
-            new UnreachableMetastoreClientInvocationHandler(metaStore.getName()));
+    return new UnreachableMetastoreClient(metaStore.getName());
   }
 
   private MetaStoreFilterHook loadMetastoreFilterHook(AbstractMetaStore metaStore) {
-    HiveConf conf = new HiveConf();
     String metaStoreFilterHook = metaStore.getHiveMetastoreFilterHook();
     if (metaStoreFilterHook == null || metaStoreFilterHook.isEmpty()) {
-      return new DefaultMetaStoreFilterHookImpl(conf);
+      return defaultFilterHook.get();
     }
+    HiveConf conf = new HiveConf(filterHookConf.get());
     Map<String, String> configurationProperties = waggleDanceConfiguration.getConfigurationProperties();
     if (configurationProperties != null) {
       for (Map.Entry<String, String> property : configurationProperties.entrySet()) {
@@ -121,27 +194,28 @@ public class MetaStoreMappingFactoryImpl implements MetaStoreMappingFactory {
   }
 
   /**
-   * Handler that refuses to be open and will throw exceptions for any of the methods, serves as a dummy client if the
+   * Client that refuses to be open and will throw exceptions for any of the methods, serves as a dummy client if the
    * real one can't be created due to connection (i.e. tunneling) issues.
    */
-  private static class UnreachableMetastoreClientInvocationHandler implements InvocationHandler {
+  private static class UnreachableMetastoreClient extends DispatchingMetaStoreClient {
 
     private final String name;
 
-    private UnreachableMetastoreClientInvocationHandler(String name) {
+    private UnreachableMetastoreClient(String name) {
       this.name = name;
     }
 
     @Override
-    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-      switch (method.getName()) {
-      case "isOpen":
-        return false;
-      case "close":
-        return null;
-      default:
-        throw new TException("Metastore '" + name + "' unavailable");
-      }
+    protected <T> T dispatch(String methodName, Object[] arguments, Call<T> call) throws TException {
+      throw new TException("Metastore '" + name + "' unavailable");
+    }
+
+    @Override
+    public boolean isOpen() {
+      return false;
     }
+
+    @Override
+    public void close() {}
   }
 }
@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.mapping.service;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.google.common.base.Strings;
+
+import com.hotels.bdp.waggledance.client.ClientSession;
+
+/**
+ * Long lived executor for the calls that fan out to several metastores. Threads are shared by all the client requests
+ * and the number of calls in flight to the same metastore is capped, so a slow metastore can't take all the threads.
+ * Calls that don't fit are rejected straight away, their futures complete with a {@link RejectedExecutionException}.
+ * Cancelling a future interrupts the call.
+ */
+public class FanOutExecutor implements Closeable {
+
+  public static final int DEFAULT_THREADS = 128;
+  public static final int DEFAULT_QUEUE_SIZE = 1000;
+  public static final int DEFAULT_MAX_CONCURRENCY_PER_METASTORE = 32;
+
+  static final String METASTORE_TAG_NAME = "metastore";
+  static final String REASON_TAG_NAME = "reason";
+  static final String ACTIVE_METRIC_NAME = "fan_out_active";
+  static final String QUEUE_METRIC_NAME = "fan_out_queue";
+  static final String REJECTED_METRIC_NAME = "fan_out_rejected";
+  static final String CANCELLED_METRIC_NAME = "fan_out_cancelled";
+  static final String QUEUE_FULL_REASON = "queue_full";
+  static final String METASTORE_LIMIT_REASON = "metastore_limit";
+
+  private class FanOutFuture<T> extends CompletableFuture<T> {
+
+    private volatile Future<?> task;
+
+    private void setTask(Future<?> task) {
+      this.task = task;
+      if (isCancelled()) {
+        cancelTask(task);
+      }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+      Future<?> current = task;
+      if (current != null) {
+        cancelTask(current);
+      }
+      return cancelled;
+    }
+  }
+
+  private final ThreadPoolExecutor executor;
+  private final int maxConcurrencyPerMetastore;
+  private final MeterRegistry meterRegistry;
+  private final Map<String, Semaphore> permitsByMetastore = new ConcurrentHashMap<>();
+
+  public FanOutExecutor(
+      int threads,
+      int queueSize,
+      int maxConcurrencyPerMetastore,
+      ThreadFactory threadFactory,
+      MeterRegistry meterRegistry) {
+    this.maxConcurrencyPerMetastore = maxConcurrencyPerMetastore;
+    this.meterRegistry = meterRegistry;
+    executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+        threadFactory);
+    executor.allowCoreThreadTimeOut(true);
+    Gauge.builder(ACTIVE_METRIC_NAME, executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+    Gauge.builder(QUEUE_METRIC_NAME, executor, e -> e.getQueue().size()).register(meterRegistry);
+  }
+
+  /**
+   * Runs the call with the {@link ClientSession} of the calling thread.
+   *
+   * @param metastoreName name of the metastore the call goes to
+   */
+  public <T> CompletableFuture<T> submit(String metastoreName, Callable<T> call) {
+    FanOutFuture<T> future = new FanOutFuture<>();
+    metastoreName = Strings.nullToEmpty(metastoreName);
+    Semaphore permits = permitsByMetastore
+        .computeIfAbsent(metastoreName, name -> new Semaphore(maxConcurrencyPerMetastore));
+    if (!permits.tryAcquire()) {
+      return reject(future, metastoreName, METASTORE_LIMIT_REASON);
+    }
+    Callable<T> sessionCall = ClientSession.propagate(call);
+    // The permit is released once, either by the call or by the future when it completes before the call starts
+    AtomicBoolean started = new AtomicBoolean();
+    try {
+      future.setTask(executor.submit(() -> {
+        if (!started.compareAndSet(false, true)) {
+          return;
+        }
+        T result = null;
+        Throwable error = null;
+        try {
+          result = sessionCall.call();
+        } catch (Throwable e) {
+          error = e;
+        } finally {
+          // before completing so the caller can make another call straight away
+          permits.release();
+        }
+        if (error == null) {
+          future.complete(result);
+        } else {
+          future.completeExceptionally(error);
+        }
+      }));
+    } catch (RejectedExecutionException e) {
+      permits.release();
+      return reject(future, metastoreName, QUEUE_FULL_REASON);
+    }
+    future.whenComplete((result, error) -> {
+      if (started.compareAndSet(false, true)) {
+        permits.release();
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Cancels a call that didn't complete in time.
+   */
+  public void cancel(String metastoreName, CompletableFuture<?> future) {
+    if (future.cancel(true)) {
+      Counter
+          .builder(CANCELLED_METRIC_NAME)
+          .tag(METASTORE_TAG_NAME, Strings.nullToEmpty(metastoreName))
+          .register(meterRegistry)
+          .increment();
+    }
+  }
+
+  private void cancelTask(Future<?> task) {
+    if (task.cancel(true) && task instanceof Runnable) {
+      // frees the queue slot of a call that didn't start
+      executor.remove((Runnable) task);
+    }
+  }
+
+  private <T> CompletableFuture<T> reject(CompletableFuture<T> future, String metastoreName, String reason) {
+    Counter
+        .builder(REJECTED_METRIC_NAME)
+        .tag(METASTORE_TAG_NAME, metastoreName)
+        .tag(REASON_TAG_NAME, reason)
+        .register(meterRegistry)
+        .increment();
+    future.completeExceptionally(new RejectedExecutionException("Too many concurrent calls to metastore "
+        + metastoreName
+        + " ("
+        + reason
+        + ")"));
+    return future;
+  }
+
+  int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+}
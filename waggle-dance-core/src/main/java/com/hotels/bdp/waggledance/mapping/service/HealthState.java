@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.mapping.service;
+
+/**
+ * Health of a metastore as last seen by the {@link MetaStoreHealthMonitor}.
+ */
+public enum HealthState {
+  /** Failed as many probes in a row as the health check threshold. */
+  DOWN(0, false),
+  /** Failed its last probe or answered it slowly, still used. */
+  DEGRADED(1, true),
+  UP(2, true);
+
+  private final int level;
+  private final boolean available;
+
+  HealthState(int level, boolean available) {
+    this.level = level;
+    this.available = available;
+  }
+
+  /**
+   * @return the value of the state gauge
+   */
+  public int getLevel() {
+    return level;
+  }
+
+  public boolean isAvailable() {
+    return available;
+  }
+}
@@ -0,0 +1,272 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.mapping.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.apache.thrift.TApplicationException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIface;
+
+/**
+ * Health of a single metastore, updated by the probes of the {@link MetaStoreHealthMonitor} and read without any
+ * locking. The state is unknown, and the metastore deemed available, until the first probe ends. A probe that doesn't
+ * end in time counts as failed and its client is closed to unblock it. Closing the health stops the probes and closes
+ * the probe client without waiting for a running probe.
+ */
+@Log4j2
+public final class MetaStoreHealth implements Closeable {
+
+  private final String name;
+  private final Supplier<CloseableThriftHiveMetastoreIface> probeClientFactory;
+  private final int threshold;
+  private final long degradedLatencyNanos;
+  private final MeterRegistry meterRegistry;
+  private final Consumer<MetaStoreHealth> onClose;
+  private volatile HealthState state;
+  private volatile long lastProbeTime;
+  // Kept open between probes, closed without waiting for the probe using it
+  private final AtomicReference<CloseableThriftHiveMetastoreIface> probeClient = new AtomicReference<>();
+  // Guards the outcome of the probes, never held while calling the metastore. A lock rather than a monitor so waiting
+  // virtual threads don't pin their carrier
+  private final Lock lock = new ReentrantLock();
+  private long lastProbeId = 0;
+  private long completedProbeId = 0;
+  private int consecutiveFailures = 0;
+  private int consecutiveSuccesses = 0;
+  private volatile ScheduledFuture<?> schedule;
+  private volatile Future<?> runningProbe;
+  private volatile boolean closed = false;
+
+  MetaStoreHealth(
+      String name,
+      Supplier<CloseableThriftHiveMetastoreIface> probeClientFactory,
+      int threshold,
+      long degradedLatencyMillis,
+      MeterRegistry meterRegistry,
+      Consumer<MetaStoreHealth> onClose) {
+    this.name = name;
+    this.probeClientFactory = probeClientFactory;
+    this.threshold = threshold;
+    degradedLatencyNanos = TimeUnit.MILLISECONDS.toNanos(degradedLatencyMillis);
+    this.meterRegistry = meterRegistry;
+    this.onClose = onClose;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the state after the last probe, {@code null} before the first one ends
+   */
+  public HealthState getState() {
+    return state;
+  }
+
+  /**
+   * @return when the last probe ended, in milliseconds since the epoch
+   */
+  public long getLastProbeTime() {
+    return lastProbeTime;
+  }
+
+  public boolean isAvailable() {
+    HealthState current = state;
+    return current == null || current.isAvailable();
+  }
+
+  void setSchedule(ScheduledFuture<?> schedule) {
+    this.schedule = schedule;
+    if (closed) {
+      schedule.cancel(false);
+    }
+  }
+
+  Future<?> getRunningProbe() {
+    return runningProbe;
+  }
+
+  void setRunningProbe(Future<?> runningProbe) {
+    this.runningProbe = runningProbe;
+  }
+
+  void probe() {
+    if (closed) {
+      return;
+    }
+    long probeId = nextProbeId();
+    CloseableThriftHiveMetastoreIface client = null;
+    boolean healthy;
+    long elapsed = 0;
+    try {
+      client = probeClient.get();
+      if (client == null) {
+        client = probeClientFactory.get();
+        probeClient.set(client);
+        if (closed) {
+          closeProbeClient();
+        }
+      }
+      long start = System.nanoTime();
+      healthy = client.isOpen();
+      if (healthy) {
+        try {
+          client.getStatus();
+        } catch (TApplicationException e) {
+          // The metastore answered, it just doesn't implement the call
+        }
+      }
+      elapsed = System.nanoTime() - start;
+    } catch (Exception e) {
+      log.debug("Health probe of metastore {} failed", name, e);
+      healthy = false;
+    }
+    if (!healthy && client != null && probeClient.compareAndSet(client, null)) {
+      // Next probe starts from a new connection, i.e. a new tunnel
+      closeQuietly(client);
+    }
+    complete(probeId, healthy, elapsed);
+  }
+
+  /**
+   * Fails the running probe if it hasn't ended yet.
+   */
+  void probeTimedOut() {
+    long probeId;
+    lock.lock();
+    try {
+      if (completedProbeId == lastProbeId) {
+        return;
+      }
+      probeId = lastProbeId;
+    } finally {
+      lock.unlock();
+    }
+    log.warn("Health probe of metastore {} timed out", name);
+    closeProbeClient();
+    complete(probeId, false, 0);
+  }
+
+  /**
+   * Counts a failed probe in place of the one that can't start while the previous probe still hangs.
+   */
+  void probeStillHanging() {
+    log.warn("Health probe of metastore {} still hangs", name);
+    closeProbeClient();
+    complete(nextProbeId(), false, 0);
+  }
+
+  private long nextProbeId() {
+    lock.lock();
+    try {
+      return ++lastProbeId;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void complete(long probeId, boolean healthy, long elapsedNanos) {
+    lock.lock();
+    try {
+      if (probeId <= completedProbeId) {
+        // Timed out
+        return;
+      }
+      completedProbeId = probeId;
+      update(healthy, elapsedNanos);
+      lastProbeTime = System.currentTimeMillis();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void update(boolean healthy, long elapsedNanos) {
+    HealthState next;
+    if (healthy) {
+      consecutiveSuccesses++;
+      consecutiveFailures = 0;
+      if (state == HealthState.DOWN && consecutiveSuccesses < threshold) {
+        next = HealthState.DOWN;
+      } else {
+        next = elapsedNanos > degradedLatencyNanos ? HealthState.DEGRADED : HealthState.UP;
+      }
+    } else {
+      consecutiveFailures++;
+      consecutiveSuccesses = 0;
+      // Nothing to smooth before the first state
+      next = state == null || consecutiveFailures >= threshold ? HealthState.DOWN : HealthState.DEGRADED;
+    }
+    if (next == state) {
+      return;
+    }
+    if (state != null) {
+      Counter
+          .builder(MetaStoreHealthMonitor.TRANSITIONS_METRIC_NAME)
+          .tag(MetaStoreHealthMonitor.METASTORE_TAG_NAME, name)
+          .tag("from", state.name())
+          .tag("to", next.name())
+          .register(meterRegistry)
+          .increment();
+    }
+    if (next == HealthState.DOWN) {
+      log.warn("Metastore {} is {}", name, next);
+    } else {
+      log.info("Metastore {} is {}", name, next);
+    }
+    state = next;
+  }
+
+  private void closeProbeClient() {
+    CloseableThriftHiveMetastoreIface client = probeClient.getAndSet(null);
+    if (client != null) {
+      closeQuietly(client);
+    }
+  }
+
+  private void closeQuietly(CloseableThriftHiveMetastoreIface client) {
+    try {
+      client.close();
+    } catch (IOException | RuntimeException e) {
+      log.debug("Error closing health probe client of metastore {}", name, e);
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    ScheduledFuture<?> current = schedule;
+    if (current != null) {
+      current.cancel(false);
+    }
+    onClose.accept(this);
+    closeProbeClient();
+  }
+
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.mapping.service;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIface;
+
+/**
+ * Probes the metastores in the background so requests can check their availability without calling them. Each
+ * metastore gets its own probe client, kept open between probes. A metastore is {@link HealthState#DOWN} after failing
+ * {@code threshold} probes in a row and comes back after as many successful ones. A single failure or a probe slower
+ * than the degraded latency makes it {@link HealthState#DEGRADED}, still available.
+ * <p>
+ * A single thread schedules the probes, which run on a thread of their own per metastore so a hanging metastore
+ * doesn't hold the probes of the others. A probe is failed when it doesn't end within the probe timeout and the
+ * metastore isn't probed again while it still hangs, its later probes are counted as failures instead.
+ * <p>
+ * The state of each metastore is published as the {@code metastore_health_state} gauge (0 down, 1 degraded, 2 up) and
+ * its changes are counted by {@code metastore_health_transitions}, tagged with the metastore and the {@code from} and
+ * {@code to} states.
+ */
+public class MetaStoreHealthMonitor implements Closeable {
+
+  // Probes missed before the state of a metastore is no longer trusted
+  private static final int STALE_AFTER_DELAYS = 3;
+
+  static final String METASTORE_TAG_NAME = "metastore";
+  static final String STATE_METRIC_NAME = "metastore_health_state";
+  static final String TRANSITIONS_METRIC_NAME = "metastore_health_transitions";
+
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService probeExecutor;
+  private final long delayMillis;
+  private final int threshold;
+  private final long degradedLatencyMillis;
+  private final long probeTimeoutMillis;
+  private final MeterRegistry meterRegistry;
+  // Latest registration of each metastore
+  private final Map<String, MetaStoreHealth> healthByName = new ConcurrentHashMap<>();
+
+  /**
+   * @param delayMillis delay between the end of a probe of a metastore and the next one
+   * @param threshold number of probes in a row that must fail, or succeed, to change between down and up
+   * @param degradedLatencyMillis probes slower than this make the metastore degraded
+   * @param probeTimeoutMillis probes that don't end within this fail
+   */
+  public MetaStoreHealthMonitor(
+      long delayMillis,
+      int threshold,
+      long degradedLatencyMillis,
+      long probeTimeoutMillis,
+      ThreadFactory threadFactory,
+      MeterRegistry meterRegistry) {
+    scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    // At most one probe in flight per metastore
+    probeExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+        threadFactory);
+    this.delayMillis = delayMillis;
+    this.threshold = threshold;
+    this.degradedLatencyMillis = degradedLatencyMillis;
+    this.probeTimeoutMillis = probeTimeoutMillis;
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Probes the metastore in the background, the first probe starts right away. The state is unknown until it ends.
+   *
+   * @param probeClientFactory creates the probe client, again after a failed probe
+   * @return the health of the metastore, to close when the metastore is no longer used
+   */
+  public MetaStoreHealth register(String name, Supplier<CloseableThriftHiveMetastoreIface> probeClientFactory) {
+    MetaStoreHealth health = new MetaStoreHealth(name, probeClientFactory, threshold, degradedLatencyMillis,
+        meterRegistry, closed -> healthByName.remove(name, closed));
+    if (healthByName.put(name, health) == null) {
+      Gauge
+          .builder(STATE_METRIC_NAME, healthByName, m -> stateLevel(m.get(name)))
+          .tag(METASTORE_TAG_NAME, name)
+          .register(meterRegistry);
+    }
+    scheduleProbe(health, 0);
+    return health;
+  }
+
+  private void scheduleProbe(MetaStoreHealth health, long delay) {
+    try {
+      health.setSchedule(scheduler.schedule(() -> probe(health), delay, TimeUnit.MILLISECONDS));
+    } catch (RejectedExecutionException e) {
+      // Shutting down
+    }
+  }
+
+  /**
+   * Starts a probe, the next one is scheduled once it ends or times out.
+   */
+  private void probe(MetaStoreHealth health) {
+    Future<?> running = health.getRunningProbe();
+    if (running != null && !running.isDone()) {
+      health.probeStillHanging();
+      scheduleProbe(health, delayMillis);
+      return;
+    }
+    AtomicBoolean ended = new AtomicBoolean();
+    Runnable scheduleNext = () -> {
+      if (ended.compareAndSet(false, true)) {
+        scheduleProbe(health, delayMillis);
+      }
+    };
+    try {
+      ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+        health.probeTimedOut();
+        scheduleNext.run();
+      }, probeTimeoutMillis, TimeUnit.MILLISECONDS);
+      CompletableFuture<Void> probe = CompletableFuture.runAsync(health::probe, probeExecutor);
+      health.setRunningProbe(probe);
+      probe.whenComplete((result, error) -> {
+        timeout.cancel(false);
+        scheduleNext.run();
+      });
+    } catch (RejectedExecutionException e) {
+      // Shutting down
+    }
+  }
+
+  /**
+   * @return the health of the metastore registered last with the name, {@code null} if there is none
+   */
+  public MetaStoreHealth getHealth(String name) {
+    return healthByName.get(name);
+  }
+
+  /**
+   * @return {@code true} if the health hasn't been probed for several delays, i.e. its probes hang
+   */
+  public boolean isStale(MetaStoreHealth health) {
+    return System.currentTimeMillis() - health.getLastProbeTime() > STALE_AFTER_DELAYS * delayMillis;
+  }
+
+  private static double stateLevel(MetaStoreHealth health) {
+    if (health == null || health.getState() == null) {
+      return Double.NaN;
+    }
+    return health.getState().getLevel();
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+    probeExecutor.shutdownNow();
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,14 +17,13 @@ package com.hotels.bdp.waggledance.mapping.service;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import lombok.extern.log4j.Log4j2;
 
@@ -37,6 +36,12 @@ public class PanopticConcurrentOperationExecutor implements PanopticOperationExe
   private static final String INTERRUPTED_MESSAGE = "Execution was interrupted: ";
   private static final String SLOW_METASTORE_MESSAGE = "Metastore {} was slow to respond so results are omitted";
 
+  private final FanOutExecutor fanOutExecutor;
+
+  public PanopticConcurrentOperationExecutor(FanOutExecutor fanOutExecutor) {
+    this.fanOutExecutor = fanOutExecutor;
+  }
+
   @Override
   public <T> List<T> executeRequests(
           List<? extends RequestCallable<List<T>>> allRequests,
@@ -46,27 +51,29 @@ public class PanopticConcurrentOperationExecutor implements PanopticOperationExe
     if (allRequests.isEmpty()) {
       return allResults;
     }
-    ExecutorService executorService = Executors.newFixedThreadPool(allRequests.size());
+    long totalTimeout = getTotalTimeout(requestTimeout, allRequests);
+    List<CompletableFuture<List<T>>> futures = new ArrayList<>(allRequests.size());
+    for (RequestCallable<List<T>> request : allRequests) {
+      futures.add(fanOutExecutor.submit(request.getMapping().getMetastoreMappingName(), request));
+    }
     try {
-      List<Future<List<T>>> futures = Collections.emptyList();
-      Iterator<? extends RequestCallable<List<T>>> iterator = allRequests.iterator();
-
-      try {
-        long totalTimeout = getTotalTimeout(requestTimeout, allRequests);
-        futures = executorService.invokeAll(allRequests, totalTimeout, TimeUnit.MILLISECONDS);
-      } catch (InterruptedException e) {
-        log.warn("Execution was interrupted", e);
-      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(totalTimeout, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      log.warn("Execution was interrupted", e);
+    } catch (ExecutionException | TimeoutException e) {
+      // Failed and slow requests are reported one by one below
+    }
 
-      for (Future<List<T>> future : futures) {
-        DatabaseMapping mapping = iterator.next().getMapping();
-        List<T> result = getResultFromFuture(future, mapping.getMetastoreMappingName(), errorMessage);
-        allResults.addAll(result);
+    for (int i = 0; i < futures.size(); i++) {
+      CompletableFuture<List<T>> future = futures.get(i);
+      DatabaseMapping mapping = allRequests.get(i).getMapping();
+      if (!future.isDone()) {
+        fanOutExecutor.cancel(mapping.getMetastoreMappingName(), future);
       }
-      return allResults;
-    } finally {
-      executorService.shutdownNow();
+      List<T> result = getResultFromFuture(future, mapping.getMetastoreMappingName(), errorMessage);
+      allResults.addAll(result);
     }
+    return allResults;
   }
 
   private <T> List<T> getResultFromFuture(Future<List<T>> future, String metastoreMappingName, String errorMessage) {
@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.mapping.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.hadoop.hive.metastore.api.NotificationEvent;
+import org.apache.hadoop.hive.metastore.api.NotificationEventRequest;
+import org.apache.hadoop.hive.metastore.api.ThriftHiveMetastore;
+import org.apache.hadoop.hive.metastore.messaging.EventMessage.EventType;
+import org.apache.thrift.TException;
+
+import lombok.extern.log4j.Log4j2;
+
+import com.hotels.bdp.waggledance.mapping.model.DatabaseMapping;
+import com.hotels.bdp.waggledance.util.AllowList;
+
+/**
+ * Follows the databases of a metastore that can be accessed through Waggle Dance. The databases are listed once and
+ * then kept up to date from the create and drop database events of the metastore notification log. They are listed
+ * again every {@value #FULL_LISTING_EVERY} polls, in case the metastore doesn't log its notifications, and whenever
+ * events might have been missed.
+ */
+@Log4j2
+final class DatabaseListTracker {
+
+  static final int FULL_LISTING_EVERY = 10;
+  static final int MAX_EVENTS = 1000;
+
+  private final String name;
+  private final DatabaseMapping mapping;
+  private final AllowList allowList;
+  // Names in the metastore, before the outbound mapping
+  private Set<String> databases;
+  private long lastEventId = -1;
+  private int polls = 0;
+
+  /**
+   * @param databases the allowed databases of the metastore when the mapping was created
+   */
+  DatabaseListTracker(String name, DatabaseMapping mapping, AllowList allowList, Collection<String> databases) {
+    this.name = name;
+    this.mapping = mapping;
+    this.allowList = allowList;
+    this.databases = new LinkedHashSet<>(databases);
+  }
+
+  String getName() {
+    return name;
+  }
+
+  DatabaseMapping getMapping() {
+    return mapping;
+  }
+
+  /**
+   * @return the allowed databases of the metastore as named by Waggle Dance
+   */
+  synchronized List<String> poll() throws TException {
+    ThriftHiveMetastore.Iface client = mapping.getClient();
+    polls++;
+    if (lastEventId < 0 || polls % FULL_LISTING_EVERY == 0 || !followEvents(client)) {
+      list(client);
+    }
+    List<String> mappedDatabases = new ArrayList<>();
+    for (String database : databases) {
+      mappedDatabases.addAll(mapping.transformOutboundDatabaseNameMultiple(database));
+    }
+    return mappedDatabases;
+  }
+
+  private void list(ThriftHiveMetastore.Iface client) throws TException {
+    // Events logged while listing are applied again on the next poll
+    lastEventId = currentEventId(client);
+    Set<String> listed = new LinkedHashSet<>();
+    for (String database : client.get_all_databases()) {
+      if (allowList.contains(database)) {
+        listed.add(database);
+      }
+    }
+    databases = listed;
+  }
+
+  private long currentEventId(ThriftHiveMetastore.Iface client) {
+    try {
+      return client.get_current_notificationEventId().getEventId();
+    } catch (TException | RuntimeException e) {
+      log.debug("Can't read notification log of metastore {}, listing its databases instead", name, e);
+      return -1;
+    }
+  }
+
+  /**
+   * @return false if events might have been missed
+   */
+  private boolean followEvents(ThriftHiveMetastore.Iface client) {
+    try {
+      List<NotificationEvent> events;
+      do {
+        NotificationEventRequest request = new NotificationEventRequest(lastEventId);
+        request.setMaxEvents(MAX_EVENTS);
+        events = client.get_next_notification(request).getEvents();
+        if (!events.isEmpty() && events.get(0).getEventId() > lastEventId + 1) {
+          log.debug("Events of metastore {} after {} are gone, listing its databases", name, lastEventId);
+          return false;
+        }
+        for (NotificationEvent event : events) {
+          apply(event);
+          lastEventId = event.getEventId();
+        }
+      } while (events.size() >= MAX_EVENTS);
+      return true;
+    } catch (TException | RuntimeException e) {
+      log.debug("Can't read notification log of metastore {}, listing its databases instead", name, e);
+      return false;
+    }
+  }
+
+  private void apply(NotificationEvent event) {
+    String database = event.getDbName();
+    if (database == null || event.getTableName() != null) {
+      return;
+    }
+    if (EventType.CREATE_DATABASE.toString().equals(event.getEventType()) && allowList.contains(database)) {
+      databases.add(database);
+    } else if (EventType.DROP_DATABASE.toString().equals(event.getEventType())) {
+      databases.remove(database);
+    }
+  }
+
+}
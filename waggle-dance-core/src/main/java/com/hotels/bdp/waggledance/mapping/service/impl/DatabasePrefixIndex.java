@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.mapping.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.logging.log4j.util.Strings;
+
+import com.hotels.bdp.waggledance.mapping.model.DatabaseMapping;
+
+/**
+ * Immutable index of the database mappings by database prefix, along with the mapping of the primary metastore.
+ * Changes return a new index so readers never wait for the mappings to be updated. The prefixes are kept in a
+ * character trie, the prefixes of a database name are found in a single pass over the name whatever the number of
+ * prefixes.
+ */
+final class DatabasePrefixIndex {
+
+  private static final DatabasePrefixIndex EMPTY = new DatabasePrefixIndex(Collections.emptyMap(), null);
+
+  private static final class Node {
+    private final char[] labels;
+    private final Node[] children;
+    // null when no prefix ends at the node
+    private final DatabaseMapping mapping;
+
+    private Node(char[] labels, Node[] children, DatabaseMapping mapping) {
+      this.labels = labels;
+      this.children = children;
+      this.mapping = mapping;
+    }
+
+    private Node child(char label) {
+      int index = Arrays.binarySearch(labels, label);
+      return index < 0 ? null : children[index];
+    }
+  }
+
+  private static final class NodeBuilder {
+    private final Map<Character, NodeBuilder> children = new TreeMap<>();
+    private DatabaseMapping mapping;
+
+    private Node build() {
+      char[] labels = new char[children.size()];
+      Node[] nodes = new Node[children.size()];
+      int i = 0;
+      for (Map.Entry<Character, NodeBuilder> child : children.entrySet()) {
+        labels[i] = child.getKey();
+        nodes[i] = child.getValue().build();
+        i++;
+      }
+      return new Node(labels, nodes, mapping);
+    }
+  }
+
+  // In registration order
+  private final Map<String, DatabaseMapping> mappingsByPrefix;
+  private final Node root;
+  // null when no primary metastore is registered
+  private final DatabaseMapping primary;
+
+  private DatabasePrefixIndex(Map<String, DatabaseMapping> mappingsByPrefix, DatabaseMapping primary) {
+    this.mappingsByPrefix = Collections.unmodifiableMap(mappingsByPrefix);
+    this.primary = primary;
+    NodeBuilder rootBuilder = new NodeBuilder();
+    for (Map.Entry<String, DatabaseMapping> entry : mappingsByPrefix.entrySet()) {
+      String prefix = entry.getKey();
+      // The empty prefix is the fallback of all the names rather than a match
+      if (Strings.isBlank(prefix)) {
+        continue;
+      }
+      NodeBuilder node = rootBuilder;
+      for (int i = 0; i < prefix.length(); i++) {
+        node = node.children.computeIfAbsent(prefix.charAt(i), c -> new NodeBuilder());
+      }
+      node.mapping = entry.getValue();
+    }
+    root = rootBuilder.build();
+  }
+
+  static DatabasePrefixIndex empty() {
+    return EMPTY;
+  }
+
+  /**
+   * @return an index with the mapping added last, or replacing the one with the same prefix
+   */
+  DatabasePrefixIndex with(String prefix, DatabaseMapping mapping) {
+    Map<String, DatabaseMapping> mappings = new LinkedHashMap<>(mappingsByPrefix);
+    DatabaseMapping replaced = mappings.put(prefix, mapping);
+    return new DatabasePrefixIndex(mappings, replaced != null && replaced == primary ? null : primary);
+  }
+
+  /**
+   * @return an index with the mapping of the primary metastore added last, or replacing the one with the same prefix
+   */
+  DatabasePrefixIndex withPrimary(String prefix, DatabaseMapping mapping) {
+    Map<String, DatabaseMapping> mappings = new LinkedHashMap<>(mappingsByPrefix);
+    mappings.put(prefix, mapping);
+    return new DatabasePrefixIndex(mappings, mapping);
+  }
+
+  /**
+   * @return an index without the mapping, nor a primary mapping if it was the primary one
+   */
+  DatabasePrefixIndex without(String prefix) {
+    if (!mappingsByPrefix.containsKey(prefix)) {
+      return this;
+    }
+    Map<String, DatabaseMapping> mappings = new LinkedHashMap<>(mappingsByPrefix);
+    DatabaseMapping removed = mappings.remove(prefix);
+    return new DatabasePrefixIndex(mappings, removed == primary ? null : primary);
+  }
+
+  /**
+   * @return the mapping of the primary metastore or {@code null} if none is registered
+   */
+  DatabaseMapping primary() {
+    return primary;
+  }
+
+  DatabaseMapping get(String prefix) {
+    return mappingsByPrefix.get(prefix);
+  }
+
+  boolean containsPrefix(String prefix) {
+    return mappingsByPrefix.containsKey(prefix);
+  }
+
+  /**
+   * @return the mappings by prefix in registration order
+   */
+  Map<String, DatabaseMapping> asMap() {
+    return mappingsByPrefix;
+  }
+
+  /**
+   * @return the mappings whose non blank prefix starts the database name, longest prefix first
+   */
+  List<DatabaseMapping> matches(String databaseName) {
+    List<DatabaseMapping> matches = Collections.emptyList();
+    Node node = root;
+    for (int i = 0; i < databaseName.length(); i++) {
+      node = node.child(databaseName.charAt(i));
+      if (node == null) {
+        break;
+      }
+      if (node.mapping != null) {
+        if (matches.isEmpty()) {
+          matches = new ArrayList<>(2);
+        }
+        matches.add(0, node.mapping);
+      }
+    }
+    return matches;
+  }
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.mapping.service.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
+import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIfaceClientFactory;
+import com.hotels.bdp.waggledance.mapping.service.MetaStoreHealth;
+import com.hotels.bdp.waggledance.mapping.service.MetaStoreHealthMonitor;
+import com.hotels.bdp.waggledance.mapping.service.impl.NotifyingFederationService.FederationEventListener;
+
+/**
+ * Probes every metastore of the federation from startup, whether or not a client has used it yet, so their statuses
+ * are known before the database mappings are built. The probes follow the registrations, updates and unregistrations
+ * of the federation.
+ */
+@Component
+public class FederationHealthProbes implements FederationEventListener {
+
+  private final NotifyingFederationService notifyingFederationService;
+  private final MetaStoreHealthMonitor metaStoreHealthMonitor;
+  private final CloseableThriftHiveMetastoreIfaceClientFactory metaStoreClientFactory;
+  private final Map<String, MetaStoreHealth> healthByName = new ConcurrentHashMap<>();
+
+  @Autowired
+  public FederationHealthProbes(
+      NotifyingFederationService notifyingFederationService,
+      MetaStoreHealthMonitor metaStoreHealthMonitor,
+      CloseableThriftHiveMetastoreIfaceClientFactory metaStoreClientFactory) {
+    this.notifyingFederationService = notifyingFederationService;
+    this.metaStoreHealthMonitor = metaStoreHealthMonitor;
+    this.metaStoreClientFactory = metaStoreClientFactory;
+  }
+
+  @PostConstruct
+  public void postConstruct() {
+    notifyingFederationService.subscribe(federation -> {
+      federation.getMetaStores().forEach(this::probe);
+      return this;
+    });
+  }
+
+  @PreDestroy
+  public void preDestroy() {
+    notifyingFederationService.unsubscribe(this);
+    healthByName.values().forEach(MetaStoreHealth::close);
+    healthByName.clear();
+  }
+
+  private void probe(AbstractMetaStore metaStore) {
+    // Built once, the probe client is created again after each failed probe
+    HiveConf hiveConf = metaStoreClientFactory.newHiveConf(metaStore);
+    MetaStoreHealth health = metaStoreHealthMonitor
+        .register(metaStore.getName(), () -> metaStoreClientFactory.newInstance(metaStore, hiveConf));
+    MetaStoreHealth previous = healthByName.put(metaStore.getName(), health);
+    if (previous != null) {
+      previous.close();
+    }
+  }
+
+  private void stopProbing(AbstractMetaStore metaStore) {
+    MetaStoreHealth health = healthByName.remove(metaStore.getName());
+    if (health != null) {
+      health.close();
+    }
+  }
+
+  @Override
+  public void onRegister(AbstractMetaStore federatedMetaStore) {
+    probe(federatedMetaStore);
+  }
+
+  @Override
+  public void onUnregister(AbstractMetaStore federatedMetaStore) {
+    stopProbing(federatedMetaStore);
+  }
+
+  @Override
+  public void onUpdate(AbstractMetaStore oldMetaStore, AbstractMetaStore newMetaStore) {
+    if (oldMetaStore == newMetaStore) {
+      // Status refresh of an unchanged metastore, its probes carry on
+      return;
+    }
+    if (!oldMetaStore.getName().equals(newMetaStore.getName())) {
+      stopProbing(oldMetaStore);
+    }
+    probe(newMetaStore);
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,8 +19,16 @@ import static com.hotels.hcommon.ssh.validation.Preconditions.checkIsTrue;
 import static com.hotels.hcommon.ssh.validation.Preconditions.checkNotNull;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -32,14 +40,25 @@ import org.springframework.stereotype.Service;
 
 import lombok.extern.log4j.Log4j2;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+
 import com.hotels.bdp.waggledance.api.federation.service.FederationService;
 import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
 import com.hotels.bdp.waggledance.mapping.service.FederatedMetaStoreStorage;
+import com.hotels.bdp.waggledance.util.ThreadFactories;
 
+/**
+ * Federation service publishing the changes of the federation. Each change is stored and gets a new version of the
+ * federation right away, the listeners are then notified by a single thread in version order. Registrations never wait
+ * for the listeners, which may be rebuilding their mappings, and a slow listener only delays the next notifications.
+ */
 @Service
 @Log4j2
 public class NotifyingFederationService implements FederationService {
 
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
   public interface FederationEventListener {
     void onRegister(AbstractMetaStore federatedMetaStore);
 
@@ -48,72 +67,247 @@ public class NotifyingFederationService implements FederationService {
     void onUpdate(AbstractMetaStore oldMetaStore, AbstractMetaStore newMetaStore);
   }
 
+  /**
+   * Immutable version of the federation. Listeners built from a snapshot are only notified of the later changes.
+   */
+  public static final class FederationSnapshot {
+    private final long version;
+    private final List<AbstractMetaStore> metaStores;
+
+    public FederationSnapshot(long version, List<AbstractMetaStore> metaStores) {
+      this.version = version;
+      this.metaStores = ImmutableList.copyOf(metaStores);
+    }
+
+    public long getVersion() {
+      return version;
+    }
+
+    public List<AbstractMetaStore> getMetaStores() {
+      return metaStores;
+    }
+  }
+
+  /**
+   * Queues the changes until its listener is built and then notifies them in order, the notifier thread and the thread
+   * building the listener take turns under the lock.
+   */
+  private static final class Subscription {
+    private final long fromVersion;
+    private final Lock lock = new ReentrantLock();
+    // Guarded by lock
+    private final List<Consumer<FederationEventListener>> queued = new ArrayList<>();
+    private volatile FederationEventListener listener;
+
+    private Subscription(long fromVersion) {
+      this.fromVersion = fromVersion;
+    }
+
+    private Subscription(FederationEventListener listener, long fromVersion) {
+      this(fromVersion);
+      this.listener = listener;
+    }
+
+    private void notify(long version, Consumer<FederationEventListener> event) {
+      if (version <= fromVersion) {
+        return;
+      }
+      lock.lock();
+      try {
+        if (listener == null) {
+          queued.add(builtListener -> notify(builtListener, version, event));
+        } else {
+          notify(listener, version, event);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void start(FederationEventListener builtListener) {
+      lock.lock();
+      try {
+        for (Consumer<FederationEventListener> event : queued) {
+          event.accept(builtListener);
+        }
+        queued.clear();
+        listener = builtListener;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private static void notify(
+        FederationEventListener listener,
+        long version,
+        Consumer<FederationEventListener> event) {
+      try {
+        event.accept(listener);
+      } catch (RuntimeException e) {
+        log.error("Error notifying version {} of the federation to {}", version, listener, e);
+      }
+    }
+  }
+
   private final FederatedMetaStoreStorage federatedMetaStoreStorage;
-  private final List<FederationEventListener> listeners;
+  private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+  private final ExecutorService notifier;
+  // Changes are stored and published in the same order, a lock rather than a monitor so waiting virtual threads don't
+  // pin their carrier
+  private final Lock federationLock = new ReentrantLock();
+  private volatile FederationSnapshot snapshot;
 
   @Autowired
   public NotifyingFederationService(FederatedMetaStoreStorage federatedMetaStoreStorage) {
+    this(federatedMetaStoreStorage, Executors
+        .newSingleThreadExecutor(ThreadFactories.newThreadFactory("waggle-dance-federation-events", false)));
+  }
+
+  @VisibleForTesting
+  NotifyingFederationService(FederatedMetaStoreStorage federatedMetaStoreStorage, ExecutorService notifier) {
     this.federatedMetaStoreStorage = federatedMetaStoreStorage;
-    listeners = Collections.synchronizedList(new ArrayList<>());
+    this.notifier = notifier;
   }
 
   @PostConstruct
   public void postConstruct() {
-    List<? extends AbstractMetaStore> federatedMetaStores = getAll();
-    for (AbstractMetaStore federatedMetaStore : federatedMetaStores) {
-      onRegister(federatedMetaStore);
+    federationLock.lock();
+    try {
+      FederationSnapshot federation = nextSnapshot();
+      for (AbstractMetaStore federatedMetaStore : federation.getMetaStores()) {
+        publish(federation, listener -> listener.onRegister(federatedMetaStore));
+      }
+    } finally {
+      federationLock.unlock();
     }
   }
 
   @PreDestroy
   public void preDestroy() {
-    List<? extends AbstractMetaStore> federatedMetaStores = getAll();
-    for (AbstractMetaStore federatedMetaStore : federatedMetaStores) {
-      onUnregister(federatedMetaStore);
+    federationLock.lock();
+    try {
+      FederationSnapshot federation = nextSnapshot();
+      for (AbstractMetaStore federatedMetaStore : federation.getMetaStores()) {
+        publish(federation, listener -> listener.onUnregister(federatedMetaStore));
+      }
+    } finally {
+      federationLock.unlock();
+    }
+    notifier.shutdown();
+    try {
+      if (!notifier.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        log.warn("Federation listeners still notified after {} seconds", SHUTDOWN_TIMEOUT_SECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
   }
 
+  /**
+   * The listener is notified of the changes made after it subscribed.
+   */
   public void subscribe(FederationEventListener listener) {
-    listeners.add(listener);
+    federationLock.lock();
+    try {
+      subscriptions.add(new Subscription(listener, currentVersion()));
+    } finally {
+      federationLock.unlock();
+    }
+  }
+
+  /**
+   * Builds a listener from the latest version of the federation and subscribes it. The changes made while it is built
+   * are queued and notified to it once it is.
+   *
+   * @param listenerFactory builds the listener, without holding any lock of this service
+   * @return the listener built
+   */
+  public <T extends FederationEventListener> T subscribe(Function<FederationSnapshot, T> listenerFactory) {
+    FederationSnapshot federation;
+    Subscription subscription;
+    federationLock.lock();
+    try {
+      federation = getSnapshot();
+      subscription = new Subscription(federation.getVersion());
+      subscriptions.add(subscription);
+    } finally {
+      federationLock.unlock();
+    }
+    T listener;
+    try {
+      listener = listenerFactory.apply(federation);
+    } catch (RuntimeException e) {
+      subscriptions.remove(subscription);
+      throw e;
+    }
+    subscription.start(listener);
+    return listener;
   }
 
   public void unsubscribe(FederationEventListener listener) {
-    listeners.remove(listener);
+    subscriptions.removeIf(subscription -> subscription.listener == listener);
   }
 
-  private void onRegister(AbstractMetaStore federatedMetaStore) {
-    synchronized (listeners) {
-      for (FederationEventListener listener : listeners) {
-        listener.onRegister(federatedMetaStore);
+  /**
+   * @return the latest version of the federation, including the changes the listeners may not have been notified of
+   */
+  public FederationSnapshot getSnapshot() {
+    FederationSnapshot federation = snapshot;
+    if (federation == null) {
+      federationLock.lock();
+      try {
+        federation = snapshot;
+        if (federation == null) {
+          federation = new FederationSnapshot(0, federatedMetaStoreStorage.getAll());
+          snapshot = federation;
+        }
+      } finally {
+        federationLock.unlock();
       }
     }
+    return federation;
   }
 
-  private void onUpdate(AbstractMetaStore oldMetaStore, AbstractMetaStore newMetaStore) {
-    synchronized (listeners) {
-      for (FederationEventListener listener : listeners) {
-        listener.onUpdate(oldMetaStore, newMetaStore);
-      }
+  // Called holding the federation lock
+  private long currentVersion() {
+    FederationSnapshot federation = snapshot;
+    return federation == null ? 0 : federation.getVersion();
+  }
+
+  // Called holding the federation lock
+  private FederationSnapshot nextSnapshot() {
+    snapshot = new FederationSnapshot(currentVersion() + 1, federatedMetaStoreStorage.getAll());
+    return snapshot;
+  }
+
+  // Called holding the federation lock so the notifications are queued in version order
+  private void publish(FederationSnapshot federation, Consumer<FederationEventListener> event) {
+    try {
+      notifier.execute(() -> notify(federation.getVersion(), event));
+    } catch (RejectedExecutionException e) {
+      // Shutting down
+      log.debug("Not notifying version {} of the federation", federation.getVersion());
     }
   }
 
-  private void onUnregister(AbstractMetaStore federatedMetaStore) {
-    synchronized (listeners) {
-      for (FederationEventListener listener : listeners) {
-        listener.onUnregister(federatedMetaStore);
-      }
+  private void notify(long version, Consumer<FederationEventListener> event) {
+    for (Subscription subscription : subscriptions) {
+      subscription.notify(version, event);
     }
   }
 
   @Override
   public void register(@NotNull @Valid AbstractMetaStore metaStore) {
     checkNotNull(metaStore, "federatedMetaStore cannot be null");
-    boolean metastoreDoesNotExist = federatedMetaStoreStorage.get(metaStore.getName()) == null;
-    checkIsTrue(metastoreDoesNotExist, "MetaStore '" + metaStore + "' is already registered");
     log.debug("Registering new federation {}", metaStore);
-    synchronized (federatedMetaStoreStorage) {
+    federationLock.lock();
+    try {
+      boolean metastoreDoesNotExist = federatedMetaStoreStorage.get(metaStore.getName()) == null;
+      checkIsTrue(metastoreDoesNotExist, "MetaStore '" + metaStore + "' is already registered");
       federatedMetaStoreStorage.insert(metaStore);
-      onRegister(metaStore);
+      publish(nextSnapshot(), listener -> listener.onRegister(metaStore));
+    } finally {
+      federationLock.unlock();
     }
     log.debug("New federation {} has been registered successfully", metaStore);
   }
@@ -122,16 +316,19 @@ public class NotifyingFederationService implements FederationService {
   public void update(AbstractMetaStore oldMetaStore, AbstractMetaStore newMetaStore) {
     checkNotNull(oldMetaStore, "old federatedMetaStore cannot be null");
     checkNotNull(newMetaStore, "new federatedMetaStore cannot be null");
-    boolean metastoreExists = federatedMetaStoreStorage.get(oldMetaStore.getName()) != null;
-    checkIsTrue(metastoreExists, "MetaStore '" + oldMetaStore + "' is not registered");
-    if (!oldMetaStore.getName().equals(newMetaStore.getName())) {
-      boolean newNameDoesNotExist = federatedMetaStoreStorage.get(newMetaStore.getName()) == null;
-      checkIsTrue(newNameDoesNotExist, "MetaStore '" + newMetaStore + "' is already registered");
-    }
     log.debug("Registering update of existing federation {} to {}", oldMetaStore, newMetaStore);
-    synchronized (federatedMetaStoreStorage) {
+    federationLock.lock();
+    try {
+      boolean metastoreExists = federatedMetaStoreStorage.get(oldMetaStore.getName()) != null;
+      checkIsTrue(metastoreExists, "MetaStore '" + oldMetaStore + "' is not registered");
+      if (!oldMetaStore.getName().equals(newMetaStore.getName())) {
+        boolean newNameDoesNotExist = federatedMetaStoreStorage.get(newMetaStore.getName()) == null;
+        checkIsTrue(newNameDoesNotExist, "MetaStore '" + newMetaStore + "' is already registered");
+      }
       federatedMetaStoreStorage.update(oldMetaStore, newMetaStore);
-      onUpdate(oldMetaStore, newMetaStore);
+      publish(nextSnapshot(), listener -> listener.onUpdate(oldMetaStore, newMetaStore));
+    } finally {
+      federationLock.unlock();
     }
     log.debug("Update of federation {} to {} has been registered successfully", oldMetaStore, newMetaStore);
   }
@@ -139,11 +336,14 @@ public class NotifyingFederationService implements FederationService {
   @Override
   public void unregister(@NotNull String name) {
     checkNotNull(name, "name cannot be null");
-    checkNotNull(federatedMetaStoreStorage.get(name), "MeataStore with name '" + name + "' is not registered");
     log.debug("Unregistering federation with name {}", name);
-    synchronized (federatedMetaStoreStorage) {
+    federationLock.lock();
+    try {
+      checkNotNull(federatedMetaStoreStorage.get(name), "MeataStore with name '" + name + "' is not registered");
       AbstractMetaStore federatedMetaStore = federatedMetaStoreStorage.delete(name);
-      onUnregister(federatedMetaStore);
+      publish(nextSnapshot(), listener -> listener.onUnregister(federatedMetaStore));
+    } finally {
+      federationLock.unlock();
     }
     log.debug("Federation with name {} is no longer available", name);
   }
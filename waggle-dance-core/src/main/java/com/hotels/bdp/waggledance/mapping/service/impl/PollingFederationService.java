@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -57,9 +57,16 @@ public class PollingFederationService {
     for (AbstractMetaStore metaStore : metastores) {
       String metastoreName = metaStore.getName();
       MetaStoreStatus metastoreStatus = metaStore.getStatus();
-      current.put(metastoreName, metastoreStatus);
       sendMetric(metastoreName, metastoreStatus);
       MetaStoreStatus previousMetastoreStatus = previous.get(metaStore.getName());
+      if (metastoreStatus == MetaStoreStatus.UNKNOWN) {
+        // Not probed yet or probes hanging, only changes between known statuses refresh the mapping
+        if (previousMetastoreStatus != null) {
+          current.put(metastoreName, previousMetastoreStatus);
+        }
+        continue;
+      }
+      current.put(metastoreName, metastoreStatus);
       if (previousMetastoreStatus != null) {
         if (previousMetastoreStatus != metaStore.getStatus()) {
           populateStatusFederationService.update(metaStore, metaStore);
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,16 +19,16 @@ import static com.hotels.bdp.waggledance.api.model.FederationType.PRIMARY;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.BiFunction;
 
 import javax.validation.constraints.NotNull;
@@ -38,7 +38,6 @@ import org.apache.hadoop.hive.metastore.api.Function;
 import org.apache.hadoop.hive.metastore.api.GetAllFunctionsResponse;
 import org.apache.hadoop.hive.metastore.api.NoSuchObjectException;
 import org.apache.hadoop.hive.metastore.api.TableMeta;
-import org.apache.logging.log4j.util.Strings;
 
 import lombok.extern.log4j.Log4j2;
 
@@ -53,6 +52,7 @@ import com.hotels.bdp.waggledance.mapping.model.DatabaseMapping;
 import com.hotels.bdp.waggledance.mapping.model.DatabaseMappingImpl;
 import com.hotels.bdp.waggledance.mapping.model.MetaStoreMapping;
 import com.hotels.bdp.waggledance.mapping.model.QueryMapping;
+import com.hotels.bdp.waggledance.mapping.service.FanOutExecutor;
 import com.hotels.bdp.waggledance.mapping.service.GrammarUtils;
 import com.hotels.bdp.waggledance.mapping.service.MappingEventListener;
 import com.hotels.bdp.waggledance.mapping.service.MetaStoreMappingFactory;
@@ -66,43 +66,47 @@ import com.hotels.bdp.waggledance.util.AllowList;
 @Log4j2
 public class PrefixBasedDatabaseMappingService implements MappingEventListener {
   private static final String EMPTY_PREFIX = "";
+  // On top of the latency of the slowest metastore, as the other calls made to all the metastores
+  private static final long AVAILABILITY_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(8L);
   private final MetaStoreMappingFactory metaStoreMappingFactory;
   private final QueryMapping queryMapping;
-  private final Map<String, DatabaseMapping> mappingsByPrefix;
+  private final FanOutExecutor fanOutExecutor;
+  private final PanopticOperationExecutor panopticOperationExecutor;
+  // Serialises the federation events, requests only read the current index
+  private final Object federationLock = new Object();
+  // Along with the primary mapping so both are replaced at once
+  private volatile DatabasePrefixIndex mappingsByPrefix = DatabasePrefixIndex.empty();
   private final Map<String, AllowList> mappedDbByPrefix;
   private final Map<String, Map<String, AllowList>> mappedTblByPrefix;
 
-  private DatabaseMapping primaryDatabaseMapping;
-
+  /**
+   * @param fanOutExecutor runs the calls made to several metastores concurrently
+   */
   public PrefixBasedDatabaseMappingService(
       MetaStoreMappingFactory metaStoreMappingFactory,
       List<AbstractMetaStore> initialMetastores,
-      QueryMapping queryMapping) {
+      QueryMapping queryMapping,
+      FanOutExecutor fanOutExecutor) {
     this.metaStoreMappingFactory = metaStoreMappingFactory;
     this.queryMapping = queryMapping;
-    mappingsByPrefix = Collections.synchronizedMap(new LinkedHashMap<>());
+    this.fanOutExecutor = fanOutExecutor;
+    panopticOperationExecutor = new PanopticConcurrentOperationExecutor(fanOutExecutor);
     mappedDbByPrefix = new ConcurrentHashMap<>();
     mappedTblByPrefix = new ConcurrentHashMap<>();
     for (AbstractMetaStore abstractMetaStore : initialMetastores) {
-      add(abstractMetaStore);
+      mappingsByPrefix = add(abstractMetaStore, mappingsByPrefix);
+      checkPrimaryAvailable(abstractMetaStore);
     }
   }
 
-  private void add(AbstractMetaStore metaStore) {
+  /**
+   * @return the index with the mapping of the metastore, to be published by the caller
+   */
+  private DatabasePrefixIndex add(AbstractMetaStore metaStore, DatabasePrefixIndex index) {
     MetaStoreMapping metaStoreMapping = metaStoreMappingFactory.newInstance(metaStore);
 
     DatabaseMapping databaseMapping = createDatabaseMapping(metaStoreMapping);
 
-    if (metaStore.getFederationType() == PRIMARY) {
-      primaryDatabaseMapping = databaseMapping;
-      if (!metaStoreMapping.isAvailable()) {
-        throw new WaggleDanceException(
-                String.format("Primary metastore is unavailable {}", metaStore.getRemoteMetaStoreUris())
-        );
-      }
-    }
-
-    mappingsByPrefix.put(metaStoreMapping.getDatabasePrefix(), databaseMapping);
     AllowList mappedDbAllowList = new AllowList(metaStore.getMappedDatabases());
     mappedDbByPrefix.put(metaStoreMapping.getDatabasePrefix(), mappedDbAllowList);
 
@@ -115,26 +119,32 @@ public class PrefixBasedDatabaseMappingService implements MappingEventListener {
       }
       mappedTblByPrefix.put(metaStoreMapping.getDatabasePrefix(), mappedTblByDb);
     }
+    if (metaStore.getFederationType() == PRIMARY) {
+      return index.withPrimary(metaStoreMapping.getDatabasePrefix(), databaseMapping);
+    }
+    return index.with(metaStoreMapping.getDatabasePrefix(), databaseMapping);
   }
 
-  private DatabaseMapping createDatabaseMapping(MetaStoreMapping metaStoreMapping) {
-    return new DatabaseMappingImpl(metaStoreMapping, queryMapping);
+  /**
+   * The primary metastore is registered even when unavailable, the caller is told it is.
+   */
+  private void checkPrimaryAvailable(AbstractMetaStore metaStore) {
+    if (metaStore.getFederationType() == PRIMARY && !mappingsByPrefix.primary().isAvailable()) {
+      throw new WaggleDanceException(
+              String.format("Primary metastore is unavailable {}", metaStore.getRemoteMetaStoreUris())
+      );
+    }
   }
 
-  private void remove(AbstractMetaStore metaStore) {
-    if (metaStore.getFederationType() == PRIMARY) {
-      primaryDatabaseMapping = null;
-    }
-    DatabaseMapping removed = mappingsByPrefix.remove(metaStoreMappingFactory.prefixNameFor(metaStore));
-    IOUtils.closeQuietly(removed);
+  private DatabaseMapping createDatabaseMapping(MetaStoreMapping metaStoreMapping) {
+    return new DatabaseMappingImpl(metaStoreMapping, queryMapping);
   }
 
   @Override
   public void onRegister(AbstractMetaStore metaStore) {
-    // Synchronizing on the mappingsByPrefix map field so we ensure the implemented FederationEventListener methods are
-    // processes sequentially
-    synchronized (mappingsByPrefix) {
-      if (mappingsByPrefix.containsKey(metaStore.getDatabasePrefix())) {
+    // Synchronizing so we ensure the implemented FederationEventListener methods are processed sequentially
+    synchronized (federationLock) {
+      if (mappingsByPrefix.containsPrefix(metaStore.getDatabasePrefix())) {
         throw new WaggleDanceException("MetaStore with prefix '"
             + metaStore.getDatabasePrefix()
             + "' already registered, remove old one first or update");
@@ -142,35 +152,47 @@ public class PrefixBasedDatabaseMappingService implements MappingEventListener {
       if (isPrimaryMetaStoreRegistered(metaStore)) {
         throw new WaggleDanceException("Primary metastore already registered, remove old one first or update");
       }
-      add(metaStore);
+      mappingsByPrefix = add(metaStore, mappingsByPrefix);
+      checkPrimaryAvailable(metaStore);
     }
   }
 
   private boolean isPrimaryMetaStoreRegistered(AbstractMetaStore metaStore) {
-    return (metaStore.getFederationType() == FederationType.PRIMARY) && (primaryDatabaseMapping != null);
+    return (metaStore.getFederationType() == FederationType.PRIMARY) && (mappingsByPrefix.primary() != null);
   }
 
   @Override
   public void onUpdate(AbstractMetaStore oldMetaStore, AbstractMetaStore newMetaStore) {
-    // Synchronizing on the mappingsByPrefix map field so we ensure the implemented FederationEventListener methods are
-    // processes sequentially
-    synchronized (mappingsByPrefix) {
-      remove(oldMetaStore);
-      add(newMetaStore);
+    // Synchronizing so we ensure the implemented FederationEventListener methods are processed sequentially
+    synchronized (federationLock) {
+      String oldPrefix = metaStoreMappingFactory.prefixNameFor(oldMetaStore);
+      DatabaseMapping removed = mappingsByPrefix.get(oldPrefix);
+      // Requests see either the old or the new mapping, primary one included, the old one is only closed once replaced
+      DatabasePrefixIndex index = mappingsByPrefix.without(oldPrefix);
+      try {
+        index = add(newMetaStore, index);
+      } finally {
+        mappingsByPrefix = index;
+        IOUtils.closeQuietly(removed);
+      }
+      checkPrimaryAvailable(newMetaStore);
     }
   }
 
   @Override
   public void onUnregister(AbstractMetaStore metaStore) {
-    // Synchronizing on the mappingsByPrefix map field so we ensure the implemented FederationEventListener methods are
-    // processes sequentially
-    synchronized (mappingsByPrefix) {
-      remove(metaStore);
+    // Synchronizing so we ensure the implemented FederationEventListener methods are processed sequentially
+    synchronized (federationLock) {
+      String prefix = metaStoreMappingFactory.prefixNameFor(metaStore);
+      DatabaseMapping removed = mappingsByPrefix.get(prefix);
+      mappingsByPrefix = mappingsByPrefix.without(prefix);
+      IOUtils.closeQuietly(removed);
     }
   }
 
   @Override
   public DatabaseMapping primaryDatabaseMapping() {
+    DatabaseMapping primaryDatabaseMapping = mappingsByPrefix.primary();
     if (primaryDatabaseMapping == null) {
       throw new NoPrimaryMetastoreException("Waggle Dance error no primary database mapping available");
     }
@@ -189,27 +211,25 @@ public class PrefixBasedDatabaseMappingService implements MappingEventListener {
 
   @Override
   public DatabaseMapping databaseMapping(@NotNull String databaseName) throws NoSuchObjectException {
-    // Find a Metastore with a prefix
-    synchronized (mappingsByPrefix) {
-      for (Entry<String, DatabaseMapping> entry : mappingsByPrefix.entrySet()) {
-        String metastorePrefix = entry.getKey();
-        if (Strings.isNotBlank(metastorePrefix) && databaseName.startsWith(metastorePrefix)) {
-          DatabaseMapping databaseMapping = entry.getValue();
-          log.debug("Database Name `{}` maps to metastore with prefix `{}`", databaseName, metastorePrefix);
-          if (includeInResults(databaseMapping, databaseName)) {
-            return databaseMapping;
-          }
-        }
+    DatabasePrefixIndex index = mappingsByPrefix;
+    // Find a Metastore with a prefix, the longest matching prefix first
+    for (DatabaseMapping databaseMapping : index.matches(databaseName)) {
+      log
+          .debug("Database Name `{}` maps to metastore with prefix `{}`", databaseName,
+              databaseMapping.getDatabasePrefix());
+      if (includeInResults(databaseMapping, databaseName)) {
+        return databaseMapping;
       }
     }
     // Find a Metastore that has an empty prefix
-    DatabaseMapping databaseMapping = mappingsByPrefix.get(EMPTY_PREFIX);
+    DatabaseMapping databaseMapping = index.get(EMPTY_PREFIX);
     if (databaseMapping != null) {
       log.debug("Database Name `{}` maps to metastore with EMPTY_PREFIX", databaseName);
       if (includeInResults(databaseMapping, databaseName)) {
         return databaseMapping;
       }
     }
+    DatabaseMapping primaryDatabaseMapping = index.primary();
     if (primaryDatabaseMapping != null) {
       // If none found we fall back to primary one
       if (includeInResults(primaryDatabaseMapping, databaseName)) {
@@ -239,8 +259,14 @@ public class PrefixBasedDatabaseMappingService implements MappingEventListener {
     List<String> allowedTables = new ArrayList<>();
     String databasePrefix = mapping.getDatabasePrefix();
     String transformedDb = mapping.transformInboundDatabaseName(databaseName);
+    AllowList tblAllowList = tableAllowList(databasePrefix, transformedDb);
+    if (tblAllowList == null) {
+      // Accept everything
+      allowedTables.addAll(tableNames);
+      return allowedTables;
+    }
     for (String table : tableNames) {
-      if (isTableAllowed(databasePrefix, transformedDb, table)) {
+      if (tblAllowList.contains(table)) {
         allowedTables.add(table);
       }
     }
@@ -248,12 +274,7 @@ public class PrefixBasedDatabaseMappingService implements MappingEventListener {
   }
 
   private boolean isTableAllowed(String databasePrefix, String database, String table) {
-    Map<String, AllowList> dbToTblAllowList = mappedTblByPrefix.get(databasePrefix);
-    if (dbToTblAllowList == null) {
-      // Accept everything
-      return true;
-    }
-    AllowList tblAllowList = dbToTblAllowList.get(database);
+    AllowList tblAllowList = tableAllowList(databasePrefix, database);
     if (tblAllowList == null) {
       // Accept everything
       return true;
@@ -261,60 +282,78 @@ public class PrefixBasedDatabaseMappingService implements MappingEventListener {
     return tblAllowList.contains(table);
   }
 
+  /**
+   * @return the tables allowed in the database or null if all the tables are
+   */
+  private AllowList tableAllowList(String databasePrefix, String database) {
+    Map<String, AllowList> dbToTblAllowList = mappedTblByPrefix.get(databasePrefix);
+    if (dbToTblAllowList == null) {
+      return null;
+    }
+    return dbToTblAllowList.get(database);
+  }
+
   /**
    * This run in parallel because includeInResults could potentially be slow (wait/retries) for certain slow responding
-   * metastores. Using ExecutorService + Futures to maintain the order. Order is important for example when doing calls
-   * like show databases, we return that grouped/ordered per metastore.
+   * metastores. Using the FanOutExecutor + Futures to maintain the order. Order is important for example when doing calls
+   * like show databases, we return that grouped/ordered per metastore. Metastores that can't be checked in time, or
+   * whose check is rejected by the FanOutExecutor, are left out of the results with a warning.
    */
   @Override
   public List<DatabaseMapping> getAvailableDatabaseMappings() {
     // TODO PD refactor/add same logic for StaticDatabaseMappingService.
     Builder<DatabaseMapping> builder = ImmutableList.builder();
-    ForkJoinPool customThreadPool = new ForkJoinPool(mappingsByPrefix.size());
-    try {
-      synchronized (mappingsByPrefix) {
-        List<Future<DatabaseMapping>> futures = new ArrayList<>();
-        for (DatabaseMapping databaseMapping : mappingsByPrefix.values()) {
-          futures.add(customThreadPool.submit(() -> {
-            if (includeInResults(databaseMapping)) {
-              return databaseMapping;
-            }
-            return null;
-          }));
-
+    List<DatabaseMapping> databaseMappings = getAllDatabaseMappings();
+    List<CompletableFuture<DatabaseMapping>> futures = new ArrayList<>(databaseMappings.size());
+    long maxLatency = 0;
+    for (DatabaseMapping databaseMapping : databaseMappings) {
+      maxLatency = Math.max(maxLatency, databaseMapping.getLatency());
+      futures.add(fanOutExecutor.submit(databaseMapping.getMetastoreMappingName(), () -> {
+        if (includeInResults(databaseMapping)) {
+          return databaseMapping;
         }
+        return null;
+      }));
+    }
 
-        for (Future<DatabaseMapping> future : futures) {
-          try {
-            DatabaseMapping mapping = future.get();
-            if (mapping != null) {
-              builder.add(mapping);
-            }
-          } catch (InterruptedException e) {
-            // ignore mapping
-          } catch (ExecutionException e) {
-            log.error("Can't include mapping ", e);
-          }
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(AVAILABILITY_TIMEOUT_MILLIS + maxLatency);
+    for (int i = 0; i < futures.size(); i++) {
+      CompletableFuture<DatabaseMapping> future = futures.get(i);
+      String metastoreName = databaseMappings.get(i).getMetastoreMappingName();
+      try {
+        DatabaseMapping mapping = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        if (mapping != null) {
+          builder.add(mapping);
         }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        for (int j = i; j < futures.size(); j++) {
+          fanOutExecutor.cancel(databaseMappings.get(j).getMetastoreMappingName(), futures.get(j));
+        }
+        throw new WaggleDanceException("Interrupted while checking the available metastores", e);
+      } catch (TimeoutException e) {
+        fanOutExecutor.cancel(metastoreName, future);
+        log.warn("Metastore {} was slow to respond so it is omitted", metastoreName);
+      } catch (ExecutionException e) {
+        log.warn("Metastore {} is omitted, its availability couldn't be checked: {}", metastoreName,
+            e.getCause().getMessage());
       }
-    } finally {
-      customThreadPool.shutdownNow();
     }
-    List<DatabaseMapping> result = builder.build();
-    return result;
+    return builder.build();
   }
 
   @Override
   public List<DatabaseMapping> getAllDatabaseMappings() {
-    return new ArrayList<>(mappingsByPrefix.values());
+    return new ArrayList<>(mappingsByPrefix.asMap().values());
   }
 
   private Map<DatabaseMapping, String> databaseMappingsByDbPattern(@NotNull String databasePatterns) {
     Map<DatabaseMapping, String> mappings = new LinkedHashMap<>();
+    DatabasePrefixIndex index = mappingsByPrefix;
     Map<String, String> matchingPrefixes = GrammarUtils
-        .selectMatchingPrefixes(mappingsByPrefix.keySet(), databasePatterns);
+        .selectMatchingPrefixes(index.asMap().keySet(), databasePatterns);
     for (Entry<String, String> prefixWithPattern : matchingPrefixes.entrySet()) {
-      DatabaseMapping mapping = mappingsByPrefix.get(prefixWithPattern.getKey());
+      DatabaseMapping mapping = index.get(prefixWithPattern.getKey());
       if (mapping == null) {
         continue;
       }
@@ -404,7 +443,8 @@ public class PrefixBasedDatabaseMappingService implements MappingEventListener {
        */
       private void addNonPrefixedPrimaryMetastoreFunctions(GetAllFunctionsResponse allFunctions) {
         List<Function> newFunctions = new ArrayList<>();
-        String primaryPrefix = primaryDatabaseMapping().getDatabasePrefix();
+        DatabaseMapping primaryDatabaseMapping = primaryDatabaseMapping();
+        String primaryPrefix = primaryDatabaseMapping.getDatabasePrefix();
         if (!"".equals(primaryPrefix)) {
           if (allFunctions.isSetFunctions()) {
             for (Function function : allFunctions.getFunctions()) {
@@ -423,17 +463,15 @@ public class PrefixBasedDatabaseMappingService implements MappingEventListener {
 
       @Override
       protected PanopticOperationExecutor getPanopticOperationExecutor() {
-        return new PanopticConcurrentOperationExecutor();
+        return panopticOperationExecutor;
       }
     };
   }
 
   @Override
   public void close() throws IOException {
-    if (mappingsByPrefix != null) {
-      for (MetaStoreMapping metaStoreMapping : mappingsByPrefix.values()) {
-        metaStoreMapping.close();
-      }
+    for (MetaStoreMapping metaStoreMapping : mappingsByPrefix.asMap().values()) {
+      metaStoreMapping.close();
     }
   }
 
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,40 +21,41 @@ import org.springframework.stereotype.Service;
 import com.hotels.bdp.waggledance.api.federation.service.FederationStatusService;
 import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
 import com.hotels.bdp.waggledance.api.model.MetaStoreStatus;
-import com.hotels.bdp.waggledance.mapping.model.MetaStoreMapping;
-import com.hotels.bdp.waggledance.mapping.service.MetaStoreMappingFactory;
+import com.hotels.bdp.waggledance.mapping.service.MetaStoreHealth;
+import com.hotels.bdp.waggledance.mapping.service.MetaStoreHealthMonitor;
 
 @Service
 public class SimpleFederationStatusService implements FederationStatusService {
 
-  private final MetaStoreMappingFactory metaStoreMappingFactory;
+  private final MetaStoreHealthMonitor metaStoreHealthMonitor;
 
   @Autowired
-  public SimpleFederationStatusService(MetaStoreMappingFactory metaStoreMappingFactory) {
-    this.metaStoreMappingFactory = metaStoreMappingFactory;
+  public SimpleFederationStatusService(MetaStoreHealthMonitor metaStoreHealthMonitor) {
+    this.metaStoreHealthMonitor = metaStoreHealthMonitor;
   }
 
   /**
    * Checks the status of an {@code AbstractMetaStore}.
    * <p>
-   * Note: we expect this service should have a low usage so creating a client on each request is fine. If the usage
-   * increases impacting the performance of the server then caching or an alternative solution could be adopted.
+   * The status is the one of the last background probe of the metastore, probed from startup by the
+   * {@link FederationHealthProbes}. Checking it never calls the metastore so it can be polled as often as needed.
    * </p>
    *
    * @param abstractMetaStore the metastore to check
-   * @return {@code MetaStoreStatus.AVAILABLE} if the service can successfully connect to the metastore. Otherwise,
-   *         returns {@code MetaStoreStatus.UNAVAILABLE}
+   * @return {@code MetaStoreStatus.AVAILABLE} if the last probe of the metastore succeeded,
+   *         {@code MetaStoreStatus.UNKNOWN} if it hasn't been probed lately. Otherwise, returns
+   *         {@code MetaStoreStatus.UNAVAILABLE}, also when the metastore isn't probed.
    */
   @Override
   public MetaStoreStatus checkStatus(AbstractMetaStore abstractMetaStore) {
-    try (MetaStoreMapping mapping = metaStoreMappingFactory.newInstance(abstractMetaStore)) {
-      if (!mapping.isAvailable()) {
-        return MetaStoreStatus.UNAVAILABLE;
-      }
-    } catch (Exception e) {
+    MetaStoreHealth health = metaStoreHealthMonitor.getHealth(abstractMetaStore.getName());
+    if (health == null) {
       return MetaStoreStatus.UNAVAILABLE;
     }
-    return MetaStoreStatus.AVAILABLE;
+    if (health.getState() == null || metaStoreHealthMonitor.isStale(health)) {
+      return MetaStoreStatus.UNKNOWN;
+    }
+    return health.isAvailable() ? MetaStoreStatus.AVAILABLE : MetaStoreStatus.UNAVAILABLE;
   }
 
 }
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -27,7 +27,16 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 
 import javax.validation.constraints.NotNull;
@@ -50,6 +59,7 @@ import com.hotels.bdp.waggledance.mapping.model.DatabaseMapping;
 import com.hotels.bdp.waggledance.mapping.model.DatabaseMappingImpl;
 import com.hotels.bdp.waggledance.mapping.model.MetaStoreMapping;
 import com.hotels.bdp.waggledance.mapping.model.QueryMapping;
+import com.hotels.bdp.waggledance.mapping.service.FanOutExecutor;
 import com.hotels.bdp.waggledance.mapping.service.GrammarUtils;
 import com.hotels.bdp.waggledance.mapping.service.MappingEventListener;
 import com.hotels.bdp.waggledance.mapping.service.MetaStoreMappingFactory;
@@ -58,46 +68,112 @@ import com.hotels.bdp.waggledance.mapping.service.PanopticOperationExecutor;
 import com.hotels.bdp.waggledance.mapping.service.PanopticOperationHandler;
 import com.hotels.bdp.waggledance.server.NoPrimaryMetastoreException;
 import com.hotels.bdp.waggledance.util.AllowList;
+import com.hotels.bdp.waggledance.util.ThreadFactories;
 
+/**
+ * Maps the databases listed by each metastore, when {@code mapped-databases} allows them, to their metastore. With an
+ * index refresh delay the databases created or dropped later on are picked up in the background, see
+ * {@link DatabaseListTracker}, and a database that isn't mapped yet triggers a refresh before being reported missing.
+ * Refreshes are made one at a time and callers missing a database while one is running wait for it rather than
+ * starting their own, for {@link #MISS_REFRESH_TIMEOUT_MILLIS} at most so a slow metastore doesn't hold the requests.
+ * Unavailable metastores are left out of the refreshes.
+ */
 @Log4j2
 public class StaticDatabaseMappingService implements MappingEventListener {
+
+  static final long DEFAULT_MISS_REFRESH_INTERVAL_MILLIS = 1000;
+  static final long MISS_REFRESH_TIMEOUT_MILLIS = 500;
+
   private final MetaStoreMappingFactory metaStoreMappingFactory;
   private final Map<String, DatabaseMapping> mappingsByMetaStoreName;
   private final Map<String, DatabaseMapping> mappingsByDatabaseName;
   private final Map<String, List<String>> databaseMappingToDatabaseList;
   private final Map<String, AllowList> databaseToTableAllowList;
-  private DatabaseMapping primaryDatabaseMapping;
+  private volatile DatabaseMapping primaryDatabaseMapping;
   private final QueryMapping queryMapping;
+  private final PanopticOperationExecutor panopticOperationExecutor;
+  private final Map<String, DatabaseListTracker> trackersByMetaStoreName = new ConcurrentHashMap<>();
+  // null when the index is not refreshed
+  private final ScheduledExecutorService indexRefresher;
+  private final long missRefreshIntervalNanos;
+  private final AtomicReference<CompletableFuture<Void>> pendingRefresh = new AtomicReference<>();
+  private volatile long lastRefreshNanos = System.nanoTime();
+
+  /**
+   * @param fanOutExecutor runs the calls made to several metastores concurrently
+   */
+  public StaticDatabaseMappingService(
+      MetaStoreMappingFactory metaStoreMappingFactory,
+      List<AbstractMetaStore> initialMetastores,
+      QueryMapping queryMapping,
+      FanOutExecutor fanOutExecutor) {
+    this(metaStoreMappingFactory, initialMetastores, queryMapping, fanOutExecutor, 0);
+  }
 
+  /**
+   * @param indexRefreshDelayMillis delay between two refreshes of the databases of the metastores, {@code 0} to only
+   *          list them when the metastores are registered
+   */
   public StaticDatabaseMappingService(
       MetaStoreMappingFactory metaStoreMappingFactory,
       List<AbstractMetaStore> initialMetastores,
-      QueryMapping queryMapping) {
+      QueryMapping queryMapping,
+      FanOutExecutor fanOutExecutor,
+      long indexRefreshDelayMillis) {
+    this(metaStoreMappingFactory, initialMetastores, queryMapping, fanOutExecutor, indexRefreshDelayMillis,
+        DEFAULT_MISS_REFRESH_INTERVAL_MILLIS);
+  }
+
+  /**
+   * @param missRefreshIntervalMillis minimum delay after a refresh before a missing database triggers another one
+   */
+  StaticDatabaseMappingService(
+      MetaStoreMappingFactory metaStoreMappingFactory,
+      List<AbstractMetaStore> initialMetastores,
+      QueryMapping queryMapping,
+      FanOutExecutor fanOutExecutor,
+      long indexRefreshDelayMillis,
+      long missRefreshIntervalMillis) {
     this.metaStoreMappingFactory = metaStoreMappingFactory;
     this.queryMapping = queryMapping;
+    panopticOperationExecutor = new PanopticConcurrentOperationExecutor(fanOutExecutor);
     mappingsByMetaStoreName = Collections.synchronizedMap(new LinkedHashMap<>());
     mappingsByDatabaseName = Collections.synchronizedMap(new LinkedHashMap<>());
     databaseMappingToDatabaseList = new ConcurrentHashMap<>();
     databaseToTableAllowList = new ConcurrentHashMap<>();
+    missRefreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(missRefreshIntervalMillis);
+    if (indexRefreshDelayMillis > 0) {
+      indexRefresher = Executors
+          .newSingleThreadScheduledExecutor(ThreadFactories.newThreadFactory("waggle-dance-database-index", false));
+    } else {
+      indexRefresher = null;
+    }
     for (AbstractMetaStore federatedMetaStore : initialMetastores) {
       add(federatedMetaStore);
     }
+    if (indexRefresher != null) {
+      indexRefresher
+          .scheduleWithFixedDelay(this::requestRefresh, indexRefreshDelayMillis, indexRefreshDelayMillis,
+              TimeUnit.MILLISECONDS);
+    }
   }
 
   private void add(AbstractMetaStore metaStore) {
     MetaStoreMapping metaStoreMapping = metaStoreMappingFactory.newInstance(metaStore);
 
     List<String> mappableDatabases = Collections.emptyList();
+    AllowList allowedDatabases = new AllowList(metaStore.getMappedDatabases());
     if (metaStoreMapping.isAvailable()) {
       try {
         List<String> allDatabases = metaStoreMapping.getClient().get_all_databases();
-        AllowList allowedDatabases = new AllowList(metaStore.getMappedDatabases());
         mappableDatabases = applyAllowList(allDatabases, allowedDatabases);
       } catch (TException e) {
         log.error("Could not get databases for metastore {}", metaStore.getRemoteMetaStoreUris(), e);
       }
     }
     DatabaseMapping databaseMapping = createDatabaseMapping(metaStoreMapping);
+    DatabaseListTracker tracker = new DatabaseListTracker(metaStore.getName(), databaseMapping, allowedDatabases,
+        mappableDatabases);
     mappableDatabases = mappableDatabases
         .stream()
         .flatMap(n -> databaseMapping.transformOutboundDatabaseNameMultiple(n).stream())
@@ -113,6 +189,9 @@ public class StaticDatabaseMappingService implements MappingEventListener {
     addDatabaseMappings(mappableDatabases, databaseMapping);
     databaseMappingToDatabaseList.put(databaseMapping.getMetastoreMappingName(), mappableDatabases);
     addTableMappings(metaStore);
+    if (indexRefresher != null) {
+      trackersByMetaStoreName.put(metaStore.getName(), tracker);
+    }
   }
 
   private void validateMappableDatabases(List<String> mappableDatabases, AbstractMetaStore metaStore) {
@@ -175,6 +254,7 @@ public class StaticDatabaseMappingService implements MappingEventListener {
       primaryDatabaseMapping = null;
     }
 
+    trackersByMetaStoreName.remove(metaStore.getName());
     DatabaseMapping removed = mappingsByMetaStoreName.remove(metaStore.getName());
     String mappingName = removed.getMetastoreMappingName();
     List<String> databasesToRemove = databaseMappingToDatabaseList.get(mappingName);
@@ -186,6 +266,112 @@ public class StaticDatabaseMappingService implements MappingEventListener {
     IOUtils.closeQuietly(removed);
   }
 
+  /**
+   * @return the refresh running or about to run, a new one if there is none
+   */
+  private CompletableFuture<Void> requestRefresh() {
+    while (true) {
+      CompletableFuture<Void> pending = pendingRefresh.get();
+      if (pending != null) {
+        return pending;
+      }
+      CompletableFuture<Void> refresh = new CompletableFuture<>();
+      if (pendingRefresh.compareAndSet(null, refresh)) {
+        try {
+          indexRefresher.execute(() -> {
+            try {
+              refreshIndex();
+            } finally {
+              lastRefreshNanos = System.nanoTime();
+              pendingRefresh.set(null);
+              refresh.complete(null);
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          // Closed
+          pendingRefresh.set(null);
+          refresh.complete(null);
+        }
+        return refresh;
+      }
+    }
+  }
+
+  private void refreshIndex() {
+    for (DatabaseListTracker tracker : trackersByMetaStoreName.values()) {
+      if (!tracker.getMapping().isAvailable()) {
+        continue;
+      }
+      try {
+        // Don't hold the lock while calling the metastore
+        List<String> databases = tracker.poll();
+        updateDatabaseMappings(tracker, databases);
+      } catch (TException | RuntimeException e) {
+        log.warn("Could not refresh databases of metastore {}", tracker.getName(), e);
+      }
+    }
+  }
+
+  private void updateDatabaseMappings(DatabaseListTracker tracker, List<String> databases) {
+    synchronized (mappingsByMetaStoreName) {
+      DatabaseMapping databaseMapping = tracker.getMapping();
+      String mappingName = databaseMapping.getMetastoreMappingName();
+      if (mappingsByMetaStoreName.get(mappingName) != databaseMapping) {
+        // Updated or unregistered while refreshing
+        return;
+      }
+      List<String> mappedDatabases = new ArrayList<>();
+      for (String database : databases) {
+        DatabaseMapping current = mappingsByDatabaseName.putIfAbsent(database, databaseMapping);
+        if (current == null) {
+          log.info("Database '{}' of metastore '{}' is now mapped", database, mappingName);
+          mappedDatabases.add(database);
+        } else if (current == databaseMapping) {
+          mappedDatabases.add(database);
+        } else {
+          log
+              .warn("Database clash, ignoring database '{}' of metastore '{}' already present in metastore '{}'",
+                  database, mappingName, current.getMetastoreMappingName());
+        }
+      }
+      Set<String> kept = new HashSet<>(mappedDatabases);
+      for (String database : databaseMappingToDatabaseList.getOrDefault(mappingName, Collections.emptyList())) {
+        if (!kept.contains(database) && mappingsByDatabaseName.remove(database, databaseMapping)) {
+          log.info("Database '{}' of metastore '{}' is no longer mapped", database, mappingName);
+        }
+      }
+      databaseMappingToDatabaseList.put(mappingName, mappedDatabases);
+    }
+  }
+
+  /**
+   * @return whether a refresh was made
+   */
+  private boolean refreshOnMiss() {
+    if (indexRefresher == null) {
+      return false;
+    }
+    CompletableFuture<Void> refresh = pendingRefresh.get();
+    if (refresh == null) {
+      if (System.nanoTime() - lastRefreshNanos < missRefreshIntervalNanos) {
+        return false;
+      }
+      refresh = requestRefresh();
+    }
+    try {
+      refresh.get(MISS_REFRESH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException e) {
+      return false;
+    } catch (TimeoutException e) {
+      log.debug("Database index refresh is still running, not waiting for it");
+      return false;
+    }
+  }
+
   @Override
   public void onRegister(AbstractMetaStore metaStore) {
     // Synchronizing on the mappingsByMetaStoreName map field so we ensure the implemented FederationEventListener
@@ -236,7 +422,11 @@ public class StaticDatabaseMappingService implements MappingEventListener {
   @Override
   public DatabaseMapping databaseMapping(@NotNull String databaseName) throws NoSuchObjectException {
     databaseName = GrammarUtils.removeCatName(databaseName);
-    DatabaseMapping databaseMapping = mappingsByDatabaseName.get(databaseName.toLowerCase(Locale.ROOT));
+    String key = databaseName.toLowerCase(Locale.ROOT);
+    DatabaseMapping databaseMapping = mappingsByDatabaseName.get(key);
+    if (databaseMapping == null && refreshOnMiss()) {
+      databaseMapping = mappingsByDatabaseName.get(key);
+    }
     if (databaseMapping != null) {
       log
           .debug("Database Name `{}` maps to metastore with name '{}'", databaseName,
@@ -262,11 +452,17 @@ public class StaticDatabaseMappingService implements MappingEventListener {
   public List<String> filterTables(String databaseName, List<String> tableNames, DatabaseMapping mapping) {
     List<String> allowedTables = new ArrayList<>();
     databaseName = GrammarUtils.removeCatName(databaseName);
-    String db = databaseName.toLowerCase(Locale.ROOT);
-    for (String table : tableNames)
-      if (isTableAllowed(db, table)) {
+    AllowList tblAllowList = databaseToTableAllowList.get(databaseName.toLowerCase(Locale.ROOT));
+    if (tblAllowList == null) {
+      // Accept everything
+      allowedTables.addAll(tableNames);
+      return allowedTables;
+    }
+    for (String table : tableNames) {
+      if (tblAllowList.contains(table)) {
         allowedTables.add(table);
       }
+    }
     return allowedTables;
   }
 
@@ -282,11 +478,10 @@ public class StaticDatabaseMappingService implements MappingEventListener {
   @Override
   public List<DatabaseMapping> getAvailableDatabaseMappings() {
     Builder<DatabaseMapping> builder = ImmutableList.builder();
-    synchronized (mappingsByMetaStoreName) {
-      for (DatabaseMapping databaseMapping : mappingsByMetaStoreName.values()) {
-        if (includeInResults(databaseMapping)) {
-          builder.add(databaseMapping);
-        }
+    // includeInResults may block on the metastores, don't hold the lock while checking them
+    for (DatabaseMapping databaseMapping : getAllDatabaseMappings()) {
+      if (includeInResults(databaseMapping)) {
+        builder.add(databaseMapping);
       }
     }
     return builder.build();
@@ -345,13 +540,16 @@ public class StaticDatabaseMappingService implements MappingEventListener {
 
       @Override
       protected PanopticOperationExecutor getPanopticOperationExecutor() {
-        return new PanopticConcurrentOperationExecutor();
+        return panopticOperationExecutor;
       }
     };
   }
 
   @Override
   public void close() throws IOException {
+    if (indexRefresher != null) {
+      indexRefresher.shutdownNow();
+    }
     if (mappingsByMetaStoreName != null) {
       for (MetaStoreMapping metaStoreMapping : mappingsByMetaStoreName.values()) {
         metaStoreMapping.close();
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,21 +20,31 @@ import org.apache.commons.lang3.StringUtils;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 
+import com.hotels.bdp.waggledance.client.ClientSession;
+
+/**
+ * Holds the name of the metastore serving the current request. The name is carried by the {@link ClientSession} bound
+ * to the calling thread rather than by a thread local so it follows the request across the threads serving it and is
+ * released with the connection. Outside of a session every call is reported against all the metastores.
+ */
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public final class CurrentMonitoredMetaStoreHolder {
   private static final String ALL_METASTORES = "all";
-  private static final ThreadLocal<String> MONITORED_METASTORE = new ThreadLocal<>();
 
   public static void monitorMetastore() {
     monitorMetastore(ALL_METASTORES);
   }
 
   public static void monitorMetastore(String metastoreName) {
-    MONITORED_METASTORE.set(metastoreName);
+    ClientSession session = ClientSession.current();
+    if (session != null) {
+      session.setMonitoredMetastore(metastoreName);
+    }
   }
 
   public static String getMonitorMetastore() {
-    String metastoreName = MONITORED_METASTORE.get();
+    ClientSession session = ClientSession.current();
+    String metastoreName = session == null ? null : session.getMonitoredMetastore();
     if (StringUtils.isNotBlank(metastoreName)) {
       return metastoreName;
     }
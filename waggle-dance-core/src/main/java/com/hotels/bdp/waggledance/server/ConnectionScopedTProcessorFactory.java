@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.server;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.TProcessorFactory;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.server.ServerContext;
+import org.apache.thrift.server.TServerEventHandler;
+import org.apache.thrift.transport.TTransport;
+
+import lombok.extern.log4j.Log4j2;
+
+import com.hotels.bdp.waggledance.server.TSetIpAddressProcessorFactory.SessionTSetIpAddressProcessor;
+
+/**
+ * Non blocking Thrift servers ask for a processor for every request they read, this keeps a single processor (and
+ * therefore a single {@link FederatedHMSHandler}) per client connection. Servers reuse the same input transport for
+ * all the requests of a connection and report its end through {@link #deleteContext}, at which point the processor is
+ * closed. The {@link TTransportMonitor} can't be used as the transports the server hands over are in memory buffers.
+ */
+@Log4j2
+class ConnectionScopedTProcessorFactory extends TProcessorFactory implements TServerEventHandler {
+
+  private final TSetIpAddressProcessorFactory processorFactory;
+  private final Map<TTransport, SessionTSetIpAddressProcessor<?>> processors = new ConcurrentHashMap<>();
+
+  ConnectionScopedTProcessorFactory(TSetIpAddressProcessorFactory processorFactory) {
+    super(null);
+    this.processorFactory = processorFactory;
+  }
+
+  @Override
+  public TProcessor getProcessor(TTransport transport) {
+    return processors.computeIfAbsent(transport, t -> processorFactory.getUnmonitoredProcessor());
+  }
+
+  @Override
+  public void preServe() {}
+
+  @Override
+  public ServerContext createContext(TProtocol input, TProtocol output) {
+    return null;
+  }
+
+  @Override
+  public void processContext(ServerContext serverContext, TTransport inputTransport, TTransport outputTransport) {}
+
+  @Override
+  public void deleteContext(ServerContext serverContext, TProtocol input, TProtocol output) {
+    SessionTSetIpAddressProcessor<?> processor = processors.remove(input.getTransport());
+    if (processor != null) {
+      try {
+        processor.close();
+      } catch (IOException | RuntimeException e) {
+        log.warn("Error closing processor of client connection", e);
+      }
+    }
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2024 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -228,10 +228,10 @@ import com.facebook.fb303.FacebookBase;
 import com.facebook.fb303.fb_status;
 import com.jcabi.aspects.Loggable;
 
+import com.hotels.bdp.waggledance.client.ClientSession;
 import com.hotels.bdp.waggledance.conf.WaggleDanceConfiguration;
 import com.hotels.bdp.waggledance.mapping.model.DatabaseMapping;
 import com.hotels.bdp.waggledance.mapping.service.MappingEventListener;
-import com.hotels.bdp.waggledance.mapping.service.impl.NotifyingFederationService;
 import com.hotels.bdp.waggledance.metrics.Monitored;
 
 @Monitored
@@ -242,19 +242,18 @@ class FederatedHMSHandler extends FacebookBase implements CloseableIHMSHandler {
 
   private static final String INVOCATION_LOG_NAME = "com.hotels.bdp.waggledance.server.invocation-log";
   private final MappingEventListener databaseMappingService;
-  private final NotifyingFederationService notifyingFederationService;
+  private final ClientSession session;
   private final WaggleDanceConfiguration waggleDanceConfiguration;
   private Configuration conf;
 
   FederatedHMSHandler(
       MappingEventListener databaseMappingService,
-      NotifyingFederationService notifyingFederationService,
+      ClientSession session,
       WaggleDanceConfiguration waggleDanceConfiguration) {
     super("waggle-dance-handler");
     this.databaseMappingService = databaseMappingService;
-    this.notifyingFederationService = notifyingFederationService;
+    this.session = session;
     this.waggleDanceConfiguration = waggleDanceConfiguration;
-    this.notifyingFederationService.subscribe(databaseMappingService);
   }
 
   private ThriftHiveMetastore.Iface getPrimaryClient() throws TException {
@@ -293,12 +292,9 @@ class FederatedHMSHandler extends FacebookBase implements CloseableIHMSHandler {
   @Override
   public void shutdown() {
     super.shutdown();
-    try {
-      notifyingFederationService.unsubscribe(databaseMappingService);
-      databaseMappingService.close();
-    } catch (IOException e) {
-      log.warn("Error shutting down federated handler", e);
-    }
+    // The database mapping service is shared with the other connections, only the backend clients of this session are
+    // released
+    session.close();
   }
 
   //////////////////////////////
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2024 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,14 +15,24 @@
  */
 package com.hotels.bdp.waggledance.server;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PreDestroy;
+
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.hotels.bdp.waggledance.api.WaggleDanceException;
+import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
 import com.hotels.bdp.waggledance.api.model.DatabaseResolution;
+import com.hotels.bdp.waggledance.client.ClientSession;
 import com.hotels.bdp.waggledance.conf.WaggleDanceConfiguration;
 import com.hotels.bdp.waggledance.mapping.model.QueryMapping;
+import com.hotels.bdp.waggledance.mapping.service.FanOutExecutor;
 import com.hotels.bdp.waggledance.mapping.service.MappingEventListener;
 import com.hotels.bdp.waggledance.mapping.service.MetaStoreMappingFactory;
 import com.hotels.bdp.waggledance.mapping.service.impl.MonitoredDatabaseMappingService;
@@ -38,6 +48,10 @@ public class FederatedHMSHandlerFactory {
   private final MetaStoreMappingFactory metaStoreMappingFactory;
   private final WaggleDanceConfiguration waggleDanceConfiguration;
   private final QueryMapping queryMapping;
+  private final FanOutExecutor fanOutExecutor;
+  // Not synchronized: creating the service calls the metastores and would pin virtual threads waiting on the monitor
+  private final Lock databaseMappingServiceLock = new ReentrantLock();
+  private volatile MappingEventListener databaseMappingService;
 
   @Autowired
   public FederatedHMSHandlerFactory(
@@ -45,32 +59,73 @@ public class FederatedHMSHandlerFactory {
           NotifyingFederationService notifyingFederationService,
           MetaStoreMappingFactory metaStoreMappingFactory,
           WaggleDanceConfiguration waggleDanceConfiguration,
-          QueryMapping queryMapping) {
+          QueryMapping queryMapping,
+          FanOutExecutor fanOutExecutor) {
     this.hiveConf = hiveConf;
     this.notifyingFederationService = notifyingFederationService;
     this.metaStoreMappingFactory = metaStoreMappingFactory;
     this.waggleDanceConfiguration = waggleDanceConfiguration;
     this.queryMapping = queryMapping;
+    this.fanOutExecutor = fanOutExecutor;
   }
 
-  public CloseableIHMSHandler create() {
-    MappingEventListener service = createDatabaseMappingService();
-    MonitoredDatabaseMappingService monitoredService = new MonitoredDatabaseMappingService(service);
-
-    CloseableIHMSHandler baseHandler = new FederatedHMSHandler(monitoredService, notifyingFederationService,
+  public CloseableIHMSHandler create(ClientSession session) {
+    CloseableIHMSHandler baseHandler = new FederatedHMSHandler(getDatabaseMappingService(), session,
             waggleDanceConfiguration);
-    HiveConf conf = new HiveConf(hiveConf);
-    baseHandler.setConf(conf);
+    // Read only, shared by all the handlers rather than copied for each client connection
+    baseHandler.setConf(hiveConf);
     return baseHandler;
   }
 
-  private MappingEventListener createDatabaseMappingService() {
+  /**
+   * The database mapping service is shared by all the handlers, it is created when the first client connects from the
+   * latest version of the federation and kept up to date by the {@link NotifyingFederationService} with the changes
+   * made after it, including the ones made while it is created.
+   */
+  private MappingEventListener getDatabaseMappingService() {
+    MappingEventListener service = databaseMappingService;
+    if (service == null) {
+      databaseMappingServiceLock.lock();
+      try {
+        service = databaseMappingService;
+        if (service == null) {
+          service = notifyingFederationService
+              .subscribe(federation -> new MonitoredDatabaseMappingService(
+                  createDatabaseMappingService(federation.getMetaStores())));
+          databaseMappingService = service;
+        }
+      } finally {
+        databaseMappingServiceLock.unlock();
+      }
+    }
+    return service;
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    databaseMappingServiceLock.lock();
+    try {
+      if (databaseMappingService != null) {
+        notifyingFederationService.unsubscribe(databaseMappingService);
+        databaseMappingService.close();
+        databaseMappingService = null;
+      }
+    } finally {
+      databaseMappingServiceLock.unlock();
+    }
+  }
+
+  private MappingEventListener createDatabaseMappingService(List<AbstractMetaStore> metaStores) {
     if (waggleDanceConfiguration.getDatabaseResolution() == DatabaseResolution.MANUAL) {
-      return new StaticDatabaseMappingService(metaStoreMappingFactory, notifyingFederationService.getAll(),
-          queryMapping);
+      int refreshDelay = waggleDanceConfiguration.getDatabaseIndexRefreshDelay();
+      long refreshDelayMillis = refreshDelay > 0
+          ? waggleDanceConfiguration.getDatabaseIndexRefreshDelayTimeUnit().toMillis(refreshDelay)
+          : 0;
+      return new StaticDatabaseMappingService(metaStoreMappingFactory, metaStores,
+          queryMapping, fanOutExecutor, refreshDelayMillis);
     } else if (waggleDanceConfiguration.getDatabaseResolution() == DatabaseResolution.PREFIXED) {
-      return new PrefixBasedDatabaseMappingService(metaStoreMappingFactory, notifyingFederationService.getAll(),
-          queryMapping);
+      return new PrefixBasedDatabaseMappingService(metaStoreMappingFactory, metaStores,
+          queryMapping, fanOutExecutor);
     } else {
       throw new WaggleDanceException("Cannot instantiate databaseMappingService for prefixType '"
           + waggleDanceConfiguration.getDatabaseResolution()
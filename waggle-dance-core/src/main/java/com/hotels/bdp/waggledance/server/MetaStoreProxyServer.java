@@ -30,6 +30,10 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Condition;
@@ -53,7 +57,9 @@ import org.apache.thrift.TProcessorFactory;
 import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.server.TServer;
 import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.server.TThreadedSelectorServer;
 import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TNonblockingServerSocket;
 import org.apache.thrift.transport.TServerSocket;
 import org.apache.thrift.transport.TTransportException;
 import org.apache.thrift.transport.TTransportFactory;
@@ -68,9 +74,11 @@ import lombok.extern.log4j.Log4j2;
 
 import com.google.common.annotations.VisibleForTesting;
 
+import com.hotels.bdp.waggledance.conf.ThriftServerType;
 import com.hotels.bdp.waggledance.conf.WaggleDanceConfiguration;
 import com.hotels.bdp.waggledance.util.SaslHelper;
 import com.hotels.bdp.waggledance.util.SaslHelper.SaslServerAndMDT;
+import com.hotels.bdp.waggledance.util.ThreadFactories;
 
 @Component
 @Order(Ordered.HIGHEST_PRECEDENCE)
@@ -86,7 +94,7 @@ public class MetaStoreProxyServer implements ApplicationRunner {
 
   private final HiveConf hiveConf;
   private final WaggleDanceConfiguration waggleDanceConfiguration;
-  private final TProcessorFactory tProcessorFactory;
+  private final TSetIpAddressProcessorFactory tProcessorFactory;
   private final Lock startLock;
   private final Condition startCondition;
   private TServer tServer;
@@ -98,7 +106,7 @@ public class MetaStoreProxyServer implements ApplicationRunner {
   public MetaStoreProxyServer(
       HiveConf hiveConf,
       WaggleDanceConfiguration waggleDanceConfiguration,
-      TProcessorFactory tProcessorFactory) {
+      TSetIpAddressProcessorFactory tProcessorFactory) {
     this.hiveConf = hiveConf;
     this.waggleDanceConfiguration = waggleDanceConfiguration;
     this.tProcessorFactory = tProcessorFactory;
@@ -173,37 +181,47 @@ public class MetaStoreProxyServer implements ApplicationRunner {
       //load 'hadoop.proxyuser' configs
       ProxyUsers.refreshSuperUserGroupsConfiguration(hiveConf);
 
-      TServerSocket serverSocket = createServerSocket(useSSL, waggleDanceConfiguration.getPort());
-
-      if (tcpKeepAlive) {
-        serverSocket = new TServerSocketKeepAlive(serverSocket);
-      }
-
-      if(useSasl) {
+      if (useSasl) {
         UserGroupInformation.setConfiguration(hiveConf);
         saslServerAndMDT = SaslHelper.createSaslServer(hiveConf);
         saslServer = saslServerAndMDT.getSaslServer();
       }
 
-      TTransportFactory transFactory = createTTransportFactory(useFramedTransport, useSasl, saslServer);
-      TProcessorFactory tProcessorFactory = getTProcessorFactory(useSasl, saslServer);
       log.info("Starting WaggleDance Server");
+      if (waggleDanceConfiguration.getThriftServerType() == ThriftServerType.THREADED_SELECTOR) {
+        tServer = createThreadedSelectorServer(useSSL);
+      } else {
+        TServerSocket serverSocket = createServerSocket(useSSL, waggleDanceConfiguration.getPort());
+
+        if (tcpKeepAlive) {
+          serverSocket = new TServerSocketKeepAlive(serverSocket);
+        }
+
+        TTransportFactory transFactory = createTTransportFactory(useFramedTransport, useSasl, saslServer);
+        TProcessorFactory tProcessorFactory = getTProcessorFactory(useSasl, saslServer);
+
+        TThreadPoolServer.Args args = new TThreadPoolServer.Args(serverSocket)
+            .processorFactory(tProcessorFactory)
+            .transportFactory(transFactory)
+            .protocolFactory(new TBinaryProtocol.Factory())
+            .minWorkerThreads(minWorkerThreads)
+            .maxWorkerThreads(maxWorkerThreads)
+            .stopTimeoutVal(waggleDanceConfiguration.getThriftServerStopTimeoutValInSeconds())
+            .requestTimeout(waggleDanceConfiguration.getThriftServerRequestTimeout())
+            .requestTimeoutUnit(waggleDanceConfiguration.getThriftServerRequestTimeoutUnit());
+        if (waggleDanceConfiguration.isVirtualThreads()) {
+          // Virtual threads are cheap to create and must not be pooled, each connection gets a new one
+          args.executorService(new ThreadPoolExecutor(0, maxWorkerThreads, 0L, TimeUnit.MILLISECONDS,
+              new SynchronousQueue<>(), ThreadFactories.newThreadFactory("waggle-dance-worker", true)));
+        }
 
-      TThreadPoolServer.Args args = new TThreadPoolServer.Args(serverSocket)
-          .processorFactory(tProcessorFactory)
-          .transportFactory(transFactory)
-          .protocolFactory(new TBinaryProtocol.Factory())
-          .minWorkerThreads(minWorkerThreads)
-          .maxWorkerThreads(maxWorkerThreads)
-          .stopTimeoutVal(waggleDanceConfiguration.getThriftServerStopTimeoutValInSeconds())
-          .requestTimeout(waggleDanceConfiguration.getThriftServerRequestTimeout())
-          .requestTimeoutUnit(waggleDanceConfiguration.getThriftServerRequestTimeoutUnit());
-
-      tServer = new TThreadPoolServer(args);
+        tServer = new TThreadPoolServer(args);
+        log.info("Options.minWorkerThreads = {}", minWorkerThreads);
+        log.info("Options.maxWorkerThreads = {}", maxWorkerThreads);
+        log.info("Options.virtualThreads = {}", waggleDanceConfiguration.isVirtualThreads());
+        log.info("TCP keepalive = {}", tcpKeepAlive);
+      }
       log.info("Started the new WaggleDance on port [{}]...", waggleDanceConfiguration.getPort());
-      log.info("Options.minWorkerThreads = {}", minWorkerThreads);
-      log.info("Options.maxWorkerThreads = {}", maxWorkerThreads);
-      log.info("TCP keepalive = {}", tcpKeepAlive);
 
       if (startLock != null) {
         signalOtherThreadsToStart(tServer, startLock, startCondition, startedServing);
@@ -216,6 +234,44 @@ public class MetaStoreProxyServer implements ApplicationRunner {
     log.info("Waggle Dance has stopped");
   }
 
+  /**
+   * Idle client connections only cost a selector key, requests are processed by a bounded pool of workers. Requests
+   * that don't fit in the worker queue are rejected and their connection closed. Transports are always framed, SASL and
+   * SSL need blocking transports and are not supported.
+   */
+  private TServer createThreadedSelectorServer(boolean useSSL) throws TTransportException {
+    if (useSasl || useSSL) {
+      throw new WaggleDanceServerException("Thrift server type "
+          + ThriftServerType.THREADED_SELECTOR
+          + " does not support SASL or SSL, use "
+          + ThriftServerType.THREAD_POOL);
+    }
+    int selectorThreads = waggleDanceConfiguration.getThriftServerSelectorThreads();
+    int workerThreads = waggleDanceConfiguration.getThriftServerWorkerThreads();
+    int workerQueueSize = waggleDanceConfiguration.getThriftServerWorkerQueueSize();
+    ExecutorService workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(workerQueueSize),
+        ThreadFactories.newThreadFactory("waggle-dance-worker", waggleDanceConfiguration.isVirtualThreads()));
+    ConnectionScopedTProcessorFactory processorFactory = new ConnectionScopedTProcessorFactory(tProcessorFactory);
+
+    TThreadedSelectorServer.Args args = new TThreadedSelectorServer.Args(
+        new TNonblockingServerSocket(waggleDanceConfiguration.getPort()))
+            .selectorThreads(selectorThreads)
+            .executorService(workers)
+            .stopTimeoutVal(waggleDanceConfiguration.getThriftServerStopTimeoutValInSeconds())
+            .processorFactory(processorFactory)
+            .transportFactory(new TFramedTransport.Factory())
+            .protocolFactory(new TBinaryProtocol.Factory());
+    args.maxReadBufferBytes = hiveConf.getLongVar(ConfVars.METASTORESERVERMAXMESSAGESIZE);
+
+    TServer server = new TThreadedSelectorServer(args);
+    server.setServerEventHandler(processorFactory);
+    log.info("Options.selectorThreads = {}", selectorThreads);
+    log.info("Options.workerThreads = {}", workerThreads);
+    log.info("Options.workerQueueSize = {}", workerQueueSize);
+    return server;
+  }
+
   private TProcessorFactory getTProcessorFactory(boolean useSASL,
                                                  HadoopThriftAuthBridge.Server server) throws TTransportException {
     if (useSASL) {
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2024 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,6 +15,8 @@
  */
 package com.hotels.bdp.waggledance.server;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.net.Socket;
 
 import org.apache.hadoop.hive.conf.HiveConf;
@@ -22,8 +24,12 @@ import org.apache.hadoop.hive.metastore.IHMSHandler;
 import org.apache.hadoop.hive.metastore.RetryingHMSHandler;
 import org.apache.hadoop.hive.metastore.TSetIpAddressProcessor;
 import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.hadoop.hive.metastore.api.ThriftHiveMetastore.Iface;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.thrift.TException;
 import org.apache.thrift.TProcessor;
 import org.apache.thrift.TProcessorFactory;
+import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.transport.TSocket;
 import org.apache.thrift.transport.TTransport;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,9 +37,54 @@ import org.springframework.stereotype.Component;
 
 import lombok.extern.log4j.Log4j2;
 
+import com.hotels.bdp.waggledance.client.ClientSession;
+
 @Component
 @Log4j2
 class TSetIpAddressProcessorFactory extends TProcessorFactory {
+
+  /**
+   * Binds the {@link ClientSession} of the connection to the thread processing each of its requests. Closing the
+   * processor closes the handler of the connection.
+   */
+  static class SessionTSetIpAddressProcessor<I extends Iface> extends TSetIpAddressProcessor<I> implements Closeable {
+
+    private final ClientSession session;
+    private final Closeable baseHandler;
+
+    private SessionTSetIpAddressProcessor(I iface, ClientSession session, Closeable baseHandler)
+      throws ReflectiveOperationException {
+      super(iface);
+      this.session = session;
+      this.baseHandler = baseHandler;
+    }
+
+    @Override
+    public boolean process(TProtocol in, TProtocol out) throws TException {
+      if (session.getUser() == null) {
+        // Requests are processed as the user authenticated on the connection, the other threads serving the session
+        // aren't
+        session.setUser(currentUser());
+      }
+      try (ClientSession.Binding binding = session.bind()) {
+        return super.process(in, out);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      baseHandler.close();
+    }
+
+    private static String currentUser() {
+      try {
+        return UserGroupInformation.getCurrentUser().getShortUserName();
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to get the user of the connection", e);
+      }
+    }
+  }
+
   private final HiveConf hiveConf;
   private final FederatedHMSHandlerFactory federatedHMSHandlerFactory;
   private final TTransportMonitor transportMonitor;
@@ -56,17 +107,38 @@ class TSetIpAddressProcessorFactory extends TProcessorFactory {
         Socket socket = ((TSocket) transport).getSocket();
         log.debug("Received a connection from ip: {}", socket.getInetAddress().getHostAddress());
       }
-      CloseableIHMSHandler baseHandler = federatedHMSHandlerFactory.create();
-
-      IHMSHandler handler = newRetryingHMSHandler(ExceptionWrappingHMSHandler.newProxyInstance(baseHandler), hiveConf,
-              false);
+      ClientSession session = new ClientSession();
+      CloseableIHMSHandler baseHandler = federatedHMSHandlerFactory.create(session);
+      SessionTSetIpAddressProcessor<IHMSHandler> processor = newProcessor(session, baseHandler);
       transportMonitor.monitor(transport, baseHandler);
-      return new TSetIpAddressProcessor<>(handler);
+      return processor;
+    } catch (MetaException | ReflectiveOperationException | RuntimeException e) {
+      throw new RuntimeException("Error creating TProcessor", e);
+    }
+  }
+
+  /**
+   * Creates a processor for a new client connection without monitoring its transport, the caller must close the
+   * processor once the connection goes away.
+   */
+  SessionTSetIpAddressProcessor<IHMSHandler> getUnmonitoredProcessor() {
+    try {
+      ClientSession session = new ClientSession();
+      return newProcessor(session, federatedHMSHandlerFactory.create(session));
     } catch (MetaException | ReflectiveOperationException | RuntimeException e) {
       throw new RuntimeException("Error creating TProcessor", e);
     }
   }
 
+  private SessionTSetIpAddressProcessor<IHMSHandler> newProcessor(
+      ClientSession session,
+      CloseableIHMSHandler baseHandler)
+    throws MetaException, ReflectiveOperationException {
+    IHMSHandler handler = newRetryingHMSHandler(ExceptionWrappingHMSHandler.newProxyInstance(baseHandler), hiveConf,
+        false);
+    return new SessionTSetIpAddressProcessor<>(handler, session, baseHandler);
+  }
+
   private IHMSHandler newRetryingHMSHandler(IHMSHandler baseHandler, HiveConf hiveConf, boolean local)
     throws MetaException {
     return RetryingHMSHandler.getProxy(hiveConf, baseHandler, local);
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,39 +15,176 @@
  */
 package com.hotels.bdp.waggledance.util;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import lombok.NoArgsConstructor;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Database or table names allowed by a list of names and (case-insensitive) Java regular expressions. Plain names are
+ * looked up in a set. The regular expressions are grouped by the literal text they start with and each group is
+ * combined into a single pattern, so a name is only matched against the regular expressions that can match it.
+ * Decisions made with the regular expressions are remembered, up to {@value #MAX_CACHED_DECISIONS} names.
+ */
 @NoArgsConstructor
 public class AllowList {
 
+  static final int MAX_CACHED_DECISIONS = 10_000;
+
   private final static String MATCH_ALL = ".*";
-  private final Set<Pattern> allowList = new HashSet<>();
+  private static final String REGEX_META_CHARACTERS = "\\.[]{}()<>*+-=!?^$|";
+  private static final String OPTIONAL_QUANTIFIERS = "*?{";
+  // Groups are renumbered once the patterns are combined
+  private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\(\\d|k<)");
+  // A group name can only be used once per pattern, lookbehinds aren't named groups
+  private static final Pattern NAMED_GROUP = Pattern.compile("\\(\\?<[a-zA-Z]");
+
+  private static final class Compiled {
+    private final Set<String> names;
+    private final boolean matchAll;
+    private final Map<String, Pattern> combinedByPrefix;
+    // Distinct lengths of the prefixes, ascending
+    private final int[] prefixLengths;
+    private final List<Pattern> standalone;
+    private final Cache<String, Boolean> decisions = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_DECISIONS).build();
+
+    private Compiled(Set<String> entries) {
+      Set<String> names = new HashSet<>();
+      Map<String, List<String>> combinableByPrefix = new HashMap<>();
+      List<Pattern> standalone = new ArrayList<>();
+      for (String entry : entries) {
+        if (!isRegex(entry)) {
+          names.add(entry);
+        } else if (BACK_REFERENCE.matcher(entry).find() || NAMED_GROUP.matcher(entry).find()) {
+          standalone.add(Pattern.compile(entry));
+        } else {
+          combinableByPrefix.computeIfAbsent(literalPrefix(entry), prefix -> new ArrayList<>()).add(entry);
+        }
+      }
+      this.names = names;
+      matchAll = entries.contains(MATCH_ALL);
+      combinedByPrefix = new HashMap<>();
+      for (Map.Entry<String, List<String>> group : combinableByPrefix.entrySet()) {
+        List<String> regexes = group.getValue();
+        try {
+          combinedByPrefix.put(group.getKey(), Pattern.compile("(?:" + String.join(")|(?:", regexes) + ")"));
+        } catch (PatternSyntaxException e) {
+          // Valid on their own but not together
+          for (String regex : regexes) {
+            standalone.add(Pattern.compile(regex));
+          }
+        }
+      }
+      prefixLengths = combinedByPrefix.keySet().stream().mapToInt(String::length).distinct().sorted().toArray();
+      this.standalone = standalone;
+    }
+
+    private boolean contains(String element) {
+      if (matchAll || names.contains(element)) {
+        return true;
+      }
+      if (combinedByPrefix.isEmpty() && standalone.isEmpty()) {
+        return false;
+      }
+      Boolean decision = decisions.getIfPresent(element);
+      if (decision == null) {
+        decision = matches(element);
+        decisions.put(element, decision);
+      }
+      return decision;
+    }
+
+    private boolean matches(String element) {
+      for (int length : prefixLengths) {
+        if (length > element.length()) {
+          break;
+        }
+        Pattern combined = combinedByPrefix.get(element.substring(0, length));
+        if (combined != null && combined.matcher(element).matches()) {
+          return true;
+        }
+      }
+      for (Pattern pattern : standalone) {
+        if (pattern.matcher(element).matches()) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private final Set<String> allowList = new LinkedHashSet<>();
+  private volatile Compiled compiled = new Compiled(Collections.emptySet());
 
   public AllowList(List<String> allowList) {
     if (allowList == null) {
-      add(MATCH_ALL);
+      addEntry(MATCH_ALL);
     } else {
       for (String element : allowList) {
-        add(element);
+        addEntry(element);
       }
     }
+    compiled = new Compiled(this.allowList);
   }
 
-  public void add(String element) {
-    allowList.add(Pattern.compile(trimToLowerCase(element)));
+  public synchronized void add(String element) {
+    if (addEntry(element)) {
+      compiled = new Compiled(allowList);
+    }
+  }
+
+  private boolean addEntry(String element) {
+    String entry = trimToLowerCase(element);
+    if (isRegex(entry)) {
+      // Fail on invalid patterns when added rather than when combined
+      Pattern.compile(entry);
+    }
+    return allowList.add(entry);
   }
 
-  int size() {
+  synchronized int size() {
     return allowList.size();
   }
 
+  private static boolean isRegex(String entry) {
+    for (int i = 0; i < entry.length(); i++) {
+      if (REGEX_META_CHARACTERS.indexOf(entry.charAt(i)) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the text all the names matched by the regular expression start with
+   */
+  static String literalPrefix(String regex) {
+    if (regex.indexOf('|') >= 0) {
+      return "";
+    }
+    int end = 0;
+    while (end < regex.length() && REGEX_META_CHARACTERS.indexOf(regex.charAt(end)) < 0) {
+      end++;
+    }
+    if (end > 0 && end < regex.length() && OPTIONAL_QUANTIFIERS.indexOf(regex.charAt(end)) >= 0) {
+      // The last character may not be there
+      end--;
+    }
+    return regex.substring(0, end);
+  }
+
   private String trimToLowerCase(String string) {
     return string.trim().toLowerCase(Locale.ROOT);
   }
@@ -56,14 +193,7 @@ public class AllowList {
     if (element == null) {
       return true;
     }
-    element = trimToLowerCase(element);
-    for (Pattern allowListEntry : allowList) {
-      Matcher matcher = allowListEntry.matcher(element);
-      if (matcher.matches()) {
-        return true;
-      }
-    }
-    return false;
+    return compiled.contains(trimToLowerCase(element));
   }
 
 }
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Creates the threads serving client requests and fanning out calls to the metastores. These threads spend most of
+ * their time blocked on metastore I/O so they can be virtual threads when the runtime supports them (Java 21+). The
+ * lookup is reflective as the code is compiled for Java 8, runtimes without virtual threads fall back to platform
+ * threads.
+ */
+@Log4j2
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ThreadFactories {
+
+  private static final Method OF_VIRTUAL = virtualThreadBuilderMethod();
+
+  private static Method virtualThreadBuilderMethod() {
+    try {
+      return Thread.class.getMethod("ofVirtual");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  public static boolean isVirtualThreadsSupported() {
+    return OF_VIRTUAL != null;
+  }
+
+  /**
+   * @param name prefix of the thread names, threads are numbered from 0
+   * @param virtual whether to create virtual threads, ignored with a warning when the runtime does not support them
+   * @return a factory of daemon threads
+   */
+  public static ThreadFactory newThreadFactory(String name, boolean virtual) {
+    if (virtual) {
+      if (isVirtualThreadsSupported()) {
+        return newVirtualThreadFactory(name);
+      }
+      log.warn("Virtual threads are not supported by Java {}, using platform threads for {}",
+          System.getProperty("java.version"), name);
+    }
+    return new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build();
+  }
+
+  private static ThreadFactory newVirtualThreadFactory(String name) {
+    try {
+      // Thread.ofVirtual().name(name + "-", 0).factory()
+      Object builder = OF_VIRTUAL.invoke(null);
+      builder = Class
+          .forName("java.lang.Thread$Builder$OfVirtual")
+          .getMethod("name", String.class, long.class)
+          .invoke(builder, name + "-", 0L);
+      return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Unable to create virtual thread factory", e);
+    }
+  }
+
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hotels.bdp.waggledance.api.model.Bulkhead;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+  private final Bulkhead settings = new Bulkhead();
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private AdaptiveConcurrencyLimiter limiter;
+
+  @Before
+  public void init() {
+    settings.setInitialLimit(4);
+    settings.setMinLimit(2);
+    settings.setMaxLimit(6);
+    settings.setMaxQueueSize(1);
+    settings.setMaxWaitMillis(10_000);
+    settings.setLatencyThresholdMillis(1000);
+    limiter = new AdaptiveConcurrencyLimiter(settings);
+  }
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private void acquire(int calls) throws InterruptedException {
+    for (int i = 0; i < calls; i++) {
+      assertThat(limiter.acquire(), is(true));
+    }
+  }
+
+  @Test
+  public void initialLimitWithinBounds() {
+    settings.setInitialLimit(100);
+    assertThat(new AdaptiveConcurrencyLimiter(settings).getLimit(), is(6));
+    settings.setInitialLimit(1);
+    assertThat(new AdaptiveConcurrencyLimiter(settings).getLimit(), is(2));
+  }
+
+  @Test
+  public void rejectsWhenQueueIsFull() throws Exception {
+    acquire(4);
+    Future<Boolean> queued = executor.submit(limiter::acquire);
+    Thread.sleep(50);
+    assertThat(limiter.acquire(), is(false));
+    limiter.release(FAST, false);
+    assertThat(queued.get(5, TimeUnit.SECONDS), is(true));
+    assertThat(limiter.getInFlight(), is(4));
+  }
+
+  @Test
+  public void waitIsBounded() throws Exception {
+    settings.setMaxWaitMillis(10);
+    limiter = new AdaptiveConcurrencyLimiter(settings);
+    acquire(4);
+    assertThat(limiter.acquire(), is(false));
+  }
+
+  @Test
+  public void noQueue() throws Exception {
+    settings.setMaxQueueSize(0);
+    limiter = new AdaptiveConcurrencyLimiter(settings);
+    acquire(4);
+    assertThat(limiter.acquire(), is(false));
+  }
+
+  @Test
+  public void fastCallsIncreaseLimitWhenInUse() throws Exception {
+    acquire(2);
+    limiter.release(FAST, false);
+    assertThat(limiter.getLimit(), is(5));
+    limiter.release(FAST, false);
+    assertThat(limiter.getLimit(), is(5));
+  }
+
+  @Test
+  public void limitIsCapped() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      acquire(4);
+      for (int j = 0; j < 4; j++) {
+        limiter.release(FAST, false);
+      }
+    }
+    assertThat(limiter.getLimit(), is(6));
+  }
+
+  @Test
+  public void slowCallsDecreaseLimit() throws Exception {
+    acquire(1);
+    limiter.release(SLOW, false);
+    assertThat(limiter.getLimit(), is(3));
+    for (int i = 0; i < 10; i++) {
+      acquire(1);
+      limiter.release(SLOW, false);
+    }
+    assertThat(limiter.getLimit(), is(2));
+  }
+
+  @Test
+  public void failedCallsDecreaseLimit() throws Exception {
+    acquire(1);
+    limiter.release(FAST, true);
+    assertThat(limiter.getLimit(), is(3));
+  }
+
+  @Test
+  public void untimedCallsDoNotIncreaseLimit() throws Exception {
+    acquire(2);
+    limiter.release(false);
+    assertThat(limiter.getLimit(), is(4));
+    assertThat(limiter.getInFlight(), is(1));
+    limiter.release(true);
+    assertThat(limiter.getLimit(), is(3));
+  }
+
+  @Test
+  public void increasedLimitReleasesWaiters() throws Exception {
+    settings.setMaxQueueSize(2);
+    limiter = new AdaptiveConcurrencyLimiter(settings);
+    acquire(4);
+    CountDownLatch started = new CountDownLatch(2);
+    Future<Boolean> first = executor.submit(() -> {
+      started.countDown();
+      return limiter.acquire();
+    });
+    Future<Boolean> second = executor.submit(() -> {
+      started.countDown();
+      return limiter.acquire();
+    });
+    started.await();
+    Thread.sleep(50);
+    // 4 in flight on a limit of 4, the limit grows to 5 and a slot is freed
+    limiter.release(FAST, false);
+    assertThat(first.get(5, TimeUnit.SECONDS), is(true));
+    assertThat(second.get(5, TimeUnit.SECONDS), is(true));
+    assertThat(limiter.getInFlight(), is(5));
+  }
+
+}
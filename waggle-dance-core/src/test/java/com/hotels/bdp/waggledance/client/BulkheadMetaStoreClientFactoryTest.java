@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.thrift.TException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
+import com.hotels.bdp.waggledance.api.model.Bulkhead;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BulkheadMetaStoreClientFactoryTest {
+
+  private @Mock CloseableThriftHiveMetastoreIface slowBackend;
+  private @Mock CloseableThriftHiveMetastoreIface primaryBackend;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final BulkheadMetaStoreClientFactory factory = new BulkheadMetaStoreClientFactory(meterRegistry);
+  private final AbstractMetaStore slowMetaStore = AbstractMetaStore.newFederatedInstance("bdp", "uri");
+  private final AbstractMetaStore primaryMetaStore = AbstractMetaStore.newPrimaryInstance("primary", "uri");
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private CloseableThriftHiveMetastoreIface slowClient;
+
+  @Before
+  public void init() {
+    Bulkhead bulkhead = new Bulkhead();
+    bulkhead.setEnabled(true);
+    bulkhead.setInitialLimit(2);
+    bulkhead.setMinLimit(1);
+    bulkhead.setMaxQueueSize(0);
+    slowMetaStore.setBulkhead(bulkhead);
+    slowClient = factory.newInstance(slowMetaStore, slowBackend);
+  }
+
+  @After
+  public void shutdown() {
+    release.countDown();
+    executor.shutdownNow();
+  }
+
+  private double metric(String name) {
+    return meterRegistry.get(name).tag("metastore", "bdp").meter().measure().iterator().next().getValue();
+  }
+
+  @Test
+  public void slowMetastoreDoesNotTakePrimaryCapacity() throws Exception {
+    CountDownLatch called = new CountDownLatch(2);
+    when(slowBackend.get_all_databases()).then(invocation -> {
+      called.countDown();
+      release.await(10, TimeUnit.SECONDS);
+      return Collections.emptyList();
+    });
+    Future<List<String>> first = executor.submit(() -> slowClient.get_all_databases());
+    Future<List<String>> second = executor.submit(() -> slowClient.get_all_databases());
+    assertThat(called.await(5, TimeUnit.SECONDS), is(true));
+    assertThat(metric(BulkheadMetaStoreClientFactory.IN_FLIGHT_METRIC_NAME), is(2.0));
+
+    try {
+      slowClient.get_all_databases();
+      fail();
+    } catch (MetaException e) {
+      assertThat(e.getMessage(), is("Metastore 'bdp' is overloaded, 2 calls are already in flight"));
+    }
+    assertThat(metric(BulkheadMetaStoreClientFactory.REJECTED_METRIC_NAME), is(1.0));
+
+    List<String> databases = Collections.singletonList("db");
+    when(primaryBackend.get_all_databases()).thenReturn(databases);
+    CloseableThriftHiveMetastoreIface primaryClient = factory.newInstance(primaryMetaStore, primaryBackend);
+    assertThat(primaryClient.get_all_databases(), is(databases));
+
+    release.countDown();
+    first.get(5, TimeUnit.SECONDS);
+    second.get(5, TimeUnit.SECONDS);
+    assertThat(metric(BulkheadMetaStoreClientFactory.IN_FLIGHT_METRIC_NAME), is(0.0));
+  }
+
+  @Test
+  public void callsReleaseOnError() throws TException {
+    when(slowBackend.get_all_databases()).thenThrow(new MetaException("error"));
+    for (int i = 0; i < 3; i++) {
+      try {
+        slowClient.get_all_databases();
+        fail();
+      } catch (MetaException e) {
+        assertThat(e.getMessage(), is("error"));
+      }
+    }
+    assertThat(metric(BulkheadMetaStoreClientFactory.IN_FLIGHT_METRIC_NAME), is(0.0));
+    // Errors answered by the metastore are fast calls, they don't shrink the limit
+    assertThat(metric(BulkheadMetaStoreClientFactory.LIMIT_METRIC_NAME), is(3.0));
+  }
+
+  @Test
+  public void closeBypassesTheBulkhead() throws Exception {
+    slowClient.close();
+    verify(slowBackend).close();
+    assertThat(Double.isNaN(metric(BulkheadMetaStoreClientFactory.LIMIT_METRIC_NAME)), is(true));
+  }
+
+  @Test
+  public void slowPartitionListingsDoNotShrinkTheLimit() throws Exception {
+    slowMetaStore.getBulkhead().setLatencyThresholdMillis(1);
+    slowClient = factory.newInstance(slowMetaStore, slowBackend);
+    when(slowBackend.get_partitions("db", "table", (short) -1)).then(invocation -> {
+      Thread.sleep(10);
+      return Collections.emptyList();
+    });
+    slowClient.get_partitions("db", "table", (short) -1);
+    assertThat(metric(BulkheadMetaStoreClientFactory.LIMIT_METRIC_NAME), is(2.0));
+
+    when(slowBackend.get_all_databases()).then(invocation -> {
+      Thread.sleep(10);
+      return Collections.emptyList();
+    });
+    slowClient.get_all_databases();
+    assertThat(metric(BulkheadMetaStoreClientFactory.LIMIT_METRIC_NAME), is(1.0));
+  }
+
+  @Test
+  public void disabledByDefault() {
+    assertThat(factory.newInstance(primaryMetaStore, primaryBackend), is(sameInstance(primaryBackend)));
+  }
+
+  @Test
+  public void disabled() {
+    slowMetaStore.getBulkhead().setEnabled(false);
+    assertThat(factory.newInstance(slowMetaStore, slowBackend), is(sameInstance(slowBackend)));
+  }
+
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.hadoop.hive.metastore.api.NoSuchObjectException;
+import org.apache.thrift.TException;
+import org.apache.thrift.transport.TTransportException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
+import com.hotels.bdp.waggledance.api.model.CircuitBreaker;
+import com.hotels.bdp.waggledance.api.model.CircuitBreakerState;
+import com.hotels.hcommon.hive.metastore.exception.MetastoreUnavailableException;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CircuitBreakerMetaStoreClientFactoryTest {
+
+  private @Mock CloseableThriftHiveMetastoreIface backend;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final CircuitBreakerMetaStoreClientFactory factory = new CircuitBreakerMetaStoreClientFactory(meterRegistry);
+  private final AbstractMetaStore metaStore = AbstractMetaStore.newFederatedInstance("fed", "uri");
+  private CloseableThriftHiveMetastoreIface client;
+
+  @Before
+  public void init() {
+    CircuitBreaker circuitBreaker = new CircuitBreaker();
+    circuitBreaker.setSlidingWindowSize(2);
+    circuitBreaker.setMinimumNumberOfCalls(2);
+    metaStore.setCircuitBreaker(circuitBreaker);
+    client = factory.newInstance(metaStore, backend);
+  }
+
+  private void failTwice() throws TException {
+    for (int i = 0; i < 2; i++) {
+      try {
+        client.get_all_databases();
+        fail();
+      } catch (MetastoreUnavailableException | TTransportException e) {
+        // expected
+      }
+    }
+  }
+
+  private double metric(String name) {
+    return meterRegistry.get(name).tag("metastore", "fed").meter().measure().iterator().next().getValue();
+  }
+
+  @Test
+  public void closedPassesCallsThrough() throws TException {
+    List<String> databases = Collections.singletonList("db");
+    when(backend.get_all_databases()).thenReturn(databases);
+    assertThat(client.get_all_databases(), is(databases));
+    assertThat(factory.getState("fed"), is(CircuitBreakerState.CLOSED));
+    assertThat(metric(CircuitBreakerMetaStoreClientFactory.STATE_METRIC_NAME), is(0.0));
+  }
+
+  @Test
+  public void connectionFailuresOpenTheBreaker() throws TException {
+    when(backend.get_all_databases())
+        .thenThrow(new MetastoreUnavailableException("down", null))
+        .thenThrow(new TTransportException("down"));
+    failTwice();
+    assertThat(factory.getState("fed"), is(CircuitBreakerState.OPEN));
+    assertThat(metric(CircuitBreakerMetaStoreClientFactory.STATE_METRIC_NAME), is(2.0));
+  }
+
+  @Test
+  public void openFailsFast() throws TException {
+    when(backend.get_all_databases()).thenThrow(new TTransportException("down"));
+    failTwice();
+    try {
+      client.get_all_databases();
+      fail();
+    } catch (MetaException e) {
+      assertThat(e.getMessage(), is("Metastore 'fed' is unavailable, its circuit breaker is open"));
+    }
+    verify(backend, times(2)).get_all_databases();
+    assertThat(metric(CircuitBreakerMetaStoreClientFactory.REJECTED_METRIC_NAME), is(1.0));
+  }
+
+  @Test
+  public void metastoreErrorsAreNotFailures() throws TException {
+    when(backend.get_database("db")).thenThrow(new NoSuchObjectException("db"));
+    for (int i = 0; i < 2; i++) {
+      try {
+        client.get_database("db");
+        fail();
+      } catch (NoSuchObjectException e) {
+        // expected
+      }
+    }
+    assertThat(factory.getState("fed"), is(CircuitBreakerState.CLOSED));
+  }
+
+  @Test
+  public void isOpenAndCloseBypassTheBreaker() throws Exception {
+    when(backend.get_all_databases()).thenThrow(new TTransportException("down"));
+    failTwice();
+    when(backend.isOpen()).thenReturn(true);
+    assertThat(client.isOpen(), is(true));
+    client.close();
+    verify(backend).close();
+  }
+
+  @Test
+  public void closeUnregistersTheBreaker() throws Exception {
+    client.close();
+    assertThat(factory.getState("fed"), is(nullValue()));
+  }
+
+  @Test
+  public void closingReplacedClientKeepsLatest() throws Exception {
+    CloseableThriftHiveMetastoreIface latest = factory.newInstance(metaStore, backend);
+    client.close();
+    assertThat(factory.getState("fed"), is(CircuitBreakerState.CLOSED));
+    latest.close();
+    assertThat(factory.getState("fed"), is(nullValue()));
+  }
+
+  @Test
+  public void defaultBreaker() {
+    metaStore.setCircuitBreaker(null);
+    CloseableThriftHiveMetastoreIface defaultClient = factory.newInstance(metaStore, backend);
+    assertThat(defaultClient == backend, is(false));
+  }
+
+  @Test
+  public void disabled() {
+    metaStore.getCircuitBreaker().setEnabled(false);
+    assertThat(factory.newInstance(metaStore, backend), is(sameInstance(backend)));
+  }
+
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.verify;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ClientSessionTest {
+
+  private @Mock Closeable closeable;
+
+  private final ClientSession session = new ClientSession();
+
+  @Test
+  public void bind() {
+    assertThat(ClientSession.current(), is(nullValue()));
+    try (ClientSession.Binding binding = session.bind()) {
+      assertThat(ClientSession.current(), is(sameInstance(session)));
+    }
+    assertThat(ClientSession.current(), is(nullValue()));
+  }
+
+  @Test
+  public void nestedBindRestoresPrevious() {
+    ClientSession other = new ClientSession();
+    try (ClientSession.Binding binding = session.bind()) {
+      try (ClientSession.Binding otherBinding = other.bind()) {
+        assertThat(ClientSession.current(), is(sameInstance(other)));
+      }
+      assertThat(ClientSession.current(), is(sameInstance(session)));
+    }
+  }
+
+  @Test
+  public void propagate() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Callable<ClientSession> callable;
+      try (ClientSession.Binding binding = session.bind()) {
+        callable = ClientSession.propagate(ClientSession::current);
+      }
+      assertThat(executor.submit(callable).get(), is(sameInstance(session)));
+      assertThat(executor.submit(ClientSession::current).get(), is(nullValue()));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void close() throws Exception {
+    session.onClose(closeable);
+    session.close();
+    verify(closeable).close();
+  }
+
+}
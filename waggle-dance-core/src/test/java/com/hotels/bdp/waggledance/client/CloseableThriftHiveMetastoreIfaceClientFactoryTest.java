@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2021 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,7 +17,9 @@ package com.hotels.bdp.waggledance.client;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -37,9 +39,13 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
+import com.hotels.bdp.waggledance.api.model.ConnectionPool;
 import com.hotels.bdp.waggledance.client.tunnelling.TunnelingMetaStoreClientFactory;
 import com.hotels.bdp.waggledance.conf.WaggleDanceConfiguration;
+import com.hotels.bdp.waggledance.context.CommonBeans;
 import com.hotels.hcommon.hive.metastore.client.tunnelling.MetastoreTunnel;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -62,7 +68,7 @@ public class CloseableThriftHiveMetastoreIfaceClientFactoryTest {
     configurationProperties.put(ConfVars.METASTORE_USE_THRIFT_COMPACT_PROTOCOL.varname, "false");
     when(waggleDanceConfiguration.getConfigurationProperties()).thenReturn(configurationProperties);
     factory = new CloseableThriftHiveMetastoreIfaceClientFactory(tunnelingMetaStoreClientFactory,
-        defaultMetaStoreClientFactory, waggleDanceConfiguration);
+        defaultMetaStoreClientFactory, waggleDanceConfiguration, new SimpleMeterRegistry());
   }
 
   @Test
@@ -94,8 +100,85 @@ public class CloseableThriftHiveMetastoreIfaceClientFactoryTest {
     AbstractMetaStore federatedMetaStore = newFederatedInstance("fed1", THRIFT_URI);
     federatedMetaStore.setMetastoreTunnel(metastoreTunnel);
 
+    ArgumentCaptor<HiveConf> hiveConfCaptor = ArgumentCaptor.forClass(HiveConf.class);
     factory.newInstance(federatedMetaStore);
-    verify(tunnelingMetaStoreClientFactory).newInstance(THRIFT_URI, metastoreTunnel, "fed1", 3, 2000, configurationProperties);
+    verify(tunnelingMetaStoreClientFactory)
+        .newInstance(eq(THRIFT_URI), eq(metastoreTunnel), eq("fed1"), eq(3), eq(2000), hiveConfCaptor.capture());
     verifyNoInteractions(defaultMetaStoreClientFactory);
+    HiveConf hiveConf = hiveConfCaptor.getValue();
+    assertThat(hiveConf.getVar(ConfVars.METASTOREURIS), is(THRIFT_URI));
+    assertThat(hiveConf.getIntVar(ConfVars.METASTORETHRIFTCONNECTIONRETRIES), is(5));
+    assertThat(hiveConf.getBoolVar(ConfVars.METASTORE_USE_THRIFT_FRAMED_TRANSPORT), is(true));
+  }
+
+  @Test
+  public void sharedHiveConf() {
+    AbstractMetaStore federatedMetaStore = newFederatedInstance("fed1", THRIFT_URI);
+    HiveConf hiveConf = factory.newHiveConf(federatedMetaStore);
+
+    factory.newInstance(federatedMetaStore, hiveConf);
+    factory.newPooledInstance(federatedMetaStore, hiveConf);
+    verify(defaultMetaStoreClientFactory).newInstance(same(hiveConf), eq("waggledance-fed1"), eq(3), eq(2000));
+    verify(defaultMetaStoreClientFactory).newPooledInstance(same(hiveConf), eq("waggledance-fed1"), eq(3), eq(2000),
+        any(ConnectionPool.class), any(MetaStoreClientPoolMetrics.class));
+  }
+
+  @Test
+  public void newHiveConfOtherUris() {
+    AbstractMetaStore federatedMetaStore = newFederatedInstance("fed1", THRIFT_URI + ",thrift://host2:port");
+    federatedMetaStore.setImpersonationEnabled(true);
+    HiveConf hiveConf = factory.newHiveConf(federatedMetaStore, "thrift://host2:port");
+    assertThat(hiveConf.getVar(ConfVars.METASTOREURIS), is("thrift://host2:port"));
+    assertThat(hiveConf.getBoolean(CommonBeans.IMPERSONATION_ENABLED_KEY, false), is(true));
+    assertThat(hiveConf.getIntVar(ConfVars.METASTORETHRIFTCONNECTIONRETRIES), is(5));
+  }
+
+  @Test
+  public void pooledFactory() {
+    ArgumentCaptor<HiveConf> hiveConfCaptor = ArgumentCaptor.forClass(HiveConf.class);
+    AbstractMetaStore federatedMetaStore = newFederatedInstance("fed1", THRIFT_URI);
+    ConnectionPool connectionPool = new ConnectionPool();
+    federatedMetaStore.setConnectionPool(connectionPool);
+
+    factory.newPooledInstance(federatedMetaStore);
+    verify(defaultMetaStoreClientFactory).newPooledInstance(hiveConfCaptor.capture(), eq("waggledance-fed1"), eq(3),
+        eq(2000), eq(connectionPool), any(MetaStoreClientPoolMetrics.class));
+    verifyNoInteractions(tunnelingMetaStoreClientFactory);
+    assertThat(hiveConfCaptor.getValue().getVar(ConfVars.METASTOREURIS), is(THRIFT_URI));
+  }
+
+  @Test
+  public void isPoolable() {
+    assertThat(factory.isPoolable(newFederatedInstance("fed1", THRIFT_URI)), is(true));
+  }
+
+  @Test
+  public void isPoolableConnectionPoolDisabled() {
+    AbstractMetaStore federatedMetaStore = newFederatedInstance("fed1", THRIFT_URI);
+    ConnectionPool connectionPool = new ConnectionPool();
+    connectionPool.setEnabled(false);
+    federatedMetaStore.setConnectionPool(connectionPool);
+    assertThat(factory.isPoolable(federatedMetaStore), is(false));
+  }
+
+  @Test
+  public void isPoolableImpersonationEnabled() {
+    AbstractMetaStore federatedMetaStore = newFederatedInstance("fed1", THRIFT_URI);
+    federatedMetaStore.setImpersonationEnabled(true);
+    assertThat(factory.isPoolable(federatedMetaStore), is(true));
+  }
+
+  @Test
+  public void isPoolableTunneled() {
+    AbstractMetaStore federatedMetaStore = newFederatedInstance("fed1", THRIFT_URI);
+    federatedMetaStore.setMetastoreTunnel(new MetastoreTunnel());
+    assertThat(factory.isPoolable(federatedMetaStore), is(false));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void pooledFactoryTunneled() {
+    AbstractMetaStore federatedMetaStore = newFederatedInstance("fed1", THRIFT_URI);
+    federatedMetaStore.setMetastoreTunnel(new MetastoreTunnel());
+    factory.newPooledInstance(federatedMetaStore);
   }
 }
@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hive.metastore.api.NoSuchObjectException;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CoalescingMetaStoreClientFactoryTest {
+
+  private @Mock CloseableThriftHiveMetastoreIface backend;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final CountDownLatch called = new CountDownLatch(1);
+  private final CountDownLatch release = new CountDownLatch(1);
+  private CloseableThriftHiveMetastoreIface client;
+
+  @Before
+  public void init() {
+    client = new CoalescingMetaStoreClientFactory(true, meterRegistry).newInstance("fed", backend);
+  }
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private <T> Answer<T> blocking(T result) {
+    return invocation -> {
+      called.countDown();
+      release.await(10, TimeUnit.SECONDS);
+      return result;
+    };
+  }
+
+  private static <T> Callable<T> asUser(String user, Callable<T> callable) {
+    ClientSession session = new ClientSession();
+    session.setUgi(new HiveUgiArgs(user, null));
+    return inSession(session, callable);
+  }
+
+  private static <T> Callable<T> asAuthenticatedUser(String user, Callable<T> callable) {
+    ClientSession session = new ClientSession();
+    session.setUser(user);
+    return inSession(session, callable);
+  }
+
+  private static <T> Callable<T> inSession(ClientSession session, Callable<T> callable) {
+    return () -> {
+      try (ClientSession.Binding binding = session.bind()) {
+        return callable.call();
+      }
+    };
+  }
+
+  private void awaitRequests(int requests) throws InterruptedException {
+    // Joining calls block on the first one, it is released once they are counted
+    while (count(CoalescingMetaStoreClientFactory.REQUESTS_METRIC_NAME) < requests) {
+      Thread.sleep(1);
+    }
+  }
+
+  private double count(String name) {
+    return meterRegistry.get(name).counter().count();
+  }
+
+  @Test
+  public void disabled() {
+    assertThat(new CoalescingMetaStoreClientFactory(false, meterRegistry).newInstance("fed", backend),
+        is(sameInstance(backend)));
+  }
+
+  @Test
+  public void concurrentCallsShareBackendCall() throws Exception {
+    Table table = new Table();
+    table.setTableName("tbl");
+    when(backend.get_table("db", "tbl")).thenAnswer(blocking(table));
+
+    Future<Table> leader = executor.submit(() -> client.get_table("db", "tbl"));
+    called.await(10, TimeUnit.SECONDS);
+    Future<Table> joining = executor.submit(() -> client.get_table("db", "tbl"));
+    awaitRequests(2);
+    release.countDown();
+
+    assertThat(leader.get(), is(table));
+    assertThat(joining.get(), is(table));
+    assertThat(joining.get(), is(not(sameInstance(leader.get()))));
+    verify(backend).get_table("db", "tbl");
+    assertThat(count(CoalescingMetaStoreClientFactory.REQUESTS_METRIC_NAME), is(2.0));
+    assertThat(count(CoalescingMetaStoreClientFactory.BACKEND_CALLS_METRIC_NAME), is(1.0));
+  }
+
+  @Test
+  public void sequentialCallsAreNotShared() throws Exception {
+    Table table = new Table();
+    when(backend.get_table("db", "tbl")).thenReturn(table);
+    assertThat(client.get_table("db", "tbl"), is(sameInstance(table)));
+    assertThat(client.get_table("db", "tbl"), is(sameInstance(table)));
+    verify(backend, times(2)).get_table("db", "tbl");
+  }
+
+  @Test
+  public void differentUsersAreNotShared() throws Exception {
+    when(backend.get_all_databases()).thenAnswer(blocking(Collections.singletonList("db")));
+    Future<List<String>> user1 = executor.submit(asUser("user1", () -> client.get_all_databases()));
+    called.await(10, TimeUnit.SECONDS);
+    Future<List<String>> user2 = executor.submit(asUser("user2", () -> client.get_all_databases()));
+    awaitRequests(2);
+    release.countDown();
+
+    user1.get();
+    user2.get();
+    verify(backend, times(2)).get_all_databases();
+  }
+
+  @Test
+  public void differentAuthenticatedUsersAreNotShared() throws Exception {
+    when(backend.get_all_databases()).thenAnswer(blocking(Collections.singletonList("db")));
+    Future<List<String>> user1 = executor.submit(asAuthenticatedUser("user1", () -> client.get_all_databases()));
+    called.await(10, TimeUnit.SECONDS);
+    Future<List<String>> user2 = executor.submit(asAuthenticatedUser("user2", () -> client.get_all_databases()));
+    awaitRequests(2);
+    release.countDown();
+
+    user1.get();
+    user2.get();
+    verify(backend, times(2)).get_all_databases();
+  }
+
+  @Test
+  public void errorsAreShared() throws Exception {
+    when(backend.get_table("db", "tbl")).thenAnswer(invocation -> {
+      called.countDown();
+      release.await(10, TimeUnit.SECONDS);
+      throw new NoSuchObjectException("tbl");
+    });
+    Future<Table> leader = executor.submit(() -> client.get_table("db", "tbl"));
+    called.await(10, TimeUnit.SECONDS);
+    Future<Table> joining = executor.submit(() -> client.get_table("db", "tbl"));
+    awaitRequests(2);
+    release.countDown();
+
+    for (Future<Table> call : Arrays.asList(leader, joining)) {
+      try {
+        call.get();
+        fail();
+      } catch (ExecutionException e) {
+        assertThat(e.getCause() instanceof NoSuchObjectException, is(true));
+      }
+    }
+    verify(backend).get_table("db", "tbl");
+  }
+
+  @Test
+  public void writesAreNotShared() throws Exception {
+    client.drop_table("db", "tbl", true);
+    client.drop_table("db", "tbl", true);
+    verify(backend, times(2)).drop_table("db", "tbl", true);
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,20 +17,29 @@ package com.hotels.bdp.waggledance.client;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import static com.hotels.bdp.waggledance.client.HiveUgiArgsStub.TEST_ARGS;
 
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.apache.hadoop.hive.metastore.api.ThriftHiveMetastore.Iface;
 import org.apache.thrift.TException;
 import org.apache.thrift.transport.TTransportException;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
@@ -43,6 +52,7 @@ public class DefaultMetaStoreClientFactoryTest {
 
   private @Mock ThriftMetastoreClientManager base;
   private @Mock Iface client;
+  private @Mock MetaStoreClientPool pool;
 
   private final DefaultMetaStoreClientFactory factory = new DefaultMetaStoreClientFactory();
   private final static int RECONNECTION_RETRIES = 1;
@@ -93,6 +103,7 @@ public class DefaultMetaStoreClientFactoryTest {
   @Test
   public void defaultMethodCallThrowsTransportExceptionRetries() throws TException {
     when(base.getClient()).thenReturn(client);
+    when(base.tryRetry()).thenReturn(true);
     when(client.getName()).thenThrow(new TTransportException()).thenReturn("ourName");
 
     CloseableThriftHiveMetastoreIface iface = factory.newInstance("name", RECONNECTION_RETRIES, base);
@@ -106,6 +117,7 @@ public class DefaultMetaStoreClientFactoryTest {
   @Test
   public void set_ugi_before_call() throws Exception {
     when(base.getClient()).thenReturn(client);
+    when(base.tryRetry()).thenReturn(true);
     when(client.getName()).thenThrow(new TTransportException()).thenReturn("ourName");
 
     CloseableThriftHiveMetastoreIface iface = factory.newInstance("name", RECONNECTION_RETRIES, base);
@@ -118,6 +130,21 @@ public class DefaultMetaStoreClientFactoryTest {
     verify(base).reconnect(TEST_ARGS);
   }
 
+  @Test
+  public void failedCallIsRecordedBeforeReconnecting() throws Exception {
+    when(base.getClient()).thenReturn(client);
+    when(base.tryRetry()).thenReturn(true);
+    when(client.getName()).thenThrow(new TTransportException()).thenReturn("ourName");
+
+    CloseableThriftHiveMetastoreIface iface = factory.newInstance("name", RECONNECTION_RETRIES, base);
+    assertThat(iface.getName(), is("ourName"));
+
+    InOrder inOrder = inOrder(base);
+    inOrder.verify(base).callEnded(eq("getName"), anyLong(), eq(true));
+    inOrder.verify(base).reconnect(null);
+    inOrder.verify(base).callEnded(eq("getName"), anyLong(), eq(false));
+  }
+
   @Test
   public void set_ugi_CachedWhenClosed() throws Exception {
     when(base.isOpen()).thenReturn(false);
@@ -161,6 +188,40 @@ public class DefaultMetaStoreClientFactoryTest {
     iface.getName();
   }
 
+  @Test
+  public void retryBudgetExhausted() throws TException {
+    when(base.getClient()).thenReturn(client);
+    when(base.tryRetry()).thenReturn(false);
+    when(client.getName()).thenThrow(new TTransportException());
+
+    CloseableThriftHiveMetastoreIface iface = factory.newInstance("name", RECONNECTION_RETRIES, base);
+
+    try {
+      iface.getName();
+      fail("Expected MetastoreUnavailableException");
+    } catch (MetastoreUnavailableException e) {
+      verify(base, never()).reconnect(null);
+    }
+  }
+
+  @Test
+  public void pooledRetryBudgetExhausted() throws Exception {
+    when(pool.borrow(null)).thenReturn(base);
+    when(base.getClient()).thenReturn(client);
+    when(base.tryRetry()).thenReturn(false);
+    when(client.getName()).thenThrow(new TTransportException());
+
+    CloseableThriftHiveMetastoreIface iface = factory.newPooledInstance("name", RECONNECTION_RETRIES, () -> pool);
+
+    try {
+      iface.getName();
+      fail("Expected MetastoreUnavailableException");
+    } catch (MetastoreUnavailableException e) {
+      verify(pool).borrow(null);
+      verify(pool).invalidate(null, base);
+    }
+  }
+
   @Test(expected = TException.class)
   public void defaultMethodCallThrowsRealException() throws TException {
     when(base.getClient()).thenReturn(client);
@@ -170,4 +231,145 @@ public class DefaultMetaStoreClientFactoryTest {
 
     iface.getName();
   }
+
+  @Test
+  public void pooledDefaultMethodCall() throws Exception {
+    when(pool.borrow(null)).thenReturn(base);
+    when(base.getClient()).thenReturn(client);
+    when(client.getName()).thenReturn("ourName");
+
+    CloseableThriftHiveMetastoreIface iface = factory.newPooledInstance("name", RECONNECTION_RETRIES, () -> pool);
+
+    assertThat(iface.getName(), is("ourName"));
+    verify(pool).release(null, base);
+  }
+
+  @Test
+  public void pooledSetUgiUsedByNextCall() throws Exception {
+    when(pool.borrow(TEST_ARGS)).thenReturn(base);
+    when(base.getClient()).thenReturn(client);
+    when(client.getName()).thenReturn("ourName");
+
+    CloseableThriftHiveMetastoreIface iface = factory.newPooledInstance("name", RECONNECTION_RETRIES, () -> pool);
+    ClientSession session = new ClientSession();
+    try (ClientSession.Binding binding = session.bind()) {
+      List<String> setUgiResult = iface.set_ugi(TEST_ARGS.getUser(), TEST_ARGS.getGroups());
+      assertThat(setUgiResult, is(Lists.newArrayList(TEST_ARGS.getUser())));
+      assertThat(iface.getName(), is("ourName"));
+    }
+    verify(client, never()).set_ugi(TEST_ARGS.getUser(), TEST_ARGS.getGroups());
+    verify(pool).release(TEST_ARGS, base);
+  }
+
+  @Test
+  public void pooledTransportExceptionInvalidatesAndRetries() throws Exception {
+    ThriftMetastoreClientManager other = mock(ThriftMetastoreClientManager.class);
+    Iface otherClient = mock(Iface.class);
+    when(pool.borrow(null)).thenReturn(base).thenReturn(other);
+    when(base.getClient()).thenReturn(client);
+    when(base.tryRetry()).thenReturn(true);
+    when(client.getName()).thenThrow(new TTransportException());
+    when(other.getClient()).thenReturn(otherClient);
+    when(otherClient.getName()).thenReturn("ourName");
+
+    CloseableThriftHiveMetastoreIface iface = factory.newPooledInstance("name", RECONNECTION_RETRIES, () -> pool);
+
+    assertThat(iface.getName(), is("ourName"));
+    verify(pool).invalidate(null, base);
+    verify(pool).release(null, other);
+  }
+
+  @Test(expected = MetastoreUnavailableException.class)
+  public void pooledTransportExceptionNoRetriesLeft() throws Exception {
+    when(pool.borrow(null)).thenReturn(base);
+    when(base.getClient()).thenReturn(client);
+    when(client.getName()).thenThrow(new TTransportException());
+
+    CloseableThriftHiveMetastoreIface iface = factory.newPooledInstance("name", 0, () -> pool);
+
+    try {
+      iface.getName();
+    } finally {
+      verify(pool).invalidate(null, base);
+    }
+  }
+
+  @Test(expected = TException.class)
+  public void pooledRealExceptionReleases() throws Exception {
+    when(pool.borrow(null)).thenReturn(base);
+    when(base.getClient()).thenReturn(client);
+    when(client.getName()).thenThrow(new TException());
+
+    CloseableThriftHiveMetastoreIface iface = factory.newPooledInstance("name", RECONNECTION_RETRIES, () -> pool);
+
+    try {
+      iface.getName();
+    } finally {
+      verify(pool).release(null, base);
+    }
+  }
+
+  @Test(expected = MetastoreUnavailableException.class)
+  public void pooledBorrowFails() throws Exception {
+    when(pool.borrow(null)).thenThrow(new NoSuchElementException());
+
+    CloseableThriftHiveMetastoreIface iface = factory.newPooledInstance("name", RECONNECTION_RETRIES, () -> pool);
+
+    iface.getName();
+  }
+
+  @Test
+  public void pooledIsOpen() throws Exception {
+    when(pool.borrow(null)).thenReturn(base);
+
+    CloseableThriftHiveMetastoreIface iface = factory.newPooledInstance("name", RECONNECTION_RETRIES, () -> pool);
+
+    assertThat(iface.isOpen(), is(true));
+    verify(pool).release(null, base);
+  }
+
+  @Test
+  public void pooledIsOpenBorrowFails() throws Exception {
+    when(pool.borrow(null)).thenThrow(new NoSuchElementException());
+
+    CloseableThriftHiveMetastoreIface iface = factory.newPooledInstance("name", RECONNECTION_RETRIES, () -> pool);
+
+    assertThat(iface.isOpen(), is(false));
+  }
+
+  @Test
+  public void pooledClose() throws Exception {
+    when(pool.borrow(null)).thenReturn(base);
+    when(base.getClient()).thenReturn(client);
+    Iterator<MetaStoreClientPool> pools = Collections.singletonList(pool).iterator();
+
+    CloseableThriftHiveMetastoreIface iface = factory.newPooledInstance("name", RECONNECTION_RETRIES, pools::next);
+    iface.getName();
+    iface.close();
+    verify(pool).close();
+
+    try {
+      iface.getName();
+      fail("Expected TTransportException");
+    } catch (TTransportException e) {
+      // No pool is created once closed
+    }
+    assertThat(iface.isOpen(), is(false));
+    assertThat(pools.hasNext(), is(false));
+  }
+
+  @Test
+  public void pooledCloseBeforeUse() throws Exception {
+    CloseableThriftHiveMetastoreIface iface = factory.newPooledInstance("name", RECONNECTION_RETRIES, () -> {
+      throw new AssertionError("No pool is created once closed");
+    });
+    iface.close();
+
+    try {
+      iface.getName();
+      fail("Expected TTransportException");
+    } catch (TTransportException e) {
+      // expected
+    }
+  }
 }
@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.hadoop.hive.metastore.api.ThriftHiveMetastore;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.thrift.transport.TTransportException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DelegationTokenServiceTest {
+
+  private static final String URIS = "thrift://metastore:9083";
+  private static final String USER = "alice";
+  private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.HOURS.toMillis(1);
+  private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+  private @Mock ScheduledExecutorService scheduler;
+  private @Mock ThriftMetastoreClientManager connection;
+  private @Mock ThriftHiveMetastore.Iface client;
+
+  private final List<Runnable> renewals = new ArrayList<>();
+  private final List<Long> renewalDelays = new ArrayList<>();
+  private final AtomicInteger connectionsCreated = new AtomicInteger();
+  private final Supplier<ThriftMetastoreClientManager> connectionFactory = () -> {
+    connectionsCreated.incrementAndGet();
+    return connection;
+  };
+  private long now = 1_000_000L;
+  private String renewer;
+  private DelegationTokenService service;
+
+  @Before
+  public void init() throws Exception {
+    renewer = UserGroupInformation.getLoginUser().getShortUserName();
+    when(scheduler.schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS))).thenAnswer(invocation -> {
+      renewals.add(invocation.getArgument(0));
+      renewalDelays.add(invocation.getArgument(1));
+      return null;
+    });
+    when(connection.getClient()).thenReturn(client);
+    service = new DelegationTokenService(scheduler, IDLE_TIMEOUT_MILLIS, () -> now);
+  }
+
+  private void runLastRenewal() {
+    renewals.get(renewals.size() - 1).run();
+  }
+
+  @Test
+  public void tokenIsFetchedOnceOnDedicatedConnection() throws Exception {
+    when(client.get_delegation_token(USER, renewer)).thenReturn("token");
+
+    assertThat(service.getToken(URIS, USER, connectionFactory), is("token"));
+    assertThat(service.getToken(URIS, USER, connectionFactory), is("token"));
+
+    verify(client).get_delegation_token(USER, renewer);
+    verify(connection).open();
+    assertThat(connectionsCreated.get(), is(1));
+  }
+
+  @Test
+  public void tokensArePerUserOnConnectionPerMetastore() throws Exception {
+    when(client.get_delegation_token(anyString(), eq(renewer))).thenReturn("alice-token", "bob-token", "other-token");
+
+    assertThat(service.getToken(URIS, USER, connectionFactory), is("alice-token"));
+    assertThat(service.getToken(URIS, "bob", connectionFactory), is("bob-token"));
+    assertThat(connectionsCreated.get(), is(1));
+
+    assertThat(service.getToken("thrift://other:9083", USER, connectionFactory), is("other-token"));
+    assertThat(connectionsCreated.get(), is(2));
+  }
+
+  @Test
+  public void tokenIsRenewedAheadOfExpiry() throws Exception {
+    when(client.get_delegation_token(USER, renewer)).thenReturn("token");
+    when(client.renew_delegation_token("token")).thenReturn(now + DAY_MILLIS);
+    service.getToken(URIS, USER, connectionFactory);
+    assertThat(renewalDelays.get(0), is(0L));
+
+    runLastRenewal();
+
+    verify(client).renew_delegation_token("token");
+    assertThat(renewalDelays.get(1), is((long) (DAY_MILLIS * 0.75)));
+    assertThat(service.getToken(URIS, USER, connectionFactory), is("token"));
+    verify(client).get_delegation_token(USER, renewer);
+  }
+
+  @Test
+  public void tokenAtMaximumLifetimeIsReplaced() throws Exception {
+    when(client.get_delegation_token(USER, renewer)).thenReturn("token", "new-token");
+    when(client.renew_delegation_token("token")).thenReturn(now + TimeUnit.MINUTES.toMillis(1));
+    service.getToken(URIS, USER, connectionFactory);
+
+    runLastRenewal();
+
+    assertThat(service.getToken(URIS, USER, connectionFactory), is("new-token"));
+    verify(client, times(2)).get_delegation_token(USER, renewer);
+  }
+
+  @Test
+  public void tokenThatFailsRenewalIsReplaced() throws Exception {
+    when(client.get_delegation_token(USER, renewer)).thenReturn("token", "new-token");
+    when(client.renew_delegation_token("token")).thenThrow(new MetaException("token expired"));
+    service.getToken(URIS, USER, connectionFactory);
+
+    runLastRenewal();
+
+    assertThat(service.getToken(URIS, USER, connectionFactory), is("new-token"));
+  }
+
+  @Test
+  public void idleTokenIsCancelled() throws Exception {
+    when(client.get_delegation_token(USER, renewer)).thenReturn("token", "new-token");
+    service.getToken(URIS, USER, connectionFactory);
+    now += IDLE_TIMEOUT_MILLIS + 1;
+
+    runLastRenewal();
+
+    verify(client, never()).renew_delegation_token(anyString());
+    verify(client).cancel_delegation_token("token");
+    assertThat(service.getToken(URIS, USER, connectionFactory), is("new-token"));
+  }
+
+  @Test
+  public void failedFetchIsRetriedOnNextUse() throws Exception {
+    when(client.get_delegation_token(USER, renewer)).thenThrow(new MetaException("unauthorized")).thenReturn("token");
+    try {
+      service.getToken(URIS, USER, connectionFactory);
+      fail("Expected RuntimeException");
+    } catch (RuntimeException e) {
+      assertThat(e.getMessage(), is("Unable to get a delegation token for user " + USER));
+    }
+
+    assertThat(service.getToken(URIS, USER, connectionFactory), is("token"));
+  }
+
+  @Test
+  public void lostConnectionIsReconnected() throws Exception {
+    when(client.get_delegation_token(USER, renewer)).thenThrow(new TTransportException()).thenReturn("token");
+
+    assertThat(service.getToken(URIS, USER, connectionFactory), is("token"));
+
+    verify(connection).reconnect(null);
+  }
+
+  @Test
+  public void close() throws Exception {
+    when(client.get_delegation_token(USER, renewer)).thenReturn("token");
+    service.getToken(URIS, USER, connectionFactory);
+
+    service.close();
+
+    verify(connection).close();
+    verify(scheduler, never()).shutdownNow();
+    runLastRenewal();
+    verify(client, never()).renew_delegation_token(anyString());
+    try {
+      service.getToken(URIS, USER, connectionFactory);
+      fail("Expected RuntimeException");
+    } catch (RuntimeException e) {
+      assertThat(e.getMessage(), is("Unable to get a delegation token for user " + USER));
+    }
+    verify(client).get_delegation_token(USER, renewer);
+    assertThat(connectionsCreated.get(), is(1));
+  }
+
+}
@@ -0,0 +1,267 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hive.metastore.api.ThriftHiveMetastore.Iface;
+import org.apache.thrift.TException;
+import org.apache.thrift.transport.TTransportException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
+import com.hotels.bdp.waggledance.api.model.Bulkhead;
+import com.hotels.bdp.waggledance.api.model.MetadataCache;
+import com.hotels.bdp.waggledance.client.cache.CachingMetaStoreClientFactory;
+
+/**
+ * Compares the per call overhead and allocation of the backend client layers of a mapping: the caching, coalescing,
+ * bulkhead, circuit breaker and session scoped layers over a reconnecting layer over a compatibility layer. The
+ * {@code proxies} and {@code dispatching} stacks are made of as many layers passing the calls through, with reflective
+ * proxies as they used to be and with {@link DispatchingMetaStoreClient}, so only the way the calls are handed down
+ * is measured. The {@code decorated} stack is made by the factories of the layers, all enabled, to add the cost of
+ * their policies. All the stacks end on the same in memory metastore. Run with
+ * {@code mvn -pl waggle-dance-core test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.hotels.bdp.waggledance.client.DispatchingMetaStoreClientBenchmark}, the GC profiler reports
+ * the allocation per call as {@code gc.alloc.rate.norm}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchingMetaStoreClientBenchmark {
+
+  private static final String DATABASE_NAME = "database";
+  private static final String TABLE_PATTERN = "table_*";
+  // Caching, coalescing, bulkhead, circuit breaker and session scoped
+  private static final int DECORATORS = 5;
+
+  private static class InMemoryMetaStore extends DispatchingMetaStoreClient {
+    private final List<String> tables = Arrays.asList("table_1", "table_2");
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <T> T dispatch(String methodName, Object[] arguments, Call<T> call) {
+      return (T) tables;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  private static class PassThroughInvocationHandler implements InvocationHandler {
+    private final Iface delegate;
+
+    private PassThroughInvocationHandler(Iface delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      try {
+        return method.invoke(delegate, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+  }
+
+  private static class ReconnectingInvocationHandler implements InvocationHandler {
+    private final Iface delegate;
+
+    private ReconnectingInvocationHandler(Iface delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+      case "isOpen":
+        return true;
+      case "close":
+        return null;
+      default:
+        long start = System.nanoTime();
+        try {
+          return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+          Throwable cause = e.getTargetException();
+          if (TTransportException.class.isAssignableFrom(cause.getClass())) {
+            throw new IllegalStateException("Took " + (System.nanoTime() - start), cause);
+          }
+          throw cause;
+        }
+      }
+    }
+  }
+
+  private static class PassThroughClient extends DispatchingMetaStoreClient {
+    private final CloseableThriftHiveMetastoreIface delegate;
+
+    private PassThroughClient(CloseableThriftHiveMetastoreIface delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    protected <T> T dispatch(String methodName, Object[] arguments, Call<T> call) throws TException {
+      return forward(delegate, methodName, arguments, call);
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  private static class ReconnectingClient extends DispatchingMetaStoreClient {
+    private final Iface delegate;
+
+    private ReconnectingClient(Iface delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    protected <T> T dispatch(String methodName, Object[] arguments, Call<T> call) throws TException {
+      long start = System.nanoTime();
+      try {
+        return forward(delegate, methodName, arguments, call);
+      } catch (TTransportException e) {
+        throw new IllegalStateException("Took " + (System.nanoTime() - start), e);
+      }
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  private CloseableThriftHiveMetastoreIface proxies;
+  private CloseableThriftHiveMetastoreIface dispatching;
+  private CloseableThriftHiveMetastoreIface decorated;
+
+  @Setup
+  public void setUp() {
+    InMemoryMetaStore metaStore = new InMemoryMetaStore();
+
+    CloseableThriftHiveMetastoreIface proxy = newProxy(new PassThroughInvocationHandler(metaStore));
+    proxy = newProxy(new ReconnectingInvocationHandler(proxy));
+    for (int i = 0; i < DECORATORS; i++) {
+      proxy = newProxy(new PassThroughInvocationHandler(proxy));
+    }
+    proxies = proxy;
+
+    CloseableThriftHiveMetastoreIface client = new ReconnectingClient(new PassThroughClient(metaStore));
+    for (int i = 0; i < DECORATORS; i++) {
+      client = new PassThroughClient(client);
+    }
+    dispatching = client;
+
+    decorated = newDecoratedStack(new ReconnectingClient(new PassThroughClient(metaStore)));
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    decorated.close();
+  }
+
+  /**
+   * The layers of a mapping of a metastore without connection pooling, as made by {@code MetaStoreMappingFactoryImpl}.
+   */
+  private static CloseableThriftHiveMetastoreIface newDecoratedStack(CloseableThriftHiveMetastoreIface client) {
+    AbstractMetaStore metaStore = AbstractMetaStore.newFederatedInstance("benchmark", "thrift://localhost:9083");
+    MetadataCache metadataCache = new MetadataCache();
+    metadataCache.setEnabled(true);
+    metadataCache.setNotificationPollIntervalMillis(0);
+    metaStore.setMetadataCache(metadataCache);
+    Bulkhead bulkhead = new Bulkhead();
+    bulkhead.setEnabled(true);
+    metaStore.setBulkhead(bulkhead);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    CloseableThriftHiveMetastoreIface sessionScoped = new SessionScopedMetaStoreClientFactory()
+        .newInstance(metaStore.getName(), () -> client);
+    CloseableThriftHiveMetastoreIface guarded = new BulkheadMetaStoreClientFactory(meterRegistry)
+        .newInstance(metaStore,
+            new CircuitBreakerMetaStoreClientFactory(meterRegistry).newInstance(metaStore, sessionScoped));
+    return new CachingMetaStoreClientFactory(meterRegistry)
+        .newInstance(metaStore,
+            new CoalescingMetaStoreClientFactory(true, meterRegistry).newInstance(metaStore.getName(), guarded));
+  }
+
+  private static CloseableThriftHiveMetastoreIface newProxy(InvocationHandler handler) {
+    return (CloseableThriftHiveMetastoreIface) Proxy
+        .newProxyInstance(DispatchingMetaStoreClientBenchmark.class.getClassLoader(),
+            new Class<?>[] { CloseableThriftHiveMetastoreIface.class }, handler);
+  }
+
+  @Benchmark
+  public List<String> proxies() throws TException {
+    return proxies.get_tables(DATABASE_NAME, TABLE_PATTERN);
+  }
+
+  @Benchmark
+  public List<String> dispatching() throws TException {
+    return dispatching.get_tables(DATABASE_NAME, TABLE_PATTERN);
+  }
+
+  @Benchmark
+  public List<String> decorated() throws TException {
+    return decorated.get_tables(DATABASE_NAME, TABLE_PATTERN);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(DispatchingMetaStoreClientBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build()).run();
+  }
+
+}
@@ -0,0 +1,355 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.hadoop.hive.metastore.api.ThriftHiveMetastore.Iface;
+import org.apache.thrift.TFieldIdEnum;
+
+import com.hotels.bdp.waggledance.client.compatibility.HiveThriftMetaStoreIfaceCompatibility;
+
+/**
+ * Generates {@link DispatchingMetaStoreClient} from {@link Iface} so the backend clients can apply their policy to
+ * every metastore call without reflection. {@code DispatchingMetaStoreClientGeneratorTest} fails the build when the
+ * class is out of date, i.e. after the Hive version changes. Regenerate it with
+ * {@code mvn -pl waggle-dance-core test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.hotels.bdp.waggledance.client.DispatchingMetaStoreClientGenerator}.
+ */
+public class DispatchingMetaStoreClientGenerator {
+
+  static final Path SOURCE = Paths
+      .get("src/main/java/com/hotels/bdp/waggledance/client/DispatchingMetaStoreClient.java");
+
+  private static final String PACKAGE = DispatchingMetaStoreClientGenerator.class.getPackage().getName();
+  private static final int MAX_LINE_LENGTH = 120;
+  private static final String CALL_PARAMETER = "iface";
+  private static final String COMPATIBILITY_CALL_PARAMETER = "compatibility";
+  private static final String NO_ARGUMENTS = "NO_ARGUMENTS";
+
+  private final Map<String, String> importsBySimpleName = new HashMap<>();
+
+  /**
+   * @return the source of {@link DispatchingMetaStoreClient} from its {@code package} declaration
+   */
+  public static String generate() {
+    return new DispatchingMetaStoreClientGenerator().generateSource();
+  }
+
+  private String generateSource() {
+    importType(HiveThriftMetaStoreIfaceCompatibility.class);
+    importType(Iface.class);
+    importType(org.apache.thrift.TException.class);
+
+    List<Method> methods = new ArrayList<>(Arrays.asList(Iface.class.getMethods()));
+    methods.sort(Comparator.comparing(Method::getName).thenComparing(m -> Arrays.toString(m.getParameterTypes())));
+    StringBuilder body = new StringBuilder();
+    for (Method method : methods) {
+      body.append('\n');
+      appendMethod(body, method);
+    }
+
+    StringBuilder source = new StringBuilder();
+    source.append("package ").append(PACKAGE).append(";\n\n");
+    appendImports(source);
+    source
+        .append("/**\n")
+        .append(" * A {@link CloseableThriftHiveMetastoreIface} handing every metastore call to {@link #dispatch} ")
+        .append("as a {@link Call}\n")
+        .append(" * on the {@link Iface} serving it, along with its arguments, so a client applies its policy to all ")
+        .append("the calls with\n")
+        .append(" * plain method calls rather than a reflective proxy. The calls ")
+        .append("{@link HiveThriftMetaStoreIfaceCompatibility} can\n")
+        .append(" * serve also carry their {@link CompatibilityCall}.\n")
+        .append(" * <p>\n")
+        .append(" * Generated from {@link Iface} by {@code DispatchingMetaStoreClientGenerator}, don't edit it.\n")
+        .append(" */\n")
+        .append("public abstract class DispatchingMetaStoreClient implements CloseableThriftHiveMetastoreIface {\n\n")
+        .append("  // Arguments of the calls without any, never modified\n")
+        .append("  protected static final Object[] ").append(NO_ARGUMENTS).append(" = new Object[0];\n\n")
+        .append("  @FunctionalInterface\n")
+        .append("  public interface Call<T> {\n")
+        .append("    T call(Iface ").append(CALL_PARAMETER).append(") throws TException;\n")
+        .append("  }\n\n")
+        .append("  @FunctionalInterface\n")
+        .append("  public interface CompatibilityCall<T> {\n")
+        .append("    T call(HiveThriftMetaStoreIfaceCompatibility ").append(COMPATIBILITY_CALL_PARAMETER)
+        .append(") throws TException;\n")
+        .append("  }\n\n")
+        .append("  /**\n")
+        .append("   * Makes the call of the metastore method {@code methodName}.\n")
+        .append("   *\n")
+        .append("   * @param arguments the arguments of the call, primitives boxed, not to be modified\n")
+        .append("   */\n")
+        .append("  protected abstract <T> T dispatch(String methodName, Object[] arguments, Call<T> call) ")
+        .append("throws TException;\n\n")
+        .append("  /**\n")
+        .append("   * Makes the call of a metastore method older metastores may not know, by default as any other ")
+        .append("call.\n")
+        .append("   */\n")
+        .append("  protected <T> T dispatch(\n")
+        .append("      String methodName,\n")
+        .append("      Object[] arguments,\n")
+        .append("      Call<T> call,\n")
+        .append("      CompatibilityCall<T> compatibilityCall)\n")
+        .append("    throws TException {\n")
+        .append("    return dispatch(methodName, arguments, new CompatibleCall<>(call, compatibilityCall));\n")
+        .append("  }\n\n")
+        .append("  /**\n")
+        .append("   * Makes the call on {@code client}, handing it straight to the {@link #dispatch} of the client ")
+        .append("when it is a\n")
+        .append("   * {@code DispatchingMetaStoreClient} too so the call and its arguments aren't made again by ")
+        .append("every client it goes\n")
+        .append("   * through. Subclasses therefore handle all the calls in {@link #dispatch} rather than by ")
+        .append("overriding their methods.\n")
+        .append("   */\n")
+        .append("  protected static <T> T forward(Iface client, String methodName, Object[] arguments, Call<T> call)")
+        .append(" throws TException {\n")
+        .append("    if (!(client instanceof DispatchingMetaStoreClient)) {\n")
+        .append("      return call.call(client);\n")
+        .append("    }\n")
+        .append("    DispatchingMetaStoreClient dispatchingClient = (DispatchingMetaStoreClient) client;\n")
+        .append("    if (call instanceof CompatibleCall) {\n")
+        .append("      CompatibleCall<T> compatibleCall = (CompatibleCall<T>) call;\n")
+        .append("      return dispatchingClient\n")
+        .append("          .dispatch(methodName, arguments, compatibleCall.call, compatibleCall.compatibilityCall);\n")
+        .append("    }\n")
+        .append("    return dispatchingClient.dispatch(methodName, arguments, call);\n")
+        .append("  }\n\n")
+        .append("  // A call older metastores may not know, keeping its compatibility call when forwarded\n")
+        .append("  private static final class CompatibleCall<T> implements Call<T> {\n")
+        .append("    private final Call<T> call;\n")
+        .append("    private final CompatibilityCall<T> compatibilityCall;\n\n")
+        .append("    private CompatibleCall(Call<T> call, CompatibilityCall<T> compatibilityCall) {\n")
+        .append("      this.call = call;\n")
+        .append("      this.compatibilityCall = compatibilityCall;\n")
+        .append("    }\n\n")
+        .append("    @Override\n")
+        .append("    public T call(Iface ").append(CALL_PARAMETER).append(") throws TException {\n")
+        .append("      return call.call(").append(CALL_PARAMETER).append(");\n")
+        .append("    }\n")
+        .append("  }\n")
+        .append(body)
+        .append("\n}\n");
+    return source.toString();
+  }
+
+  private void appendMethod(StringBuilder source, Method method) {
+    String name = method.getName();
+    List<String> parameterNames = parameterNames(method);
+    List<String> parameters = new ArrayList<>();
+    Type[] parameterTypes = method.getGenericParameterTypes();
+    for (int i = 0; i < parameterTypes.length; i++) {
+      parameters.add(render(parameterTypes[i]) + " " + parameterNames.get(i));
+    }
+    List<String> exceptions = new ArrayList<>();
+    for (Class<?> exception : method.getExceptionTypes()) {
+      exceptions.add(render(exception));
+    }
+    String arguments = String.join(", ", parameterNames);
+    String argumentArray = parameterNames.isEmpty() ? NO_ARGUMENTS : "new Object[] { " + arguments + " }";
+
+    source.append("  @Override\n");
+    String signature = wrap("  ", "      ",
+        "public " + render(method.getGenericReturnType()) + " " + name + "(" + String.join(", ", parameters) + ")");
+    String throwsClause = exceptions.isEmpty() ? "" : " throws " + String.join(", ", exceptions);
+    String lastLine = signature.substring(signature.lastIndexOf('\n') + 1);
+    if (lastLine.length() + throwsClause.length() + 2 <= MAX_LINE_LENGTH) {
+      source.append(signature).append(throwsClause).append(" {\n");
+    } else {
+      source.append(signature).append("\n").append(wrap("    ", "        ", throwsClause.trim())).append(" {\n");
+    }
+
+    List<String> lambdaParameters = new ArrayList<>();
+    lambdaParameters.add(CALL_PARAMETER);
+    if (hasCompatibility(method)) {
+      lambdaParameters.add(COMPATIBILITY_CALL_PARAMETER);
+    }
+    if (method.getReturnType() != void.class) {
+      List<String> calls = new ArrayList<>();
+      for (String lambdaParameter : lambdaParameters) {
+        calls.add(lambdaParameter + " -> " + lambdaParameter + "." + name + "(" + arguments + ")");
+      }
+      source
+          .append(wrap("    ", "        ",
+              "return dispatch(\"" + name + "\", " + argumentArray + ", " + String.join(", ", calls) + ");"))
+          .append('\n');
+    } else {
+      String opening = "dispatch(\"" + name + "\", " + argumentArray + ", " + CALL_PARAMETER + " -> {";
+      for (String lambdaParameter : lambdaParameters) {
+        if (lambdaParameter.equals(CALL_PARAMETER)) {
+          source.append(wrap("    ", "        ", opening)).append('\n');
+        } else {
+          source.append("    }, ").append(lambdaParameter).append(" -> {\n");
+        }
+        source.append(wrap("      ", "          ", lambdaParameter + "." + name + "(" + arguments + ");")).append('\n');
+        source.append("      return null;\n");
+      }
+      source.append("    });\n");
+    }
+    source.append("  }\n");
+  }
+
+  /**
+   * Breaks the code after the commas separating arguments so its lines fit in {@link #MAX_LINE_LENGTH}.
+   */
+  private static String wrap(String indent, String continuationIndent, String code) {
+    List<String> atoms = new ArrayList<>();
+    int depth = 0;
+    int atomStart = 0;
+    for (int i = 0; i < code.length(); i++) {
+      char c = code.charAt(i);
+      if (c == '<') {
+        depth++;
+      } else if (c == '>' && code.charAt(i - 1) != '-') {
+        depth--;
+      } else if (c == ',' && depth == 0) {
+        atoms.add(code.substring(atomStart, i + 1));
+        atomStart = i + 2;
+        i++;
+      }
+    }
+    atoms.add(code.substring(atomStart));
+
+    StringBuilder wrapped = new StringBuilder(indent).append(atoms.get(0));
+    int lineLength = wrapped.length();
+    for (String atom : atoms.subList(1, atoms.size())) {
+      if (lineLength + 1 + atom.length() > MAX_LINE_LENGTH) {
+        wrapped.append('\n').append(continuationIndent).append(atom);
+        lineLength = continuationIndent.length() + atom.length();
+      } else {
+        wrapped.append(' ').append(atom);
+        lineLength += 1 + atom.length();
+      }
+    }
+    return wrapped.toString();
+  }
+
+  private static boolean hasCompatibility(Method method) {
+    try {
+      HiveThriftMetaStoreIfaceCompatibility.class.getMethod(method.getName(), method.getParameterTypes());
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * The names of the Thrift fields of the {@code <method>_args} struct, the names of the IDL, rather than
+   * {@code arg0, arg1...} as the interface isn't compiled with its parameter names.
+   */
+  private static List<String> parameterNames(Method method) {
+    int count = method.getParameterCount();
+    List<String> names = new ArrayList<>(count);
+    try {
+      Class<?> service = method.getDeclaringClass().getEnclosingClass();
+      Class<?> fields = Class.forName(service.getName() + "$" + method.getName() + "_args$_Fields");
+      for (Object field : fields.getEnumConstants()) {
+        names.add(((TFieldIdEnum) field).getFieldName());
+      }
+    } catch (ClassNotFoundException e) {
+      names.clear();
+    }
+    if (names.size() != count || names.contains(CALL_PARAMETER) || names.contains(COMPATIBILITY_CALL_PARAMETER)) {
+      names.clear();
+      for (int i = 0; i < count; i++) {
+        names.add("arg" + i);
+      }
+    }
+    return names;
+  }
+
+  private String render(Type type) {
+    if (type instanceof ParameterizedType) {
+      ParameterizedType parameterizedType = (ParameterizedType) type;
+      List<String> arguments = new ArrayList<>();
+      for (Type argument : parameterizedType.getActualTypeArguments()) {
+        arguments.add(render(argument));
+      }
+      return render(parameterizedType.getRawType()) + "<" + String.join(", ", arguments) + ">";
+    }
+    Class<?> rawType = (Class<?>) type;
+    if (rawType.isArray()) {
+      return render(rawType.getComponentType()) + "[]";
+    }
+    return importType(rawType);
+  }
+
+  private String importType(Class<?> type) {
+    if (type.isPrimitive() || "java.lang".equals(type.getPackage().getName())) {
+      return type.getSimpleName();
+    }
+    String canonicalName = type.getCanonicalName();
+    String imported = importsBySimpleName.putIfAbsent(type.getSimpleName(), canonicalName);
+    return imported == null || imported.equals(canonicalName) ? type.getSimpleName() : canonicalName;
+  }
+
+  private void appendImports(StringBuilder source) {
+    String ownPackage = PACKAGE + ".";
+    Set<String> java = new TreeSet<>();
+    Set<String> org = new TreeSet<>();
+    Set<String> others = new TreeSet<>();
+    Set<String> hotels = new TreeSet<>();
+    for (String canonicalName : importsBySimpleName.values()) {
+      if (canonicalName.startsWith(ownPackage) && canonicalName.indexOf('.', ownPackage.length()) < 0) {
+        continue;
+      }
+      if (canonicalName.startsWith("java.")) {
+        java.add(canonicalName);
+      } else if (canonicalName.startsWith("org.")) {
+        org.add(canonicalName);
+      } else if (canonicalName.startsWith("com.hotels.")) {
+        hotels.add(canonicalName);
+      } else {
+        others.add(canonicalName);
+      }
+    }
+    for (Set<String> group : Arrays.asList(java, org, others, hotels)) {
+      if (group.isEmpty()) {
+        continue;
+      }
+      for (String canonicalName : group) {
+        source.append("import ").append(canonicalName).append(";\n");
+      }
+      source.append('\n');
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    String header = "";
+    if (Files.exists(SOURCE)) {
+      String existing = new String(Files.readAllBytes(SOURCE), StandardCharsets.UTF_8);
+      header = existing.substring(0, existing.indexOf("package "));
+    }
+    Files.write(SOURCE, (header + generate()).getBytes(StandardCharsets.UTF_8));
+  }
+
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+public class DispatchingMetaStoreClientGeneratorTest {
+
+  @Test
+  public void generatedClientIsUpToDate() throws IOException {
+    String source = new String(Files.readAllBytes(DispatchingMetaStoreClientGenerator.SOURCE), StandardCharsets.UTF_8);
+    assertThat("DispatchingMetaStoreClient is out of date, run DispatchingMetaStoreClientGenerator",
+        source.substring(source.indexOf("package ")), is(DispatchingMetaStoreClientGenerator.generate()));
+  }
+
+}
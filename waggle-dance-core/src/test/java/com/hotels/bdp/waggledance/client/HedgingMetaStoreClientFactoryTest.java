@@ -0,0 +1,273 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.hadoop.hive.metastore.api.NoSuchObjectException;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
+import com.hotels.bdp.waggledance.api.model.Hedging;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HedgingMetaStoreClientFactoryTest {
+
+  private static final String URIS = "thrift://a:9083,thrift://b:9083";
+
+  private @Mock CloseableThriftHiveMetastoreIface primaryBackend;
+  private @Mock CloseableThriftHiveMetastoreIface hedgeBackend;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final HedgingMetaStoreClientFactory factory = new HedgingMetaStoreClientFactory(
+      Executors.defaultThreadFactory(), meterRegistry);
+  private final AbstractMetaStore metaStore = AbstractMetaStore.newFederatedInstance("bdp", URIS);
+  private final Hedging hedging = new Hedging();
+  private final List<String> hedgeUris = new ArrayList<>();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final Table primaryTable = new Table();
+  private final Table hedgeTable = new Table();
+  private volatile boolean slow = false;
+
+  @Before
+  public void init() {
+    hedging.setEnabled(true);
+    hedging.setBudgetPercent(100);
+    metaStore.setHedging(hedging);
+    primaryTable.setTableName("primary");
+    hedgeTable.setTableName("hedge");
+  }
+
+  @After
+  public void shutdown() {
+    release.countDown();
+    factory.close();
+  }
+
+  private CloseableThriftHiveMetastoreIface newClient() {
+    return factory.newInstance(metaStore, primaryBackend, uri -> {
+      hedgeUris.add(uri);
+      return hedgeBackend;
+    });
+  }
+
+  private Answer<Table> primaryAnswer() {
+    return invocation -> {
+      if (slow) {
+        release.await(10, TimeUnit.SECONDS);
+      }
+      return primaryTable;
+    };
+  }
+
+  private void warmUp(CloseableThriftHiveMetastoreIface client) throws Exception {
+    for (int i = 0; i < MethodLatencyTracker.MIN_SAMPLES; i++) {
+      assertThat(client.get_table("db", "tbl"), is(primaryTable));
+    }
+  }
+
+  private double metric(String name) {
+    return meterRegistry.get(name).tag("metastore", "bdp").counter().count();
+  }
+
+  @Test
+  public void disabled() {
+    hedging.setEnabled(false);
+    assertThat(newClient(), is(sameInstance(primaryBackend)));
+    assertThat(hedgeUris, is(Collections.emptyList()));
+  }
+
+  @Test
+  public void singleUri() {
+    metaStore.setRemoteMetaStoreUris("thrift://a:9083");
+    assertThat(newClient(), is(sameInstance(primaryBackend)));
+    assertThat(hedgeUris, is(Collections.emptyList()));
+  }
+
+  @Test
+  public void hedgesGoToEachUri() {
+    metaStore.setRemoteMetaStoreUris("thrift://a:9083, thrift://b:9083,thrift://c:9083");
+    newClient();
+    List<String> expected = new ArrayList<>();
+    expected.add("thrift://a:9083");
+    expected.add("thrift://b:9083");
+    expected.add("thrift://c:9083");
+    assertThat(hedgeUris, is(expected));
+  }
+
+  @Test
+  public void fastReadsAreNotHedged() throws Exception {
+    when(primaryBackend.get_table("db", "tbl")).thenAnswer(primaryAnswer());
+    CloseableThriftHiveMetastoreIface client = newClient();
+    warmUp(client);
+
+    assertThat(client.get_table("db", "tbl"), is(primaryTable));
+    verifyNoInteractions(hedgeBackend);
+    assertThat(metric(HedgingMetaStoreClientFactory.HEDGED_READS_METRIC_NAME), is(21.0));
+    assertThat(metric(HedgingMetaStoreClientFactory.HEDGES_METRIC_NAME), is(0.0));
+  }
+
+  @Test
+  public void slowReadIsHedged() throws Exception {
+    when(primaryBackend.get_table("db", "tbl")).thenAnswer(primaryAnswer());
+    when(hedgeBackend.get_table("db", "tbl")).thenReturn(hedgeTable);
+    CloseableThriftHiveMetastoreIface client = newClient();
+    warmUp(client);
+
+    slow = true;
+    assertThat(client.get_table("db", "tbl"), is(hedgeTable));
+    assertThat(metric(HedgingMetaStoreClientFactory.HEDGES_METRIC_NAME), is(1.0));
+    assertThat(metric(HedgingMetaStoreClientFactory.HEDGE_WINS_METRIC_NAME), is(1.0));
+  }
+
+  @Test
+  public void readIsNotHedgedWhenThePoolIsFull() throws Exception {
+    try (HedgingMetaStoreClientFactory singleThreadFactory = new HedgingMetaStoreClientFactory(
+        Executors.defaultThreadFactory(), 1, meterRegistry)) {
+      when(primaryBackend.get_table("db", "tbl")).thenAnswer(primaryAnswer());
+      CloseableThriftHiveMetastoreIface client = singleThreadFactory
+          .newInstance(metaStore, primaryBackend, uri -> hedgeBackend);
+      warmUp(client);
+
+      slow = true;
+      // The primary call takes the only thread, the hedge is rejected and the read waits for the primary
+      ScheduledExecutorService releaser = Executors.newSingleThreadScheduledExecutor();
+      try {
+        releaser.schedule(release::countDown, 200, TimeUnit.MILLISECONDS);
+        assertThat(client.get_table("db", "tbl"), is(primaryTable));
+      } finally {
+        releaser.shutdownNow();
+      }
+      verifyNoInteractions(hedgeBackend);
+      assertThat(metric(HedgingMetaStoreClientFactory.HEDGES_METRIC_NAME), is(0.0));
+    }
+  }
+
+  @Test
+  public void failedHedgeWaitsForThePrimary() throws Exception {
+    hedging.setMinDelayMillis(50L);
+    when(primaryBackend.get_table("db", "tbl")).thenAnswer(invocation -> {
+      if (slow) {
+        Thread.sleep(200L);
+      }
+      return primaryTable;
+    });
+    when(hedgeBackend.get_table("db", "tbl")).thenThrow(new NoSuchObjectException("hedge"));
+    CloseableThriftHiveMetastoreIface client = newClient();
+    warmUp(client);
+
+    slow = true;
+    assertThat(client.get_table("db", "tbl"), is(primaryTable));
+    assertThat(metric(HedgingMetaStoreClientFactory.HEDGES_METRIC_NAME), is(1.0));
+    assertThat(metric(HedgingMetaStoreClientFactory.HEDGE_WINS_METRIC_NAME), is(0.0));
+  }
+
+  @Test
+  public void bothFailedThrowsThePrimaryError() throws Exception {
+    when(primaryBackend.get_table("db", "tbl")).thenAnswer(invocation -> {
+      if (slow) {
+        Thread.sleep(100L);
+        throw new MetaException("primary");
+      }
+      return primaryTable;
+    });
+    when(hedgeBackend.get_table("db", "tbl")).thenThrow(new MetaException("hedge"));
+    CloseableThriftHiveMetastoreIface client = newClient();
+    warmUp(client);
+
+    slow = true;
+    try {
+      client.get_table("db", "tbl");
+      fail("Expected MetaException");
+    } catch (MetaException e) {
+      assertThat(e.getMessage(), is("primary"));
+    }
+  }
+
+  @Test
+  public void budgetExhausted() throws Exception {
+    hedging.setBudgetPercent(1);
+    hedging.setMinDelayMillis(10L);
+    when(primaryBackend.get_table("db", "tbl")).thenAnswer(invocation -> {
+      if (slow) {
+        Thread.sleep(100L);
+      }
+      return primaryTable;
+    });
+    CloseableThriftHiveMetastoreIface client = newClient();
+    warmUp(client);
+
+    slow = true;
+    assertThat(client.get_table("db", "tbl"), is(primaryTable));
+    verifyNoInteractions(hedgeBackend);
+    assertThat(metric(HedgingMetaStoreClientFactory.BUDGET_EXHAUSTED_METRIC_NAME), is(1.0));
+  }
+
+  @Test
+  public void writesAreNotHedged() throws Exception {
+    CloseableThriftHiveMetastoreIface client = newClient();
+    Table table = new Table();
+    client.create_table(table);
+
+    verify(primaryBackend).create_table(table);
+    verify(hedgeBackend, never()).create_table(table);
+    assertThat(metric(HedgingMetaStoreClientFactory.HEDGED_READS_METRIC_NAME), is(0.0));
+  }
+
+  @Test
+  public void hedgedMethods() {
+    assertThat(HedgingMetaStoreClientFactory.isHedged("get_table_req"), is(true));
+    assertThat(HedgingMetaStoreClientFactory.isHedged("get_partitions_by_names"), is(true));
+    assertThat(HedgingMetaStoreClientFactory.isHedged("get_aggr_stats_for"), is(true));
+    assertThat(HedgingMetaStoreClientFactory.isHedged("get_delegation_token"), is(false));
+    assertThat(HedgingMetaStoreClientFactory.isHedged("add_partitions"), is(false));
+  }
+
+  @Test
+  public void closeClosesAllClients() throws Exception {
+    newClient().close();
+    verify(primaryBackend).close();
+    // One hedge client per URI
+    verify(hedgeBackend, times(2)).close();
+  }
+
+}
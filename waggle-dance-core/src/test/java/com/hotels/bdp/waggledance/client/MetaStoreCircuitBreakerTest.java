@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.hotels.bdp.waggledance.api.model.CircuitBreaker;
+import com.hotels.bdp.waggledance.api.model.CircuitBreakerState;
+
+public class MetaStoreCircuitBreakerTest {
+
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+  private final AtomicLong now = new AtomicLong();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final CircuitBreaker settings = new CircuitBreaker();
+  private MetaStoreCircuitBreaker breaker;
+
+  @Before
+  public void init() {
+    settings.setSlidingWindowSize(4);
+    settings.setMinimumNumberOfCalls(4);
+    settings.setFailureRateThreshold(50);
+    settings.setSlowCallRateThreshold(75);
+    settings.setSlowCallDurationMillis(1000);
+    settings.setWaitDurationInOpenStateMillis(100);
+    settings.setPermittedCallsInHalfOpenState(2);
+    breaker = new MetaStoreCircuitBreaker("fed", settings, meterRegistry, now::get);
+  }
+
+  private void call(boolean failed, long durationNanos) {
+    long generation = breaker.acquire();
+    assertThat(generation == MetaStoreCircuitBreaker.REJECTED, is(false));
+    breaker.record(generation, failed, durationNanos);
+  }
+
+  private void open() {
+    for (int i = 0; i < 4; i++) {
+      call(true, FAST);
+    }
+    assertThat(breaker.getState(), is(CircuitBreakerState.OPEN));
+  }
+
+  private double transitions(CircuitBreakerState from, CircuitBreakerState to) {
+    return meterRegistry
+        .get(CircuitBreakerMetaStoreClientFactory.TRANSITIONS_METRIC_NAME)
+        .tag("metastore", "fed")
+        .tag("from", from.name())
+        .tag("to", to.name())
+        .counter()
+        .count();
+  }
+
+  @Test
+  public void staysClosedBelowMinimumNumberOfCalls() {
+    for (int i = 0; i < 3; i++) {
+      call(true, FAST);
+    }
+    assertThat(breaker.getState(), is(CircuitBreakerState.CLOSED));
+  }
+
+  @Test
+  public void staysClosedBelowFailureRate() {
+    call(true, FAST);
+    for (int i = 0; i < 10; i++) {
+      call(false, FAST);
+    }
+    assertThat(breaker.getState(), is(CircuitBreakerState.CLOSED));
+  }
+
+  @Test
+  public void opensOnFailureRate() {
+    call(false, FAST);
+    call(false, FAST);
+    call(true, FAST);
+    call(true, FAST);
+    assertThat(breaker.getState(), is(CircuitBreakerState.OPEN));
+    assertThat(breaker.acquire(), is(MetaStoreCircuitBreaker.REJECTED));
+    assertThat(transitions(CircuitBreakerState.CLOSED, CircuitBreakerState.OPEN), is(1.0));
+  }
+
+  @Test
+  public void slidingWindowForgetsOldCalls() {
+    call(true, FAST);
+    for (int i = 0; i < 4; i++) {
+      call(false, FAST);
+    }
+    call(true, FAST);
+    assertThat(breaker.getState(), is(CircuitBreakerState.CLOSED));
+    call(true, FAST);
+    assertThat(breaker.getState(), is(CircuitBreakerState.OPEN));
+  }
+
+  @Test
+  public void opensOnSlowCallRate() {
+    call(false, SLOW);
+    call(false, SLOW);
+    call(false, FAST);
+    assertThat(breaker.getState(), is(CircuitBreakerState.CLOSED));
+    call(false, SLOW);
+    assertThat(breaker.getState(), is(CircuitBreakerState.OPEN));
+  }
+
+  @Test
+  public void halfOpenAfterWait() {
+    open();
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(99));
+    assertThat(breaker.acquire(), is(MetaStoreCircuitBreaker.REJECTED));
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+    long first = breaker.acquire();
+    assertThat(breaker.getState(), is(CircuitBreakerState.HALF_OPEN));
+    long second = breaker.acquire();
+    assertThat(second == MetaStoreCircuitBreaker.REJECTED, is(false));
+    assertThat(breaker.acquire(), is(MetaStoreCircuitBreaker.REJECTED));
+
+    breaker.record(first, false, FAST);
+    breaker.record(second, false, FAST);
+    assertThat(breaker.getState(), is(CircuitBreakerState.CLOSED));
+    assertThat(transitions(CircuitBreakerState.HALF_OPEN, CircuitBreakerState.CLOSED), is(1.0));
+  }
+
+  @Test
+  public void halfOpenFailureOpensAgain() {
+    open();
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    call(true, FAST);
+    call(false, FAST);
+    assertThat(breaker.getState(), is(CircuitBreakerState.OPEN));
+    assertThat(breaker.acquire(), is(MetaStoreCircuitBreaker.REJECTED));
+    assertThat(transitions(CircuitBreakerState.HALF_OPEN, CircuitBreakerState.OPEN), is(1.0));
+  }
+
+  @Test
+  public void closedAgainStartsFromEmptyWindow() {
+    open();
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    call(false, FAST);
+    call(false, FAST);
+    for (int i = 0; i < 3; i++) {
+      call(true, FAST);
+    }
+    assertThat(breaker.getState(), is(CircuitBreakerState.CLOSED));
+  }
+
+  @Test
+  public void resultsOfCallsStartedBeforeStateChangeAreIgnored() {
+    long late = breaker.acquire();
+    open();
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    long probe = breaker.acquire();
+    breaker.record(late, true, FAST);
+    breaker.record(probe, false, FAST);
+    assertThat(breaker.getState(), is(CircuitBreakerState.HALF_OPEN));
+    call(false, FAST);
+    assertThat(breaker.getState(), is(CircuitBreakerState.CLOSED));
+  }
+
+}
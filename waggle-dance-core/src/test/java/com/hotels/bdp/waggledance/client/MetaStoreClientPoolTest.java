@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import static com.hotels.bdp.waggledance.client.HiveUgiArgsStub.TEST_ARGS;
+
+import java.util.NoSuchElementException;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.hotels.bdp.waggledance.api.model.ConnectionPool;
+import com.hotels.bdp.waggledance.client.compatibility.HiveCompatibleThriftHiveMetastoreIfaceFactory;
+import com.hotels.bdp.waggledance.context.CommonBeans;
+import com.hotels.beeju.ThriftHiveMetaStoreJUnitRule;
+
+public class MetaStoreClientPoolTest {
+
+  private static final String NAME = "fed1";
+  private static final String DATABASE_NAME = "dbname";
+
+  public @Rule ThriftHiveMetaStoreJUnitRule hive = new ThriftHiveMetaStoreJUnitRule(DATABASE_NAME);
+
+  private final HiveConf hiveConf = new HiveConf();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final MetaStoreClientPoolMetrics metrics = new MetaStoreClientPoolMetrics(meterRegistry);
+  private final ConnectionPool connectionPool = new ConnectionPool();
+  private MetaStoreClientPool pool;
+
+  @Before
+  public void init() {
+    hiveConf.setVar(ConfVars.METASTOREURIS, hive.getThriftConnectionUri());
+    connectionPool.setMaxTotal(2);
+    connectionPool.setMaxWaitMillis(0L);
+    pool = newPool();
+  }
+
+  @After
+  public void close() {
+    pool.close();
+  }
+
+  private MetaStoreClientPool newPool() {
+    return new MetaStoreClientPool(NAME, connectionPool,
+        () -> new ThriftMetastoreClientManager(hiveConf, new HiveCompatibleThriftHiveMetastoreIfaceFactory(), 1000),
+        metrics);
+  }
+
+  @Test
+  public void connectionIsReused() throws Exception {
+    ThriftMetastoreClientManager connection = pool.borrow(null);
+    assertNotNull(connection.getClient().get_database(DATABASE_NAME));
+    pool.release(null, connection);
+
+    assertThat(pool.borrow(null), is(sameInstance(connection)));
+  }
+
+  @Test
+  public void connectionsArePartitionedByUgi() throws Exception {
+    ThriftMetastoreClientManager connection = pool.borrow(null);
+    pool.release(null, connection);
+
+    ThriftMetastoreClientManager ugiConnection = pool.borrow(TEST_ARGS);
+    assertThat(ugiConnection, is(not(sameInstance(connection))));
+    assertNotNull(ugiConnection.getClient().get_database(DATABASE_NAME));
+    pool.release(TEST_ARGS, ugiConnection);
+
+    assertThat(pool.borrow(TEST_ARGS), is(sameInstance(ugiConnection)));
+  }
+
+  @Test
+  public void impersonatingConnectionsArePartitionedByUser() throws Exception {
+    HiveConf impersonatingConf = new HiveConf(hiveConf);
+    impersonatingConf.setBoolean(CommonBeans.IMPERSONATION_ENABLED_KEY, true);
+    DelegationTokenService delegationTokens = mock(DelegationTokenService.class);
+    when(delegationTokens.getToken(anyString(), anyString(), any())).thenReturn("token");
+    MetaStoreClientPool impersonatingPool = new MetaStoreClientPool(NAME, connectionPool,
+        () -> new ThriftMetastoreClientManager(impersonatingConf, new HiveCompatibleThriftHiveMetastoreIfaceFactory(),
+            1000, MetaStoreUriBalancer::new, uris -> new ReconnectCoordinator(), delegationTokens),
+        true, metrics);
+    ClientSession alice = new ClientSession();
+    alice.setUser("alice");
+    ClientSession bob = new ClientSession();
+    bob.setUser("bob");
+    try {
+      ThriftMetastoreClientManager aliceConnection;
+      try (ClientSession.Binding binding = alice.bind()) {
+        aliceConnection = impersonatingPool.borrow(TEST_ARGS);
+        impersonatingPool.release(TEST_ARGS, aliceConnection);
+        assertThat(impersonatingPool.borrow(TEST_ARGS), is(sameInstance(aliceConnection)));
+      }
+      try (ClientSession.Binding binding = bob.bind()) {
+        ThriftMetastoreClientManager bobConnection = impersonatingPool.borrow(TEST_ARGS);
+        assertThat(bobConnection, is(not(sameInstance(aliceConnection))));
+        assertNotNull(bobConnection.getClient().get_database(DATABASE_NAME));
+      }
+      verify(delegationTokens).getToken(anyString(), eq("alice"), any());
+      verify(delegationTokens).getToken(anyString(), eq("bob"), any());
+    } finally {
+      impersonatingPool.close();
+    }
+  }
+
+  @Test
+  public void invalidatedConnectionIsClosed() throws Exception {
+    ThriftMetastoreClientManager connection = pool.borrow(null);
+    pool.invalidate(null, connection);
+
+    assertThat(connection.isOpen(), is(false));
+    assertThat(pool.borrow(null), is(not(sameInstance(connection))));
+  }
+
+  @Test
+  public void closedConnectionIsNotBorrowed() throws Exception {
+    ThriftMetastoreClientManager connection = pool.borrow(null);
+    pool.release(null, connection);
+    connection.close();
+
+    assertThat(pool.borrow(null), is(not(sameInstance(connection))));
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void maxTotal() throws Exception {
+    pool.borrow(null);
+    pool.borrow(TEST_ARGS);
+    pool.borrow(null);
+  }
+
+  @Test
+  public void gauges() throws Exception {
+    ThriftMetastoreClientManager connection = pool.borrow(null);
+    pool.release(TEST_ARGS, pool.borrow(TEST_ARGS));
+
+    assertThat(gauge(MetaStoreClientPoolMetrics.ACTIVE_METRIC_NAME), is(1.0));
+    assertThat(gauge(MetaStoreClientPoolMetrics.IDLE_METRIC_NAME), is(1.0));
+    assertThat(gauge(MetaStoreClientPoolMetrics.WAITERS_METRIC_NAME), is(0.0));
+    assertThat(meterRegistry
+        .get(MetaStoreClientPoolMetrics.BORROW_METRIC_NAME)
+        .tag(MetaStoreClientPoolMetrics.METASTORE_TAG_NAME, NAME)
+        .timer()
+        .count(), is(2L));
+    pool.release(null, connection);
+  }
+
+  @Test
+  public void gaugesSumPoolsOfTheSameMetastore() throws Exception {
+    MetaStoreClientPool other = newPool();
+    try {
+      pool.borrow(null);
+      other.borrow(null);
+      assertThat(gauge(MetaStoreClientPoolMetrics.ACTIVE_METRIC_NAME), is(2.0));
+    } finally {
+      other.close();
+    }
+    assertThat(gauge(MetaStoreClientPoolMetrics.ACTIVE_METRIC_NAME), is(1.0));
+  }
+
+  private double gauge(String metricName) {
+    return meterRegistry
+        .get(metricName)
+        .tag(MetaStoreClientPoolMetrics.METASTORE_TAG_NAME, NAME)
+        .gauge()
+        .value();
+  }
+
+}
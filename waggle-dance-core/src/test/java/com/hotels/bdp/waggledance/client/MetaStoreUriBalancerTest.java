@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class MetaStoreUriBalancerTest {
+
+  private static final URI FIRST = URI.create("thrift://first:9083");
+  private static final URI SECOND = URI.create("thrift://second:9083");
+  private static final URI THIRD = URI.create("thrift://third:9083");
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private long now = 1L;
+  private final MetaStoreUriBalancer balancer = new MetaStoreUriBalancer(new URI[] { FIRST, SECOND, THIRD },
+      () -> now);
+
+  private MetaStoreUriBalancer.Instance instance(URI uri) {
+    for (MetaStoreUriBalancer.Instance instance : balancer.order()) {
+      if (instance.getUri().equals(uri)) {
+        return instance;
+      }
+    }
+    throw new IllegalArgumentException(uri.toString());
+  }
+
+  private void calls(URI uri, int calls, long latencyNanos) {
+    calls(uri, "get_table", calls, latencyNanos);
+  }
+
+  private void calls(URI uri, String methodName, int calls, long latencyNanos) {
+    MetaStoreUriBalancer.Instance instance = instance(uri);
+    for (int i = 0; i < calls; i++) {
+      balancer.callStarted(instance);
+      balancer.callEnded(instance, methodName, latencyNanos, false);
+    }
+  }
+
+  private URI first() {
+    return balancer.order().get(0).getUri();
+  }
+
+  @Test
+  public void unknownInstancesAreSpreadEvenly() {
+    Map<URI, Integer> firsts = new HashMap<>();
+    for (int i = 0; i < 30; i++) {
+      firsts.merge(first(), 1, Integer::sum);
+    }
+    assertThat(firsts.get(FIRST), is(10));
+    assertThat(firsts.get(SECOND), is(10));
+    assertThat(firsts.get(THIRD), is(10));
+  }
+
+  @Test
+  public void fastestInstanceFirst() {
+    calls(FIRST, 5, SLOW);
+    calls(SECOND, 5, FAST);
+    calls(THIRD, 5, SLOW * 2);
+
+    List<MetaStoreUriBalancer.Instance> order = balancer.order();
+    assertThat(order.get(0).getUri(), is(SECOND));
+    assertThat(order.get(1).getUri(), is(FIRST));
+    assertThat(order.get(2).getUri(), is(THIRD));
+  }
+
+  @Test
+  public void leastLoadedInstanceFirst() {
+    calls(FIRST, 5, FAST);
+    calls(SECOND, 5, FAST);
+    calls(THIRD, 5, FAST);
+    balancer.callStarted(instance(FIRST));
+    balancer.callStarted(instance(SECOND));
+    balancer.callStarted(instance(SECOND));
+
+    assertThat(first(), is(THIRD));
+    assertThat(balancer.order().get(2).getUri(), is(SECOND));
+  }
+
+  @Test
+  public void failedInstanceLast() {
+    calls(FIRST, 5, FAST);
+    calls(SECOND, 5, SLOW);
+    calls(THIRD, 5, SLOW);
+    balancer.failed(instance(FIRST));
+
+    assertThat(balancer.order().get(2).getUri(), is(FIRST));
+    assertThat(balancer.isEjected(instance(FIRST)), is(false));
+  }
+
+  @Test
+  public void successResetsFailures() {
+    calls(FIRST, 5, FAST);
+    calls(SECOND, 5, SLOW);
+    calls(THIRD, 5, SLOW);
+    balancer.failed(instance(FIRST));
+    calls(FIRST, 1, FAST);
+
+    assertThat(first(), is(FIRST));
+  }
+
+  @Test
+  public void consecutiveFailuresEject() {
+    MetaStoreUriBalancer.Instance instance = instance(FIRST);
+    for (int i = 0; i < MetaStoreUriBalancer.EJECTION_FAILURES; i++) {
+      balancer.callStarted(instance);
+      balancer.callEnded(instance, "get_table", FAST, true);
+    }
+    assertThat(balancer.isEjected(instance), is(true));
+    assertThat(instance.getInFlight(), is(0));
+  }
+
+  @Test
+  public void slowOutlierIsEjected() {
+    calls(SECOND, MetaStoreUriBalancer.OUTLIER_MIN_CALLS, FAST);
+    calls(THIRD, MetaStoreUriBalancer.OUTLIER_MIN_CALLS, FAST);
+    calls(FIRST, MetaStoreUriBalancer.OUTLIER_MIN_CALLS, FAST * 10);
+
+    assertThat(balancer.isEjected(instance(FIRST)), is(true));
+    assertThat(balancer.order().get(2).getUri(), is(FIRST));
+  }
+
+  @Test
+  public void longRunningCallsAreNotCompared() {
+    calls(SECOND, MetaStoreUriBalancer.OUTLIER_MIN_CALLS, FAST);
+    calls(THIRD, MetaStoreUriBalancer.OUTLIER_MIN_CALLS, FAST);
+    calls(FIRST, MetaStoreUriBalancer.OUTLIER_MIN_CALLS, FAST);
+    calls(FIRST, "get_partitions_by_filter", MetaStoreUriBalancer.OUTLIER_MIN_CALLS, FAST * 10);
+
+    assertThat(balancer.isEjected(instance(FIRST)), is(false));
+    assertThat(instance(FIRST).getLatencyNanos(), is((double) FAST));
+    assertThat(instance(FIRST).getInFlight(), is(0));
+  }
+
+  @Test
+  public void atMostHalfTheInstancesAreEjected() {
+    for (URI uri : new URI[] { FIRST, SECOND }) {
+      for (int i = 0; i < MetaStoreUriBalancer.EJECTION_FAILURES; i++) {
+        balancer.failed(instance(uri));
+      }
+    }
+    assertThat(balancer.isEjected(instance(FIRST)), is(true));
+    assertThat(balancer.isEjected(instance(SECOND)), is(false));
+  }
+
+  @Test
+  public void ejectedInstanceIsReadmitted() {
+    calls(SECOND, 5, SLOW);
+    calls(THIRD, 5, SLOW);
+    for (int i = 0; i < MetaStoreUriBalancer.EJECTION_FAILURES; i++) {
+      balancer.failed(instance(FIRST));
+    }
+    now += MetaStoreUriBalancer.EJECTION_NANOS;
+
+    assertThat(balancer.isEjected(instance(FIRST)), is(false));
+    // Never called since readmitted
+    assertThat(first(), is(FIRST));
+  }
+
+  @Test
+  public void singleInstance() {
+    MetaStoreUriBalancer single = new MetaStoreUriBalancer(new URI[] { FIRST }, () -> now);
+    MetaStoreUriBalancer.Instance instance = single.order().get(0);
+    for (int i = 0; i < MetaStoreUriBalancer.EJECTION_FAILURES; i++) {
+      single.failed(instance);
+    }
+    assertThat(single.isEjected(instance), is(false));
+    assertThat(single.order().get(0).getUri(), is(FIRST));
+  }
+
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+
+public class MethodLatencyTrackerTest {
+
+  private final MethodLatencyTracker tracker = new MethodLatencyTracker(95);
+
+  @Test
+  public void unknownUntilEnoughSamples() {
+    for (int i = 1; i < MethodLatencyTracker.MIN_SAMPLES; i++) {
+      tracker.record(i);
+    }
+    assertThat(tracker.getPercentileNanos(), is(MethodLatencyTracker.UNKNOWN));
+    tracker.record(MethodLatencyTracker.MIN_SAMPLES);
+    assertThat(tracker.getPercentileNanos(), is(20L));
+  }
+
+  @Test
+  public void percentile() {
+    // Computed on the 20th sample and every 32 samples after it
+    for (int i = 1; i <= 116; i++) {
+      tracker.record(i);
+    }
+    assertThat(tracker.getPercentileNanos(), is(111L));
+  }
+
+  @Test
+  public void onlyRecentSamples() {
+    for (int i = 0; i < MethodLatencyTracker.WINDOW_SIZE; i++) {
+      tracker.record(1000L);
+    }
+    for (int i = 0; i < MethodLatencyTracker.WINDOW_SIZE; i++) {
+      tracker.record(10L);
+    }
+    assertThat(tracker.getPercentileNanos(), is(10L));
+  }
+
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ReconnectCoordinatorTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final AtomicLong now = new AtomicLong(SECOND);
+  private final ReconnectCoordinator coordinator = new ReconnectCoordinator(now::get);
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void upMetastoreNeverWaits() throws Exception {
+    assertThat(coordinator.awaitTurn(now.get()), is(true));
+    assertThat(coordinator.awaitTurn(now.get()), is(true));
+    assertThat(coordinator.isDown(), is(false));
+  }
+
+  @Test
+  public void downMetastoreWaitsForTheBackoff() throws Exception {
+    coordinator.connectFailed(SECOND);
+    assertThat(coordinator.isDown(), is(true));
+    assertThat(coordinator.awaitTurn(now.get()), is(false));
+
+    now.addAndGet(SECOND * 3);
+    assertThat(coordinator.awaitTurn(now.get()), is(true));
+  }
+
+  @Test
+  public void singleProbe() throws Exception {
+    coordinator.connectFailed(0);
+    now.addAndGet(ReconnectCoordinator.MAX_DELAY_NANOS);
+    assertThat(coordinator.awaitTurn(now.get()), is(true));
+    // The first caller is probing
+    assertThat(coordinator.awaitTurn(now.get()), is(false));
+  }
+
+  @Test
+  public void waitingCallersGoWhenTheProbeConnects() throws Exception {
+    coordinator.connectFailed(0);
+    now.addAndGet(ReconnectCoordinator.MAX_DELAY_NANOS);
+    assertThat(coordinator.awaitTurn(now.get()), is(true));
+
+    CountDownLatch waiting = new CountDownLatch(1);
+    Future<Boolean> waiter = executor.submit(() -> {
+      waiting.countDown();
+      return coordinator.awaitTurn(now.get() + ReconnectCoordinator.MAX_DELAY_NANOS);
+    });
+    waiting.await();
+    coordinator.connected();
+
+    assertThat(waiter.get(5, TimeUnit.SECONDS), is(true));
+    assertThat(coordinator.isDown(), is(false));
+  }
+
+  @Test
+  public void backoffGrowsUpToTheMaximum() throws Exception {
+    long base = TimeUnit.MILLISECONDS.toNanos(500);
+    coordinator.connectFailed(base);
+    for (int i = 0; i < 50; i++) {
+      now.addAndGet(ReconnectCoordinator.MAX_DELAY_NANOS);
+      assertThat(coordinator.awaitTurn(now.get()), is(true));
+      coordinator.connectFailed(base);
+    }
+    now.addAndGet(base - 1);
+    assertThat(coordinator.awaitTurn(now.get()), is(false));
+    now.addAndGet(ReconnectCoordinator.MAX_DELAY_NANOS);
+    assertThat(coordinator.awaitTurn(now.get()), is(true));
+  }
+
+  @Test
+  public void concurrentFailuresDoNotCompoundTheBackoff() throws Exception {
+    long base = TimeUnit.MILLISECONDS.toNanos(500);
+    int connections = 16;
+    for (int i = 0; i < connections; i++) {
+      assertThat(coordinator.awaitTurn(now.get()), is(true));
+    }
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> failures = new ArrayList<>();
+    for (int i = 0; i < connections; i++) {
+      failures.add(executor.submit(() -> {
+        start.await();
+        coordinator.connectFailed(base);
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> failure : failures) {
+      failure.get(5, TimeUnit.SECONDS);
+    }
+    assertThat(coordinator.isDown(), is(true));
+    // Only the first failure set the backoff, to the base delay
+    now.addAndGet(base);
+    assertThat(coordinator.awaitTurn(now.get()), is(true));
+  }
+
+  @Test
+  public void otherFailuresDoNotInterruptTheProbe() throws Exception {
+    coordinator.connectFailed(0);
+    now.addAndGet(ReconnectCoordinator.MAX_DELAY_NANOS);
+    assertThat(coordinator.awaitTurn(now.get()), is(true));
+
+    executor.submit(() -> coordinator.connectFailed(0)).get(5, TimeUnit.SECONDS);
+    // This caller is still probing
+    Future<Boolean> other = executor.submit(() -> coordinator.awaitTurn(now.get()));
+    assertThat(other.get(5, TimeUnit.SECONDS), is(false));
+
+    coordinator.connectFailed(0);
+    other = executor.submit(() -> coordinator.awaitTurn(now.get()));
+    assertThat(other.get(5, TimeUnit.SECONDS), is(false));
+    now.addAndGet(ReconnectCoordinator.MAX_DELAY_NANOS);
+    other = executor.submit(() -> coordinator.awaitTurn(now.get()));
+    assertThat(other.get(5, TimeUnit.SECONDS), is(true));
+  }
+
+  @Test
+  public void retryBudget() {
+    for (int i = 0; i < ReconnectCoordinator.MAX_RETRY_TOKENS / ReconnectCoordinator.RETRY_COST; i++) {
+      assertThat(coordinator.tryRetry(), is(true));
+    }
+    assertThat(coordinator.tryRetry(), is(false));
+
+    for (int i = 0; i < ReconnectCoordinator.RETRY_COST / ReconnectCoordinator.RETRY_DEPOSIT; i++) {
+      coordinator.succeeded();
+    }
+    assertThat(coordinator.tryRetry(), is(true));
+    assertThat(coordinator.tryRetry(), is(false));
+  }
+
+  @Test
+  public void retryBudgetRefillsOverTime() {
+    while (coordinator.tryRetry()) {
+      // drain
+    }
+    now.addAndGet(SECOND);
+    assertThat(coordinator.tryRetry(), is(true));
+    assertThat(coordinator.tryRetry(), is(false));
+  }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.thrift.TException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SessionScopedMetaStoreClientFactoryTest {
+
+  private final List<CloseableThriftHiveMetastoreIface> created = new ArrayList<>();
+  private CloseableThriftHiveMetastoreIface client;
+
+  @Before
+  public void init() {
+    client = new SessionScopedMetaStoreClientFactory().newInstance("name", () -> {
+      CloseableThriftHiveMetastoreIface backend = mock(CloseableThriftHiveMetastoreIface.class);
+      created.add(backend);
+      return backend;
+    });
+  }
+
+  @Test
+  public void clientIsCreatedLazily() {
+    assertThat(created.size(), is(0));
+  }
+
+  @Test
+  public void sameSessionReusesClient() throws TException {
+    ClientSession session = new ClientSession();
+    try (ClientSession.Binding binding = session.bind()) {
+      client.getVersion();
+      client.getVersion();
+    }
+    try (ClientSession.Binding binding = session.bind()) {
+      client.getVersion();
+    }
+    assertThat(created.size(), is(1));
+    verify(created.get(0), times(3)).getVersion();
+  }
+
+  @Test
+  public void sessionsGetTheirOwnClient() throws TException {
+    try (ClientSession.Binding binding = new ClientSession().bind()) {
+      client.set_ugi("user1", null);
+    }
+    try (ClientSession.Binding binding = new ClientSession().bind()) {
+      client.set_ugi("user2", null);
+    }
+    assertThat(created.size(), is(2));
+    verify(created.get(0)).set_ugi("user1", null);
+    verify(created.get(1)).set_ugi("user2", null);
+  }
+
+  @Test
+  public void callsWithoutSessionShareClient() throws TException {
+    client.getVersion();
+    client.getVersion();
+    assertThat(created.size(), is(1));
+  }
+
+  @Test
+  public void closingSessionClosesItsClient() throws Exception {
+    ClientSession session = new ClientSession();
+    try (ClientSession.Binding binding = session.bind()) {
+      client.getVersion();
+    }
+    session.close();
+    verify(created.get(0)).close();
+
+    try (ClientSession.Binding binding = session.bind()) {
+      client.getVersion();
+    }
+    assertThat(created.size(), is(2));
+  }
+
+  @Test
+  public void closeReleasesAllClients() throws Exception {
+    try (ClientSession.Binding binding = new ClientSession().bind()) {
+      client.getVersion();
+    }
+    client.getVersion();
+    client.close();
+    verify(created.get(0)).close();
+    verify(created.get(1)).close();
+  }
+
+  @Test(expected = TException.class)
+  public void exceptionIsUnwrapped() throws TException {
+    client.getVersion();
+    when(created.get(0).getVersion()).thenThrow(new TException("error"));
+    client.getVersion();
+  }
+
+}
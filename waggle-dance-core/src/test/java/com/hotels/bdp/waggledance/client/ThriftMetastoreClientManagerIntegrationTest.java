@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,10 @@ package com.hotels.bdp.waggledance.client;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import static com.hotels.bdp.waggledance.client.HiveUgiArgsStub.TEST_ARGS;
 
@@ -28,9 +32,11 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import com.hotels.bdp.waggledance.client.compatibility.HiveCompatibleThriftHiveMetastoreIfaceFactory;
+import com.hotels.bdp.waggledance.context.CommonBeans;
 import com.hotels.beeju.ThriftHiveMetaStoreJUnitRule;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -42,6 +48,7 @@ public class ThriftMetastoreClientManagerIntegrationTest {
   private final String databaseName = "dbname";
 
   public @Rule ThriftHiveMetaStoreJUnitRule hive = new ThriftHiveMetaStoreJUnitRule(databaseName);
+  private @Mock DelegationTokenService delegationTokens;
   private ThriftMetastoreClientManager manager;
 
   @Before
@@ -58,6 +65,19 @@ public class ThriftMetastoreClientManagerIntegrationTest {
     assertNotNull(database);
   }
 
+  @Test
+  public void openImpersonatingConnectsOnce() throws Exception {
+    hiveConf.setBoolean(CommonBeans.IMPERSONATION_ENABLED_KEY, true);
+    when(delegationTokens.getToken(eq(hive.getThriftConnectionUri()), eq("alice"), any())).thenReturn("token");
+    manager = new ThriftMetastoreClientManager(hiveConf, hiveCompatibleThriftHiveMetastoreIfaceFactory,
+        connectionTimeout, MetaStoreUriBalancer::new, uris -> new ReconnectCoordinator(), delegationTokens);
+
+    manager.open(TEST_ARGS, "alice");
+
+    assertNotNull(manager.getClient().get_database(databaseName));
+    verify(delegationTokens).getToken(eq(hive.getThriftConnectionUri()), eq("alice"), any());
+  }
+
   @Test
   public void reconnect() throws Exception {
     manager.reconnect(TEST_ARGS);
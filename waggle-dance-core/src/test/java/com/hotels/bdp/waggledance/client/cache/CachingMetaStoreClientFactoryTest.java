@@ -0,0 +1,387 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client.cache;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assume.assumeNoException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.hive.metastore.api.AggrStats;
+import org.apache.hadoop.hive.metastore.api.ColumnStatistics;
+import org.apache.hadoop.hive.metastore.api.ColumnStatisticsData;
+import org.apache.hadoop.hive.metastore.api.ColumnStatisticsDesc;
+import org.apache.hadoop.hive.metastore.api.ColumnStatisticsObj;
+import org.apache.hadoop.hive.metastore.api.Database;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.LongColumnStatsData;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.PartitionsByExprRequest;
+import org.apache.hadoop.hive.metastore.api.PartitionsByExprResult;
+import org.apache.hadoop.hive.metastore.api.PartitionsStatsRequest;
+import org.apache.hadoop.hive.metastore.api.PartitionsStatsResult;
+import org.apache.hadoop.hive.metastore.api.SerDeInfo;
+import org.apache.hadoop.hive.metastore.api.SetPartitionsStatsRequest;
+import org.apache.hadoop.hive.metastore.api.StorageDescriptor;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hadoop.hive.metastore.api.TableStatsRequest;
+import org.apache.hadoop.hive.metastore.api.TableStatsResult;
+import org.apache.hadoop.hive.ql.exec.SerializationUtilities;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNotNull;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
+import com.hotels.bdp.waggledance.api.model.MetadataCache;
+import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIface;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CachingMetaStoreClientFactoryTest {
+
+  private static final String DB = "db";
+  private static final String TBL = "tbl";
+  private static final FieldSchema COLUMN = new FieldSchema("col", "string", null);
+  private static final FieldSchema PARTITION_KEY = new FieldSchema("part", "string", null);
+
+  private @Mock CloseableThriftHiveMetastoreIface client;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AbstractMetaStore metaStore = AbstractMetaStore.newFederatedInstance("fed", "uri");
+  private CloseableThriftHiveMetastoreIface cachingClient;
+
+  @Before
+  public void init() {
+    MetadataCache metadataCache = new MetadataCache();
+    metadataCache.setEnabled(true);
+    metadataCache.setNotificationPollIntervalMillis(0);
+    metaStore.setMetadataCache(metadataCache);
+    cachingClient = new CachingMetaStoreClientFactory(meterRegistry).newInstance(metaStore, client);
+  }
+
+  private static Table newTable(String name, String serializationLib) {
+    Table table = new Table();
+    table.setDbName(DB);
+    table.setTableName(name);
+    StorageDescriptor sd = new StorageDescriptor();
+    sd.setCols(new ArrayList<>(Collections.singletonList(COLUMN)));
+    sd.setSerdeInfo(new SerDeInfo(null, serializationLib, Collections.emptyMap()));
+    table.setSd(sd);
+    table.setPartitionKeys(new ArrayList<>(Collections.singletonList(PARTITION_KEY)));
+    return table;
+  }
+
+  @Test
+  public void cacheDisabled() {
+    AbstractMetaStore metaStore = AbstractMetaStore.newFederatedInstance("fed", "uri");
+    assertThat(new CachingMetaStoreClientFactory(meterRegistry).newInstance(metaStore, client), is(sameInstance(client)));
+    metaStore.setMetadataCache(new MetadataCache());
+    assertThat(new CachingMetaStoreClientFactory(meterRegistry).newInstance(metaStore, client), is(sameInstance(client)));
+  }
+
+  @Test
+  public void getDatabase() throws Exception {
+    when(client.get_database(DB)).thenReturn(new Database(DB, null, null, null));
+    Database first = cachingClient.get_database(DB);
+    first.setName("transformed");
+    assertThat(cachingClient.get_database(DB).getName(), is(DB));
+    verify(client).get_database(DB);
+    assertThat(meterRegistry.get(MetaStoreMetadataCache.HITS_METRIC_NAME).counter().count(), is(1.0));
+    assertThat(meterRegistry.get(MetaStoreMetadataCache.MISSES_METRIC_NAME).counter().count(), is(1.0));
+  }
+
+  @Test
+  public void getTable() throws Exception {
+    Table table = newTable(TBL, null);
+    when(client.get_table(DB, TBL)).thenReturn(table);
+    assertThat(cachingClient.get_table(DB, TBL), is(table));
+    Table cached = cachingClient.get_table(DB, "TBL");
+    assertThat(cached, is(table));
+    assertThat(cached, is(not(sameInstance(table))));
+    verify(client).get_table(DB, TBL);
+  }
+
+  @Test
+  public void alterTableInvalidatesTable() throws Exception {
+    Table table = newTable(TBL, null);
+    when(client.get_table(DB, TBL)).thenReturn(table);
+    cachingClient.get_table(DB, TBL);
+    cachingClient.alter_table(DB, TBL, table);
+    cachingClient.get_table(DB, TBL);
+    verify(client, times(2)).get_table(DB, TBL);
+  }
+
+  @Test
+  public void dropDatabaseInvalidatesTables() throws Exception {
+    when(client.get_table(DB, TBL)).thenReturn(newTable(TBL, null));
+    cachingClient.get_table(DB, TBL);
+    cachingClient.drop_database(DB, false, true);
+    cachingClient.get_table(DB, TBL);
+    verify(client, times(2)).get_table(DB, TBL);
+  }
+
+  @Test
+  public void getTableObjectsByNameFetchesMissingTables() throws Exception {
+    Table cached = newTable("cached", null);
+    Table missing = newTable("missing", null);
+    when(client.get_table(DB, "cached")).thenReturn(cached);
+    when(client.get_table_objects_by_name(DB, Arrays.asList("missing", "unknown")))
+        .thenReturn(Collections.singletonList(missing));
+    cachingClient.get_table(DB, "cached");
+
+    List<Table> tables = cachingClient.get_table_objects_by_name(DB, Arrays.asList("missing", "cached", "unknown"));
+    assertThat(tables, is(Arrays.asList(missing, cached)));
+    assertThat(cachingClient.get_table(DB, "missing"), is(missing));
+    verify(client).get_table(DB, "cached");
+    verify(client).get_table_objects_by_name(DB, Arrays.asList("missing", "unknown"));
+    verifyNoMoreInteractions(client);
+  }
+
+  @Test
+  public void getFieldsFromCachedTable() throws Exception {
+    when(client.get_table(DB, TBL)).thenReturn(newTable(TBL, "org.apache.hadoop.hive.ql.io.orc.OrcSerde"));
+    cachingClient.get_table(DB, TBL);
+    assertThat(cachingClient.get_fields(DB, TBL), is(Collections.singletonList(COLUMN)));
+    assertThat(cachingClient.get_schema(DB, TBL), is(Arrays.asList(COLUMN, PARTITION_KEY)));
+    verify(client).get_table(DB, TBL);
+    verifyNoMoreInteractions(client);
+  }
+
+  @Test
+  public void getFieldsOfTableNotCached() throws Exception {
+    List<FieldSchema> fields = Collections.singletonList(COLUMN);
+    when(client.get_fields(DB, TBL)).thenReturn(fields);
+    assertThat(cachingClient.get_fields(DB, TBL), is(fields));
+  }
+
+  @Test
+  public void getFieldsOfTableWithSerdeSchema() throws Exception {
+    when(client.get_table(DB, TBL)).thenReturn(newTable(TBL, "org.apache.hadoop.hive.serde2.avro.AvroSerDe"));
+    List<FieldSchema> fields = Collections.singletonList(new FieldSchema("avro", "string", null));
+    when(client.get_fields(DB, TBL)).thenReturn(fields);
+    cachingClient.get_table(DB, TBL);
+    assertThat(cachingClient.get_fields(DB, TBL), is(fields));
+  }
+
+  private CloseableThriftHiveMetastoreIface newPartitionCachingClient() throws Exception {
+    metaStore.getMetadataCache().setPartitionsEnabled(true);
+    Table table = newTable(TBL, null);
+    when(client.get_table(DB, TBL)).thenReturn(table);
+    when(client.get_partition_names(DB, TBL, (short) -1)).thenReturn(Arrays.asList("part=a", "part=b"));
+    when(client.get_partitions_by_names(DB, TBL, Arrays.asList("part=a", "part=b")))
+        .thenReturn(Arrays.asList(newPartition("a"), newPartition("b")));
+    return new CachingMetaStoreClientFactory(meterRegistry).newInstance(metaStore, client);
+  }
+
+  private static Partition newPartition(String value) {
+    Partition partition = new Partition();
+    partition.setDbName(DB);
+    partition.setTableName(TBL);
+    partition.setValues(Collections.singletonList(value));
+    return partition;
+  }
+
+  @Test
+  public void getPartitions() throws Exception {
+    CloseableThriftHiveMetastoreIface cachingClient = newPartitionCachingClient();
+    assertThat(cachingClient.get_partition_names(DB, TBL, (short) -1), is(Arrays.asList("part=a", "part=b")));
+    assertThat(cachingClient.get_partitions_by_names(DB, TBL, Collections.singletonList("part=b")),
+        is(Collections.singletonList(newPartition("b"))));
+    assertThat(cachingClient.get_partitions_ps(DB, TBL, Collections.singletonList("a"), (short) -1),
+        is(Collections.singletonList(newPartition("a"))));
+    assertThat(cachingClient.get_partitions(DB, TBL, (short) 1), is(Collections.singletonList(newPartition("a"))));
+    verify(client).get_partition_names(DB, TBL, (short) -1);
+    verify(client).get_partitions_by_names(DB, TBL, Arrays.asList("part=a", "part=b"));
+  }
+
+  @Test
+  public void getPartitionsByExpr() throws Exception {
+    ExprNodeGenericFuncDesc expr = ExprNodeGenericFuncDesc
+        .newInstance(new GenericUDFOPNotNull(),
+            new ArrayList<>(Collections
+                .singletonList(new ExprNodeColumnDesc(TypeInfoFactory.stringTypeInfo, "part", null, true))));
+    byte[] serializedExpr = null;
+    try {
+      serializedExpr = SerializationUtilities.serializeExpressionToKryo(expr);
+    } catch (RuntimeException e) {
+      // Hive can't use Kryo on Java 17 without opening java.base
+      assumeNoException(e);
+    }
+    metaStore.getMetadataCache().setPartitionsEnabled(true);
+    when(client.get_table(DB, TBL)).thenReturn(newTable(TBL, null));
+    List<String> names = Arrays.asList("part=__HIVE_DEFAULT_PARTITION__", "part=a");
+    when(client.get_partition_names(DB, TBL, (short) -1)).thenReturn(names);
+    when(client.get_partitions_by_names(DB, TBL, names))
+        .thenReturn(Arrays.asList(newPartition("__HIVE_DEFAULT_PARTITION__"), newPartition("a")));
+    CloseableThriftHiveMetastoreIface cachingClient = new CachingMetaStoreClientFactory(meterRegistry)
+        .newInstance(metaStore, client);
+    PartitionsByExprRequest request = new PartitionsByExprRequest(DB, TBL, ByteBuffer.wrap(serializedExpr));
+
+    PartitionsByExprResult result = cachingClient.get_partitions_by_expr(request);
+    assertThat(result.getPartitions(), is(Collections.singletonList(newPartition("a"))));
+    assertThat(result.isHasUnknownPartitions(), is(false));
+  }
+
+  @Test
+  public void getPartitionsByUnreadableExpr() throws Exception {
+    CloseableThriftHiveMetastoreIface cachingClient = newPartitionCachingClient();
+    PartitionsByExprRequest request = new PartitionsByExprRequest(DB, TBL, ByteBuffer.wrap(new byte[] { 1 }));
+    PartitionsByExprResult result = new PartitionsByExprResult(Collections.emptyList(), false);
+    when(client.get_partitions_by_expr(request)).thenReturn(result);
+    assertThat(cachingClient.get_partitions_by_expr(request), is(result));
+  }
+
+  @Test
+  public void getPartitionsOfLargeTable() throws Exception {
+    metaStore.getMetadataCache().setMaxPartitionsPerTable(1);
+    CloseableThriftHiveMetastoreIface cachingClient = newPartitionCachingClient();
+    List<Partition> partitions = Collections.singletonList(newPartition("b"));
+    when(client.get_partitions_by_names(DB, TBL, Collections.singletonList("part=b"))).thenReturn(partitions);
+    assertThat(cachingClient.get_partitions_by_names(DB, TBL, Collections.singletonList("part=b")), is(partitions));
+  }
+
+  @Test
+  public void partitionWriteInvalidatesPartitions() throws Exception {
+    metaStore.getMetadataCache().setPartitionsEnabled(true);
+    when(client.get_table(DB, TBL)).thenReturn(newTable(TBL, null));
+    when(client.get_partition_names(DB, TBL, (short) -1)).thenReturn(Collections.emptyList());
+    CloseableThriftHiveMetastoreIface cachingClient = new CachingMetaStoreClientFactory(meterRegistry)
+        .newInstance(metaStore, client);
+    cachingClient.get_partition_names(DB, TBL, (short) -1);
+    cachingClient.add_partition(newPartition("c"));
+    cachingClient.get_partition_names(DB, TBL, (short) -1);
+    verify(client, times(2)).get_partition_names(DB, TBL, (short) -1);
+  }
+
+  @Test
+  public void getTableStatistics() throws Exception {
+    metaStore.getMetadataCache().setStatisticsEnabled(true);
+    CloseableThriftHiveMetastoreIface cachingClient = new CachingMetaStoreClientFactory(meterRegistry)
+        .newInstance(metaStore, client);
+    ColumnStatisticsObj col1 = newColumnStatistics("col1");
+    ColumnStatisticsObj col2 = newColumnStatistics("col2");
+    when(client.get_table_statistics_req(new TableStatsRequest(DB, TBL, Collections.singletonList("col1"))))
+        .thenReturn(new TableStatsResult(Collections.singletonList(col1)));
+    when(client.get_table_statistics_req(new TableStatsRequest(DB, TBL, Arrays.asList("col2", "col3"))))
+        .thenReturn(new TableStatsResult(Collections.singletonList(col2)));
+
+    cachingClient.get_table_statistics_req(new TableStatsRequest(DB, TBL, Collections.singletonList("col1")));
+    TableStatsResult result = cachingClient
+        .get_table_statistics_req(new TableStatsRequest(DB, TBL, Arrays.asList("col2", "col1", "col3")));
+    assertThat(result.getTableStats(), is(Arrays.asList(col2, col1)));
+    result = cachingClient
+        .get_table_statistics_req(new TableStatsRequest(DB, TBL, Arrays.asList("col1", "col2", "col3")));
+    assertThat(result.getTableStats(), is(Arrays.asList(col1, col2)));
+    verify(client, times(2)).get_table_statistics_req(any(TableStatsRequest.class));
+  }
+
+  @Test
+  public void getPartitionStatistics() throws Exception {
+    metaStore.getMetadataCache().setStatisticsEnabled(true);
+    CloseableThriftHiveMetastoreIface cachingClient = new CachingMetaStoreClientFactory(meterRegistry)
+        .newInstance(metaStore, client);
+    ColumnStatisticsObj col = newColumnStatistics("col");
+    when(client
+        .get_partitions_statistics_req(
+            new PartitionsStatsRequest(DB, TBL, Collections.singletonList("col"), Collections.singletonList("part=a"))))
+                .thenReturn(new PartitionsStatsResult(Collections.singletonMap("part=a", Collections.singletonList(col))));
+    when(client
+        .get_partitions_statistics_req(
+            new PartitionsStatsRequest(DB, TBL, Collections.singletonList("col"), Collections.singletonList("part=b"))))
+                .thenReturn(new PartitionsStatsResult(Collections.emptyMap()));
+
+    cachingClient
+        .get_partitions_statistics_req(
+            new PartitionsStatsRequest(DB, TBL, Collections.singletonList("col"), Collections.singletonList("part=a")));
+    PartitionsStatsRequest request = new PartitionsStatsRequest(DB, TBL, Collections.singletonList("col"),
+        Arrays.asList("part=a", "part=b"));
+    assertThat(cachingClient.get_partitions_statistics_req(request).getPartStats(),
+        is(Collections.singletonMap("part=a", Collections.singletonList(col))));
+    assertThat(cachingClient.get_partitions_statistics_req(request).getPartStats(),
+        is(Collections.singletonMap("part=a", Collections.singletonList(col))));
+    verify(client, times(2)).get_partitions_statistics_req(any(PartitionsStatsRequest.class));
+  }
+
+  @Test
+  public void getAggregateStatistics() throws Exception {
+    metaStore.getMetadataCache().setStatisticsEnabled(true);
+    CloseableThriftHiveMetastoreIface cachingClient = new CachingMetaStoreClientFactory(meterRegistry)
+        .newInstance(metaStore, client);
+    AggrStats statistics = new AggrStats(Collections.singletonList(newColumnStatistics("col")), 2L);
+    when(client
+        .get_aggr_stats_for(
+            new PartitionsStatsRequest(DB, TBL, Collections.singletonList("col"), Arrays.asList("part=a", "part=b"))))
+                .thenReturn(statistics);
+
+    cachingClient
+        .get_aggr_stats_for(
+            new PartitionsStatsRequest(DB, TBL, Collections.singletonList("col"), Arrays.asList("part=a", "part=b")));
+    assertThat(cachingClient
+        .get_aggr_stats_for(
+            new PartitionsStatsRequest(DB, TBL, Collections.singletonList("COL"), Arrays.asList("part=b", "part=a"))),
+        is(statistics));
+    verify(client).get_aggr_stats_for(any(PartitionsStatsRequest.class));
+  }
+
+  @Test
+  public void statisticsWriteInvalidatesStatistics() throws Exception {
+    metaStore.getMetadataCache().setStatisticsEnabled(true);
+    CloseableThriftHiveMetastoreIface cachingClient = new CachingMetaStoreClientFactory(meterRegistry)
+        .newInstance(metaStore, client);
+    TableStatsRequest request = new TableStatsRequest(DB, TBL, Collections.singletonList("col"));
+    when(client.get_table_statistics_req(request)).thenReturn(new TableStatsResult(Collections.emptyList()));
+
+    cachingClient.get_table_statistics_req(request);
+    cachingClient.delete_table_column_statistics(DB, TBL, "col");
+    cachingClient.get_table_statistics_req(request);
+    ColumnStatistics columnStatistics = new ColumnStatistics(new ColumnStatisticsDesc(true, DB, TBL),
+        Collections.singletonList(newColumnStatistics("col")));
+    cachingClient.set_aggr_stats_for(new SetPartitionsStatsRequest(Collections.singletonList(columnStatistics)));
+    cachingClient.get_table_statistics_req(request);
+    verify(client, times(3)).get_table_statistics_req(request);
+  }
+
+  private static ColumnStatisticsObj newColumnStatistics(String columnName) {
+    return new ColumnStatisticsObj(columnName, "bigint",
+        ColumnStatisticsData.longStats(new LongColumnStatsData(0L, 1L)));
+  }
+
+  @Test
+  public void close() throws Exception {
+    cachingClient.close();
+    verify(client).close();
+  }
+
+}
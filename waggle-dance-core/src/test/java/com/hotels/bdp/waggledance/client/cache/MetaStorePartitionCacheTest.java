@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client.cache;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.hotels.bdp.waggledance.api.model.MetadataCache;
+
+public class MetaStorePartitionCacheTest {
+
+  private static final String DB = "db";
+  private static final String TBL = "tbl";
+  private static final List<FieldSchema> PARTITION_KEYS = Arrays
+      .asList(new FieldSchema("year", "string", null), new FieldSchema("month", "string", null));
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final MetaStorePartitionCache cache = new MetaStorePartitionCache("fed", new MetadataCache(), meterRegistry);
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private static Partition newPartition(String year, String month) {
+    Partition partition = new Partition();
+    partition.setDbName(DB);
+    partition.setTableName(TBL);
+    partition.setValues(Arrays.asList(year, month));
+    return partition;
+  }
+
+  private TablePartitions load() throws MetaException {
+    loads.incrementAndGet();
+    TablePartitions partitions = new TablePartitions(PARTITION_KEYS);
+    partitions.put(newPartition("2024", "01"));
+    partitions.put(newPartition("2024", "02"));
+    partitions.put(newPartition("2025", "01"));
+    return partitions;
+  }
+
+  @Test
+  public void loadsOnce() throws Exception {
+    TablePartitions partitions = cache.get(DB, TBL, this::load);
+    assertThat(cache.get(DB, "TBL", this::load), is(sameInstance(partitions)));
+    assertThat(loads.get(), is(1));
+    assertThat(meterRegistry.get(MetaStorePartitionCache.HITS_METRIC_NAME).counter().count(), is(1.0));
+    assertThat(meterRegistry.get(MetaStorePartitionCache.MISSES_METRIC_NAME).counter().count(), is(1.0));
+    assertThat(cache.getBytes(), is(greaterThan(0L)));
+  }
+
+  @Test
+  public void names() throws Exception {
+    TablePartitions partitions = cache.get(DB, TBL, this::load);
+    assertThat(partitions.getNames(-1), is(Arrays.asList("year=2024/month=01", "year=2024/month=02", "year=2025/month=01")));
+    assertThat(partitions.getNames(1), is(Collections.singletonList("year=2024/month=01")));
+  }
+
+  @Test
+  public void byNames() throws Exception {
+    TablePartitions partitions = cache.get(DB, TBL, this::load);
+    List<Partition> result = partitions
+        .getByNames(Arrays.asList("year=2025/month=01", "unknown", "year=2024/month=01"));
+    assertThat(result, is(Arrays.asList(newPartition("2025", "01"), newPartition("2024", "01"))));
+    assertThat(partitions.getByNames(Collections.singletonList("year=2025/month=01")).get(0),
+        is(not(sameInstance(result.get(0)))));
+  }
+
+  @Test
+  public void byPartialValues() throws Exception {
+    TablePartitions partitions = cache.get(DB, TBL, this::load);
+    assertThat(partitions.getByPartialValues(Collections.singletonList("2024"), -1),
+        is(Arrays.asList(newPartition("2024", "01"), newPartition("2024", "02"))));
+    assertThat(partitions.getNamesByPartialValues(Arrays.asList("", "01"), -1),
+        is(Arrays.asList("year=2024/month=01", "year=2025/month=01")));
+    assertThat(partitions.getByPartialValues(Collections.emptyList(), 2).size(), is(2));
+  }
+
+  @Test
+  public void update() throws Exception {
+    TablePartitions partitions = cache.get(DB, TBL, this::load);
+    long bytes = cache.getBytes();
+    cache.update(DB, TBL, p -> p.put(newPartition("2025", "02")));
+    assertThat(partitions.getNames(-1).size(), is(4));
+    assertThat(cache.getBytes(), is(greaterThan(bytes)));
+    cache.update(DB, TBL, p -> p.remove(Arrays.asList("2024", "01")));
+    assertThat(partitions.getNames(-1).size(), is(3));
+    assertThat(loads.get(), is(1));
+  }
+
+  @Test
+  public void updateDuringLoadIsReplayed() throws Exception {
+    TablePartitions partitions = cache.get(DB, TBL, () -> {
+      TablePartitions loaded = load();
+      cache.update(DB, TBL, p -> p.put(newPartition("2025", "02")));
+      return loaded;
+    });
+    assertThat(partitions.getNames(-1).size(), is(4));
+    assertThat(cache.get(DB, TBL, this::load), is(sameInstance(partitions)));
+  }
+
+  @Test
+  public void invalidateDuringLoad() throws Exception {
+    cache.get(DB, TBL, () -> {
+      TablePartitions loaded = load();
+      cache.invalidate(DB, TBL);
+      return loaded;
+    });
+    cache.get(DB, TBL, this::load);
+    assertThat(loads.get(), is(2));
+  }
+
+  @Test
+  public void invalidateDatabase() throws Exception {
+    cache.get(DB, TBL, this::load);
+    cache.invalidateDatabase(DB);
+    cache.get(DB, TBL, this::load);
+    assertThat(loads.get(), is(2));
+  }
+
+  @Test
+  public void uncacheable() throws Exception {
+    assertThat(cache.get(DB, TBL, TablePartitions::uncacheable).isCacheable(), is(false));
+    cache.update(DB, TBL, p -> p.put(newPartition("2025", "02")));
+    assertThat(meterRegistry.get(MetaStorePartitionCache.MISSES_METRIC_NAME).counter().count(), is(1.0));
+  }
+
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client.cache;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hive.metastore.api.ColumnStatisticsData;
+import org.apache.hadoop.hive.metastore.api.ColumnStatisticsObj;
+import org.apache.hadoop.hive.metastore.api.LongColumnStatsData;
+import org.apache.hadoop.hive.metastore.api.TableStatsRequest;
+import org.apache.hadoop.hive.metastore.api.TableStatsResult;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.hotels.bdp.waggledance.api.model.MetadataCache;
+
+public class MetaStoreStatisticsCacheTest {
+
+  private static final String DB = "db";
+  private static final String TBL = "tbl";
+  private static final TableStatsRequest REQUEST = new TableStatsRequest(DB, TBL, Collections.singletonList("col"));
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final MetaStoreStatisticsCache cache = new MetaStoreStatisticsCache("fed", new MetadataCache(),
+      meterRegistry);
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private TableStatsResult load(TableStatsRequest request) {
+    loads.incrementAndGet();
+    return new TableStatsResult(Collections
+        .singletonList(new ColumnStatisticsObj("col", "bigint",
+            ColumnStatisticsData.longStats(new LongColumnStatsData(0L, 1L)))));
+  }
+
+  @Test
+  public void loadsOnce() throws Exception {
+    cache.getTableStatistics(REQUEST, this::load);
+    TableStatsResult result = cache
+        .getTableStatistics(new TableStatsRequest(DB, "TBL", Collections.singletonList("COL")), this::load);
+    assertThat(result.getTableStats().get(0).getColName(), is("col"));
+    assertThat(loads.get(), is(1));
+    assertThat(meterRegistry.get(MetaStoreStatisticsCache.HITS_METRIC_NAME).counter().count(), is(1.0));
+    assertThat(meterRegistry.get(MetaStoreStatisticsCache.MISSES_METRIC_NAME).counter().count(), is(1.0));
+  }
+
+  @Test
+  public void invalidate() throws Exception {
+    cache.getTableStatistics(REQUEST, this::load);
+    cache.invalidate(DB, TBL);
+    cache.getTableStatistics(REQUEST, this::load);
+    cache.getTableStatistics(REQUEST, this::load);
+    assertThat(loads.get(), is(2));
+  }
+
+  @Test
+  public void invalidateDatabase() throws Exception {
+    cache.getTableStatistics(REQUEST, this::load);
+    cache.invalidateDatabase(DB);
+    cache.getTableStatistics(REQUEST, this::load);
+    assertThat(loads.get(), is(2));
+  }
+
+  @Test
+  public void invalidatedWhileLoading() throws Exception {
+    cache.getTableStatistics(REQUEST, request -> {
+      cache.invalidate(DB, TBL);
+      return load(request);
+    });
+    cache.getTableStatistics(REQUEST, this::load);
+    assertThat(loads.get(), is(2));
+  }
+
+  @Test
+  public void invalidateAll() throws Exception {
+    cache.getTableStatistics(REQUEST, this::load);
+    cache.invalidateAll();
+    assertThat(cache.size(), is(0L));
+  }
+
+}
@@ -0,0 +1,254 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client.cache;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hive.metastore.api.CurrentNotificationEventId;
+import org.apache.hadoop.hive.metastore.api.Database;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.NotificationEvent;
+import org.apache.hadoop.hive.metastore.api.NotificationEventRequest;
+import org.apache.hadoop.hive.metastore.api.NotificationEventResponse;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.StorageDescriptor;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hadoop.hive.metastore.api.TableStatsRequest;
+import org.apache.hadoop.hive.metastore.api.TableStatsResult;
+import org.apache.hadoop.hive.metastore.messaging.MessageFactory;
+import org.apache.hadoop.hive.metastore.messaging.PartitionFiles;
+import org.apache.thrift.TException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.hotels.bdp.waggledance.api.model.MetadataCache;
+import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIface;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationLogPollerTest {
+
+  private static final String DB = "db";
+  private static final List<FieldSchema> PARTITION_KEYS = Collections
+      .singletonList(new FieldSchema("part", "string", null));
+  private static final MessageFactory MESSAGE_FACTORY = MessageFactory.getInstance();
+
+  private @Mock CloseableThriftHiveMetastoreIface client;
+
+  private final MetaStoreMetadataCache cache = new MetaStoreMetadataCache("fed", new MetadataCache(),
+      new SimpleMeterRegistry());
+  private final MetaStorePartitionCache partitionCache = new MetaStorePartitionCache("fed", new MetadataCache(),
+      new SimpleMeterRegistry());
+  private final MetaStoreStatisticsCache statisticsCache = new MetaStoreStatisticsCache("fed", new MetadataCache(),
+      new SimpleMeterRegistry());
+  private TablePartitions partitions;
+  private NotificationLogPoller poller;
+
+  @Before
+  public void init() throws TException {
+    poller = new NotificationLogPoller("fed", client, cache, partitionCache, statisticsCache);
+    when(client.get_current_notificationEventId()).thenReturn(new CurrentNotificationEventId(10L));
+    poller.run();
+    cache.getDatabase(DB, () -> new Database(DB, null, null, null));
+    cache.getTable(DB, "tbl1", () -> newTable("tbl1"));
+    cache.getTable(DB, "tbl2", () -> newTable("tbl2"));
+    partitions = partitionCache.get(DB, "tbl1", () -> {
+      TablePartitions loaded = new TablePartitions(PARTITION_KEYS);
+      loaded.put(newPartition("a"));
+      loaded.put(newPartition("b"));
+      return loaded;
+    });
+  }
+
+  private static Partition newPartition(String value) {
+    Partition partition = new Partition();
+    partition.setDbName(DB);
+    partition.setTableName("tbl1");
+    partition.setValues(Collections.singletonList(value));
+    partition.setSd(new StorageDescriptor());
+    partition.setParameters(new HashMap<>());
+    return partition;
+  }
+
+  private static Table newTable(String name) {
+    Table table = new Table();
+    table.setDbName(DB);
+    table.setTableName(name);
+    table.setPartitionKeys(PARTITION_KEYS);
+    table.setSd(new StorageDescriptor());
+    return table;
+  }
+
+  private static NotificationEvent newEvent(long eventId, String eventType, String tableName) {
+    return newEvent(eventId, eventType, tableName, "");
+  }
+
+  private static NotificationEvent newEvent(long eventId, String eventType, String tableName, String message) {
+    NotificationEvent event = new NotificationEvent(eventId, 0, eventType, message);
+    event.setDbName(DB);
+    event.setTableName(tableName);
+    return event;
+  }
+
+  private void events(NotificationEvent... events) throws TException {
+    when(client.get_next_notification(any(NotificationEventRequest.class)))
+        .thenReturn(new NotificationEventResponse(Arrays.asList(events)));
+  }
+
+  @Test
+  public void noEvents() throws TException {
+    events();
+    poller.run();
+    assertThat(cache.size(), is(3L));
+  }
+
+  @Test
+  public void tableEvent() throws TException {
+    events(newEvent(11L, "CREATE_TABLE", "tbl1"));
+    poller.run();
+    assertThat(cache.size(), is(2L));
+    assertThat(cache.getTableIfPresent(DB, "tbl2").getTableName(), is("tbl2"));
+    assertThat(partitionCache.getBytes(), is(0L));
+  }
+
+  @Test
+  public void alterTableEventKeepsPartitions() throws TException {
+    Table before = newTable("tbl1");
+    Table after = newTable("tbl1");
+    after.setParameters(Collections.singletonMap("numRows", "1"));
+    events(newEvent(11L, "ALTER_TABLE", "tbl1",
+        MESSAGE_FACTORY.buildAlterTableMessage(before, after, false).toString()));
+    poller.run();
+    assertThat(cache.getTableIfPresent(DB, "tbl1"), is(nullValue()));
+    assertThat(partitions.getNames(-1), is(Arrays.asList("part=a", "part=b")));
+  }
+
+  @Test
+  public void addPartitionEvent() throws TException {
+    Table table = newTable("tbl1");
+    events(newEvent(11L, "ADD_PARTITION", "tbl1", MESSAGE_FACTORY
+        .buildAddPartitionMessage(table, Collections.singletonList(newPartition("c")).iterator(),
+            Collections.<PartitionFiles> emptyIterator())
+        .toString()));
+    poller.run();
+    assertThat(partitions.getNames(-1), is(Arrays.asList("part=a", "part=b", "part=c")));
+    assertThat(cache.getTableIfPresent(DB, "tbl1").getTableName(), is("tbl1"));
+  }
+
+  @Test
+  public void alterPartitionEvent() throws TException {
+    Partition after = newPartition("a");
+    after.getParameters().put("numRows", "1");
+    events(newEvent(11L, "ALTER_PARTITION", "tbl1", MESSAGE_FACTORY
+        .buildAlterPartitionMessage(newTable("tbl1"), newPartition("a"), after, false)
+        .toString()));
+    poller.run();
+    assertThat(partitions.getByNames(Collections.singletonList("part=a")).get(0).getParameters().get("numRows"),
+        is("1"));
+  }
+
+  @Test
+  public void dropPartitionEvent() throws TException {
+    Table table = newTable("tbl1");
+    events(newEvent(11L, "DROP_PARTITION", "tbl1", MESSAGE_FACTORY
+        .buildDropPartitionMessage(table, Collections.singletonList(newPartition("a")).iterator())
+        .toString()));
+    poller.run();
+    assertThat(partitions.getNames(-1), is(Collections.singletonList("part=b")));
+  }
+
+  @Test
+  public void unreadablePartitionEvent() throws TException {
+    events(newEvent(11L, "ADD_PARTITION", "tbl1", "unreadable"));
+    poller.run();
+    assertThat(partitionCache.getBytes(), is(0L));
+  }
+
+  @Test
+  public void insertEventDropsStatistics() throws TException {
+    TableStatsRequest request = new TableStatsRequest(DB, "tbl1", Collections.singletonList("col"));
+    TableStatsResult result = new TableStatsResult(Collections.emptyList());
+    statisticsCache.getTableStatistics(request, r -> result);
+    events(newEvent(11L, "INSERT", "tbl1"));
+    poller.run();
+    AtomicInteger loads = new AtomicInteger();
+    statisticsCache.getTableStatistics(request, r -> {
+      loads.incrementAndGet();
+      return result;
+    });
+    assertThat(loads.get(), is(1));
+  }
+
+  @Test
+  public void catchUp() throws TException {
+    events(newEvent(11L, "DROP_TABLE", "tbl1"));
+    assertThat(poller.catchUp(DB, "TBL1"), is(true));
+    events();
+    assertThat(poller.catchUp(DB, "tbl1"), is(false));
+  }
+
+  @Test
+  public void alterDatabaseEvent() throws TException {
+    events(newEvent(11L, "ALTER_DATABASE", null));
+    poller.run();
+    assertThat(cache.size(), is(2L));
+  }
+
+  @Test
+  public void dropDatabaseEvent() throws TException {
+    events(newEvent(11L, "DROP_DATABASE", null));
+    poller.run();
+    assertThat(cache.size(), is(0L));
+  }
+
+  @Test
+  public void missedEvents() throws TException {
+    events(newEvent(20L, "ALTER_TABLE", "tbl1"));
+    poller.run();
+    assertThat(cache.size(), is(0L));
+  }
+
+  @Test
+  public void readsFromLastEvent() throws TException {
+    events(newEvent(11L, "ALTER_TABLE", "tbl1"));
+    poller.run();
+    events(newEvent(12L, "ALTER_TABLE", "tbl2"));
+    poller.run();
+    assertThat(cache.size(), is(1L));
+  }
+
+  @Test
+  public void unreadableLog() throws TException {
+    when(client.get_next_notification(any(NotificationEventRequest.class))).thenThrow(new TException("unreadable"));
+    poller.run();
+    assertThat(cache.size(), is(0L));
+  }
+
+}
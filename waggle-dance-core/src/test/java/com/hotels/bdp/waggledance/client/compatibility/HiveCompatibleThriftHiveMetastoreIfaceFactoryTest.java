@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2021 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,10 +19,13 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.net.URI;
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.hadoop.hive.metastore.api.ForeignKeysRequest;
 import org.apache.hadoop.hive.metastore.api.ForeignKeysResponse;
@@ -42,23 +45,44 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import com.google.common.collect.Lists;
 
 import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIface;
+import com.hotels.bdp.waggledance.client.SessionScopedMetaStoreClientFactory;
 
 @RunWith(MockitoJUnitRunner.class)
 public class HiveCompatibleThriftHiveMetastoreIfaceFactoryTest {
 
-  private final HiveCompatibleThriftHiveMetastoreIfaceFactory factory = new HiveCompatibleThriftHiveMetastoreIfaceFactory();
-
   private static final String DB_NAME = "db";
   private static final String TABLE_NAME = "table";
+  private static final URI URI_1 = URI.create("thrift://host1:9083");
+  private static final URI URI_2 = URI.create("thrift://host2:9083");
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AtomicLong nanoTime = new AtomicLong();
+  private final HiveCompatibleThriftHiveMetastoreIfaceFactory factory = new HiveCompatibleThriftHiveMetastoreIfaceFactory(
+      meterRegistry, nanoTime::get);
   private @Mock Client delegate;
   private final Table table = new Table(DB_NAME, TABLE_NAME, "", 0, 0, 0, null, null, null, "", "", "");
 
   @Test
   public void get_table_req() throws Exception {
-    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(delegate);
+    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(URI_1, delegate);
+    GetTableRequest tableRequest = new GetTableRequest(DB_NAME, TABLE_NAME);
+    when(delegate.get_table_req(tableRequest)).thenThrow(new TApplicationException("Error"));
+    when(delegate.get_table(DB_NAME, TABLE_NAME)).thenReturn(table);
+    GetTableResult tableResult = thriftHiveMetastoreIface.get_table_req(tableRequest);
+    assertThat(tableResult, is(new GetTableResult(table)));
+  }
+
+  @Test
+  public void get_table_reqForwardedBySessionScopedClient() throws Exception {
+    CloseableThriftHiveMetastoreIface compatibleClient = factory.newInstance(URI_1, delegate);
+    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = new SessionScopedMetaStoreClientFactory()
+        .newInstance("name", () -> compatibleClient);
     GetTableRequest tableRequest = new GetTableRequest(DB_NAME, TABLE_NAME);
     when(delegate.get_table_req(tableRequest)).thenThrow(new TApplicationException("Error"));
     when(delegate.get_table(DB_NAME, TABLE_NAME)).thenReturn(table);
@@ -68,7 +92,7 @@ public class HiveCompatibleThriftHiveMetastoreIfaceFactoryTest {
 
   @Test
   public void get_table_objects_by_name_req() throws Exception {
-    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(delegate);
+    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(URI_1, delegate);
     GetTablesRequest tablesRequest = new GetTablesRequest(DB_NAME);
     tablesRequest.addToTblNames(TABLE_NAME);
     when(delegate.get_table_objects_by_name_req(tablesRequest)).thenThrow(new TApplicationException("Error"));
@@ -80,7 +104,7 @@ public class HiveCompatibleThriftHiveMetastoreIfaceFactoryTest {
 
   @Test
   public void normalGetTableCallWorks() throws Exception {
-    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(delegate);
+    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(URI_1, delegate);
     when(delegate.get_table(DB_NAME, TABLE_NAME)).thenReturn(table);
     Table tableResult = thriftHiveMetastoreIface.get_table(DB_NAME, TABLE_NAME);
     assertThat(tableResult, is(table));
@@ -88,7 +112,7 @@ public class HiveCompatibleThriftHiveMetastoreIfaceFactoryTest {
 
   @Test
   public void underlyingExceptionIsThrownWhenCompatibilityFails() throws Exception {
-    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(delegate);
+    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(URI_1, delegate);
     TApplicationException cause = new TApplicationException("CAUSE");
     when(delegate.get_all_databases()).thenThrow(cause);
     try {
@@ -101,7 +125,7 @@ public class HiveCompatibleThriftHiveMetastoreIfaceFactoryTest {
 
   @Test
   public void compatibilityExceptionIsThrownWhenCompatibilityFailsOnTException() throws Exception {
-    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(delegate);
+    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(URI_1, delegate);
     GetTableRequest tableRequest = new GetTableRequest(DB_NAME, TABLE_NAME);
     when(delegate.get_table_req(tableRequest))
         .thenThrow(new TApplicationException("ApplicationException, should not be thrown"));
@@ -117,7 +141,7 @@ public class HiveCompatibleThriftHiveMetastoreIfaceFactoryTest {
 
   @Test
   public void underlyingyExceptionIsThrownWhenCompatibilityFailsOnTApplication() throws Exception {
-    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(delegate);
+    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(URI_1, delegate);
     GetTableRequest tableRequest = new GetTableRequest(DB_NAME, TABLE_NAME);
     TApplicationException cause = new TApplicationException("Should be thrown");
     when(delegate.get_table_req(tableRequest)).thenThrow(cause);
@@ -133,7 +157,7 @@ public class HiveCompatibleThriftHiveMetastoreIfaceFactoryTest {
 
   @Test
   public void nonTApplicationExceptionsAreThrown() throws Exception {
-    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(delegate);
+    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(URI_1, delegate);
     GetTableRequest tableRequest = new GetTableRequest(DB_NAME, TABLE_NAME);
     NoSuchObjectException cause = new NoSuchObjectException("Normal Error nothing to do with compatibility");
     when(delegate.get_table_req(tableRequest)).thenThrow(cause);
@@ -148,7 +172,7 @@ public class HiveCompatibleThriftHiveMetastoreIfaceFactoryTest {
 
   @Test
   public void get_primary_keys() throws Exception {
-    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(delegate);
+    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(URI_1, delegate);
     PrimaryKeysRequest primaryKeysRequest = new PrimaryKeysRequest(DB_NAME, TABLE_NAME);
     when(delegate.get_primary_keys(primaryKeysRequest)).thenThrow(new TApplicationException("Error"));
     PrimaryKeysResponse primaryKeysResponse = thriftHiveMetastoreIface.get_primary_keys(primaryKeysRequest);
@@ -158,7 +182,7 @@ public class HiveCompatibleThriftHiveMetastoreIfaceFactoryTest {
 
   @Test
   public void get_foreign_keys() throws Exception {
-    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(delegate);
+    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(URI_1, delegate);
     ForeignKeysRequest foreignKeysRequest = new ForeignKeysRequest(null, null, DB_NAME, TABLE_NAME);
     when(delegate.get_foreign_keys(foreignKeysRequest)).thenThrow(new TApplicationException("Error"));
     ForeignKeysResponse foreignKeysResponse = thriftHiveMetastoreIface.get_foreign_keys(foreignKeysRequest);
@@ -166,4 +190,77 @@ public class HiveCompatibleThriftHiveMetastoreIfaceFactoryTest {
     verify(delegate).get_table(DB_NAME, TABLE_NAME);
   }
 
+  @Test
+  public void unknownMethodIsCalledOnCompatibilityStraightAway() throws Exception {
+    GetTableRequest tableRequest = new GetTableRequest(DB_NAME, TABLE_NAME);
+    when(delegate.get_table_req(tableRequest))
+        .thenThrow(new TApplicationException(TApplicationException.UNKNOWN_METHOD, "Invalid method name"));
+    when(delegate.get_table(DB_NAME, TABLE_NAME)).thenReturn(table);
+
+    factory.newInstance(URI_1, delegate).get_table_req(tableRequest);
+    GetTableResult tableResult = factory.newInstance(URI_1, delegate).get_table_req(tableRequest);
+
+    assertThat(tableResult, is(new GetTableResult(table)));
+    verify(delegate).get_table_req(tableRequest);
+    verify(delegate, times(2)).get_table(DB_NAME, TABLE_NAME);
+    assertThat(count(HiveCompatibleThriftHiveMetastoreIfaceFactory.UNSUPPORTED_METRIC_NAME, URI_1), is(1.0));
+    assertThat(count(HiveCompatibleThriftHiveMetastoreIfaceFactory.CALLS_METRIC_NAME, URI_1), is(2.0));
+  }
+
+  @Test
+  public void unknownMethodIsCalledOnMetastoreAgainAfterReprobeInterval() throws Exception {
+    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(URI_1, delegate);
+    GetTableRequest tableRequest = new GetTableRequest(DB_NAME, TABLE_NAME);
+    when(delegate.get_table_req(tableRequest))
+        .thenThrow(new TApplicationException(TApplicationException.UNKNOWN_METHOD, "Invalid method name"))
+        .thenReturn(new GetTableResult(table));
+    when(delegate.get_table(DB_NAME, TABLE_NAME)).thenReturn(table);
+
+    thriftHiveMetastoreIface.get_table_req(tableRequest);
+    nanoTime.addAndGet(UnsupportedMethods.REPROBE_INTERVAL_NANOS);
+    thriftHiveMetastoreIface.get_table_req(tableRequest);
+    thriftHiveMetastoreIface.get_table_req(tableRequest);
+
+    verify(delegate, times(3)).get_table_req(tableRequest);
+    verify(delegate).get_table(DB_NAME, TABLE_NAME);
+  }
+
+  @Test
+  public void unknownMethodsAreRememberedPerUri() throws Exception {
+    GetTableRequest tableRequest = new GetTableRequest(DB_NAME, TABLE_NAME);
+    when(delegate.get_table_req(tableRequest))
+        .thenThrow(new TApplicationException(TApplicationException.UNKNOWN_METHOD, "Invalid method name"))
+        .thenReturn(new GetTableResult(table));
+    when(delegate.get_table(DB_NAME, TABLE_NAME)).thenReturn(table);
+
+    factory.newInstance(URI_1, delegate).get_table_req(tableRequest);
+    factory.newInstance(URI_2, delegate).get_table_req(tableRequest);
+
+    verify(delegate, times(2)).get_table_req(tableRequest);
+    assertThat(count(HiveCompatibleThriftHiveMetastoreIfaceFactory.CALLS_METRIC_NAME, URI_2), is(0.0));
+  }
+
+  @Test
+  public void otherApplicationErrorsAreNotRemembered() throws Exception {
+    CloseableThriftHiveMetastoreIface thriftHiveMetastoreIface = factory.newInstance(URI_1, delegate);
+    GetTableRequest tableRequest = new GetTableRequest(DB_NAME, TABLE_NAME);
+    when(delegate.get_table_req(tableRequest)).thenThrow(new TApplicationException("Error"));
+    when(delegate.get_table(DB_NAME, TABLE_NAME)).thenReturn(table);
+
+    thriftHiveMetastoreIface.get_table_req(tableRequest);
+    thriftHiveMetastoreIface.get_table_req(tableRequest);
+
+    verify(delegate, times(2)).get_table_req(tableRequest);
+    assertThat(count(HiveCompatibleThriftHiveMetastoreIfaceFactory.UNSUPPORTED_METRIC_NAME, URI_1), is(0.0));
+  }
+
+  private double count(String metricName, URI uri) {
+    Counter counter = meterRegistry
+        .find(metricName)
+        .tag(HiveCompatibleThriftHiveMetastoreIfaceFactory.URI_TAG_NAME, uri.toString())
+        .tag(HiveCompatibleThriftHiveMetastoreIfaceFactory.METHOD_TAG_NAME, "get_table_req")
+        .counter();
+    return counter == null ? 0 : counter.count();
+  }
+
 }
@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.client.tunnelling;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.hotels.hcommon.hive.metastore.client.tunnelling.MetastoreTunnel;
+import com.hotels.hcommon.ssh.com.jcraft.jsch.JSchException;
+import com.hotels.hcommon.ssh.com.pastdev.jsch.tunnel.TunnelConnectionManager;
+import com.hotels.hcommon.ssh.tunnel.TunnelConnectionManagerFactory;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MetastoreTunnelManagerTest {
+
+  private static final String LOCALHOST = "localhost";
+  private static final String METASTORE_HOST = "metastore-host";
+  private static final int METASTORE_PORT = 9083;
+  private static final String TUNNEL_TAG = METASTORE_HOST + ":" + METASTORE_PORT;
+
+  private @Mock TunnelableFactorySupplier tunnelableFactorySupplier;
+  private @Mock TunnelConnectionManagerFactory tunnelConnectionManagerFactory;
+  private @Mock TunnelConnectionManager tunnelConnectionManager;
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final MetastoreTunnel metastoreTunnel = new MetastoreTunnel();
+  private MetastoreTunnelManager manager;
+
+  @Before
+  public void init() {
+    metastoreTunnel.setRoute("user@jumpbox");
+    metastoreTunnel.setLocalhost(LOCALHOST);
+    when(tunnelableFactorySupplier.getTunnelConnectionManagerFactory(metastoreTunnel))
+        .thenReturn(tunnelConnectionManagerFactory);
+    when(tunnelConnectionManagerFactory.create(eq(LOCALHOST), anyInt(), eq(METASTORE_HOST), eq(METASTORE_PORT)))
+        .thenReturn(tunnelConnectionManager);
+    manager = new MetastoreTunnelManager(tunnelableFactorySupplier, TimeUnit.HOURS.toMillis(1),
+        Executors.defaultThreadFactory(), meterRegistry);
+  }
+
+  @After
+  public void after() {
+    manager.close();
+  }
+
+  private double channels() {
+    return meterRegistry
+        .get(MetastoreTunnelManager.CHANNELS_METRIC_NAME)
+        .tag(MetastoreTunnelManager.TUNNEL_TAG_NAME, TUNNEL_TAG)
+        .gauge()
+        .value();
+  }
+
+  private long handshakes() {
+    return meterRegistry
+        .get(MetastoreTunnelManager.HANDSHAKE_METRIC_NAME)
+        .tag(MetastoreTunnelManager.TUNNEL_TAG_NAME, TUNNEL_TAG)
+        .timer()
+        .count();
+  }
+
+  private double reconnects() {
+    return meterRegistry
+        .get(MetastoreTunnelManager.RECONNECTS_METRIC_NAME)
+        .tag(MetastoreTunnelManager.TUNNEL_TAG_NAME, TUNNEL_TAG)
+        .counter()
+        .count();
+  }
+
+  @Test
+  public void acquireSharesTunnel() throws Exception {
+    MetastoreTunnelManager.SharedTunnel first = manager.acquire(metastoreTunnel, METASTORE_HOST, METASTORE_PORT);
+    MetastoreTunnelManager.SharedTunnel second = manager.acquire(metastoreTunnel, METASTORE_HOST, METASTORE_PORT);
+
+    assertThat(second, is(first));
+    assertThat(first.isOpen(), is(true));
+    verify(tunnelConnectionManager).open();
+    assertThat(handshakes(), is(1L));
+    assertThat(channels(), is(2.0));
+  }
+
+  @Test
+  public void differentConfigurationsDontShareTunnel() {
+    MetastoreTunnel other = new MetastoreTunnel();
+    other.setRoute("user@other-jumpbox");
+    other.setLocalhost(LOCALHOST);
+    when(tunnelableFactorySupplier.getTunnelConnectionManagerFactory(other)).thenReturn(tunnelConnectionManagerFactory);
+
+    MetastoreTunnelManager.SharedTunnel first = manager.acquire(metastoreTunnel, METASTORE_HOST, METASTORE_PORT);
+    MetastoreTunnelManager.SharedTunnel second = manager.acquire(other, METASTORE_HOST, METASTORE_PORT);
+
+    assertThat(second, is(not(first)));
+    assertThat(second.getLocalPort(), is(not(first.getLocalPort())));
+  }
+
+  @Test
+  public void releaseLastChannelClosesTunnel() {
+    MetastoreTunnelManager.SharedTunnel first = manager.acquire(metastoreTunnel, METASTORE_HOST, METASTORE_PORT);
+    MetastoreTunnelManager.SharedTunnel second = manager.acquire(metastoreTunnel, METASTORE_HOST, METASTORE_PORT);
+
+    first.release();
+    verify(tunnelConnectionManager, never()).close();
+    assertThat(channels(), is(1.0));
+
+    second.release();
+    verify(tunnelConnectionManager).close();
+    assertThat(channels(), is(0.0));
+    assertThat(second.isOpen(), is(false));
+  }
+
+  @Test
+  public void checkKeepsForwardingTunnel() throws Exception {
+    MetastoreTunnelManager.SharedTunnel tunnel = manager.acquire(metastoreTunnel, METASTORE_HOST, METASTORE_PORT);
+    // Stands for the port forwarded by the SSH session
+    try (ServerSocket forwarded = new ServerSocket(tunnel.getLocalPort(), 1, InetAddress.getByName(LOCALHOST))) {
+      tunnel.check();
+    }
+
+    verify(tunnelConnectionManager, never()).ensureOpen();
+    assertThat(reconnects(), is(0.0));
+    assertThat(tunnel.isOpen(), is(true));
+  }
+
+  @Test
+  public void checkReestablishesTunnelThatWentAway() throws Exception {
+    MetastoreTunnelManager.SharedTunnel tunnel = manager.acquire(metastoreTunnel, METASTORE_HOST, METASTORE_PORT);
+    int localPort = tunnel.getLocalPort();
+
+    tunnel.check();
+
+    verify(tunnelConnectionManager).ensureOpen();
+    assertThat(tunnel.getLocalPort(), is(localPort));
+    assertThat(tunnel.isOpen(), is(true));
+    assertThat(reconnects(), is(1.0));
+    assertThat(handshakes(), is(2L));
+  }
+
+  @Test
+  public void checkRetriesFailedReestablishment() throws Exception {
+    doThrow(new JSchException("Connection refused")).doNothing().when(tunnelConnectionManager).ensureOpen();
+    MetastoreTunnelManager.SharedTunnel tunnel = manager.acquire(metastoreTunnel, METASTORE_HOST, METASTORE_PORT);
+
+    tunnel.check();
+    assertThat(tunnel.isOpen(), is(false));
+
+    tunnel.check();
+    assertThat(tunnel.isOpen(), is(true));
+    verify(tunnelConnectionManager, times(2)).ensureOpen();
+    assertThat(reconnects(), is(1.0));
+  }
+
+  @Test
+  public void clientReestablishesTunnel() throws Exception {
+    doThrow(new JSchException("Connection refused")).doNothing().when(tunnelConnectionManager).ensureOpen();
+    MetastoreTunnelManager.SharedTunnel tunnel = manager.acquire(metastoreTunnel, METASTORE_HOST, METASTORE_PORT);
+    tunnel.check();
+
+    tunnel.ensureOpen();
+
+    assertThat(tunnel.isOpen(), is(true));
+    verify(tunnelConnectionManager, times(2)).ensureOpen();
+  }
+
+  @Test
+  public void checkDoesntReopenReleasedTunnel() throws Exception {
+    MetastoreTunnelManager.SharedTunnel tunnel = manager.acquire(metastoreTunnel, METASTORE_HOST, METASTORE_PORT);
+    tunnel.release();
+
+    tunnel.check();
+
+    verify(tunnelConnectionManager, never()).ensureOpen();
+    assertThat(tunnel.isOpen(), is(false));
+  }
+
+  @Test
+  public void closeClosesTunnels() {
+    MetastoreTunnelManager.SharedTunnel tunnel = manager.acquire(metastoreTunnel, METASTORE_HOST, METASTORE_PORT);
+
+    manager.close();
+
+    verify(tunnelConnectionManager).close();
+    assertThat(tunnel.isOpen(), is(false));
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2021 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,10 +24,9 @@ import org.junit.Test;
 
 import com.google.common.collect.Lists;
 
-import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIface;
 import com.hotels.hcommon.hive.metastore.client.tunnelling.MetastoreTunnel;
 import com.hotels.hcommon.ssh.SshSettings;
-import com.hotels.hcommon.ssh.TunnelableFactory;
+import com.hotels.hcommon.ssh.tunnel.TunnelConnectionManagerFactory;
 
 public class TunnelableFactorySupplierTest {
 
@@ -48,9 +47,10 @@ public class TunnelableFactorySupplierTest {
   }
 
   @Test
-  public void get() {
-    TunnelableFactory<CloseableThriftHiveMetastoreIface> tunnelableFactory = supplier.get(metastoreTunnel);
-    assertNotNull(tunnelableFactory);
+  public void getTunnelConnectionManagerFactory() {
+    TunnelConnectionManagerFactory factory = supplier.getTunnelConnectionManagerFactory(metastoreTunnel);
+    assertNotNull(factory);
+    assertThat(factory.getSshSettings().getRoute(), is(TUNNEL_ROUTE));
   }
 
   @Test
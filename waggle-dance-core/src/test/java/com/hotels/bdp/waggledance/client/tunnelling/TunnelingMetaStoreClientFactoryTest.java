@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2021 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,30 +17,40 @@ package com.hotels.bdp.waggledance.client.tunnelling;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIface;
 import com.hotels.hcommon.hive.metastore.client.tunnelling.MetastoreTunnel;
-import com.hotels.hcommon.ssh.TunnelableFactory;
-import com.hotels.hcommon.ssh.TunnelableSupplier;
+import com.hotels.hcommon.ssh.SshException;
+import com.hotels.hcommon.ssh.com.jcraft.jsch.JSchException;
+import com.hotels.hcommon.ssh.com.pastdev.jsch.tunnel.TunnelConnectionManager;
+import com.hotels.hcommon.ssh.tunnel.TunnelConnectionManagerFactory;
 
 @RunWith(MockitoJUnitRunner.class)
 public class TunnelingMetaStoreClientFactoryTest {
@@ -57,13 +67,15 @@ public class TunnelingMetaStoreClientFactoryTest {
   private static final String TUNNEL_LOCALHOST = "my-machine";
 
   private @Mock TunnelableFactorySupplier tunnelableFactorySupplier;
-  private @Mock TunnelableFactory<CloseableThriftHiveMetastoreIface> tunnelableFactory;
+  private @Mock TunnelConnectionManagerFactory tunnelConnectionManagerFactory;
+  private @Mock TunnelConnectionManager tunnelConnectionManager;
   private @Mock LocalHiveConfFactory localHiveConfFactory;
   private @Mock HiveMetaStoreClientSupplier hiveMetaStoreClientSupplier;
   private @Mock HiveConf localHiveConf;
   private @Mock HiveMetaStoreClientSupplierFactory hiveMetaStoreClientSupplierFactory;
-  private @Captor ArgumentCaptor<TunnelableSupplier<CloseableThriftHiveMetastoreIface>> tunnelableSupplierCaptor;
+  private @Mock CloseableThriftHiveMetastoreIface client;
   private MetastoreTunnel metastoreTunnel;
+  private MetastoreTunnelManager tunnelManager;
   private TunnelingMetaStoreClientFactory tunnelingMetaStoreClientFactory;
   private Map<String, String> waggleDanceConfigurationProperties = new HashMap<>();
 
@@ -81,50 +93,78 @@ public class TunnelingMetaStoreClientFactoryTest {
     waggleDanceConfigurationProperties.put(ConfVars.METASTORE_USE_THRIFT_FRAMED_TRANSPORT.varname, "true");
     waggleDanceConfigurationProperties.put(ConfVars.METASTORE_USE_THRIFT_COMPACT_PROTOCOL.varname, "false");
 
+    when(tunnelableFactorySupplier.getTunnelConnectionManagerFactory(metastoreTunnel))
+        .thenReturn(tunnelConnectionManagerFactory);
+    when(tunnelConnectionManagerFactory.create(eq(TUNNEL_LOCALHOST), anyInt(), eq(METASTORE_HOST), eq(METASTORE_PORT)))
+        .thenReturn(tunnelConnectionManager);
+
+    tunnelManager = new MetastoreTunnelManager(tunnelableFactorySupplier, TimeUnit.HOURS.toMillis(1),
+        Executors.defaultThreadFactory(), new SimpleMeterRegistry());
+    tunnelingMetaStoreClientFactory = new TunnelingMetaStoreClientFactory(tunnelManager, localHiveConfFactory,
+        hiveMetaStoreClientSupplierFactory);
+  }
+
+  @After
+  public void after() {
+    tunnelManager.close();
+  }
+
+  private void givenClients() {
     when(localHiveConfFactory.newInstance(any(String.class), any(Integer.class), any(HiveConf.class)))
         .thenReturn(localHiveConf);
-    when(tunnelableFactorySupplier.get(metastoreTunnel)).thenReturn(tunnelableFactory);
     when(localHiveConf.getVar(HiveConf.ConfVars.METASTOREURIS)).thenReturn(METASTORE_URI);
     when(hiveMetaStoreClientSupplierFactory.newInstance(localHiveConf, NAME, RECONNECTION_RETRIES, CONNECTION_TIMEOUT))
         .thenReturn(hiveMetaStoreClientSupplier);
+    when(hiveMetaStoreClientSupplier.get()).thenReturn(client);
+  }
 
-    tunnelingMetaStoreClientFactory = new TunnelingMetaStoreClientFactory(tunnelableFactorySupplier,
-        localHiveConfFactory, hiveMetaStoreClientSupplierFactory);
+  private CloseableThriftHiveMetastoreIface newClient() {
+    return tunnelingMetaStoreClientFactory
+        .newInstance(METASTORE_URI, metastoreTunnel, NAME, RECONNECTION_RETRIES, CONNECTION_TIMEOUT,
+            waggleDanceConfigurationProperties);
   }
 
   @Test
-  public void newInstance() {
-    tunnelingMetaStoreClientFactory.newInstance(METASTORE_URI, metastoreTunnel, NAME, RECONNECTION_RETRIES,
-        CONNECTION_TIMEOUT, waggleDanceConfigurationProperties);
-    verify(tunnelableFactory)
-        .wrap(tunnelableSupplierCaptor.capture(), eq(tunnelingMetaStoreClientFactory.METHOD_CHECKER),
-            eq(metastoreTunnel.getLocalhost()), anyInt(), eq(METASTORE_HOST), eq(METASTORE_PORT));
-    TunnelableSupplier<CloseableThriftHiveMetastoreIface> tunnelable = tunnelableSupplierCaptor.getValue();
-    assertThat(tunnelable, is(hiveMetaStoreClientSupplier));
+  public void newInstance() throws Exception {
+    givenClients();
+    CloseableThriftHiveMetastoreIface tunnelled = newClient();
+    verify(tunnelConnectionManager).open();
+    tunnelled.get_all_databases();
+    verify(client).get_all_databases();
   }
 
   @Test
   public void newInstanceNullConfigurationProperties() {
-    tunnelingMetaStoreClientFactory.newInstance(METASTORE_URI, metastoreTunnel, NAME, RECONNECTION_RETRIES,
-        CONNECTION_TIMEOUT, null);
+    givenClients();
+    tunnelingMetaStoreClientFactory
+        .newInstance(METASTORE_URI, metastoreTunnel, NAME, RECONNECTION_RETRIES, CONNECTION_TIMEOUT,
+            (Map<String, String>) null);
+  }
+
+  @Test
+  public void newInstanceSharedHiveConf() {
+    givenClients();
+    HiveConf hiveConf = new HiveConf();
+    tunnelingMetaStoreClientFactory
+        .newInstance(METASTORE_URI, metastoreTunnel, NAME, RECONNECTION_RETRIES, CONNECTION_TIMEOUT, hiveConf);
+    verify(localHiveConfFactory).newInstance(eq(TUNNEL_LOCALHOST), anyInt(), same(hiveConf));
   }
 
   @Test
   public void newInstanceMultipleUris() {
+    givenClients();
     String metastoreUris = METASTORE_URI + ",thrift://metastore-host2:43";
-    tunnelingMetaStoreClientFactory.newInstance(metastoreUris, metastoreTunnel, NAME, RECONNECTION_RETRIES,
-        CONNECTION_TIMEOUT, waggleDanceConfigurationProperties);
-    verify(tunnelableFactory)
-        .wrap(tunnelableSupplierCaptor.capture(), eq(tunnelingMetaStoreClientFactory.METHOD_CHECKER),
-            eq(metastoreTunnel.getLocalhost()), anyInt(), eq(METASTORE_HOST), eq(METASTORE_PORT));
-    TunnelableSupplier<CloseableThriftHiveMetastoreIface> tunnelable = tunnelableSupplierCaptor.getValue();
-    assertThat(tunnelable, is(hiveMetaStoreClientSupplier));
+    tunnelingMetaStoreClientFactory
+        .newInstance(metastoreUris, metastoreTunnel, NAME, RECONNECTION_RETRIES, CONNECTION_TIMEOUT,
+            waggleDanceConfigurationProperties);
+    verify(tunnelConnectionManagerFactory)
+        .create(eq(TUNNEL_LOCALHOST), anyInt(), eq(METASTORE_HOST), eq(METASTORE_PORT));
   }
 
   @Test
   public void localHiveConfigUsesCorrectParameters() {
-    tunnelingMetaStoreClientFactory.newInstance(METASTORE_URI, metastoreTunnel, NAME, RECONNECTION_RETRIES,
-        CONNECTION_TIMEOUT, waggleDanceConfigurationProperties);
+    givenClients();
+    newClient();
     ArgumentCaptor<String> localHostCaptor = ArgumentCaptor.forClass(String.class);
     ArgumentCaptor<HiveConf> hiveConfCaptor = ArgumentCaptor.forClass(HiveConf.class);
     // we get random assigned free port for local port
@@ -138,4 +178,62 @@ public class TunnelingMetaStoreClientFactoryTest {
     assertThat(hiveConf.getBoolVar(ConfVars.METASTORE_USE_THRIFT_FRAMED_TRANSPORT), is(true));
     assertThat(hiveConf.getBoolVar(ConfVars.METASTORE_USE_THRIFT_COMPACT_PROTOCOL), is(false));
   }
+
+  @Test
+  public void clientsShareTunnel() throws Exception {
+    givenClients();
+    newClient();
+    newClient();
+    verify(tunnelConnectionManagerFactory)
+        .create(eq(TUNNEL_LOCALHOST), anyInt(), eq(METASTORE_HOST), eq(METASTORE_PORT));
+    verify(tunnelConnectionManager).open();
+    ArgumentCaptor<Integer> localPortCaptor = ArgumentCaptor.forClass(Integer.class);
+    verify(localHiveConfFactory, times(2)).newInstance(eq(TUNNEL_LOCALHOST), localPortCaptor.capture(), any());
+    assertThat(localPortCaptor.getAllValues().get(0), is(localPortCaptor.getAllValues().get(1)));
+  }
+
+  @Test
+  public void closeLastClientClosesTunnel() throws Exception {
+    givenClients();
+    CloseableThriftHiveMetastoreIface first = newClient();
+    CloseableThriftHiveMetastoreIface second = newClient();
+
+    first.close();
+    first.close();
+    verify(tunnelConnectionManager, never()).close();
+
+    second.close();
+    verify(client, times(2)).close();
+    verify(tunnelConnectionManager).close();
+  }
+
+  @Test
+  public void tunnelOpenFailure() throws Exception {
+    doThrow(new JSchException("Auth fail")).doNothing().when(tunnelConnectionManager).open();
+    try {
+      newClient();
+      fail("Expected SshException");
+    } catch (SshException e) {
+      // The failed tunnel is not shared with the next client
+    }
+    verify(tunnelConnectionManager).close();
+
+    givenClients();
+    newClient();
+    verify(tunnelConnectionManagerFactory, times(2))
+        .create(eq(TUNNEL_LOCALHOST), anyInt(), eq(METASTORE_HOST), eq(METASTORE_PORT));
+  }
+
+  @Test
+  public void clientFailureReleasesTunnel() {
+    when(localHiveConfFactory.newInstance(any(String.class), any(Integer.class), any(HiveConf.class)))
+        .thenThrow(new IllegalArgumentException());
+    try {
+      newClient();
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    verify(tunnelConnectionManager).close();
+  }
 }
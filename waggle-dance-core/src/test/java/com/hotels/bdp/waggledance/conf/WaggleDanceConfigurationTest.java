@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2021 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -170,4 +170,149 @@ public class WaggleDanceConfigurationTest {
     assertThat(waggleDanceConfiguration.getStatusPollingDelayTimeUnit(), is(timeUnit));
   }
 
+  @Test
+  public void setterGetterDatabaseIndexRefreshDelayDefault() {
+    assertThat(waggleDanceConfiguration.getDatabaseIndexRefreshDelay(), is(1));
+    assertThat(waggleDanceConfiguration.getDatabaseIndexRefreshDelayTimeUnit(), is(TimeUnit.MINUTES));
+  }
+
+  @Test
+  public void setterGetterDatabaseIndexRefreshDelay() {
+    waggleDanceConfiguration.setDatabaseIndexRefreshDelay(30);
+    waggleDanceConfiguration.setDatabaseIndexRefreshDelayTimeUnit(TimeUnit.SECONDS);
+    assertThat(waggleDanceConfiguration.getDatabaseIndexRefreshDelay(), is(30));
+    assertThat(waggleDanceConfiguration.getDatabaseIndexRefreshDelayTimeUnit(), is(TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void setterGetterHealthCheckDefaults() {
+    assertThat(waggleDanceConfiguration.getHealthCheckDelay(), is(10));
+    assertThat(waggleDanceConfiguration.getHealthCheckDelayTimeUnit(), is(TimeUnit.SECONDS));
+    assertThat(waggleDanceConfiguration.getHealthCheckThreshold(), is(2));
+    assertThat(waggleDanceConfiguration.getHealthCheckDegradedLatencyMillis(), is(1000L));
+  }
+
+  @Test
+  public void setterGetterHealthCheck() {
+    waggleDanceConfiguration.setHealthCheckDelay(30);
+    waggleDanceConfiguration.setHealthCheckDelayTimeUnit(TimeUnit.MINUTES);
+    waggleDanceConfiguration.setHealthCheckThreshold(3);
+    waggleDanceConfiguration.setHealthCheckDegradedLatencyMillis(500L);
+    assertThat(waggleDanceConfiguration.getHealthCheckDelay(), is(30));
+    assertThat(waggleDanceConfiguration.getHealthCheckDelayTimeUnit(), is(TimeUnit.MINUTES));
+    assertThat(waggleDanceConfiguration.getHealthCheckThreshold(), is(3));
+    assertThat(waggleDanceConfiguration.getHealthCheckDegradedLatencyMillis(), is(500L));
+  }
+
+  @Test
+  public void setterGetterThriftServerTypeDefault() {
+    assertThat(waggleDanceConfiguration.getThriftServerType(), is(ThriftServerType.THREAD_POOL));
+  }
+
+  @Test
+  public void setterGetterThriftServerType() {
+    waggleDanceConfiguration.setThriftServerType(ThriftServerType.THREADED_SELECTOR);
+    assertThat(waggleDanceConfiguration.getThriftServerType(), is(ThriftServerType.THREADED_SELECTOR));
+  }
+
+  @Test
+  public void nullThriftServerType() {
+    waggleDanceConfiguration.setThriftServerType(null);
+    Set<ConstraintViolation<WaggleDanceConfiguration>> violations = validator.validate(waggleDanceConfiguration);
+    assertThat(violations.size(), is(1));
+  }
+
+  @Test
+  public void setterGetterThriftServerSelectorThreads() {
+    waggleDanceConfiguration.setThriftServerSelectorThreads(4);
+    assertThat(waggleDanceConfiguration.getThriftServerSelectorThreads(), is(4));
+  }
+
+  @Test
+  public void zeroThriftServerSelectorThreads() {
+    waggleDanceConfiguration.setThriftServerSelectorThreads(0);
+    Set<ConstraintViolation<WaggleDanceConfiguration>> violations = validator.validate(waggleDanceConfiguration);
+    assertThat(violations.size(), is(1));
+  }
+
+  @Test
+  public void setterGetterThriftServerWorkerThreads() {
+    waggleDanceConfiguration.setThriftServerWorkerThreads(10);
+    assertThat(waggleDanceConfiguration.getThriftServerWorkerThreads(), is(10));
+  }
+
+  @Test
+  public void zeroThriftServerWorkerThreads() {
+    waggleDanceConfiguration.setThriftServerWorkerThreads(0);
+    Set<ConstraintViolation<WaggleDanceConfiguration>> violations = validator.validate(waggleDanceConfiguration);
+    assertThat(violations.size(), is(1));
+  }
+
+  @Test
+  public void setterGetterThriftServerWorkerQueueSize() {
+    waggleDanceConfiguration.setThriftServerWorkerQueueSize(10);
+    assertThat(waggleDanceConfiguration.getThriftServerWorkerQueueSize(), is(10));
+  }
+
+  @Test
+  public void defaultVirtualThreads() {
+    assertThat(waggleDanceConfiguration.isVirtualThreads(), is(false));
+  }
+
+  @Test
+  public void setterGetterVirtualThreads() {
+    waggleDanceConfiguration.setVirtualThreads(true);
+    assertThat(waggleDanceConfiguration.isVirtualThreads(), is(true));
+  }
+
+  @Test
+  public void defaultRequestCoalescing() {
+    assertThat(waggleDanceConfiguration.isRequestCoalescing(), is(false));
+  }
+
+  @Test
+  public void setterGetterRequestCoalescing() {
+    waggleDanceConfiguration.setRequestCoalescing(true);
+    assertThat(waggleDanceConfiguration.isRequestCoalescing(), is(true));
+  }
+
+  @Test
+  public void setterGetterFanOutThreads() {
+    waggleDanceConfiguration.setFanOutThreads(8);
+    assertThat(waggleDanceConfiguration.getFanOutThreads(), is(8));
+  }
+
+  @Test
+  public void zeroFanOutThreads() {
+    waggleDanceConfiguration.setFanOutThreads(0);
+    Set<ConstraintViolation<WaggleDanceConfiguration>> violations = validator.validate(waggleDanceConfiguration);
+    assertThat(violations.size(), is(1));
+  }
+
+  @Test
+  public void setterGetterFanOutQueueSize() {
+    waggleDanceConfiguration.setFanOutQueueSize(8);
+    assertThat(waggleDanceConfiguration.getFanOutQueueSize(), is(8));
+  }
+
+  @Test
+  public void zeroFanOutQueueSize() {
+    waggleDanceConfiguration.setFanOutQueueSize(0);
+    Set<ConstraintViolation<WaggleDanceConfiguration>> violations = validator.validate(waggleDanceConfiguration);
+    assertThat(violations.size(), is(1));
+  }
+
+  @Test
+  public void setterGetterFanOutMaxConcurrencyPerMetastore() {
+    waggleDanceConfiguration.setFanOutMaxConcurrencyPerMetastore(8);
+    assertThat(waggleDanceConfiguration.getFanOutMaxConcurrencyPerMetastore(), is(8));
+  }
+
+  @Test
+  public void zeroFanOutMaxConcurrencyPerMetastore() {
+    waggleDanceConfiguration.setFanOutMaxConcurrencyPerMetastore(0);
+    Set<ConstraintViolation<WaggleDanceConfiguration>> violations = validator.validate(waggleDanceConfiguration);
+    assertThat(violations.size(), is(1));
+  }
+
 }
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -29,6 +29,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import com.hotels.bdp.waggledance.mapping.service.FanOutExecutor;
 import com.hotels.bdp.waggledance.mapping.service.PrefixNamingStrategy;
 import com.hotels.bdp.waggledance.mapping.service.impl.LowerCasePrefixNamingStrategy;
 import com.hotels.bdp.waggledance.metrics.MonitoringConfiguration;
@@ -40,6 +41,7 @@ public class CommonBeansTest {
 
   private @Autowired HiveConf hiveConf;
   private @Autowired PrefixNamingStrategy namingStrategy;
+  private @Autowired FanOutExecutor fanOutExecutor;
 
   @Test
   public void hiveConf() {
@@ -54,4 +56,9 @@ public class CommonBeansTest {
     assertThat(namingStrategy.apply(newFederatedInstance("Name", null)), is("name_"));
   }
 
+  @Test
+  public void fanOutExecutor() throws Exception {
+    assertThat(fanOutExecutor.submit("name", () -> "result").get(), is("result"));
+  }
+
 }
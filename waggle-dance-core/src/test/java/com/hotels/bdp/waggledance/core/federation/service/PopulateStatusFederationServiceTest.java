@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2021 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,12 +16,14 @@
 package com.hotels.bdp.waggledance.core.federation.service;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
+import java.util.Collections;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -31,7 +33,9 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import com.hotels.bdp.waggledance.api.federation.service.FederationStatusService;
 import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
+import com.hotels.bdp.waggledance.api.model.CircuitBreakerState;
 import com.hotels.bdp.waggledance.api.model.MetaStoreStatus;
+import com.hotels.bdp.waggledance.client.CircuitBreakerMetaStoreClientFactory;
 import com.hotels.bdp.waggledance.mapping.service.impl.NotifyingFederationService;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -39,6 +43,7 @@ public class PopulateStatusFederationServiceTest {
 
   private @Mock NotifyingFederationService federationService;
   private @Mock FederationStatusService federationStatusService;
+  private @Mock CircuitBreakerMetaStoreClientFactory circuitBreakerMetaStoreClientFactory;
   private AbstractMetaStore federatedMetaStore1;
   private AbstractMetaStore federatedMetaStore2;
 
@@ -52,7 +57,8 @@ public class PopulateStatusFederationServiceTest {
     when(federationService.getAll()).thenReturn(Arrays.asList(federatedMetaStore1, federatedMetaStore2));
     when(federationStatusService.checkStatus(federatedMetaStore1)).thenReturn(MetaStoreStatus.AVAILABLE);
     when(federationStatusService.checkStatus(federatedMetaStore2)).thenReturn(MetaStoreStatus.UNAVAILABLE);
-    service = new PopulateStatusFederationService(federationService, federationStatusService);
+    service = new PopulateStatusFederationService(federationService, federationStatusService,
+        circuitBreakerMetaStoreClientFactory);
   }
 
   @Test
@@ -94,4 +100,19 @@ public class PopulateStatusFederationServiceTest {
     assertThat(federatedMetaStore2.getStatus(), is(MetaStoreStatus.UNAVAILABLE));
   }
 
+  @Test
+  public void getAllCircuitBreakerStates() {
+    when(circuitBreakerMetaStoreClientFactory.getState("name1")).thenReturn(CircuitBreakerState.OPEN);
+    service.getAll();
+    assertThat(federatedMetaStore1.getCircuitBreakerState(), is(CircuitBreakerState.OPEN));
+    assertThat(federatedMetaStore2.getCircuitBreakerState(), is(nullValue()));
+  }
+
+  @Test
+  public void getAllEmpty() {
+    when(federationService.getAll()).thenReturn(Collections.emptyList());
+    assertThat(service.getAll().size(), is(0));
+    verifyNoInteractions(federationStatusService);
+  }
+
 }
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2021 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,20 +15,31 @@
  */
 package com.hotels.bdp.waggledance.mapping.model;
 
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import static com.hotels.bdp.waggledance.api.model.AbstractMetaStore.newFederatedInstance;
 
 import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.hive.metastore.DefaultMetaStoreFilterHookImpl;
+import org.apache.hadoop.hive.metastore.api.Database;
 import org.apache.thrift.TException;
+import org.apache.thrift.transport.TTransportException;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -38,12 +49,24 @@ import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
+import com.hotels.bdp.waggledance.api.model.ConnectionPool;
 import com.hotels.bdp.waggledance.api.model.DatabaseResolution;
+import com.hotels.bdp.waggledance.api.model.MetadataCache;
+import com.hotels.bdp.waggledance.client.BulkheadMetaStoreClientFactory;
+import com.hotels.bdp.waggledance.client.CircuitBreakerMetaStoreClientFactory;
 import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIfaceClientFactory;
+import com.hotels.bdp.waggledance.client.CoalescingMetaStoreClientFactory;
 import com.hotels.bdp.waggledance.client.DefaultMetaStoreClientFactory;
+import com.hotels.bdp.waggledance.client.HedgingMetaStoreClientFactory;
+import com.hotels.bdp.waggledance.client.cache.CachingMetaStoreClientFactory;
 import com.hotels.bdp.waggledance.client.tunnelling.TunnelingMetaStoreClientFactory;
 import com.hotels.bdp.waggledance.conf.WaggleDanceConfiguration;
+import com.hotels.bdp.waggledance.mapping.service.HealthState;
+import com.hotels.bdp.waggledance.mapping.service.MetaStoreHealth;
+import com.hotels.bdp.waggledance.mapping.service.MetaStoreHealthMonitor;
 import com.hotels.bdp.waggledance.mapping.service.PrefixNamingStrategy;
 import com.hotels.bdp.waggledance.server.security.AccessControlHandlerFactory;
 import com.hotels.beeju.ThriftHiveMetaStoreJUnitRule;
@@ -59,7 +82,21 @@ public class MetaStoreMappingFactoryImplTest {
   private @Mock PrefixNamingStrategy prefixNamingStrategy;
   private @Mock AccessControlHandlerFactory accessControlHandlerFactory;
   private final CloseableThriftHiveMetastoreIfaceClientFactory metaStoreClientFactory = new CloseableThriftHiveMetastoreIfaceClientFactory(
-      new TunnelingMetaStoreClientFactory(), new DefaultMetaStoreClientFactory(), new WaggleDanceConfiguration());
+      new TunnelingMetaStoreClientFactory(), new DefaultMetaStoreClientFactory(), new WaggleDanceConfiguration(),
+      new SimpleMeterRegistry());
+  private final CachingMetaStoreClientFactory cachingMetaStoreClientFactory = new CachingMetaStoreClientFactory(
+      new SimpleMeterRegistry());
+  private final CoalescingMetaStoreClientFactory coalescingMetaStoreClientFactory = new CoalescingMetaStoreClientFactory(
+      true, new SimpleMeterRegistry());
+  private final BulkheadMetaStoreClientFactory bulkheadMetaStoreClientFactory = new BulkheadMetaStoreClientFactory(
+      new SimpleMeterRegistry());
+  private final CircuitBreakerMetaStoreClientFactory circuitBreakerMetaStoreClientFactory = new CircuitBreakerMetaStoreClientFactory(
+      new SimpleMeterRegistry());
+  private final HedgingMetaStoreClientFactory hedgingMetaStoreClientFactory = new HedgingMetaStoreClientFactory(
+      Executors.defaultThreadFactory(), new SimpleMeterRegistry());
+  private final MetaStoreHealthMonitor metaStoreHealthMonitor = new MetaStoreHealthMonitor(
+      TimeUnit.HOURS.toMillis(1), 2, 1000, TimeUnit.HOURS.toMillis(1), Executors.defaultThreadFactory(),
+      new SimpleMeterRegistry());
 
   private MetaStoreMappingFactoryImpl factory;
 
@@ -68,7 +105,15 @@ public class MetaStoreMappingFactoryImplTest {
     when(prefixNamingStrategy.apply(any(AbstractMetaStore.class)))
         .thenAnswer((Answer<String>) invocation -> ((AbstractMetaStore) invocation.getArgument(0)).getDatabasePrefix());
     factory = new MetaStoreMappingFactoryImpl(waggleDanceConfiguration, prefixNamingStrategy, metaStoreClientFactory,
-        accessControlHandlerFactory);
+        accessControlHandlerFactory, cachingMetaStoreClientFactory, coalescingMetaStoreClientFactory,
+        bulkheadMetaStoreClientFactory, circuitBreakerMetaStoreClientFactory, hedgingMetaStoreClientFactory,
+        metaStoreHealthMonitor);
+  }
+
+  @After
+  public void close() {
+    metaStoreHealthMonitor.close();
+    hedgingMetaStoreClientFactory.close();
   }
 
   @Test
@@ -95,11 +140,39 @@ public class MetaStoreMappingFactoryImplTest {
   }
 
   @Test
-  public void reconnection() throws Exception {
+  public void isAvailable() throws Exception {
+    AbstractMetaStore federatedMetaStore = newFederatedInstance("fed1", thrift.getThriftConnectionUri());
+    MetaStoreMapping mapping = factory.newInstance(federatedMetaStore);
+    assertThat(mapping.isAvailable(), is(true));
+    MetaStoreHealth health = metaStoreHealthMonitor
+        .register("fed1", () -> metaStoreClientFactory.newInstance(federatedMetaStore));
+    await().atMost(5, TimeUnit.SECONDS).until(() -> health.getState() != null);
+    assertThat(health.getState(), is(HealthState.UP));
+    assertThat(mapping.isAvailable(), is(true));
+    mapping.close();
+    assertThat(metaStoreHealthMonitor.getHealth("fed1"), is(sameInstance(health)));
+  }
+
+  @Test
+  public void isNotAvailableWhenProbesFail() {
+    MetaStoreMapping mapping = factory.newInstance(newFederatedInstance("fed1", thrift.getThriftConnectionUri()));
+    metaStoreHealthMonitor.register("fed1", () -> {
+      throw new RuntimeException("Cannot create client");
+    });
+    await().atMost(5, TimeUnit.SECONDS).until(() -> !mapping.isAvailable());
+  }
+
+  @Test
+  public void pooledClientIsNotReopenedOnceClosed() throws Exception {
     MetaStoreMapping mapping = factory.newInstance(newFederatedInstance("fed1", thrift.getThriftConnectionUri()));
     assertThat(mapping.getClient().get_all_databases(), is(Arrays.asList("default", "test_db")));
     mapping.close();
-    assertThat(mapping.getClient().get_all_databases(), is(Arrays.asList("default", "test_db")));
+    try {
+      mapping.getClient().get_all_databases();
+      fail("Expected TTransportException");
+    } catch (TTransportException e) {
+      assertThat(e.getMessage(), is("Client waggledance-fed1 is closed"));
+    }
   }
 
   @Test
@@ -111,19 +184,52 @@ public class MetaStoreMappingFactoryImplTest {
     assertThat(mapping.getClient().get_all_databases(), is(Arrays.asList("default", "test_db")));
   }
 
+  @Test
+  public void connectionPoolDisabled() throws Exception {
+    AbstractMetaStore federatedMetaStore = newFederatedInstance("fed1", thrift.getThriftConnectionUri());
+    ConnectionPool connectionPool = new ConnectionPool();
+    connectionPool.setEnabled(false);
+    federatedMetaStore.setConnectionPool(connectionPool);
+    MetaStoreMapping mapping = factory.newInstance(federatedMetaStore);
+    assertThat(mapping.getClient().get_all_databases(), is(Arrays.asList("default", "test_db")));
+    mapping.close();
+    assertThat(mapping.getClient().get_all_databases(), is(Arrays.asList("default", "test_db")));
+  }
+
+  @Test
+  public void metadataCache() throws Exception {
+    AbstractMetaStore federatedMetaStore = newFederatedInstance("fed1", thrift.getThriftConnectionUri());
+    MetadataCache metadataCache = new MetadataCache();
+    metadataCache.setEnabled(true);
+    metadataCache.setNotificationPollIntervalMillis(0);
+    federatedMetaStore.setMetadataCache(metadataCache);
+    MetaStoreMapping mapping = factory.newInstance(federatedMetaStore);
+    assertThat(mapping.getClient().get_database(TEST_DB).getDescription(), is(nullValue()));
+
+    Database database = thrift.client().getDatabase(TEST_DB);
+    database.setDescription("altered");
+    thrift.client().alterDatabase(TEST_DB, database);
+    assertThat(mapping.getClient().get_database(TEST_DB).getDescription(), is(nullValue()));
+
+    mapping.getClient().alter_database(TEST_DB, database);
+    assertThat(mapping.getClient().get_database(TEST_DB).getDescription(), is("altered"));
+    mapping.close();
+  }
+
   @Test
   public void unreachableMetastoreClient() {
     CloseableThriftHiveMetastoreIfaceClientFactory closeableThriftHiveMetastoreIfaceClientFactory = Mockito
         .mock(CloseableThriftHiveMetastoreIfaceClientFactory.class);
     MetaStoreMappingFactoryImpl factory = new MetaStoreMappingFactoryImpl(waggleDanceConfiguration,
-        prefixNamingStrategy, closeableThriftHiveMetastoreIfaceClientFactory, accessControlHandlerFactory);
+        prefixNamingStrategy, closeableThriftHiveMetastoreIfaceClientFactory, accessControlHandlerFactory,
+        cachingMetaStoreClientFactory, coalescingMetaStoreClientFactory, bulkheadMetaStoreClientFactory,
+        circuitBreakerMetaStoreClientFactory, hedgingMetaStoreClientFactory, metaStoreHealthMonitor);
     AbstractMetaStore federatedMetaStore = newFederatedInstance("fed1", thrift.getThriftConnectionUri());
-    when(closeableThriftHiveMetastoreIfaceClientFactory.newInstance(federatedMetaStore))
+    when(closeableThriftHiveMetastoreIfaceClientFactory.newInstance(eq(federatedMetaStore), any()))
         .thenThrow(new RuntimeException("Cannot create client"));
 
     MetaStoreMapping mapping = factory.newInstance(federatedMetaStore);
     assertThat(mapping, is(notNullValue()));
-    assertThat(mapping.isAvailable(), is(false));
     try {
       mapping.getClient().getStatusDetails();
     } catch (TException e) {
@@ -147,4 +253,22 @@ public class MetaStoreMappingFactoryImplTest {
     assertThat(mapping, is(notNullValue()));
     assertThat(mapping.getMetastoreFilter(), instanceOf(DefaultMetaStoreFilterHookImpl.class));
   }
+
+  @Test
+  public void defaultMetastoreFilterHookIsShared() {
+    MetaStoreMapping mapping1 = factory.newInstance(newFederatedInstance("fed1", thrift.getThriftConnectionUri()));
+    MetaStoreMapping mapping2 = factory.newInstance(newFederatedInstance("fed2", thrift.getThriftConnectionUri()));
+    assertThat(mapping1.getMetastoreFilter(), is(sameInstance(mapping2.getMetastoreFilter())));
+  }
+
+  @Test
+  public void metastoreFilterHooksFromConfigAreNotShared() {
+    AbstractMetaStore federatedMetaStore1 = newFederatedInstance("fed1", thrift.getThriftConnectionUri());
+    federatedMetaStore1.setHiveMetastoreFilterHook(PrefixingMetastoreFilter.class.getName());
+    AbstractMetaStore federatedMetaStore2 = newFederatedInstance("fed2", thrift.getThriftConnectionUri());
+    federatedMetaStore2.setHiveMetastoreFilterHook(PrefixingMetastoreFilter.class.getName());
+    MetaStoreMapping mapping1 = factory.newInstance(federatedMetaStore1);
+    MetaStoreMapping mapping2 = factory.newInstance(federatedMetaStore2);
+    assertThat(mapping1.getMetastoreFilter(), is(not(sameInstance(mapping2.getMetastoreFilter()))));
+  }
 }
@@ -0,0 +1,229 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.mapping.service;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import static com.hotels.bdp.waggledance.mapping.service.FanOutExecutor.ACTIVE_METRIC_NAME;
+import static com.hotels.bdp.waggledance.mapping.service.FanOutExecutor.CANCELLED_METRIC_NAME;
+import static com.hotels.bdp.waggledance.mapping.service.FanOutExecutor.METASTORE_LIMIT_REASON;
+import static com.hotels.bdp.waggledance.mapping.service.FanOutExecutor.METASTORE_TAG_NAME;
+import static com.hotels.bdp.waggledance.mapping.service.FanOutExecutor.QUEUE_FULL_REASON;
+import static com.hotels.bdp.waggledance.mapping.service.FanOutExecutor.QUEUE_METRIC_NAME;
+import static com.hotels.bdp.waggledance.mapping.service.FanOutExecutor.REASON_TAG_NAME;
+import static com.hotels.bdp.waggledance.mapping.service.FanOutExecutor.REJECTED_METRIC_NAME;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.hotels.bdp.waggledance.client.ClientSession;
+import com.hotels.bdp.waggledance.util.ThreadFactories;
+
+public class FanOutExecutorTest {
+
+  private static final String METASTORE = "metastore";
+  private static final String OTHER_METASTORE = "other";
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private FanOutExecutor executor;
+
+  @After
+  public void after() {
+    release.countDown();
+    if (executor != null) {
+      executor.close();
+    }
+  }
+
+  private FanOutExecutor newExecutor(int threads, int queueSize, int maxConcurrencyPerMetastore) {
+    executor = new FanOutExecutor(threads, queueSize, maxConcurrencyPerMetastore,
+        ThreadFactories.newThreadFactory("fan-out-test", false), meterRegistry);
+    return executor;
+  }
+
+  private String blockingCall() throws InterruptedException {
+    release.await();
+    return "blocked";
+  }
+
+  @Test
+  public void submit() throws Exception {
+    newExecutor(2, 2, 2);
+    assertThat(executor.submit(METASTORE, () -> "result").get(), is("result"));
+  }
+
+  @Test
+  public void failedCall() throws Exception {
+    newExecutor(2, 2, 2);
+    IllegalStateException error = new IllegalStateException();
+    CompletableFuture<String> future = executor.submit(METASTORE, () -> {
+      throw error;
+    });
+    try {
+      future.get();
+      fail("Expected ExecutionException");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), is(sameInstance(error)));
+    }
+  }
+
+  @Test
+  public void callsRunWithTheSessionOfTheCaller() throws Exception {
+    newExecutor(2, 2, 2);
+    ClientSession session = new ClientSession();
+    try (ClientSession.Binding binding = session.bind()) {
+      assertThat(executor.submit(METASTORE, ClientSession::current).get(), is(sameInstance(session)));
+    }
+  }
+
+  @Test
+  public void metastoreLimit() throws Exception {
+    newExecutor(4, 4, 1);
+    CompletableFuture<String> blocked = executor.submit(METASTORE, this::blockingCall);
+
+    CompletableFuture<String> rejected = executor.submit(METASTORE, () -> "rejected");
+    assertRejected(rejected);
+    assertThat(rejectedCount(METASTORE_LIMIT_REASON), is(1.0));
+
+    assertThat(executor.submit(OTHER_METASTORE, () -> "other").get(), is("other"));
+    release.countDown();
+    assertThat(blocked.get(), is("blocked"));
+    assertThat(executor.submit(METASTORE, () -> "accepted").get(), is("accepted"));
+  }
+
+  @Test
+  public void queueFull() throws Exception {
+    newExecutor(1, 1, 4);
+    CompletableFuture<String> running = executor.submit(METASTORE, this::blockingCall);
+    CompletableFuture<String> queued = executor.submit(METASTORE, () -> "queued");
+    assertThat(meterRegistry.get(QUEUE_METRIC_NAME).gauge().value(), is(1.0));
+
+    assertRejected(executor.submit(METASTORE, () -> "rejected"));
+    assertThat(rejectedCount(QUEUE_FULL_REASON), is(1.0));
+
+    release.countDown();
+    assertThat(running.get(), is("blocked"));
+    assertThat(queued.get(), is("queued"));
+  }
+
+  @Test
+  public void cancelInterruptsTheCall() throws Exception {
+    newExecutor(1, 1, 1);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    CompletableFuture<String> future = executor.submit(METASTORE, () -> {
+      started.countDown();
+      try {
+        return blockingCall();
+      } catch (InterruptedException e) {
+        interrupted.countDown();
+        throw e;
+      }
+    });
+    started.await();
+    assertThat(meterRegistry.get(ACTIVE_METRIC_NAME).gauge().value(), is(1.0));
+
+    executor.cancel(METASTORE, future);
+
+    assertThat(future.isCancelled(), is(true));
+    assertThat(interrupted.await(5, TimeUnit.SECONDS), is(true));
+    assertThat(meterRegistry.get(CANCELLED_METRIC_NAME).tag(METASTORE_TAG_NAME, METASTORE).counter().count(),
+        is(1.0));
+    // the permit is released once the call ends
+    assertThat(awaitResult(METASTORE), is("accepted"));
+  }
+
+  @Test
+  public void cancelQueuedCallReleasesPermit() throws Exception {
+    newExecutor(1, 2, 2);
+    CompletableFuture<String> running = executor.submit(OTHER_METASTORE, this::blockingCall);
+    CompletableFuture<String> queued = executor.submit(METASTORE, () -> "queued");
+    executor.cancel(METASTORE, queued);
+    executor.cancel(METASTORE, executor.submit(METASTORE, () -> "queued"));
+    assertThat(meterRegistry.get(QUEUE_METRIC_NAME).gauge().value(), is(0.0));
+
+    release.countDown();
+    assertThat(running.get(), is("blocked"));
+    assertThat(executor.submit(METASTORE, () -> "accepted").get(), is("accepted"));
+    assertThat(executor.submit(METASTORE, () -> "accepted").get(), is("accepted"));
+  }
+
+  @Test
+  public void cancelCompletedCall() throws Exception {
+    newExecutor(1, 1, 1);
+    CompletableFuture<String> future = executor.submit(METASTORE, () -> "result");
+    assertThat(future.get(), is("result"));
+
+    executor.cancel(METASTORE, future);
+
+    assertThat(future.isCancelled(), is(false));
+    assertThat(meterRegistry.find(CANCELLED_METRIC_NAME).counter() == null, is(true));
+  }
+
+  @Test
+  public void close() throws Exception {
+    newExecutor(1, 1, 1);
+    executor.close();
+    assertRejected(executor.submit(METASTORE, () -> "rejected"));
+  }
+
+  private String awaitResult(String metastoreName) throws Exception {
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+    while (true) {
+      try {
+        return executor.submit(metastoreName, () -> "accepted").get();
+      } catch (ExecutionException e) {
+        if (System.currentTimeMillis() > deadline) {
+          throw e;
+        }
+        Thread.sleep(10);
+      }
+    }
+  }
+
+  private double rejectedCount(String reason) {
+    return meterRegistry
+        .get(REJECTED_METRIC_NAME)
+        .tag(METASTORE_TAG_NAME, METASTORE)
+        .tag(REASON_TAG_NAME, reason)
+        .counter()
+        .count();
+  }
+
+  private static void assertRejected(CompletableFuture<?> future) throws InterruptedException {
+    try {
+      future.get();
+      fail("Expected RejectedExecutionException");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), is(instanceOf(RejectedExecutionException.class)));
+    }
+  }
+
+}
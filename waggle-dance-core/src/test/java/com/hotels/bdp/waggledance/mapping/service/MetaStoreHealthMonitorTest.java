@@ -0,0 +1,301 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.mapping.service;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TException;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.facebook.fb303.fb_status;
+
+import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIface;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MetaStoreHealthMonitorTest {
+
+  private static final String NAME = "name";
+  private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+  private @Mock CloseableThriftHiveMetastoreIface client;
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private MetaStoreHealthMonitor monitor = new MetaStoreHealthMonitor(NEVER, 2, NEVER, NEVER,
+      Executors.defaultThreadFactory(), meterRegistry);
+
+  @After
+  public void closeMonitor() {
+    monitor.close();
+  }
+
+  private MetaStoreHealth registerAndProbe(Supplier<CloseableThriftHiveMetastoreIface> probeClientFactory) {
+    MetaStoreHealth health = monitor.register(NAME, probeClientFactory);
+    await().atMost(5, TimeUnit.SECONDS).until(() -> health.getState() != null);
+    return health;
+  }
+
+  private double stateGauge() {
+    return meterRegistry.get(MetaStoreHealthMonitor.STATE_METRIC_NAME).tag("metastore", NAME).gauge().value();
+  }
+
+  private double transitions(HealthState from, HealthState to) {
+    return meterRegistry
+        .get(MetaStoreHealthMonitor.TRANSITIONS_METRIC_NAME)
+        .tag("metastore", NAME)
+        .tag("from", from.name())
+        .tag("to", to.name())
+        .counter()
+        .count();
+  }
+
+  @Test
+  public void registerDoesNotWaitForTheFirstProbe() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    when(client.isOpen()).then(invocation -> {
+      release.await();
+      return true;
+    });
+    MetaStoreHealth health = monitor.register(NAME, () -> client);
+    assertThat(health.getState(), is(nullValue()));
+    assertThat(health.isAvailable(), is(true));
+    release.countDown();
+    await().atMost(5, TimeUnit.SECONDS).until(() -> health.getState() == HealthState.UP);
+  }
+
+  @Test
+  public void registerProbesRightAway() throws TException {
+    when(client.isOpen()).thenReturn(true);
+    MetaStoreHealth health = registerAndProbe(() -> client);
+    assertThat(health.getState(), is(HealthState.UP));
+    assertThat(health.isAvailable(), is(true));
+    assertThat(monitor.getHealth(NAME), is(health));
+    assertThat(stateGauge(), is(2.0));
+    verify(client).getStatus();
+  }
+
+  @Test
+  public void firstFailedProbeIsDown() {
+    when(client.isOpen()).thenReturn(false);
+    MetaStoreHealth health = registerAndProbe( () -> client);
+    assertThat(health.getState(), is(HealthState.DOWN));
+    assertThat(health.isAvailable(), is(false));
+    assertThat(stateGauge(), is(0.0));
+  }
+
+  @Test
+  public void unimplementedStatusCallIsUp() throws TException {
+    when(client.isOpen()).thenReturn(true);
+    when(client.getStatus()).thenThrow(new TApplicationException(TApplicationException.UNKNOWN_METHOD));
+    assertThat(registerAndProbe(() -> client).getState(), is(HealthState.UP));
+  }
+
+  @Test
+  public void hysteresis() throws TException {
+    when(client.isOpen()).thenReturn(true);
+    MetaStoreHealth health = registerAndProbe( () -> client);
+
+    when(client.getStatus()).thenThrow(new TException("down"));
+    health.probe();
+    assertThat(health.getState(), is(HealthState.DEGRADED));
+    assertThat(health.isAvailable(), is(true));
+    health.probe();
+    assertThat(health.getState(), is(HealthState.DOWN));
+
+    doReturn(fb_status.ALIVE).when(client).getStatus();
+    health.probe();
+    assertThat(health.getState(), is(HealthState.DOWN));
+    health.probe();
+    assertThat(health.getState(), is(HealthState.UP));
+
+    assertThat(transitions(HealthState.UP, HealthState.DEGRADED), is(1.0));
+    assertThat(transitions(HealthState.DEGRADED, HealthState.DOWN), is(1.0));
+    assertThat(transitions(HealthState.DOWN, HealthState.UP), is(1.0));
+  }
+
+  @Test
+  public void failedProbeCreatesNewClient() throws Exception {
+    AtomicInteger created = new AtomicInteger();
+    when(client.isOpen()).thenReturn(false).thenReturn(true);
+    MetaStoreHealth health = registerAndProbe( () -> {
+      created.incrementAndGet();
+      return client;
+    });
+    health.probe();
+    assertThat(created.get(), is(2));
+    verify(client, times(1)).close();
+  }
+
+  @Test
+  public void clientCreationFailure() {
+    MetaStoreHealth health = registerAndProbe( () -> {
+      throw new RuntimeException("Can't create client");
+    });
+    assertThat(health.getState(), is(HealthState.DOWN));
+  }
+
+  @Test
+  public void slowProbeIsDegraded() throws TException {
+    monitor.close();
+    monitor = new MetaStoreHealthMonitor(NEVER, 2, 1, NEVER, Executors.defaultThreadFactory(), meterRegistry);
+    when(client.isOpen()).then(invocation -> {
+      Thread.sleep(10);
+      return true;
+    });
+    assertThat(registerAndProbe(() -> client).getState(), is(HealthState.DEGRADED));
+  }
+
+  @Test
+  public void probesInBackground() throws TException {
+    monitor.close();
+    monitor = new MetaStoreHealthMonitor(10, 1, NEVER, NEVER, Executors.defaultThreadFactory(), meterRegistry);
+    when(client.isOpen()).thenReturn(false).thenReturn(true);
+    MetaStoreHealth health = monitor.register(NAME, () -> client);
+    await().atMost(5, TimeUnit.SECONDS).until(() -> health.getState() == HealthState.UP);
+    assertThat(transitions(HealthState.DOWN, HealthState.UP), is(1.0));
+  }
+
+  @Test
+  public void probedHealthIsNotStale() {
+    when(client.isOpen()).thenReturn(true);
+    long before = System.currentTimeMillis();
+    MetaStoreHealth health = registerAndProbe( () -> client);
+    assertThat(health.getLastProbeTime() >= before, is(true));
+    assertThat(monitor.isStale(health), is(false));
+  }
+
+  @Test
+  public void hangingProbesAreStale() {
+    monitor.close();
+    monitor = new MetaStoreHealthMonitor(1, 1, NEVER, NEVER, Executors.defaultThreadFactory(), meterRegistry);
+    CountDownLatch release = new CountDownLatch(1);
+    when(client.isOpen()).thenReturn(true).then(invocation -> {
+      release.await();
+      return true;
+    });
+    try {
+      MetaStoreHealth health = registerAndProbe(() -> client);
+      await().atMost(5, TimeUnit.SECONDS).until(() -> monitor.isStale(health));
+      assertThat(health.getState(), is(HealthState.UP));
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void hangingProbeTimesOut() throws Exception {
+    monitor.close();
+    monitor = new MetaStoreHealthMonitor(10, 1, NEVER, 50, Executors.defaultThreadFactory(), meterRegistry);
+    CountDownLatch release = new CountDownLatch(1);
+    when(client.isOpen()).then(invocation -> {
+      release.await();
+      return true;
+    });
+    try {
+      MetaStoreHealth health = monitor.register(NAME, () -> client);
+      await().atMost(5, TimeUnit.SECONDS).until(() -> health.getState() == HealthState.DOWN);
+      // Closed to unblock the probe
+      verify(client, atLeastOnce()).close();
+      await().atMost(5, TimeUnit.SECONDS).until(() -> health.getLastProbeTime() > 0 && !monitor.isStale(health));
+      // No other probe while it hangs
+      Thread.sleep(100);
+      verify(client, times(1)).isOpen();
+      assertThat(health.getState(), is(HealthState.DOWN));
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void hangingMetastoresDoNotHoldTheOthers() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CloseableThriftHiveMetastoreIface hanging = mock(CloseableThriftHiveMetastoreIface.class);
+    when(hanging.isOpen()).then(invocation -> {
+      release.await();
+      return true;
+    });
+    when(client.isOpen()).thenReturn(true);
+    try {
+      for (int i = 0; i < 8; i++) {
+        monitor.register("hanging" + i, () -> hanging);
+      }
+      assertThat(registerAndProbe(() -> client).getState(), is(HealthState.UP));
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void closeDoesNotWaitForTheProbe() throws Exception {
+    CountDownLatch probing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(client.isOpen()).then(invocation -> {
+      probing.countDown();
+      release.await();
+      return true;
+    });
+    try {
+      MetaStoreHealth health = monitor.register(NAME, () -> client);
+      probing.await();
+      health.close();
+      verify(client).close();
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void closeHealth() throws Exception {
+    when(client.isOpen()).thenReturn(true);
+    MetaStoreHealth health = registerAndProbe( () -> client);
+    health.close();
+    verify(client).close();
+    assertThat(monitor.getHealth(NAME), is(nullValue()));
+    assertThat(Double.isNaN(stateGauge()), is(true));
+  }
+
+  @Test
+  public void closingReplacedHealthKeepsLatest() {
+    when(client.isOpen()).thenReturn(true);
+    MetaStoreHealth first = registerAndProbe(() -> client);
+    MetaStoreHealth second = registerAndProbe(() -> client);
+    first.close();
+    assertThat(monitor.getHealth(NAME), is(second));
+    assertThat(stateGauge(), is(2.0));
+  }
+
+}
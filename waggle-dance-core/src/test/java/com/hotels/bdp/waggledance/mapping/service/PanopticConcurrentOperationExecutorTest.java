@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2021 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,22 +16,28 @@
 package com.hotels.bdp.waggledance.mapping.service;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.when;
 
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import com.google.common.collect.Lists;
 
 import com.hotels.bdp.waggledance.mapping.model.DatabaseMapping;
 import com.hotels.bdp.waggledance.mapping.service.requests.RequestCallable;
+import com.hotels.bdp.waggledance.util.ThreadFactories;
 
 @RunWith(MockitoJUnitRunner.class)
 public class PanopticConcurrentOperationExecutorTest {
@@ -41,6 +47,8 @@ public class PanopticConcurrentOperationExecutorTest {
   private @Mock DatabaseMapping mapping1;
   private @Mock DatabaseMapping mapping2;
   private @Mock DatabaseMapping mapping3;
+  private final FanOutExecutor fanOutExecutor = new FanOutExecutor(8, 100, 8,
+      ThreadFactories.newThreadFactory("fan-out", false), new SimpleMeterRegistry());
 
   @Before
   public void setUp() {
@@ -49,9 +57,14 @@ public class PanopticConcurrentOperationExecutorTest {
     when(mapping3.getMetastoreMappingName()).thenReturn("mapping3");
   }
 
+  @After
+  public void after() {
+    fanOutExecutor.close();
+  }
+
   @Test
   public void executeRequestsInOrder() throws Exception {
-    PanopticConcurrentOperationExecutor executor = new PanopticConcurrentOperationExecutor();
+    PanopticConcurrentOperationExecutor executor = new PanopticConcurrentOperationExecutor(fanOutExecutor);
     List<DummyRequestCallable> allRequests = Lists
         .newArrayList(new DummyRequestCallable("call1", mapping1), new DummyRequestCallable("call2", mapping2),
             new DummyRequestCallable("call0", mapping3));
@@ -64,7 +77,7 @@ public class PanopticConcurrentOperationExecutorTest {
 
   @Test
   public void executeRequestsSlowConnection() throws Exception {
-    PanopticConcurrentOperationExecutor executor = new PanopticConcurrentOperationExecutor();
+    PanopticConcurrentOperationExecutor executor = new PanopticConcurrentOperationExecutor(fanOutExecutor);
     DummyRequestCallable slowRequest = new DummyRequestCallable("call2", mapping2) {
       @Override
       public List<String> call() throws Exception {
@@ -84,7 +97,7 @@ public class PanopticConcurrentOperationExecutorTest {
   public void executeRequestsWaitForMaxLatency() throws Exception {
     Long mapping2Latency = TimeUnit.MILLISECONDS.toMillis(1000);
     when(mapping2.getLatency()).thenReturn(mapping2Latency);
-    PanopticConcurrentOperationExecutor executor = new PanopticConcurrentOperationExecutor();
+    PanopticConcurrentOperationExecutor executor = new PanopticConcurrentOperationExecutor(fanOutExecutor);
     DummyRequestCallable slowRequest = new DummyRequestCallable("call2", mapping2) {
       @Override
       public List<String> call() throws Exception {
@@ -103,7 +116,7 @@ public class PanopticConcurrentOperationExecutorTest {
 
   @Test
   public void executeRequestsExceptionLoggedResultsReturned() throws Exception {
-    PanopticConcurrentOperationExecutor executor = new PanopticConcurrentOperationExecutor();
+    PanopticConcurrentOperationExecutor executor = new PanopticConcurrentOperationExecutor(fanOutExecutor);
     DummyRequestCallable errorRequest = new DummyRequestCallable("call2", mapping2) {
       @Override
       public List<String> call() throws Exception {
@@ -121,12 +134,50 @@ public class PanopticConcurrentOperationExecutorTest {
 
   @Test
   public void executeEmptyRequests() throws Exception {
-    PanopticConcurrentOperationExecutor executor = new PanopticConcurrentOperationExecutor();
+    PanopticConcurrentOperationExecutor executor = new PanopticConcurrentOperationExecutor(fanOutExecutor);
     List<DummyRequestCallable> allRequests = Lists.newArrayList();
     List<String> executeRequests = executor.executeRequests(allRequests, REQUEST_TIMEOUT, "error in call: {}");
     assertThat(executeRequests.size(), is(0));
   }
 
+  @Test
+  public void executeRequestsWithThreadFactory() throws Exception {
+    PanopticConcurrentOperationExecutor executor = new PanopticConcurrentOperationExecutor(new FanOutExecutor(1, 1, 1,
+        ThreadFactories.newThreadFactory("fan-out", false), new SimpleMeterRegistry()));
+    DummyRequestCallable threadNameRequest = new DummyRequestCallable("call1", mapping1) {
+      @Override
+      public List<String> call() throws Exception {
+        return Lists.newArrayList(Thread.currentThread().getName());
+      }
+    };
+    List<String> executeRequests = executor
+        .executeRequests(Lists.newArrayList(threadNameRequest), REQUEST_TIMEOUT, "error");
+    assertThat(executeRequests.size(), is(1));
+    assertThat(executeRequests.get(0), startsWith("fan-out-"));
+  }
+
+  @Test
+  public void executeRequestsSlowConnectionInterrupted() throws Exception {
+    PanopticConcurrentOperationExecutor executor = new PanopticConcurrentOperationExecutor(fanOutExecutor);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    DummyRequestCallable slowRequest = new DummyRequestCallable("call1", mapping1) {
+      @Override
+      public List<String> call() throws Exception {
+        try {
+          Thread.sleep(REQUEST_TIMEOUT * 10);
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+          throw e;
+        }
+        return super.call();
+      }
+    };
+    List<String> executeRequests = executor
+        .executeRequests(Lists.newArrayList(slowRequest), REQUEST_TIMEOUT, "error");
+    assertThat(executeRequests.size(), is(0));
+    assertThat(interrupted.await(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS), is(true));
+  }
+
   private class DummyRequestCallable implements RequestCallable<List<String>> {
 
     private final String callValue;
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.mapping.service.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.hadoop.hive.metastore.api.CurrentNotificationEventId;
+import org.apache.hadoop.hive.metastore.api.NotificationEvent;
+import org.apache.hadoop.hive.metastore.api.NotificationEventResponse;
+import org.apache.hadoop.hive.metastore.api.ThriftHiveMetastore.Iface;
+import org.apache.hadoop.hive.metastore.messaging.EventMessage.EventType;
+import org.apache.thrift.TException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.google.common.collect.ImmutableList;
+
+import com.hotels.bdp.waggledance.mapping.model.DatabaseMapping;
+import com.hotels.bdp.waggledance.util.AllowList;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DatabaseListTrackerTest {
+
+  private @Mock DatabaseMapping mapping;
+  private @Mock Iface client;
+  private DatabaseListTracker tracker;
+
+  @Before
+  public void init() throws TException {
+    when(mapping.getClient()).thenReturn(client);
+    when(mapping.transformOutboundDatabaseNameMultiple(anyString()))
+        .then(invocation -> Collections.singletonList("prefix_" + invocation.getArgument(0)));
+    when(client.get_current_notificationEventId()).thenReturn(new CurrentNotificationEventId(10));
+    when(client.get_all_databases()).thenReturn(Arrays.asList("db", "other"));
+    tracker = new DatabaseListTracker("name", mapping, new AllowList(ImmutableList.of("db.*")),
+        Collections.singletonList("db"));
+  }
+
+  private static NotificationEvent newEvent(long eventId, EventType eventType, String databaseName, String tableName) {
+    NotificationEvent event = new NotificationEvent(eventId, 0, eventType.toString(), "");
+    event.setDbName(databaseName);
+    event.setTableName(tableName);
+    return event;
+  }
+
+  @Test
+  public void firstPollListsDatabases() throws TException {
+    assertThat(tracker.poll(), is(Collections.singletonList("prefix_db")));
+    verify(client).get_all_databases();
+  }
+
+  @Test
+  public void followsAllowedDatabaseEvents() throws TException {
+    when(client.get_next_notification(any()))
+        .thenReturn(new NotificationEventResponse(Arrays
+            .asList(newEvent(11, EventType.CREATE_DATABASE, "db_1", null),
+                newEvent(12, EventType.CREATE_DATABASE, "other_1", null),
+                newEvent(13, EventType.DROP_TABLE, "db", "table"),
+                newEvent(14, EventType.DROP_DATABASE, "db", null))));
+    tracker.poll();
+    assertThat(tracker.poll(), is(Collections.singletonList("prefix_db_1")));
+    verify(client, times(1)).get_all_databases();
+  }
+
+  @Test
+  public void missedEventsListDatabases() throws TException {
+    when(client.get_next_notification(any()))
+        .thenReturn(new NotificationEventResponse(
+            Collections.singletonList(newEvent(20, EventType.CREATE_DATABASE, "db_1", null))));
+    tracker.poll();
+    assertThat(tracker.poll(), is(Collections.singletonList("prefix_db")));
+    verify(client, times(2)).get_all_databases();
+  }
+
+  @Test
+  public void unreadableNotificationLogListsDatabases() throws TException {
+    when(client.get_current_notificationEventId()).thenThrow(new TException("No notifications"));
+    tracker.poll();
+    tracker.poll();
+    verify(client, times(2)).get_all_databases();
+  }
+
+  @Test
+  public void periodicallyListsDatabases() throws TException {
+    when(client.get_next_notification(any())).thenReturn(new NotificationEventResponse(Collections.emptyList()));
+    for (int i = 0; i < DatabaseListTracker.FULL_LISTING_EVERY; i++) {
+      tracker.poll();
+    }
+    verify(client, times(2)).get_all_databases();
+  }
+
+}
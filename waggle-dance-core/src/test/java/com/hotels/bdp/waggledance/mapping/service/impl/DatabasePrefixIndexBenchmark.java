@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.mapping.service.impl;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.hotels.bdp.waggledance.mapping.model.DatabaseMapping;
+
+/**
+ * Compares finding the metastore of a database name with {@link DatabasePrefixIndex} to scanning a copy of all the
+ * prefixes under a lock, as {@link PrefixBasedDatabaseMappingService} used to. Run with
+ * {@code mvn -pl waggle-dance-core test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.hotels.bdp.waggledance.mapping.service.impl.DatabasePrefixIndexBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class DatabasePrefixIndexBenchmark {
+
+  @Param({ "200" })
+  private int prefixes;
+
+  private final Map<String, DatabaseMapping> mappingsByPrefix = Collections.synchronizedMap(new LinkedHashMap<>());
+  private DatabasePrefixIndex index = DatabasePrefixIndex.empty();
+  private String lastDatabaseName;
+  private String unmatchedDatabaseName;
+
+  @Setup
+  public void setUp() {
+    for (int i = 0; i < prefixes; i++) {
+      String prefix = "metastore" + i + "_";
+      DatabaseMapping mapping = mock(DatabaseMapping.class);
+      mappingsByPrefix.put(prefix, mapping);
+      index = index.with(prefix, mapping);
+    }
+    lastDatabaseName = "metastore" + (prefixes - 1) + "_database";
+    unmatchedDatabaseName = "unprefixed_database";
+  }
+
+  @Benchmark
+  public List<DatabaseMapping> indexLastPrefix() {
+    return index.matches(lastDatabaseName);
+  }
+
+  @Benchmark
+  public List<DatabaseMapping> indexNoPrefix() {
+    return index.matches(unmatchedDatabaseName);
+  }
+
+  @Benchmark
+  public List<DatabaseMapping> lockedScanLastPrefix() {
+    return lockedScan(lastDatabaseName);
+  }
+
+  @Benchmark
+  public List<DatabaseMapping> lockedScanNoPrefix() {
+    return lockedScan(unmatchedDatabaseName);
+  }
+
+  private List<DatabaseMapping> lockedScan(String databaseName) {
+    List<Entry<String, DatabaseMapping>> entries;
+    synchronized (mappingsByPrefix) {
+      entries = new ArrayList<>(mappingsByPrefix.entrySet());
+    }
+    List<DatabaseMapping> matches = new ArrayList<>();
+    for (Entry<String, DatabaseMapping> entry : entries) {
+      if (!entry.getKey().trim().isEmpty() && databaseName.startsWith(entry.getKey())) {
+        matches.add(entry.getValue());
+      }
+    }
+    return matches;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(DatabasePrefixIndexBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.mapping.service.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import org.junit.Test;
+
+import com.hotels.bdp.waggledance.mapping.model.DatabaseMapping;
+
+public class DatabasePrefixIndexTest {
+
+  private final DatabaseMapping empty = mock(DatabaseMapping.class);
+  private final DatabaseMapping a = mock(DatabaseMapping.class);
+  private final DatabaseMapping ab = mock(DatabaseMapping.class);
+  private final DatabaseMapping b = mock(DatabaseMapping.class);
+  private final DatabasePrefixIndex index = DatabasePrefixIndex
+      .empty()
+      .with("", empty)
+      .with("ab_", ab)
+      .with("a_", a)
+      .with("b_", b);
+
+  @Test
+  public void matchesLongestFirst() {
+    assertThat(index.matches("ab_db"), is(Collections.singletonList(ab)));
+    assertThat(index.with("a", a).matches("ab_db"), is(Arrays.asList(ab, a)));
+  }
+
+  @Test
+  public void emptyPrefixIsNotMatched() {
+    assertThat(index.matches("c_db"), is(Collections.emptyList()));
+    assertThat(index.matches(""), is(Collections.emptyList()));
+    assertThat(index.get(""), is(sameInstance(empty)));
+  }
+
+  @Test
+  public void prefixIsNotMatchedByShorterName() {
+    assertThat(index.matches("ab"), is(Collections.emptyList()));
+  }
+
+  @Test
+  public void registrationOrder() {
+    assertThat(index.asMap().keySet(), is(new LinkedHashSet<>(Arrays.asList("", "ab_", "a_", "b_"))));
+  }
+
+  @Test
+  public void without() {
+    DatabasePrefixIndex withoutAb = index.without("ab_");
+    assertThat(withoutAb.matches("ab_db"), is(Collections.emptyList()));
+    assertThat(withoutAb.get("ab_"), is(nullValue()));
+    assertThat(withoutAb.containsPrefix("a_"), is(true));
+    assertThat(index.matches("ab_db"), is(Collections.singletonList(ab)));
+    assertThat(index.without("unknown_"), is(sameInstance(index)));
+  }
+
+  @Test
+  public void replace() {
+    DatabaseMapping other = mock(DatabaseMapping.class);
+    assertThat(index.with("a_", other).matches("a_db"), is(Collections.singletonList(other)));
+    assertThat(index.matches("a_db"), is(Collections.singletonList(a)));
+  }
+
+  @Test
+  public void primary() {
+    DatabaseMapping primary = mock(DatabaseMapping.class);
+    assertThat(index.primary(), is(nullValue()));
+    DatabasePrefixIndex withPrimary = index.withPrimary("", primary);
+    assertThat(withPrimary.primary(), is(sameInstance(primary)));
+    assertThat(withPrimary.get(""), is(sameInstance(primary)));
+    assertThat(withPrimary.with("a_", ab).primary(), is(sameInstance(primary)));
+    assertThat(withPrimary.without("a_").primary(), is(sameInstance(primary)));
+    assertThat(withPrimary.without("").primary(), is(nullValue()));
+  }
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.mapping.service.impl;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import static com.hotels.bdp.waggledance.api.model.AbstractMetaStore.newFederatedInstance;
+import static com.hotels.bdp.waggledance.api.model.AbstractMetaStore.newPrimaryInstance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
+import com.hotels.bdp.waggledance.api.model.MetaStoreStatus;
+import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIface;
+import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIfaceClientFactory;
+import com.hotels.bdp.waggledance.mapping.service.FederatedMetaStoreStorage;
+import com.hotels.bdp.waggledance.mapping.service.MetaStoreHealth;
+import com.hotels.bdp.waggledance.mapping.service.MetaStoreHealthMonitor;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FederationHealthProbesTest {
+
+  private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+  private @Mock FederatedMetaStoreStorage federatedMetaStoreStorage;
+  private @Mock CloseableThriftHiveMetastoreIfaceClientFactory metaStoreClientFactory;
+  private @Mock CloseableThriftHiveMetastoreIface client;
+
+  private final AbstractMetaStore primary = newPrimaryInstance("primary", "uri");
+  private final AbstractMetaStore federated = newFederatedInstance("federated", "uri");
+  private final List<AbstractMetaStore> metaStores = new ArrayList<>(Arrays.asList(primary, federated));
+  private final MetaStoreHealthMonitor monitor = new MetaStoreHealthMonitor(NEVER, 1, NEVER, NEVER,
+      Executors.defaultThreadFactory(), new SimpleMeterRegistry());
+  private NotifyingFederationService notifyingFederationService;
+  private FederationHealthProbes probes;
+
+  @Before
+  public void init() {
+    when(federatedMetaStoreStorage.getAll()).thenAnswer(invocation -> new ArrayList<>(metaStores));
+    when(metaStoreClientFactory.newInstance(any(AbstractMetaStore.class), any())).thenReturn(client);
+    when(client.isOpen()).thenReturn(true);
+    notifyingFederationService = new NotifyingFederationService(federatedMetaStoreStorage);
+    notifyingFederationService.postConstruct();
+    probes = new FederationHealthProbes(notifyingFederationService, monitor, metaStoreClientFactory);
+    probes.postConstruct();
+  }
+
+  @After
+  public void shutdown() {
+    probes.preDestroy();
+    notifyingFederationService.preDestroy();
+    monitor.close();
+  }
+
+  @Test
+  public void probesTheFederationFromStartup() {
+    SimpleFederationStatusService statusService = new SimpleFederationStatusService(monitor);
+    await()
+        .atMost(5, TimeUnit.SECONDS)
+        .until(() -> statusService.checkStatus(primary) == MetaStoreStatus.AVAILABLE
+            && statusService.checkStatus(federated) == MetaStoreStatus.AVAILABLE);
+  }
+
+  @Test
+  public void register() {
+    AbstractMetaStore newFederated = newFederatedInstance("new", "uri");
+    notifyingFederationService.register(newFederated);
+    await().atMost(5, TimeUnit.SECONDS).until(() -> monitor.getHealth("new") != null);
+  }
+
+  @Test
+  public void unregister() {
+    when(federatedMetaStoreStorage.get("federated")).thenReturn(federated);
+    when(federatedMetaStoreStorage.delete("federated")).thenReturn(federated);
+    notifyingFederationService.unregister("federated");
+    await().atMost(5, TimeUnit.SECONDS).until(() -> monitor.getHealth("federated") == null);
+    assertThat(monitor.getHealth("primary"), is(notNullValue()));
+  }
+
+  @Test
+  public void update() {
+    MetaStoreHealth health = monitor.getHealth("federated");
+    AbstractMetaStore updated = newFederatedInstance("federated", "other-uri");
+    when(federatedMetaStoreStorage.get("federated")).thenReturn(federated);
+    notifyingFederationService.update(federated, updated);
+    await().atMost(5, TimeUnit.SECONDS).until(() -> monitor.getHealth("federated") != health);
+    assertThat(monitor.getHealth("federated"), is(notNullValue()));
+  }
+
+  @Test
+  public void updateRenamed() {
+    AbstractMetaStore renamed = newFederatedInstance("renamed", "uri");
+    when(federatedMetaStoreStorage.get("federated")).thenReturn(federated);
+    notifyingFederationService.update(federated, renamed);
+    await().atMost(5, TimeUnit.SECONDS).until(() -> monitor.getHealth("renamed") != null);
+    assertThat(monitor.getHealth("federated"), is(nullValue()));
+  }
+
+  @Test
+  public void statusRefreshKeepsTheProbes() {
+    MetaStoreHealth health = monitor.getHealth("federated");
+    AbstractMetaStore newFederated = newFederatedInstance("new", "uri");
+    when(federatedMetaStoreStorage.get("federated")).thenReturn(federated);
+    notifyingFederationService.update(federated, federated);
+    // Notified in order, the refresh is handled once the later registration is
+    notifyingFederationService.register(newFederated);
+    await().atMost(5, TimeUnit.SECONDS).until(() -> monitor.getHealth("new") != null);
+    assertThat(monitor.getHealth("federated"), is(sameInstance(health)));
+  }
+
+  @Test
+  public void preDestroyStopsTheProbes() {
+    probes.preDestroy();
+    assertThat(monitor.getHealth("primary"), is(nullValue()));
+    assertThat(monitor.getHealth("federated"), is(nullValue()));
+  }
+
+}
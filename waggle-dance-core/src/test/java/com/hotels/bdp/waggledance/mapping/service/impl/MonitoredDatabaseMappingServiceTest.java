@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -25,6 +25,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.apache.hadoop.hive.metastore.api.NoSuchObjectException;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -33,6 +34,7 @@ import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
+import com.hotels.bdp.waggledance.client.ClientSession;
 import com.hotels.bdp.waggledance.mapping.model.DatabaseMapping;
 import com.hotels.bdp.waggledance.mapping.service.MappingEventListener;
 import com.hotels.bdp.waggledance.mapping.service.PanopticOperationHandler;
@@ -47,6 +49,7 @@ public class MonitoredDatabaseMappingServiceTest {
   private @Mock PanopticOperationHandler multiMetastoreOperationsHandler;
   private @Mock AbstractMetaStore metaStore;
   private MonitoredDatabaseMappingService service;
+  private ClientSession.Binding binding;
 
   @Before
   public void init() throws NoSuchObjectException {
@@ -56,9 +59,15 @@ public class MonitoredDatabaseMappingServiceTest {
     when(wrapped.databaseMapping(anyString())).thenReturn(otherMapping);
     when(wrapped.getPanopticOperationHandler()).thenReturn(multiMetastoreOperationsHandler);
     service = new MonitoredDatabaseMappingService(wrapped);
+    binding = new ClientSession().bind();
     CurrentMonitoredMetaStoreHolder.monitorMetastore("notSet");
   }
 
+  @After
+  public void after() {
+    binding.close();
+  }
+
   @Test
   public void primaryDatabaseMapping() {
     assertThat(service.primaryDatabaseMapping(), is(primaryMapping));
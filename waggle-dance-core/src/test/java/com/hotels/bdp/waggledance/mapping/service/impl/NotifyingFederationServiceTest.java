@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2021 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,10 @@ package com.hotels.bdp.waggledance.mapping.service.impl;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -25,18 +29,25 @@ import static com.hotels.bdp.waggledance.api.model.AbstractMetaStore.newFederate
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.validation.ValidationException;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import com.google.common.util.concurrent.MoreExecutors;
+
 import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
 import com.hotels.bdp.waggledance.mapping.service.FederatedMetaStoreStorage;
 import com.hotels.bdp.waggledance.mapping.service.impl.NotifyingFederationService.FederationEventListener;
+import com.hotels.bdp.waggledance.mapping.service.impl.NotifyingFederationService.FederationSnapshot;
 
 @RunWith(MockitoJUnitRunner.class)
 public class NotifyingFederationServiceTest {
@@ -56,7 +67,7 @@ public class NotifyingFederationServiceTest {
     when(federatedMetaStoreStorage.delete(METASTORE_NAME)).thenReturn(federatedMetaStore);
     when(federatedMetaStoreStorage.get(METASTORE_NAME)).thenReturn(federatedMetaStore);
 
-    service = new NotifyingFederationService(federatedMetaStoreStorage);
+    service = new NotifyingFederationService(federatedMetaStoreStorage, MoreExecutors.newDirectExecutorService());
     service.subscribe(federationEventListener);
   }
 
@@ -156,4 +167,84 @@ public class NotifyingFederationServiceTest {
     verifyNoInteractions(federationEventListener);
   }
 
+  @Test
+  public void registerDoesNotWaitForListeners() throws Exception {
+    ExecutorService notifier = Executors.newSingleThreadExecutor();
+    NotifyingFederationService asyncService = new NotifyingFederationService(federatedMetaStoreStorage, notifier);
+    CountDownLatch listenerReleased = new CountDownLatch(1);
+    FederationEventListener slowListener = mock(FederationEventListener.class);
+    AbstractMetaStore federatedMetaStore = newFederatedInstance("new_name", URI);
+    doAnswer(invocation -> {
+      listenerReleased.await();
+      return null;
+    }).when(slowListener).onRegister(federatedMetaStore);
+    asyncService.subscribe(slowListener);
+
+    asyncService.register(federatedMetaStore);
+    verify(federatedMetaStoreStorage).insert(federatedMetaStore);
+    listenerReleased.countDown();
+    verify(slowListener, timeout(5000)).onRegister(federatedMetaStore);
+    asyncService.preDestroy();
+  }
+
+  @Test
+  public void snapshotVersions() {
+    FederationSnapshot initial = service.getSnapshot();
+    assertThat(initial.getVersion(), is(0L));
+    assertThat(initial.getMetaStores().get(0).getName(), is(METASTORE_NAME));
+
+    service.register(newFederatedInstance("new_name", URI));
+    assertThat(service.getSnapshot().getVersion(), is(1L));
+    service.unregister(METASTORE_NAME);
+    assertThat(service.getSnapshot().getVersion(), is(2L));
+  }
+
+  @Test
+  public void subscribeFromSnapshotSkipsEarlierChanges() {
+    ExecutorService notifier = mock(ExecutorService.class);
+    NotifyingFederationService queuedService = new NotifyingFederationService(federatedMetaStoreStorage, notifier);
+    queuedService.subscribe(federationEventListener);
+    AbstractMetaStore federatedMetaStore = newFederatedInstance("new_name", URI);
+    queuedService.register(federatedMetaStore);
+
+    // Built from a snapshot that already has the registration still being notified
+    FederationEventListener laterListener = mock(FederationEventListener.class);
+    queuedService.subscribe(federation -> laterListener);
+    ArgumentCaptor<Runnable> notification = ArgumentCaptor.forClass(Runnable.class);
+    verify(notifier).execute(notification.capture());
+    notification.getValue().run();
+
+    verify(federationEventListener).onRegister(federatedMetaStore);
+    verifyNoInteractions(laterListener);
+  }
+
+  @Test
+  public void changesMadeWhileBuildingAListenerAreQueued() {
+    AbstractMetaStore federatedMetaStore = newFederatedInstance("new_name", URI);
+    FederationEventListener laterListener = mock(FederationEventListener.class);
+    FederationEventListener subscribed = service.subscribe(federation -> {
+      assertThat(federation.getMetaStores().size(), is(1));
+      service.register(federatedMetaStore);
+      verifyNoInteractions(laterListener);
+      return laterListener;
+    });
+
+    assertThat(subscribed, is(laterListener));
+    verify(laterListener).onRegister(federatedMetaStore);
+  }
+
+  @Test
+  public void listenerErrorDoesNotStopNotifications() {
+    FederationEventListener failingListener = mock(FederationEventListener.class);
+    NotifyingFederationService failingService = new NotifyingFederationService(federatedMetaStoreStorage,
+        MoreExecutors.newDirectExecutorService());
+    failingService.subscribe(failingListener);
+    failingService.subscribe(federationEventListener);
+    AbstractMetaStore federatedMetaStore = newFederatedInstance("new_name", URI);
+    doThrow(new RuntimeException("listener error")).when(failingListener).onRegister(federatedMetaStore);
+
+    failingService.register(federatedMetaStore);
+    verify(federationEventListener).onRegister(federatedMetaStore);
+  }
+
 }
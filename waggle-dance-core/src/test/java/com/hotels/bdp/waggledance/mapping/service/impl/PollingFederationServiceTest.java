@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -104,4 +104,33 @@ public class PollingFederationServiceTest {
     verify(populateStatusFederationService, times(2)).update(federate, federate);
   }
 
+  @Test
+  public void pollIgnoresUnknownStatus() throws Exception {
+    AbstractMetaStore federate = AbstractMetaStore.newFederatedInstance("f", "uri");
+    federate.setStatus(MetaStoreStatus.UNKNOWN);
+    when(populateStatusFederationService.getAll()).thenReturn(Lists.newArrayList(federate));
+
+    // not probed yet
+    service.poll();
+
+    // first probe
+    federate.setStatus(MetaStoreStatus.AVAILABLE);
+    service.poll();
+    verify(populateStatusFederationService, never()).update(federate, federate);
+
+    // probes hanging
+    federate.setStatus(MetaStoreStatus.UNKNOWN);
+    service.poll();
+    federate.setStatus(MetaStoreStatus.AVAILABLE);
+    service.poll();
+    verify(populateStatusFederationService, never()).update(federate, federate);
+
+    // status changed while unknown
+    federate.setStatus(MetaStoreStatus.UNKNOWN);
+    service.poll();
+    federate.setStatus(MetaStoreStatus.UNAVAILABLE);
+    service.poll();
+    verify(populateStatusFederationService).update(federate, federate);
+  }
+
 }
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,8 +19,10 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -32,12 +34,16 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.hadoop.hive.metastore.api.GetAllFunctionsResponse;
 import org.apache.hadoop.hive.metastore.api.NoSuchObjectException;
 import org.apache.hadoop.hive.metastore.api.TableMeta;
 import org.apache.hadoop.hive.metastore.api.ThriftHiveMetastore.Iface;
 import org.apache.thrift.TException;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -46,6 +52,8 @@ import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
@@ -57,9 +65,11 @@ import com.hotels.bdp.waggledance.api.model.MappedTables;
 import com.hotels.bdp.waggledance.mapping.model.DatabaseMapping;
 import com.hotels.bdp.waggledance.mapping.model.MetaStoreMapping;
 import com.hotels.bdp.waggledance.mapping.model.QueryMapping;
+import com.hotels.bdp.waggledance.mapping.service.FanOutExecutor;
 import com.hotels.bdp.waggledance.mapping.service.MetaStoreMappingFactory;
 import com.hotels.bdp.waggledance.mapping.service.PanopticOperationHandler;
 import com.hotels.bdp.waggledance.server.NoPrimaryMetastoreException;
+import com.hotels.bdp.waggledance.util.ThreadFactories;
 
 @RunWith(MockitoJUnitRunner.class)
 public class PrefixBasedDatabaseMappingServiceTest {
@@ -75,6 +85,8 @@ public class PrefixBasedDatabaseMappingServiceTest {
   private final List<String> primaryAndFederatedDbs = Lists.newArrayList(PRIMARY_DB, FEDERATED_DB);
   private @Mock MetaStoreMappingFactory metaStoreMappingFactory;
   private @Mock QueryMapping queryMapping;
+  private final FanOutExecutor fanOutExecutor = new FanOutExecutor(8, 100, 8,
+      ThreadFactories.newThreadFactory("fan-out", false), new SimpleMeterRegistry());
   private @Mock Iface primaryDatabaseClient;
   private @Mock Iface federatedDatabaseClient;
   private MetaStoreMapping metaStoreMappingPrimary;
@@ -97,7 +109,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
     when(metaStoreMappingFactory.newInstance(unavailableMetastore)).thenReturn(unavailableMapping);
 
     service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore, unavailableMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore, unavailableMetastore), queryMapping, fanOutExecutor);
   }
 
   private MetaStoreMapping mockNewMapping(boolean isAvailable, String prefix) {
@@ -113,6 +125,11 @@ public class PrefixBasedDatabaseMappingServiceTest {
     return result;
   }
 
+  @After
+  public void after() {
+    fanOutExecutor.close();
+  }
+
   @Test
   public void onRegister() {
     AbstractMetaStore newMetastore = newFederatedInstance("newName", "abc");
@@ -174,7 +191,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
   public void onInitOverridesDuplicates() {
     List<AbstractMetaStore> duplicates = Arrays
         .asList(primaryMetastore, federatedMetastore, primaryMetastore, federatedMetastore);
-    service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory, duplicates, queryMapping);
+    service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory, duplicates, queryMapping, fanOutExecutor);
     assertThat(service.getAvailableDatabaseMappings().size(), is(2));
   }
 
@@ -182,7 +199,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
   public void onInitEmpty() {
     List<AbstractMetaStore> empty = Collections.emptyList();
     try {
-      service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory, empty, queryMapping);
+      service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory, empty, queryMapping, fanOutExecutor);
     } catch (Exception e) {
       fail("It should not throw any exception, an empty list is ok");
     }
@@ -206,6 +223,25 @@ public class PrefixBasedDatabaseMappingServiceTest {
     assertThat(databaseMappings.get(0).getDatabasePrefix(), is(DB_PREFIX));
   }
 
+  @Test
+  public void onUpdatePrimaryKeepsPrimaryUntilReplaced() throws IOException {
+    AbstractMetaStore newPrimary = newPrimaryInstance("primary", "abc");
+    MetaStoreMapping newMapping = mockNewMapping(true, "");
+    Iface newClient = Mockito.mock(Iface.class);
+    when(newMapping.getClient()).thenReturn(newClient);
+    when(metaStoreMappingFactory.prefixNameFor(primaryMetastore)).thenReturn("");
+    when(metaStoreMappingFactory.newInstance(newPrimary)).thenAnswer(invocation -> {
+      // Requests made while the new mapping is built are still served by the old one
+      assertThat(service.primaryDatabaseMapping().getClient(), is(primaryDatabaseClient));
+      return newMapping;
+    });
+
+    service.onUpdate(primaryMetastore, newPrimary);
+
+    assertThat(service.primaryDatabaseMapping().getClient(), is(newClient));
+    verify(metaStoreMappingPrimary).close();
+  }
+
   @Test
   public void primaryDatabaseMapping() {
     DatabaseMapping mapping = service.primaryDatabaseMapping();
@@ -218,6 +254,27 @@ public class PrefixBasedDatabaseMappingServiceTest {
     assertThat(databaseMapping.getDatabasePrefix(), is(DB_PREFIX));
   }
 
+  @Test
+  public void databaseMappingMatchesLongestPrefix() throws NoSuchObjectException {
+    AbstractMetaStore newMetastore = newFederatedInstance("name_sub", "abc");
+    MetaStoreMapping newMapping = mockNewMapping(true, DB_PREFIX + "sub_");
+    when(metaStoreMappingFactory.newInstance(newMetastore)).thenReturn(newMapping);
+    service.onRegister(newMetastore);
+
+    assertThat(service.databaseMapping(DB_PREFIX + "sub_db").getDatabasePrefix(), is(DB_PREFIX + "sub_"));
+    assertThat(service.databaseMapping(DB_PREFIX + "su").getDatabasePrefix(), is(DB_PREFIX));
+  }
+
+  @Test
+  public void databaseMappingFallsBackToShorterPrefix() throws NoSuchObjectException {
+    AbstractMetaStore newMetastore = newFederatedInstance("name_sub", "abc");
+    MetaStoreMapping newMapping = mockNewMapping(false, DB_PREFIX + "sub_");
+    when(metaStoreMappingFactory.newInstance(newMetastore)).thenReturn(newMapping);
+    service.onRegister(newMetastore);
+
+    assertThat(service.databaseMapping(DB_PREFIX + "sub_db").getDatabasePrefix(), is(DB_PREFIX));
+  }
+
   @Test
   public void databaseMappingMapsToEmptyPrefix() throws NoSuchObjectException {
     DatabaseMapping databaseMapping = service.databaseMapping("some_unknown_prefix_db");
@@ -264,6 +321,39 @@ public class PrefixBasedDatabaseMappingServiceTest {
         is(ImmutableSet.of("", DB_PREFIX)));
   }
 
+  @Test
+  public void availableDatabaseMappingsOmitsRejectedChecks() {
+    FanOutExecutor rejecting = Mockito.mock(FanOutExecutor.class);
+    CompletableFuture<Object> rejected = new CompletableFuture<>();
+    rejected.completeExceptionally(new RejectedExecutionException("Too many concurrent calls to metastore primary"));
+    when(rejecting.submit(any(), any()))
+        .thenAnswer(invocation -> rejected)
+        .thenAnswer(invocation -> CompletableFuture.completedFuture(invocation.<Callable<?>>getArgument(1).call()));
+    service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, rejecting);
+
+    List<DatabaseMapping> databaseMappings = service.getAvailableDatabaseMappings();
+    assertThat(databaseMappings.size(), is(1));
+    assertThat(databaseMappings.get(0).getDatabasePrefix(), is(DB_PREFIX));
+  }
+
+  @Test
+  public void availableDatabaseMappingsInterrupted() {
+    FanOutExecutor hanging = Mockito.mock(FanOutExecutor.class);
+    when(hanging.submit(any(), any())).thenAnswer(invocation -> new CompletableFuture<>());
+    service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, hanging);
+
+    Thread.currentThread().interrupt();
+    try {
+      service.getAvailableDatabaseMappings();
+      fail("Expected WaggleDanceException");
+    } catch (WaggleDanceException e) {
+      assertThat(Thread.interrupted(), is(true));
+    }
+    verify(hanging, times(2)).cancel(any(), any());
+  }
+
   @Test
   public void allDatabaseMappings() {
     List<DatabaseMapping> databaseMappings = service.getAllDatabaseMappings();
@@ -294,7 +384,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
     MappedTables mappedTables = new MappedTables(FEDERATED_DB, Lists.newArrayList("table"));
     federatedMetastore.setMappedTables(Collections.singletonList(mappedTables));
     service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
     DatabaseMapping mapping = service.databaseMapping(DB_PREFIX + FEDERATED_DB);
     service.checkTableAllowed(DB_PREFIX + FEDERATED_DB, "table_not_mapped", mapping);
   }
@@ -305,7 +395,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
     MappedTables mappedTables = new MappedTables(PRIMARY_DB, Lists.newArrayList("table"));
     primaryMetastore.setMappedTables(Collections.singletonList(mappedTables));
     service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
     DatabaseMapping mapping = service.databaseMapping(PRIMARY_DB);
     service.checkTableAllowed(PRIMARY_DB, "table_not_mapped", mapping);
   }
@@ -318,7 +408,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
     MappedTables mappedTables2 = new MappedTables(otherDb, Lists.newArrayList("table1"));
     primaryMetastore.setMappedTables(Lists.newArrayList(mappedTables1, mappedTables2));
     service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
     DatabaseMapping mapping = service.databaseMapping(PRIMARY_DB);
     service.checkTableAllowed(PRIMARY_DB, "table", mapping);
     mapping = service.databaseMapping(otherDb);
@@ -330,7 +420,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
     primaryMetastore.setMappedDatabases(Lists.newArrayList(PRIMARY_DB));
     primaryMetastore.setMappedTables(Collections.emptyList());
     service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
     DatabaseMapping mapping = service.databaseMapping(PRIMARY_DB);
     service.checkTableAllowed(PRIMARY_DB, "table", mapping);
   }
@@ -342,7 +432,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
     MappedTables mappedTables = new MappedTables(PRIMARY_DB, allowedTables);
     primaryMetastore.setMappedTables(Collections.singletonList(mappedTables));
     service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
     DatabaseMapping mapping = service.databaseMapping(PRIMARY_DB);
     List<String> result = service
         .filterTables(PRIMARY_DB, Lists.newArrayList("table", "table_not_mapped", "another_table"), mapping);
@@ -351,7 +441,8 @@ public class PrefixBasedDatabaseMappingServiceTest {
 
   @Test
   public void closeOnEmptyInit() throws Exception {
-    service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory, Collections.emptyList(), queryMapping);
+    service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory, Collections.emptyList(), queryMapping,
+        fanOutExecutor);
     service.close();
     verify(metaStoreMappingPrimary, never()).close();
     verify(metaStoreMappingFederated, never()).close();
@@ -375,7 +466,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
     federatedMetastore.setMappedDatabases(Lists.newArrayList(FEDERATED_DB));
     primaryMetastore.setMappedDatabases(Lists.newArrayList(PRIMARY_DB));
     service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
 
     when(metaStoreMappingFederated.getClient()).thenReturn(federatedDatabaseClient);
     when(metaStoreMappingFederated.transformOutboundDatabaseNameMultiple(FEDERATED_DB))
@@ -394,7 +485,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
     federatedMetastore.setMappedDatabases(Collections.emptyList());
     primaryMetastore.setMappedDatabases(Collections.emptyList());
     service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
 
     when(metaStoreMappingFederated.getClient()).thenReturn(federatedDatabaseClient);
     when(primaryDatabaseClient.get_all_databases())
@@ -427,7 +518,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
     federatedMetastore.setMappedDatabases(Lists.newArrayList(FEDERATED_DB));
     primaryMetastore.setMappedDatabases(Lists.newArrayList(PRIMARY_DB));
     service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
 
     String pattern = "*_db";
 
@@ -450,7 +541,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
     federatedMetastore.setMappedDatabases(Collections.emptyList());
     primaryMetastore.setMappedDatabases(Collections.emptyList());
     service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
 
     String pattern = "*_db";
 
@@ -488,7 +579,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
     federatedMetastore.setMappedTables(Lists.newArrayList(mappedTablesFederated));
     primaryMetastore.setMappedTables(Lists.newArrayList(mappedTablesPrimary));
     service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
 
     TableMeta federatedTableMeta = new TableMeta(FEDERATED_DB, "tbl", null);
     TableMeta primaryTableMeta = new TableMeta(PRIMARY_DB, "tbl", null);
@@ -556,7 +647,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
     when(federatedDatabaseClient.get_all_functions()).thenReturn(responseFederated);
 
     service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
     PanopticOperationHandler handler = service.getPanopticOperationHandler();
     GetAllFunctionsResponse result = handler.getAllFunctions(service.getAvailableDatabaseMappings());
     assertThat(result.getFunctionsSize(), is(3));
@@ -572,7 +663,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
   public void noPrimaryMappingThrowsException() {
     when(metaStoreMappingFactory.newInstance(federatedMetastore)).thenReturn(metaStoreMappingFederated);
     service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
-        Collections.singletonList(federatedMetastore), queryMapping);
+        Collections.singletonList(federatedMetastore), queryMapping, fanOutExecutor);
     service.primaryDatabaseMapping();
   }
 
@@ -580,7 +671,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
   public void noPrimaryThrowsExceptionForUnmappedDatabase() throws NoSuchObjectException {
     when(metaStoreMappingFactory.newInstance(federatedMetastore)).thenReturn(metaStoreMappingFederated);
     service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
-        Collections.singletonList(federatedMetastore), queryMapping);
+        Collections.singletonList(federatedMetastore), queryMapping, fanOutExecutor);
     service.databaseMapping("some_unknown_prefix_db");
   }
 
@@ -595,7 +686,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
     when(metaStoreMappingFederated.transformInboundDatabaseName(DB_PREFIX + testDatabase)).thenReturn(testDatabase);
 
     service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
 
     DatabaseMapping mapping = service.databaseMapping(DB_PREFIX + testDatabase);
     assertThat(mapping.getDatabasePrefix(), is(""));
@@ -612,7 +703,7 @@ public class PrefixBasedDatabaseMappingServiceTest {
     // set metastore whitelist to be nonempty
     federatedMetastore.setMappedDatabases(Collections.singletonList("testName"));
     service = new PrefixBasedDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
 
     PanopticOperationHandler handler = service.getPanopticOperationHandler();
     List<TableMeta> tableMetas = handler.getTableMeta("name_federated_*", "*", tblTypes);
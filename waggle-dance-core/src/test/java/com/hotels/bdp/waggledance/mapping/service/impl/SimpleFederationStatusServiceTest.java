@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2021 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,55 +15,128 @@
  */
 package com.hotels.bdp.waggledance.mapping.service.impl;
 
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import org.junit.Before;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.thrift.TException;
+import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import com.hotels.bdp.waggledance.api.model.FederatedMetaStore;
 import com.hotels.bdp.waggledance.api.model.MetaStoreStatus;
-import com.hotels.bdp.waggledance.mapping.model.MetaStoreMapping;
-import com.hotels.bdp.waggledance.mapping.service.MetaStoreMappingFactory;
+import com.hotels.bdp.waggledance.client.CloseableThriftHiveMetastoreIface;
+import com.hotels.bdp.waggledance.mapping.service.MetaStoreHealth;
+import com.hotels.bdp.waggledance.mapping.service.MetaStoreHealthMonitor;
 
 @RunWith(MockitoJUnitRunner.class)
 public class SimpleFederationStatusServiceTest {
 
-  private @Mock MetaStoreMappingFactory metaStoreMappingFactory;
-  private @Mock MetaStoreMapping mapping;
-  private SimpleFederationStatusService service;
+  private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+  private @Mock CloseableThriftHiveMetastoreIface client;
+  private MetaStoreHealthMonitor monitor = new MetaStoreHealthMonitor(NEVER, 1, NEVER, NEVER,
+      Executors.defaultThreadFactory(), new SimpleMeterRegistry());
+  private SimpleFederationStatusService service = new SimpleFederationStatusService(monitor);
 
   private final FederatedMetaStore metaStore = FederatedMetaStore.newFederatedInstance("remote", "uri");
 
-  @Before
-  public void setUp() {
-    service = new SimpleFederationStatusService(metaStoreMappingFactory);
-    when(metaStoreMappingFactory.newInstance(metaStore)).thenReturn(mapping);
+  @After
+  public void closeMonitor() {
+    monitor.close();
+  }
+
+  private void registerAndProbe() {
+    MetaStoreHealth health = monitor.register(metaStore.getName(), () -> client);
+    await().atMost(5, TimeUnit.SECONDS).until(() -> health.getState() != null);
   }
 
   @Test
   public void checkStatusAvailable() throws Exception {
-    when(mapping.isAvailable()).thenReturn(true);
+    when(client.isOpen()).thenReturn(true);
+    registerAndProbe();
     MetaStoreStatus status = service.checkStatus(metaStore);
     assertThat(status, is(MetaStoreStatus.AVAILABLE));
   }
 
   @Test
   public void checkStatusUnavailable() throws Exception {
-    when(mapping.isAvailable()).thenReturn(false);
+    when(client.isOpen()).thenReturn(false);
+    registerAndProbe();
     MetaStoreStatus status = service.checkStatus(metaStore);
     assertThat(status, is(MetaStoreStatus.UNAVAILABLE));
   }
 
   @Test
   public void checkStatusUnavailableViaException() throws Exception {
-    when(mapping.isAvailable()).thenThrow(new RuntimeException("oh no metastore down!"));
+    when(client.isOpen()).thenThrow(new RuntimeException("oh no metastore down!"));
+    registerAndProbe();
+    MetaStoreStatus status = service.checkStatus(metaStore);
+    assertThat(status, is(MetaStoreStatus.UNAVAILABLE));
+  }
+
+  @Test
+  public void checkStatusNotMapped() {
     MetaStoreStatus status = service.checkStatus(metaStore);
     assertThat(status, is(MetaStoreStatus.UNAVAILABLE));
   }
 
+  @Test
+  public void checkStatusDoesNotCallMetastore() throws TException {
+    when(client.isOpen()).thenReturn(true);
+    registerAndProbe();
+    for (int i = 0; i < 10; i++) {
+      service.checkStatus(metaStore);
+    }
+    verify(client).getStatus();
+  }
+
+  @Test
+  public void checkStatusUnknownBeforeFirstProbe() throws Exception {
+    CountDownLatch probing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(client.isOpen()).then(invocation -> {
+      probing.countDown();
+      release.await();
+      return true;
+    });
+    try {
+      monitor.register(metaStore.getName(), () -> client);
+      probing.await();
+      assertThat(service.checkStatus(metaStore), is(MetaStoreStatus.UNKNOWN));
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void checkStatusUnknownWhenProbesHang() {
+    monitor.close();
+    monitor = new MetaStoreHealthMonitor(1, 1, NEVER, NEVER, Executors.defaultThreadFactory(),
+        new SimpleMeterRegistry());
+    service = new SimpleFederationStatusService(monitor);
+    CountDownLatch release = new CountDownLatch(1);
+    when(client.isOpen()).thenReturn(true).then(invocation -> {
+      release.await();
+      return true;
+    });
+    try {
+      monitor.register(metaStore.getName(), () -> client);
+      await().atMost(5, TimeUnit.SECONDS).until(() -> service.checkStatus(metaStore) == MetaStoreStatus.UNKNOWN);
+    } finally {
+      release.countDown();
+    }
+  }
+
 }
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2023 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,14 +15,18 @@
  */
 package com.hotels.bdp.waggledance.mapping.service.impl;
 
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -35,13 +39,20 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import org.apache.hadoop.hive.metastore.api.CurrentNotificationEventId;
 import org.apache.hadoop.hive.metastore.api.GetAllFunctionsResponse;
 import org.apache.hadoop.hive.metastore.api.NoSuchObjectException;
+import org.apache.hadoop.hive.metastore.api.NotificationEvent;
+import org.apache.hadoop.hive.metastore.api.NotificationEventResponse;
 import org.apache.hadoop.hive.metastore.api.TableMeta;
 import org.apache.hadoop.hive.metastore.api.ThriftHiveMetastore.Iface;
+import org.apache.hadoop.hive.metastore.messaging.EventMessage.EventType;
 import org.apache.thrift.TException;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -50,6 +61,8 @@ import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 
@@ -62,9 +75,11 @@ import com.hotels.bdp.waggledance.mapping.model.DatabaseMapping;
 import com.hotels.bdp.waggledance.mapping.model.DatabaseMappingImpl;
 import com.hotels.bdp.waggledance.mapping.model.MetaStoreMapping;
 import com.hotels.bdp.waggledance.mapping.model.QueryMapping;
+import com.hotels.bdp.waggledance.mapping.service.FanOutExecutor;
 import com.hotels.bdp.waggledance.mapping.service.MetaStoreMappingFactory;
 import com.hotels.bdp.waggledance.mapping.service.PanopticOperationHandler;
 import com.hotels.bdp.waggledance.server.NoPrimaryMetastoreException;
+import com.hotels.bdp.waggledance.util.ThreadFactories;
 
 @RunWith(MockitoJUnitRunner.class)
 public class StaticDatabaseMappingServiceTest {
@@ -81,6 +96,8 @@ public class StaticDatabaseMappingServiceTest {
   private @Mock Iface primaryDatabaseClient;
   private @Mock Iface federatedDatabaseClient;
   private @Mock QueryMapping queryMapping;
+  private final FanOutExecutor fanOutExecutor = new FanOutExecutor(8, 100, 8,
+      ThreadFactories.newThreadFactory("fan-out", false), new SimpleMeterRegistry());
   private StaticDatabaseMappingService service;
   private FederatedMetaStore federatedMetastore = newFederatedInstance(FEDERATED_NAME, URI);
   private MetaStoreMapping metaStoreMappingPrimary;
@@ -107,7 +124,7 @@ public class StaticDatabaseMappingServiceTest {
     when(metaStoreMappingFactory.newInstance(unavailableMetastore)).thenReturn(unavailableMapping);
 
     service = new StaticDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore, unavailableMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore, unavailableMetastore), queryMapping, fanOutExecutor);
   }
 
   private MetaStoreMapping mockNewMapping(boolean isAvailable, String name) {
@@ -146,6 +163,11 @@ public class StaticDatabaseMappingServiceTest {
     return newMetastore;
   }
   
+  @After
+  public void after() {
+    fanOutExecutor.close();
+  }
+
   @Test
   public void databaseMappingPrimary() throws NoSuchObjectException {
     DatabaseMapping databaseMapping = service.databaseMapping(PRIMARY_DB);
@@ -176,7 +198,7 @@ public class StaticDatabaseMappingServiceTest {
     federatedMetastore = newFederatedInstanceWithClient(FEDERATED_NAME, URI, Lists.newArrayList("db"), true);
 
     service = new StaticDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
   }
 
   @Test(expected = WaggleDanceException.class)
@@ -191,7 +213,7 @@ public class StaticDatabaseMappingServiceTest {
         true);
 
     service = new StaticDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore, secondFederatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore, secondFederatedMetastore), queryMapping, fanOutExecutor);
   }
 
   @Test(expected = WaggleDanceException.class)
@@ -204,7 +226,7 @@ public class StaticDatabaseMappingServiceTest {
     when(metaStoreMappingFactory.newInstance(primaryMetastore)).thenReturn(metaStoreMappingPrimary);
 
     service = new StaticDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(federatedMetastore, primaryMetastore), queryMapping);
+        Arrays.asList(federatedMetastore, primaryMetastore), queryMapping, fanOutExecutor);
   }
   
 
@@ -219,7 +241,7 @@ public class StaticDatabaseMappingServiceTest {
     when(metaStoreMappingFactory.newInstance(primaryMetastore)).thenReturn(metaStoreMappingPrimary);
 
     service = new StaticDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
   }
   
   @Test
@@ -233,7 +255,7 @@ public class StaticDatabaseMappingServiceTest {
     when(metaStoreMappingFactory.newInstance(primaryMetastore)).thenReturn(metaStoreMappingPrimary);
 
     service = new StaticDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(federatedMetastore, primaryMetastore), queryMapping);
+        Arrays.asList(federatedMetastore, primaryMetastore), queryMapping, fanOutExecutor);
   }
 
   @Test(expected = WaggleDanceException.class)
@@ -313,14 +335,14 @@ public class StaticDatabaseMappingServiceTest {
   public void onInitDuplicatesThrowsException() {
     List<AbstractMetaStore> duplicates = Arrays
         .asList(primaryMetastore, federatedMetastore, primaryMetastore, federatedMetastore);
-    service = new StaticDatabaseMappingService(metaStoreMappingFactory, duplicates, queryMapping);
+    service = new StaticDatabaseMappingService(metaStoreMappingFactory, duplicates, queryMapping, fanOutExecutor);
   }
 
   @Test
   public void onInitEmpty() {
     List<AbstractMetaStore> empty = Collections.emptyList();
     try {
-      service = new StaticDatabaseMappingService(metaStoreMappingFactory, empty, queryMapping);
+      service = new StaticDatabaseMappingService(metaStoreMappingFactory, empty, queryMapping, fanOutExecutor);
     } catch (Exception e) {
       fail("It should not throw any exception, an empty list is ok");
     }
@@ -415,7 +437,7 @@ public class StaticDatabaseMappingServiceTest {
     MappedTables mappedTables = new MappedTables(FEDERATED_DB, Lists.newArrayList("table"));
     federatedMetastore.setMappedTables(Collections.singletonList(mappedTables));
     service = new StaticDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
     service.checkTableAllowed(FEDERATED_DB, "table_not_mapped", null);
   }
 
@@ -425,7 +447,7 @@ public class StaticDatabaseMappingServiceTest {
     MappedTables mappedTables = new MappedTables(PRIMARY_DB, Lists.newArrayList("table"));
     primaryMetastore.setMappedTables(Collections.singletonList(mappedTables));
     service = new StaticDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
     service.checkTableAllowed(PRIMARY_DB, "table_not_mapped", null);
   }
 
@@ -437,7 +459,7 @@ public class StaticDatabaseMappingServiceTest {
     MappedTables mappedTables2 = new MappedTables(otherDb, Lists.newArrayList("table1"));
     primaryMetastore.setMappedTables(Lists.newArrayList(mappedTables1, mappedTables2));
     service = new StaticDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
     service.checkTableAllowed(PRIMARY_DB, "table", null);
     service.checkTableAllowed(otherDb, "table1", null);
   }
@@ -447,7 +469,7 @@ public class StaticDatabaseMappingServiceTest {
     primaryMetastore.setMappedDatabases(Lists.newArrayList(PRIMARY_DB));
     primaryMetastore.setMappedTables(Collections.emptyList());
     service = new StaticDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
     DatabaseMapping mapping = service.databaseMapping(PRIMARY_DB);
     service.checkTableAllowed(PRIMARY_DB, "table", mapping);
   }
@@ -459,7 +481,7 @@ public class StaticDatabaseMappingServiceTest {
     MappedTables mappedTables = new MappedTables(PRIMARY_DB, allowedTables);
     primaryMetastore.setMappedTables(Collections.singletonList(mappedTables));
     service = new StaticDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
     List<String> result = service
         .filterTables(PRIMARY_DB, Lists.newArrayList("table", "table_not_mapped", "another_table"), null);
     assertThat(result, is(allowedTables));
@@ -474,7 +496,8 @@ public class StaticDatabaseMappingServiceTest {
 
   @Test
   public void closeOnEmptyInit() throws Exception {
-    service = new StaticDatabaseMappingService(metaStoreMappingFactory, Collections.emptyList(), queryMapping);
+    service = new StaticDatabaseMappingService(metaStoreMappingFactory, Collections.emptyList(), queryMapping,
+        fanOutExecutor);
     service.close();
     verify(metaStoreMappingPrimary, never()).close();
     verify(metaStoreMappingFederated, never()).close();
@@ -492,7 +515,7 @@ public class StaticDatabaseMappingServiceTest {
     federatedMetastore.setMappedDatabases(Collections.emptyList());
     primaryMetastore.setMappedDatabases(Collections.emptyList());
     service = new StaticDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
 
     PanopticOperationHandler handler = service.getPanopticOperationHandler();
     assertThat(handler.getAllDatabases(), is(Collections.emptyList()));
@@ -503,7 +526,7 @@ public class StaticDatabaseMappingServiceTest {
     primaryMetastore.setMappedDatabases(Collections.singletonList(PRIMARY_DB));
     federatedMetastore.setMappedDatabases(Collections.singletonList(FEDERATED_DB));
     service = new StaticDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
 
     PanopticOperationHandler handler = service.getPanopticOperationHandler();
     assertThat(handler.getAllDatabases().size(), is(2));
@@ -529,7 +552,7 @@ public class StaticDatabaseMappingServiceTest {
     federatedMetastore.setMappedDatabases(Collections.emptyList());
     primaryMetastore.setMappedDatabases(Collections.emptyList());
     service = new StaticDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
 
     when(primaryDatabaseClient.get_databases(pattern))
         .thenReturn(Lists.newArrayList(PRIMARY_DB, " primary_db_that_is_not_mapped"));
@@ -547,7 +570,7 @@ public class StaticDatabaseMappingServiceTest {
     primaryMetastore.setMappedDatabases(Collections.singletonList(PRIMARY_DB));
     federatedMetastore.setMappedDatabases(Collections.singletonList(FEDERATED_DB));
     service = new StaticDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
 
     when(primaryDatabaseClient.get_databases(pattern))
         .thenReturn(Lists.newArrayList(PRIMARY_DB, "primary_db_that_is_not_mapped"));
@@ -586,7 +609,7 @@ public class StaticDatabaseMappingServiceTest {
     federatedMetastore.setMappedTables(Lists.newArrayList(mappedTablesFederated));
     primaryMetastore.setMappedTables(Lists.newArrayList(mappedTablesPrimary));
     service = new StaticDatabaseMappingService(metaStoreMappingFactory,
-        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping);
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
 
     TableMeta federatedTableMeta = new TableMeta(FEDERATED_DB, "tbl", null);
     TableMeta primaryTableMeta = new TableMeta(PRIMARY_DB, "tbl", null);
@@ -638,4 +661,148 @@ public class StaticDatabaseMappingServiceTest {
     assertThat(result.getFunctions().get(0).getFunctionName(), is("fn1"));
     assertThat(result.getFunctions().get(1).getFunctionName(), is("fn2"));
   }
+
+  private StaticDatabaseMappingService newRefreshingService(
+      long indexRefreshDelayMillis,
+      long missRefreshIntervalMillis) {
+    // Only count the calls of the new service
+    clearInvocations(primaryDatabaseClient);
+    return new StaticDatabaseMappingService(metaStoreMappingFactory,
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor,
+        indexRefreshDelayMillis, missRefreshIntervalMillis);
+  }
+
+  private static NotificationEvent newDatabaseEvent(long eventId, EventType eventType, String databaseName) {
+    NotificationEvent event = new NotificationEvent(eventId, 0, eventType.toString(), "");
+    event.setDbName(databaseName);
+    return event;
+  }
+
+  @Test
+  public void databaseMappingRefreshesOnMiss() throws Exception {
+    when(primaryDatabaseClient.get_all_databases())
+        .thenReturn(Lists.newArrayList(PRIMARY_DB))
+        .thenReturn(Lists.newArrayList(PRIMARY_DB, "new_db"));
+    try (StaticDatabaseMappingService refreshingService = newRefreshingService(TimeUnit.HOURS.toMillis(1), 0)) {
+      DatabaseMapping databaseMapping = refreshingService.databaseMapping("new_db");
+      assertThat(databaseMapping.getMetastoreMappingName(), is(PRIMARY_NAME));
+      assertThat(refreshingService.getPanopticOperationHandler().getAllDatabases(),
+          is(Arrays.asList(PRIMARY_DB, FEDERATED_DB, "new_db")));
+    }
+  }
+
+  @Test
+  public void databaseMappingDoesNotRefreshOnMissWhenDisabled() throws Exception {
+    when(primaryDatabaseClient.get_all_databases())
+        .thenReturn(Lists.newArrayList(PRIMARY_DB))
+        .thenReturn(Lists.newArrayList(PRIMARY_DB, "new_db"));
+    clearInvocations(primaryDatabaseClient);
+    service = new StaticDatabaseMappingService(metaStoreMappingFactory,
+        Arrays.asList(primaryMetastore, federatedMetastore), queryMapping, fanOutExecutor);
+    try {
+      service.databaseMapping("new_db");
+      fail("Exception expected");
+    } catch (NoSuchObjectException e) {
+      verify(primaryDatabaseClient, times(1)).get_all_databases();
+    }
+  }
+
+  @Test
+  public void databaseMappingRefreshesOnMissAtMostOncePerInterval() throws Exception {
+    try (StaticDatabaseMappingService refreshingService = newRefreshingService(TimeUnit.HOURS.toMillis(1),
+        TimeUnit.HOURS.toMillis(1))) {
+      try {
+        refreshingService.databaseMapping("new_db");
+        fail("Exception expected");
+      } catch (NoSuchObjectException e) {
+        verify(primaryDatabaseClient, times(1)).get_all_databases();
+      }
+    }
+  }
+
+  @Test
+  public void databaseMappingDoesNotWaitForSlowRefreshOnMiss() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    when(primaryDatabaseClient.get_all_databases()).thenReturn(Lists.newArrayList(PRIMARY_DB)).thenAnswer(i -> {
+      release.await();
+      return Lists.newArrayList(PRIMARY_DB, "new_db");
+    });
+    try (StaticDatabaseMappingService refreshingService = newRefreshingService(TimeUnit.HOURS.toMillis(1), 0)) {
+      long start = System.nanoTime();
+      try {
+        refreshingService.databaseMapping("new_db");
+        fail("Exception expected");
+      } catch (NoSuchObjectException e) {
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+      } finally {
+        release.countDown();
+      }
+    }
+  }
+
+  @Test
+  public void refreshOnMissSkipsUnavailableMetastores() throws Exception {
+    try (StaticDatabaseMappingService refreshingService = newRefreshingService(TimeUnit.HOURS.toMillis(1), 0)) {
+      clearInvocations(federatedDatabaseClient);
+      when(metaStoreMappingFederated.isAvailable()).thenReturn(false);
+      try {
+        refreshingService.databaseMapping("new_db");
+        fail("Exception expected");
+      } catch (NoSuchObjectException e) {
+        verify(primaryDatabaseClient, times(2)).get_all_databases();
+        verify(federatedDatabaseClient, never()).get_all_databases();
+      }
+    }
+  }
+
+  @Test
+  public void refreshFollowsDatabaseEvents() throws Exception {
+    when(primaryDatabaseClient.get_current_notificationEventId()).thenReturn(new CurrentNotificationEventId(10));
+    when(primaryDatabaseClient.get_next_notification(any()))
+        .thenReturn(new NotificationEventResponse(Arrays
+            .asList(newDatabaseEvent(11, EventType.CREATE_DATABASE, "created_db"),
+                newDatabaseEvent(12, EventType.DROP_DATABASE, PRIMARY_DB))))
+        .thenReturn(new NotificationEventResponse(Collections.emptyList()));
+    try (StaticDatabaseMappingService refreshingService = newRefreshingService(TimeUnit.HOURS.toMillis(1), 0)) {
+      try {
+        // Lists the databases and starts following the events
+        refreshingService.databaseMapping("unknown_db");
+        fail("Exception expected");
+      } catch (NoSuchObjectException e) {
+        // expected
+      }
+      assertThat(refreshingService.databaseMapping("created_db").getMetastoreMappingName(), is(PRIMARY_NAME));
+      try {
+        refreshingService.databaseMapping(PRIMARY_DB);
+        fail("Exception expected");
+      } catch (NoSuchObjectException e) {
+        // expected
+      }
+      verify(primaryDatabaseClient, times(2)).get_all_databases();
+    }
+  }
+
+  @Test
+  public void refreshIgnoresClashingDatabases() throws Exception {
+    when(primaryDatabaseClient.get_all_databases())
+        .thenReturn(Lists.newArrayList(PRIMARY_DB))
+        .thenReturn(Lists.newArrayList(PRIMARY_DB, FEDERATED_DB, "new_db"));
+    try (StaticDatabaseMappingService refreshingService = newRefreshingService(TimeUnit.HOURS.toMillis(1), 0)) {
+      assertThat(refreshingService.databaseMapping("new_db").getMetastoreMappingName(), is(PRIMARY_NAME));
+      assertThat(refreshingService.databaseMapping(FEDERATED_DB).getMetastoreMappingName(), is(FEDERATED_NAME));
+    }
+  }
+
+  @Test
+  public void scheduledRefresh() throws Exception {
+    when(primaryDatabaseClient.get_all_databases())
+        .thenReturn(Lists.newArrayList(PRIMARY_DB))
+        .thenReturn(Lists.newArrayList(PRIMARY_DB, "new_db"));
+    try (StaticDatabaseMappingService refreshingService = newRefreshingService(10, TimeUnit.HOURS.toMillis(1))) {
+      await()
+          .atMost(5, TimeUnit.SECONDS)
+          .until(() -> refreshingService.getPanopticOperationHandler().getAllDatabases().contains("new_db"));
+      assertThat(refreshingService.databaseMapping("new_db").getMetastoreMappingName(), is(PRIMARY_NAME));
+    }
+  }
 }
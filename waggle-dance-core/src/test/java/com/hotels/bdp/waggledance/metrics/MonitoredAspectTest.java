@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2021 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,7 @@ import static org.mockito.Mockito.when;
 
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.Signature;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -32,6 +33,8 @@ import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.search.RequiredSearch;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
+import com.hotels.bdp.waggledance.client.ClientSession;
+
 @RunWith(MockitoJUnitRunner.class)
 public class MonitoredAspectTest {
 
@@ -44,10 +47,11 @@ public class MonitoredAspectTest {
   private @Mock Monitored monitored;
 
   private MonitoredAspect aspect;
+  private ClientSession.Binding binding;
 
   @Before
   public void init() throws Exception {
-    CurrentMonitoredMetaStoreHolder.monitorMetastore(null);
+    binding = new ClientSession().bind();
 
     meterRegistry = new SimpleMeterRegistry();
 
@@ -59,6 +63,11 @@ public class MonitoredAspectTest {
     aspect.setMeterRegistry(meterRegistry);
   }
 
+  @After
+  public void after() {
+    binding.close();
+  }
+
   @Test
   public void specialChars() throws Throwable {
     reset(signature);
@@ -154,4 +163,24 @@ public class MonitoredAspectTest {
     aspect.monitor(pjp, monitored);
   }
 
+  @Test
+  public void monitorOutsideOfSession() throws Throwable {
+    binding.close();
+    CurrentMonitoredMetaStoreHolder.monitorMetastore("metastoreName");
+    aspect.monitor(pjp, monitored);
+
+    RequiredSearch rs = meterRegistry.get("counter.Type_Anonymous.myMethod.all.calls");
+    assertThat(rs.counter().count(), is(1.0));
+  }
+
+  @Test
+  public void monitoredMetastoreIsScopedToTheSession() throws Throwable {
+    CurrentMonitoredMetaStoreHolder.monitorMetastore("metastoreName");
+    try (ClientSession.Binding other = new ClientSession().bind()) {
+      aspect.monitor(pjp, monitored);
+    }
+
+    RequiredSearch rs = meterRegistry.get("counter.Type_Anonymous.myMethod.all.calls");
+    assertThat(rs.counter().count(), is(1.0));
+  }
 }
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.server;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TTransport;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.hotels.bdp.waggledance.server.TSetIpAddressProcessorFactory.SessionTSetIpAddressProcessor;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConnectionScopedTProcessorFactoryTest {
+
+  private @Mock TSetIpAddressProcessorFactory processorFactory;
+  private @Mock SessionTSetIpAddressProcessor<?> processor;
+  private @Mock SessionTSetIpAddressProcessor<?> otherProcessor;
+  private @Mock TTransport transport;
+  private @Mock TTransport otherTransport;
+  private @Mock TProtocol protocol;
+
+  private ConnectionScopedTProcessorFactory factory;
+
+  @Before
+  public void init() {
+    doReturnProcessors();
+    factory = new ConnectionScopedTProcessorFactory(processorFactory);
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private void doReturnProcessors() {
+    when(processorFactory.getUnmonitoredProcessor())
+        .thenReturn((SessionTSetIpAddressProcessor) processor, (SessionTSetIpAddressProcessor) otherProcessor);
+  }
+
+  @Test
+  public void sameProcessorForAllRequestsOfAConnection() {
+    TProcessor first = factory.getProcessor(transport);
+    TProcessor second = factory.getProcessor(transport);
+    assertThat(first, is(sameInstance(processor)));
+    assertThat(second, is(sameInstance(first)));
+  }
+
+  @Test
+  public void processorPerConnection() {
+    TProcessor first = factory.getProcessor(transport);
+    TProcessor second = factory.getProcessor(otherTransport);
+    assertThat(second, is(not(sameInstance(first))));
+  }
+
+  @Test
+  public void processorClosedWhenConnectionEnds() throws Exception {
+    factory.getProcessor(transport);
+    factory.getProcessor(otherTransport);
+    when(protocol.getTransport()).thenReturn(transport);
+
+    factory.deleteContext(null, protocol, protocol);
+
+    verify(processor).close();
+    verify(otherProcessor, never()).close();
+  }
+
+  @Test
+  public void newProcessorAfterConnectionEnds() {
+    factory.getProcessor(transport);
+    when(protocol.getTransport()).thenReturn(transport);
+    factory.deleteContext(null, protocol, protocol);
+
+    assertThat(factory.getProcessor(transport), is(sameInstance(otherProcessor)));
+  }
+
+  @Test
+  public void deleteUnknownConnection() throws Exception {
+    TProtocol unknown = mock(TProtocol.class);
+    when(unknown.getTransport()).thenReturn(otherTransport);
+
+    factory.deleteContext(null, unknown, unknown);
+
+    verify(processor, never()).close();
+  }
+
+}
@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2024 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,12 +17,23 @@ package com.hotels.bdp.waggledance.server;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.ArrayList;
+import static com.hotels.bdp.waggledance.api.model.AbstractMetaStore.newFederatedInstance;
+import static com.hotels.bdp.waggledance.api.model.AbstractMetaStore.newPrimaryInstance;
+
+import java.util.Collections;
+import java.util.function.Function;
 
 import org.apache.hadoop.hive.conf.HiveConf;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -30,9 +41,15 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import com.hotels.bdp.waggledance.api.WaggleDanceException;
+import com.hotels.bdp.waggledance.api.model.AbstractMetaStore;
 import com.hotels.bdp.waggledance.api.model.DatabaseResolution;
+import com.hotels.bdp.waggledance.client.ClientSession;
 import com.hotels.bdp.waggledance.conf.WaggleDanceConfiguration;
+import com.hotels.bdp.waggledance.mapping.model.MetaStoreMapping;
 import com.hotels.bdp.waggledance.mapping.model.QueryMapping;
+import com.hotels.bdp.waggledance.mapping.service.FanOutExecutor;
+import com.hotels.bdp.waggledance.mapping.service.FederatedMetaStoreStorage;
+import com.hotels.bdp.waggledance.mapping.service.MappingEventListener;
 import com.hotels.bdp.waggledance.mapping.service.MetaStoreMappingFactory;
 import com.hotels.bdp.waggledance.mapping.service.impl.NotifyingFederationService;
 
@@ -41,22 +58,29 @@ public class FederatedHMSHandlerFactoryTest {
 
   private final HiveConf hiveConf = new HiveConf();
   private @Mock WaggleDanceConfiguration waggleDanceConfiguration;
-  private @Mock NotifyingFederationService notifyingFederationService;
+  private @Mock FederatedMetaStoreStorage federatedMetaStoreStorage;
+  private NotifyingFederationService notifyingFederationService;
   private @Mock MetaStoreMappingFactory metaStoreMappingFactory;
   private @Mock QueryMapping queryMapping;
+  private @Mock FanOutExecutor fanOutExecutor;
   private FederatedHMSHandlerFactory factory;
 
   @Before
   public void init() {
-    when(notifyingFederationService.getAll()).thenReturn(new ArrayList<>());
+    notifyingFederationService = spy(new NotifyingFederationService(federatedMetaStoreStorage));
     factory = new FederatedHMSHandlerFactory(hiveConf, notifyingFederationService, metaStoreMappingFactory,
-        waggleDanceConfiguration, queryMapping);
+        waggleDanceConfiguration, queryMapping, fanOutExecutor);
+  }
+
+  @After
+  public void shutdown() {
+    notifyingFederationService.preDestroy();
   }
 
   @Test
   public void typical() throws Exception {
     when(waggleDanceConfiguration.getDatabaseResolution()).thenReturn(DatabaseResolution.MANUAL);
-    CloseableIHMSHandler handler = factory.create();
+    CloseableIHMSHandler handler = factory.create(new ClientSession());
     assertThat(handler, is(instanceOf(FederatedHMSHandler.class)));
   }
 
@@ -64,16 +88,61 @@ public class FederatedHMSHandlerFactoryTest {
   public void prefixedDatabase() throws Exception {
     when(waggleDanceConfiguration.getDatabaseResolution()).thenReturn(DatabaseResolution.PREFIXED);
     factory = new FederatedHMSHandlerFactory(hiveConf, notifyingFederationService, metaStoreMappingFactory,
-        waggleDanceConfiguration, queryMapping);
-    CloseableIHMSHandler handler = factory.create();
+        waggleDanceConfiguration, queryMapping, fanOutExecutor);
+    CloseableIHMSHandler handler = factory.create(new ClientSession());
     assertThat(handler, is(instanceOf(FederatedHMSHandler.class)));
   }
 
+  @Test
+  public void databaseMappingServiceIsSharedBetweenHandlers() throws Exception {
+    when(waggleDanceConfiguration.getDatabaseResolution()).thenReturn(DatabaseResolution.PREFIXED);
+    factory.create(new ClientSession());
+    factory.create(new ClientSession());
+    verify(notifyingFederationService).subscribe(any(Function.class));
+    verify(federatedMetaStoreStorage).getAll();
+  }
+
+  @Test
+  public void metastoreRegisteredWhileCreatingTheDatabaseMappingService() throws Exception {
+    when(waggleDanceConfiguration.getDatabaseResolution()).thenReturn(DatabaseResolution.PREFIXED);
+    AbstractMetaStore primary = newPrimaryInstance("primary", "uri");
+    AbstractMetaStore federated = newFederatedInstance("federated", "uri");
+    when(federatedMetaStoreStorage.getAll()).thenReturn(Collections.singletonList(primary));
+    MetaStoreMapping primaryMapping = mock(MetaStoreMapping.class);
+    when(primaryMapping.isAvailable()).thenReturn(true);
+    when(primaryMapping.getDatabasePrefix()).thenReturn("");
+    when(metaStoreMappingFactory.newInstance(primary)).then(invocation -> {
+      notifyingFederationService.register(federated);
+      return primaryMapping;
+    });
+    MetaStoreMapping federatedMapping = mock(MetaStoreMapping.class);
+    when(federatedMapping.getDatabasePrefix()).thenReturn("federated_");
+    when(metaStoreMappingFactory.newInstance(federated)).thenReturn(federatedMapping);
+
+    factory.create(new ClientSession());
+    verify(metaStoreMappingFactory, timeout(5000)).newInstance(federated);
+  }
+
+  @Test
+  public void confIsSharedBetweenHandlers() throws Exception {
+    when(waggleDanceConfiguration.getDatabaseResolution()).thenReturn(DatabaseResolution.MANUAL);
+    assertThat(factory.create(new ClientSession()).getConf(), is(sameInstance(hiveConf)));
+    assertThat(factory.create(new ClientSession()).getConf(), is(sameInstance(hiveConf)));
+  }
+
+  @Test
+  public void close() throws Exception {
+    when(waggleDanceConfiguration.getDatabaseResolution()).thenReturn(DatabaseResolution.MANUAL);
+    factory.create(new ClientSession());
+    factory.close();
+    verify(notifyingFederationService).unsubscribe(any(MappingEventListener.class));
+  }
+
   @Test(expected = WaggleDanceException.class)
   public void noMode() {
     factory = new FederatedHMSHandlerFactory(hiveConf, notifyingFederationService, metaStoreMappingFactory,
-        waggleDanceConfiguration, queryMapping);
-    factory.create();
+        waggleDanceConfiguration, queryMapping, fanOutExecutor);
+    factory.create(new ClientSession());
   }
 
 }
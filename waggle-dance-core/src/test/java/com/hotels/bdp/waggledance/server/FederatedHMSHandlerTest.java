@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2024 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -225,11 +225,11 @@ import org.mockito.junit.MockitoJUnitRunner;
 import com.facebook.fb303.fb_status;
 import com.google.common.collect.Lists;
 
+import com.hotels.bdp.waggledance.client.ClientSession;
 import com.hotels.bdp.waggledance.conf.WaggleDanceConfiguration;
 import com.hotels.bdp.waggledance.mapping.model.DatabaseMapping;
 import com.hotels.bdp.waggledance.mapping.service.MappingEventListener;
 import com.hotels.bdp.waggledance.mapping.service.PanopticOperationHandler;
-import com.hotels.bdp.waggledance.mapping.service.impl.NotifyingFederationService;
 import com.hotels.bdp.waggledance.util.SaslHelper.SaslServerAndMDT;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -244,7 +244,7 @@ public class FederatedHMSHandlerTest {
   private final static String SCH_1 = "sch1";
 
   private @Mock MappingEventListener databaseMappingService;
-  private @Mock NotifyingFederationService notifyingFederationService;
+  private @Mock ClientSession session;
   private @Mock DatabaseMapping primaryMapping;
   private @Mock Iface primaryClient;
   private @Mock WaggleDanceConfiguration waggleDanceConfiguration;
@@ -256,7 +256,7 @@ public class FederatedHMSHandlerTest {
 
   @Before
   public void setUp() throws NoSuchObjectException {
-    handler = new FederatedHMSHandler(databaseMappingService, notifyingFederationService, waggleDanceConfiguration);
+    handler = new FederatedHMSHandler(databaseMappingService, session, waggleDanceConfiguration);
     when(databaseMappingService.primaryDatabaseMapping()).thenReturn(primaryMapping);
     when(databaseMappingService.getAvailableDatabaseMappings()).thenReturn(Collections.singletonList(primaryMapping));
     when(primaryMapping.getClient()).thenReturn(primaryClient);
@@ -267,18 +267,16 @@ public class FederatedHMSHandlerTest {
 
   @Test
   public void close() throws Exception {
-    verify(notifyingFederationService).subscribe(databaseMappingService);
     handler.close();
-    verify(notifyingFederationService).unsubscribe(databaseMappingService);
-    verify(databaseMappingService).close();
+    verify(session).close();
+    verify(databaseMappingService, never()).close();
   }
 
   @Test
   public void shutdown() throws Exception {
-    verify(notifyingFederationService).subscribe(databaseMappingService);
     handler.shutdown();
-    verify(notifyingFederationService).unsubscribe(databaseMappingService);
-    verify(databaseMappingService).close();
+    verify(session).close();
+    verify(databaseMappingService, never()).close();
   }
 
   @Test
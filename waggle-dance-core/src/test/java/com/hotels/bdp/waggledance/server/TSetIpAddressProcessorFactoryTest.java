@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2021 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,7 +18,9 @@ package com.hotels.bdp.waggledance.server;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.Closeable;
@@ -34,6 +36,8 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import com.hotels.bdp.waggledance.client.ClientSession;
+
 @RunWith(MockitoJUnitRunner.class)
 public class TSetIpAddressProcessorFactoryTest {
 
@@ -47,7 +51,7 @@ public class TSetIpAddressProcessorFactoryTest {
 
   @Before
   public void init() {
-    when(federatedHMSHandlerFactory.create()).thenReturn(federatedHMSHandler);
+    when(federatedHMSHandlerFactory.create(any(ClientSession.class))).thenReturn(federatedHMSHandler);
     when(federatedHMSHandler.getConf()).thenReturn(hiveConf);
     factory = new TSetIpAddressProcessorFactory(hiveConf, federatedHMSHandlerFactory, transportMonitor);
   }
@@ -68,4 +72,13 @@ public class TSetIpAddressProcessorFactoryTest {
     assertThat(transportCaptor.getValue(), is(transport));
     assertThat(handlerCaptor.getValue(), is(instanceOf(FederatedHMSHandler.class)));
   }
+
+  @Test
+  public void unmonitoredProcessor() throws Exception {
+    TSetIpAddressProcessorFactory.SessionTSetIpAddressProcessor<?> processor = factory.getUnmonitoredProcessor();
+    verifyNoInteractions(transportMonitor);
+
+    processor.close();
+    verify(federatedHMSHandler).close();
+  }
 }
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Filters a table listing with a {@code mapped-tables} list of names and regular expressions, as {@code get_all_tables}
+ * does. Run with {@code mvn -pl waggle-dance-core test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.hotels.bdp.waggledance.util.AllowListBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AllowListBenchmark {
+
+  @Param({ "50000" })
+  private int tables;
+
+  @Param({ "5000" })
+  private int entries;
+
+  private List<String> tableNames;
+  private AllowList allowList;
+
+  @Setup
+  public void setUp() {
+    tableNames = new ArrayList<>(tables);
+    for (int i = 0; i < tables; i++) {
+      tableNames.add("table_" + i);
+    }
+    List<String> allowed = new ArrayList<>(entries);
+    for (int i = 0; i < entries; i++) {
+      // One regular expression every ten names
+      allowed.add(i % 10 == 0 ? "table_" + i + "_v[0-9]+" : "table_" + i * 7);
+    }
+    allowList = new AllowList(allowed);
+  }
+
+  @Benchmark
+  public List<String> filter() {
+    List<String> allowedTables = new ArrayList<>();
+    for (String table : tableNames) {
+      if (allowList.contains(table)) {
+        allowedTables.add(table);
+      }
+    }
+    return allowedTables;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(AllowListBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
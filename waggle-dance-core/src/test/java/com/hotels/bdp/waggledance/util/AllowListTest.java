@@ -1,5 +1,5 @@
 /**
- * Copyright (C) 2016-2021 Expedia, Inc.
+ * Copyright (C) 2016-2026 Expedia, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,7 +20,10 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
 
 import org.junit.Test;
 
@@ -62,4 +65,116 @@ public class AllowListTest {
     assertThat(allowList.size(), is(0));
     assertThat(allowList.contains("abs"), is(false));
   }
+
+  @Test
+  public void containsIgnoresCaseAndSpaces() {
+    AllowList allowList = new AllowList(ImmutableList.of(" DB_.* ", "User"));
+    assertTrue(allowList.contains("Db_Test"));
+    assertTrue(allowList.contains(" USER "));
+  }
+
+  @Test
+  public void containsNull() {
+    assertTrue(new AllowList(Collections.emptyList()).contains(null));
+  }
+
+  @Test
+  public void literalDotIsRegex() {
+    AllowList allowList = new AllowList(ImmutableList.of("db.tbl"));
+    assertTrue(allowList.contains("db.tbl"));
+    assertTrue(allowList.contains("db_tbl"));
+  }
+
+  @Test
+  public void alternationIsNotCombinedWithOtherEntries() {
+    AllowList allowList = new AllowList(ImmutableList.of("a|b", "c"));
+    assertTrue(allowList.contains("a"));
+    assertTrue(allowList.contains("b"));
+    assertTrue(allowList.contains("c"));
+    assertFalse(allowList.contains("ab"));
+  }
+
+  @Test
+  public void inlineFlagsOnlyApplyToTheirEntry() {
+    AllowList allowList = new AllowList(ImmutableList.of("(?x) a b ", "c d"));
+    assertTrue(allowList.contains("ab"));
+    assertFalse(allowList.contains("cd"));
+  }
+
+  @Test
+  public void backReference() {
+    AllowList allowList = new AllowList(ImmutableList.of("x.*", "(a)\\1"));
+    assertTrue(allowList.contains("aa"));
+    assertFalse(allowList.contains("ab"));
+    assertTrue(allowList.contains("xyz"));
+  }
+
+  @Test
+  public void sameNamedGroupInSeveralEntries() {
+    AllowList allowList = new AllowList(ImmutableList.of("db_(?<n>[0-9]+)", "db_(?<n>[a-z]+)_x", "db_(?<=_)y"));
+    assertTrue(allowList.contains("db_1"));
+    assertTrue(allowList.contains("db_a_x"));
+    assertTrue(allowList.contains("db_y"));
+    assertFalse(allowList.contains("db_a"));
+    allowList.add("db_(?<n>[a-z]+)_z");
+    assertTrue(allowList.contains("db_a_z"));
+  }
+
+  @Test
+  public void addAfterContains() {
+    AllowList allowList = new AllowList(ImmutableList.of("db_.*"));
+    assertFalse(allowList.contains("tbl_1"));
+    allowList.add("tbl_.*");
+    assertTrue(allowList.contains("tbl_1"));
+    assertTrue(allowList.contains("db_1"));
+  }
+
+  @Test
+  public void addDuplicate() {
+    AllowList allowList = new AllowList(ImmutableList.of("db", "DB "));
+    assertThat(allowList.size(), is(1));
+  }
+
+  @Test(expected = PatternSyntaxException.class)
+  public void addInvalidPattern() {
+    new AllowList(ImmutableList.of("db_("));
+  }
+
+  @Test
+  public void containsMoreNamesThanCachedDecisions() {
+    List<String> entries = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      entries.add("tbl_" + i);
+      entries.add("tbl_" + i + "_v[0-9]+");
+    }
+    AllowList allowList = new AllowList(entries);
+    for (int pass = 0; pass < 2; pass++) {
+      for (int i = 0; i < AllowList.MAX_CACHED_DECISIONS + 10; i++) {
+        assertThat(allowList.contains("tbl_" + i % 1000 + "_v" + i), is(true));
+        assertThat(allowList.contains("tbl_" + i + "_x"), is(false));
+      }
+    }
+  }
+
+  @Test
+  public void literalPrefix() {
+    assertThat(AllowList.literalPrefix("db_.*"), is("db_"));
+    assertThat(AllowList.literalPrefix("db_s?"), is("db_"));
+    assertThat(AllowList.literalPrefix("db_s{0,1}"), is("db_"));
+    assertThat(AllowList.literalPrefix("db_s+"), is("db_s"));
+    assertThat(AllowList.literalPrefix("db_\\d"), is("db_"));
+    assertThat(AllowList.literalPrefix("db_a|db_b"), is(""));
+    assertThat(AllowList.literalPrefix("(?i)db"), is(""));
+  }
+
+  @Test
+  public void regularExpressionsWithOptionalPrefixes() {
+    AllowList allowList = new AllowList(ImmutableList.of("dbs?_.*", "db_1.*", ".*_tmp"));
+    assertTrue(allowList.contains("dbs_a"));
+    assertTrue(allowList.contains("db_a"));
+    assertTrue(allowList.contains("db_1a"));
+    assertTrue(allowList.contains("x_tmp"));
+    assertTrue(allowList.contains("d_tmp"));
+    assertFalse(allowList.contains("dba"));
+  }
 }
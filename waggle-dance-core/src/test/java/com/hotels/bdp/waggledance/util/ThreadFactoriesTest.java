@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2016-2026 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hotels.bdp.waggledance.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.junit.Test;
+
+public class ThreadFactoriesTest {
+
+  private static final Runnable NOOP = () -> {};
+
+  @Test
+  public void platformThreads() {
+    ThreadFactory threadFactory = ThreadFactories.newThreadFactory("worker", false);
+    Thread first = threadFactory.newThread(NOOP);
+    Thread second = threadFactory.newThread(NOOP);
+    assertThat(first.getName(), is("worker-0"));
+    assertThat(second.getName(), is("worker-1"));
+    assertThat(first.isDaemon(), is(true));
+    assertThat(isVirtual(first), is(false));
+  }
+
+  @Test
+  public void virtualThreadsFallBackToPlatformThreads() {
+    assumeFalse(ThreadFactories.isVirtualThreadsSupported());
+    Thread thread = ThreadFactories.newThreadFactory("worker", true).newThread(NOOP);
+    assertThat(thread.getName(), is("worker-0"));
+    assertThat(thread.isDaemon(), is(true));
+  }
+
+  @Test
+  public void virtualThreads() {
+    assumeTrue(ThreadFactories.isVirtualThreadsSupported());
+    ThreadFactory threadFactory = ThreadFactories.newThreadFactory("worker", true);
+    Thread first = threadFactory.newThread(NOOP);
+    Thread second = threadFactory.newThread(NOOP);
+    assertThat(first.getName(), is("worker-0"));
+    assertThat(second.getName(), is("worker-1"));
+    assertThat(isVirtual(first), is(true));
+  }
+
+  private static boolean isVirtual(Thread thread) {
+    try {
+      return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    } catch (NoSuchMethodException e) {
+      return false;
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
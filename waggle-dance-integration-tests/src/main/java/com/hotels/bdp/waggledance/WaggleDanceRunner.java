@@ -50,6 +50,7 @@ import com.hotels.bdp.waggledance.api.model.Federations;
 import com.hotels.bdp.waggledance.api.model.MappedTables;
 import com.hotels.bdp.waggledance.api.model.PrimaryMetaStore;
 import com.hotels.bdp.waggledance.conf.GraphiteConfiguration;
+import com.hotels.bdp.waggledance.conf.ThriftServerType;
 import com.hotels.bdp.waggledance.conf.WaggleDanceConfiguration;
 import com.hotels.bdp.waggledance.conf.YamlStorageConfiguration;
 import com.hotels.bdp.waggledance.mapping.service.FederatedMetaStoreStorage;
@@ -99,6 +100,11 @@ public class WaggleDanceRunner implements WaggleDance.ContextListener {
       return this;
     }
 
+    public Builder thriftServerType(ThriftServerType thriftServerType) {
+      waggleDanceConfiguration.setThriftServerType(thriftServerType);
+      return this;
+    }
+
     public Builder overwriteConfigOnShutdown(boolean overwriteConfigOnShutdown) {
       yamlStorageConfiguration.setOverwriteConfigOnShutdown(overwriteConfigOnShutdown);
       return this;
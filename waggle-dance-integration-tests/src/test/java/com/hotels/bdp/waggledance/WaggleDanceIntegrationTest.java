@@ -88,6 +88,7 @@ import com.hotels.bdp.waggledance.api.model.Federations;
 import com.hotels.bdp.waggledance.api.model.MappedTables;
 import com.hotels.bdp.waggledance.api.model.MetaStoreStatus;
 import com.hotels.bdp.waggledance.api.model.PrimaryMetaStore;
+import com.hotels.bdp.waggledance.conf.ThriftServerType;
 import com.hotels.bdp.waggledance.junit.ServerSocketRule;
 import com.hotels.bdp.waggledance.mapping.model.PrefixingMetastoreFilter;
 import com.hotels.bdp.waggledance.server.MetaStoreProxyServer;
@@ -221,6 +222,29 @@ public class WaggleDanceIntegrationTest {
     assertTypicalRemoteTable(proxy, waggledRemoteDbName);
   }
 
+  @Test
+  public void typicalThreadedSelectorServer() throws Exception {
+    runner = WaggleDanceRunner
+        .builder(configLocation)
+        .thriftServerType(ThriftServerType.THREADED_SELECTOR)
+        .primary("primary", localServer.getThriftConnectionUri(), READ_ONLY)
+        .federate(SECONDARY_METASTORE_NAME, remoteServer.getThriftConnectionUri(), REMOTE_DATABASE)
+        .build();
+
+    runWaggleDance(runner);
+    HiveConf conf = new HiveConf();
+    conf.setVar(ConfVars.METASTOREURIS, getWaggleDanceThriftUri());
+    conf.setBoolVar(ConfVars.METASTORE_EXECUTE_SET_UGI, true);
+    conf.setBoolVar(ConfVars.METASTORE_USE_THRIFT_FRAMED_TRANSPORT, true);
+    HiveMetaStoreClient proxy = new HiveMetaStoreClient(conf);
+
+    Table localTable = localServer.client().getTable(LOCAL_DATABASE, LOCAL_TABLE);
+    Table waggledLocalTable = proxy.getTable(LOCAL_DATABASE, LOCAL_TABLE);
+    assertThat(waggledLocalTable, is(localTable));
+    assertTypicalRemoteTable(proxy, REMOTE_DATABASE);
+    proxy.close();
+  }
+
   @Test
   public void typicalGetAllFunctions() throws Exception {
     runner = WaggleDanceRunner